@@ -17,6 +17,11 @@
 package org.apache.calcite.adapter.clone;
 
 import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.enumerable.batch.BatchScannableTable;
+import org.apache.calcite.adapter.enumerable.batch.BatchSource;
+import org.apache.calcite.adapter.enumerable.batch.Batches;
+import org.apache.calcite.adapter.enumerable.batch.ColumnBatch;
+import org.apache.calcite.adapter.enumerable.batch.ColumnVector;
 import org.apache.calcite.adapter.java.AbstractQueryableTable;
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
@@ -27,6 +32,7 @@
 import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelProtoDataType;
@@ -42,9 +48,22 @@
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.lang.reflect.Array;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -55,7 +74,12 @@
  * values in the column; see {@link Representation} and
  * {@link RepresentationType}.
  */
-class ArrayTable extends AbstractQueryableTable implements ScannableTable {
+class ArrayTable extends AbstractQueryableTable
+    implements ScannableTable, BatchScannableTable {
+  /** Byte order of columns stored off-heap. Fixed, so that files written by
+   * {@link Content#save} can be read on any platform. */
+  static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
   private final RelProtoDataType protoRowType;
   private final Supplier<Content> supplier;
 
@@ -91,6 +115,11 @@ public Enumerator<Object[]> enumerator() {
     };
   }
 
+  public BatchSource scanBatches(DataContext root, RelDataType rowType,
+      int batchSize) {
+    return supplier.get().batchSource(rowType, batchSize);
+  }
+
   public <T> Queryable<T> asQueryable(final QueryProvider queryProvider,
       SchemaPlus schema, String tableName) {
     return new AbstractTableQueryable<T>(queryProvider, schema, this,
@@ -193,6 +222,15 @@ enum RepresentationType {
      * @see ByteStringDictionary
      */
     BYTE_STRING_DICTIONARY,
+
+    /**
+     * Array of primitives held outside the Java heap, in a direct or
+     * memory-mapped {@link ByteBuffer}. Otherwise the same as
+     * {@link #PRIMITIVE_ARRAY}.
+     *
+     * @see OffHeapPrimitiveArray
+     */
+    OFF_HEAP_PRIMITIVE_ARRAY,
   }
 
   /** Column definition and value set. */
@@ -359,6 +397,207 @@ public int size(Object dataSet) {
     public String toString(Object dataSet) {
       return p.arrayToString(dataSet);
     }
+
+    /** Returns a representation that stores the same values off-heap. */
+    OffHeapPrimitiveArray toOffHeap() {
+      return new OffHeapPrimitiveArray(ordinal, primitive, p);
+    }
+  }
+
+  /** Representation that stores the values of a column of primitive values
+   * outside the Java heap, in a {@link ByteBuffer}. The buffer is either
+   * direct or a memory-mapped file; see {@link Content#save}.
+   *
+   * <p>Values are stored as {@code primitive} and returned as {@code p}, as
+   * in {@link PrimitiveArray}. A column held this way adds nothing to the
+   * work of the garbage collector, however large it is. */
+  public static class OffHeapPrimitiveArray implements Representation {
+    final int ordinal;
+    private final Primitive primitive;
+    private final Primitive p;
+
+    OffHeapPrimitiveArray(int ordinal, Primitive primitive, Primitive p) {
+      this.ordinal = ordinal;
+      this.primitive = primitive;
+      this.p = p;
+    }
+
+    public String toString() {
+      return "OffHeapPrimitiveArray(ordinal=" + ordinal
+          + ", primitive=" + primitive
+          + ", p=" + p
+          + ")";
+    }
+
+    public RepresentationType getType() {
+      return RepresentationType.OFF_HEAP_PRIMITIVE_ARRAY;
+    }
+
+    /** Returns the number of bytes occupied by each value. */
+    private int width() {
+      switch (primitive) {
+      case BYTE:
+        return 1;
+      case CHAR:
+      case SHORT:
+        return 2;
+      case INT:
+      case FLOAT:
+        return 4;
+      case LONG:
+      case DOUBLE:
+        return 8;
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+
+    private ByteBuffer allocate(int size) {
+      return ByteBuffer.allocateDirect(size * width()).order(BYTE_ORDER);
+    }
+
+    public Object freeze(ColumnLoader.ValueSet valueSet, int[] sources) {
+      final List<Comparable> list = permuteList(valueSet.values, sources);
+      final ByteBuffer buffer = allocate(list.size());
+      for (int i = 0; i < list.size(); i++) {
+        put(buffer, i, list.get(i));
+      }
+      return buffer;
+    }
+
+    /** Copies an array of primitive values, created by
+     * {@link PrimitiveArray#freeze}, into a new direct buffer. */
+    ByteBuffer copy(Object array) {
+      final int size = Array.getLength(array);
+      final ByteBuffer buffer = allocate(size);
+      for (int i = 0; i < size; i++) {
+        put(buffer, i, Array.get(array, i));
+      }
+      return buffer;
+    }
+
+    private void put(ByteBuffer buffer, int ordinal, Object value) {
+      final int i = ordinal * width();
+      switch (primitive) {
+      case BYTE:
+        buffer.put(i, (byte) toLong(value));
+        break;
+      case CHAR:
+        buffer.putChar(i, (char) toLong(value));
+        break;
+      case SHORT:
+        buffer.putShort(i, (short) toLong(value));
+        break;
+      case INT:
+        buffer.putInt(i, (int) toLong(value));
+        break;
+      case LONG:
+        buffer.putLong(i, toLong(value));
+        break;
+      case FLOAT:
+        buffer.putFloat(i, ((Number) value).floatValue());
+        break;
+      case DOUBLE:
+        buffer.putDouble(i, ((Number) value).doubleValue());
+        break;
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+
+    private static long toLong(Object value) {
+      if (value instanceof Boolean) {
+        return (Boolean) value ? 1 : 0;
+      } else if (value instanceof Character) {
+        return (Character) value;
+      } else {
+        return ((Number) value).longValue();
+      }
+    }
+
+    public Object permute(Object dataSet, int[] sources) {
+      final ByteBuffer buffer0 = (ByteBuffer) dataSet;
+      final int width = width();
+      final ByteBuffer buffer = allocate(sources.length);
+      for (int i = 0; i < sources.length; i++) {
+        for (int j = 0; j < width; j++) {
+          buffer.put(i * width + j, buffer0.get(sources[i] * width + j));
+        }
+      }
+      return buffer;
+    }
+
+    /** Returns a value as a {@code long}, without boxing. */
+    long getLong(Object dataSet, int ordinal) {
+      final ByteBuffer buffer = (ByteBuffer) dataSet;
+      final int i = ordinal * width();
+      switch (primitive) {
+      case BYTE:
+        return buffer.get(i);
+      case CHAR:
+        return buffer.getChar(i);
+      case SHORT:
+        return buffer.getShort(i);
+      case INT:
+        return buffer.getInt(i);
+      case LONG:
+        return buffer.getLong(i);
+      case FLOAT:
+        return (long) buffer.getFloat(i);
+      case DOUBLE:
+        return (long) buffer.getDouble(i);
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+
+    /** Returns a value as a {@code double}, without boxing. */
+    double getDouble(Object dataSet, int ordinal) {
+      final ByteBuffer buffer = (ByteBuffer) dataSet;
+      switch (primitive) {
+      case FLOAT:
+        return buffer.getFloat(ordinal * 4);
+      case DOUBLE:
+        return buffer.getDouble(ordinal * 8);
+      default:
+        return getLong(dataSet, ordinal);
+      }
+    }
+
+    public Object getObject(Object dataSet, int ordinal) {
+      switch (p) {
+      case DOUBLE:
+        return getDouble(dataSet, ordinal);
+      case FLOAT:
+        return (float) getDouble(dataSet, ordinal);
+      case BOOLEAN:
+        return getLong(dataSet, ordinal) != 0;
+      case BYTE:
+        return (byte) getLong(dataSet, ordinal);
+      case CHAR:
+        return (char) getLong(dataSet, ordinal);
+      case SHORT:
+        return (short) getLong(dataSet, ordinal);
+      case INT:
+        return (int) getLong(dataSet, ordinal);
+      case LONG:
+        return getLong(dataSet, ordinal);
+      default:
+        throw new AssertionError(p + " unexpected");
+      }
+    }
+
+    public int getInt(Object dataSet, int ordinal) {
+      return (int) getLong(dataSet, ordinal);
+    }
+
+    public int size(Object dataSet) {
+      return ((ByteBuffer) dataSet).capacity() / width();
+    }
+
+    public String toString(Object dataSet) {
+      return Column.asList(this, dataSet).toString();
+    }
   }
 
   /** Representation that stores column values in a dictionary of
@@ -800,9 +1039,18 @@ public int size() {
 
   /** Contents of a table. */
   public static class Content {
-    private final List<Column> columns;
+    /** Name of the file, in a directory written by {@link #save}, that
+     * describes the content. */
+    private static final String CONTENT_FILE = "content.ser";
+
+    /** Version of the format written by {@link #save}. Increase it if the
+     * format changes; {@link #load} ignores directories written in other
+     * formats. */
+    private static final Integer FORMAT_VERSION = 1;
+
+    final List<Column> columns;
     private final int size;
-    private final ImmutableList<RelCollation> collations;
+    final ImmutableList<RelCollation> collations;
 
     Content(List<? extends Column> columns, int size,
         Iterable<? extends RelCollation> collations) {
@@ -832,6 +1080,244 @@ public Enumerator<Object[]> arrayEnumerator() {
       return new ArrayEnumerator(size, columns);
     }
 
+    /** Writes this content to a directory, and returns an equivalent
+     * content whose columns of primitive values are memory-mapped from the
+     * files written, and therefore occupy no space on the Java heap.
+     *
+     * <p>Other columns are written as lists of values, and are encoded again
+     * (as dictionaries, bit-sliced arrays and so forth) when the directory is
+     * read by {@link #load}.
+     *
+     * <p>The file that describes the content is written last, so a directory
+     * that was not completely written is ignored by {@link #load}. */
+    public Content save(File directory) throws IOException {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("cannot create directory " + directory);
+      }
+      final List<Column> newColumns = new ArrayList<>();
+      final List<Object> descriptions = new ArrayList<>();
+      for (Ord<Column> column : Ord.zip(columns)) {
+        final File file = new File(directory, column.i + ".col");
+        if (column.e.representation instanceof PrimitiveArray) {
+          final OffHeapPrimitiveArray representation =
+              ((PrimitiveArray) column.e.representation).toOffHeap();
+          final ByteBuffer buffer =
+              representation.copy(column.e.dataSet);
+          try (FileOutputStream out = new FileOutputStream(file)) {
+            final FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+              channel.write(buffer);
+            }
+          }
+          newColumns.add(
+              new Column(representation, map(file), column.e.cardinality));
+          descriptions.add(
+              Arrays.<Object>asList(representation.primitive.name(),
+                  representation.p.name(), column.e.cardinality));
+        } else {
+          final ArrayList<Object> values = new ArrayList<>(size);
+          Class clazz = null;
+          for (int i = 0; i < size; i++) {
+            final Object value =
+                column.e.representation.getObject(column.e.dataSet, i);
+            if (clazz == null && value != null) {
+              clazz = value.getClass();
+            }
+            values.add(value);
+          }
+          write(file, values);
+          newColumns.add(column.e);
+          descriptions.add(clazz == null ? Object.class : clazz);
+        }
+      }
+      final List<List<String>> collationList = new ArrayList<>();
+      for (RelCollation collation : collations) {
+        final List<String> fieldCollations = new ArrayList<>();
+        for (RelFieldCollation c : collation.getFieldCollations()) {
+          fieldCollations.add(c.getFieldIndex() + " " + c.direction.name()
+              + " " + c.nullDirection.name());
+        }
+        collationList.add(fieldCollations);
+      }
+      final File tempFile = new File(directory, CONTENT_FILE + ".tmp");
+      write(tempFile,
+          Arrays.asList(FORMAT_VERSION, size, descriptions, collationList));
+      final File file = new File(directory, CONTENT_FILE);
+      if (!tempFile.renameTo(file)) {
+        throw new IOException("cannot rename " + tempFile + " to " + file);
+      }
+      return new Content(newColumns, size, collations);
+    }
+
+    /** Reads content that was written to a directory by {@link #save}.
+     * Columns of primitive values are memory-mapped.
+     *
+     * <p>Returns null if the directory does not contain content, or
+     * contains content written in a different format. */
+    @SuppressWarnings("unchecked")
+    public static Content load(File directory) throws IOException {
+      final File file = new File(directory, CONTENT_FILE);
+      if (!file.exists()) {
+        return null;
+      }
+      final List<Object> header = (List<Object>) read(file);
+      if (!FORMAT_VERSION.equals(header.get(0))) {
+        return null;
+      }
+      final int size = (Integer) header.get(1);
+      final List<Object> descriptions = (List<Object>) header.get(2);
+      final List<Column> columns = new ArrayList<>();
+      for (Ord<Object> description : Ord.zip(descriptions)) {
+        final File columnFile = new File(directory, description.i + ".col");
+        if (description.e instanceof List) {
+          final List<Object> list = (List<Object>) description.e;
+          final OffHeapPrimitiveArray representation =
+              new OffHeapPrimitiveArray(description.i,
+                  Primitive.valueOf((String) list.get(0)),
+                  Primitive.valueOf((String) list.get(1)));
+          columns.add(
+              new Column(representation, map(columnFile),
+                  (Integer) list.get(2)));
+        } else {
+          final ColumnLoader.ValueSet valueSet =
+              new ColumnLoader.ValueSet((Class) description.e);
+          for (Object value : (List<Object>) read(columnFile)) {
+            valueSet.add((Comparable) value);
+          }
+          columns.add(valueSet.freeze(description.i, null));
+        }
+      }
+      final List<RelCollation> collations = new ArrayList<>();
+      for (List<String> fieldCollations
+          : (List<List<String>>) header.get(3)) {
+        final List<RelFieldCollation> list = new ArrayList<>();
+        for (String fieldCollation : fieldCollations) {
+          final String[] strings = fieldCollation.split(" ");
+          list.add(
+              new RelFieldCollation(Integer.parseInt(strings[0]),
+                  RelFieldCollation.Direction.valueOf(strings[1]),
+                  RelFieldCollation.NullDirection.valueOf(strings[2])));
+        }
+        collations.add(RelCollations.of(list));
+      }
+      return new Content(columns, size, collations);
+    }
+
+    /** Maps a file into memory, read-only. The mapping remains valid after
+     * the file is closed. */
+    private static ByteBuffer map(File file) throws IOException {
+      try (RandomAccessFile f = new RandomAccessFile(file, "r")) {
+        return f.getChannel()
+            .map(FileChannel.MapMode.READ_ONLY, 0, f.length())
+            .order(BYTE_ORDER);
+      }
+    }
+
+    private static void write(File file, Object o) throws IOException {
+      try (ObjectOutputStream out =
+               new ObjectOutputStream(
+                   new BufferedOutputStream(new FileOutputStream(file)))) {
+        out.writeObject(o);
+      }
+    }
+
+    private static Object read(File file) throws IOException {
+      try (ObjectInputStream in =
+               new ObjectInputStream(
+                   new BufferedInputStream(new FileInputStream(file)))) {
+        return in.readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IOException(e);
+      }
+    }
+
+    /** Returns a source of batches of the rows in this table. */
+    public BatchSource batchSource(final RelDataType rowType,
+        final int batchSize) {
+      return new BatchSource() {
+        int start = 0;
+
+        public ColumnBatch next() {
+          if (start >= size) {
+            return null;
+          }
+          final int n = Math.min(batchSize, size - start);
+          final ColumnVector[] vectors = Batches.newVectors(rowType, n);
+          for (int j = 0; j < vectors.length; j++) {
+            fill(vectors[j], columns.get(j), start, n);
+          }
+          start += n;
+          return ColumnBatch.of(vectors, n);
+        }
+
+        public void close() {
+        }
+      };
+    }
+
+    /** Copies {@code n} values of a column, starting at row {@code start},
+     * into a vector. Copies directly from arrays of primitive values if
+     * possible, without boxing. */
+    private static void fill(ColumnVector v, Column column, int start, int n) {
+      final Object dataSet = column.dataSet;
+      if (column.representation instanceof OffHeapPrimitiveArray) {
+        final OffHeapPrimitiveArray representation =
+            (OffHeapPrimitiveArray) column.representation;
+        if (v.kind == ColumnVector.Kind.LONG) {
+          for (int k = 0; k < n; k++) {
+            v.longs[k] = representation.getLong(dataSet, start + k);
+          }
+          return;
+        } else if (v.kind == ColumnVector.Kind.DOUBLE) {
+          for (int k = 0; k < n; k++) {
+            v.doubles[k] = representation.getDouble(dataSet, start + k);
+          }
+          return;
+        }
+      }
+      if (column.representation.getType()
+          == RepresentationType.PRIMITIVE_ARRAY) {
+        if (v.kind == ColumnVector.Kind.LONG) {
+          if (dataSet instanceof int[]) {
+            final int[] values = (int[]) dataSet;
+            for (int k = 0; k < n; k++) {
+              v.longs[k] = values[start + k];
+            }
+            return;
+          } else if (dataSet instanceof long[]) {
+            System.arraycopy(dataSet, start, v.longs, 0, n);
+            return;
+          } else if (dataSet instanceof short[]) {
+            final short[] values = (short[]) dataSet;
+            for (int k = 0; k < n; k++) {
+              v.longs[k] = values[start + k];
+            }
+            return;
+          } else if (dataSet instanceof byte[]) {
+            final byte[] values = (byte[]) dataSet;
+            for (int k = 0; k < n; k++) {
+              v.longs[k] = values[start + k];
+            }
+            return;
+          }
+        } else if (v.kind == ColumnVector.Kind.DOUBLE) {
+          if (dataSet instanceof double[]) {
+            System.arraycopy(dataSet, start, v.doubles, 0, n);
+            return;
+          } else if (dataSet instanceof float[]) {
+            final float[] values = (float[]) dataSet;
+            for (int k = 0; k < n; k++) {
+              v.doubles[k] = values[start + k];
+            }
+            return;
+          }
+        }
+      }
+      for (int k = 0; k < n; k++) {
+        v.set(k, column.representation.getObject(dataSet, start + k));
+      }
+    }
+
     /** Enumerator over a table with a single column; each element
      * returned is an object. */
     private static class ObjectEnumerator implements Enumerator<Object> {
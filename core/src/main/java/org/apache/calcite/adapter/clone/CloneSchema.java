@@ -38,6 +38,8 @@
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -54,6 +56,7 @@ public class CloneSchema extends AbstractSchema {
   // TODO: test Factory
 
   private final SchemaPlus sourceSchema;
+  private final File directory;
 
   /**
    * Creates a CloneSchema.
@@ -61,8 +64,26 @@ public class CloneSchema extends AbstractSchema {
    * @param sourceSchema JDBC data source
    */
   public CloneSchema(SchemaPlus sourceSchema) {
+    this(sourceSchema, null);
+  }
+
+  /**
+   * Creates a CloneSchema that stores its tables in a directory.
+   *
+   * <p>Each table is read from the directory if it was written there
+   * previously, otherwise is loaded from the source and written there.
+   * Columns of primitive values are memory-mapped from the directory, and
+   * occupy no space on the Java heap. To load from the source again, delete
+   * the directory.
+   *
+   * @param sourceSchema JDBC data source
+   * @param directory Directory in which to store tables, or null to hold
+   *                  tables in memory only
+   */
+  public CloneSchema(SchemaPlus sourceSchema, File directory) {
     super();
     this.sourceSchema = sourceSchema;
+    this.directory = directory;
   }
 
   @Override protected Map<String, Table> getTableMap() {
@@ -85,7 +106,8 @@ private Table createCloneTable(QueryProvider queryProvider,
     final JavaTypeFactory typeFactory =
         ((CalciteConnection) queryProvider).getTypeFactory();
     return createCloneTable(typeFactory, Schemas.proto(sourceTable),
-        ImmutableList.<RelCollation>of(), null, queryable);
+        ImmutableList.<RelCollation>of(), null, queryable,
+        directory == null ? null : new File(directory, name));
   }
 
   @Deprecated // to be removed before 2.0
@@ -100,6 +122,19 @@ public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
   public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
       final RelProtoDataType protoRowType, final List<RelCollation> collations,
       final List<ColumnMetaData.Rep> repList, final Enumerable<T> source) {
+    return createCloneTable(typeFactory, protoRowType, collations, repList,
+        source, null);
+  }
+
+  /** Creates a table that holds a copy of the rows of {@code source}.
+   *
+   * <p>If {@code directory} is not null, the table is stored there, and
+   * is read from there rather than from {@code source} if it was stored
+   * there previously; see {@link ArrayTable.Content#save}. */
+  public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
+      final RelProtoDataType protoRowType, final List<RelCollation> collations,
+      final List<ColumnMetaData.Rep> repList, final Enumerable<T> source,
+      final File directory) {
     final Type elementType;
     if (source instanceof QueryableTable) {
       elementType = ((QueryableTable) source).getElementType();
@@ -118,6 +153,23 @@ public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
         Suppliers.memoize(
             new Supplier<ArrayTable.Content>() {
               public ArrayTable.Content get() {
+                if (directory == null) {
+                  return load();
+                }
+                try {
+                  final ArrayTable.Content content =
+                      ArrayTable.Content.load(directory);
+                  if (content != null) {
+                    return content;
+                  }
+                  return load().save(directory);
+                } catch (IOException e) {
+                  throw new RuntimeException("while storing table in "
+                      + directory, e);
+                }
+              }
+
+              private ArrayTable.Content load() {
                 final ColumnLoader loader =
                     new ColumnLoader<>(typeFactory, source, protoRowType,
                         repList);
@@ -149,11 +201,15 @@ public ArrayTable.Content get() {
    *         jdbcDriver: 'com.mysql.jdbc.Driver',
    *         jdbcUrl: 'jdbc:mysql://localhost/foodmart',
    *         jdbcUser: 'foodmart',
-   *         jdbcPassword: 'foodmart'
+   *         jdbcPassword: 'foodmart',
+   *         directory: '/tmp/foodmart_clone'
    *       }
    *     }
    *   ]
    * }</pre></blockquote>
+   *
+   * <p>The optional {@code directory} operand is a directory in which to
+   * store the tables; see {@link CloneSchema#CloneSchema(SchemaPlus, File)}.
    */
   public static class Factory implements SchemaFactory {
     public Schema create(
@@ -163,7 +219,9 @@ public Schema create(
       SchemaPlus schema =
           parentSchema.add(name,
               JdbcSchema.create(parentSchema, name + "$source", operand));
-      return new CloneSchema(schema);
+      final String directory = (String) operand.get("directory");
+      return new CloneSchema(schema,
+          directory == null ? null : new File(directory));
     }
   }
 }
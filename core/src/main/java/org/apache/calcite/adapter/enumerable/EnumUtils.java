@@ -17,6 +17,7 @@
 package org.apache.calcite.adapter.enumerable;
 
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.tree.BlockStatement;
@@ -26,6 +27,7 @@
 import org.apache.calcite.linq4j.tree.MethodDeclaration;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
 import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
@@ -170,6 +172,27 @@ static Expression joinSelector(JoinRelType joinType, PhysType physType,
         parameters);
   }
 
+  /** Returns the number of bytes of memory that a hash join, hash aggregate,
+   * sort or windowed aggregate may use before it spills to disk, or 0 if there
+   * is no limit.
+   *
+   * @see org.apache.calcite.config.CalciteConnectionProperty#SPILL_MEMORY_LIMIT */
+  static long spillMemoryLimit(RelOptCluster cluster) {
+    final CalciteConnectionConfig config =
+        cluster.getPlanner().getContext().unwrap(CalciteConnectionConfig.class);
+    return config == null ? 0L : config.spillMemoryLimit() * 1024L * 1024L;
+  }
+
+  /** Returns the number of threads that an aggregation may use; 1 if
+   * execution is single-threaded.
+   *
+   * @see org.apache.calcite.config.CalciteConnectionProperty#PARALLELISM */
+  static int parallelism(RelOptCluster cluster) {
+    final CalciteConnectionConfig config =
+        cluster.getPlanner().getContext().unwrap(CalciteConnectionConfig.class);
+    return config == null ? 1 : Math.max(config.parallelism(), 1);
+  }
+
   /** Converts from internal representation to JDBC representation used by
    * arguments of user-defined functions. For example, converts date values from
    * {@code int} to {@link java.sql.Date}. */
@@ -33,6 +33,7 @@
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
 import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelDistribution;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Aggregate;
 import org.apache.calcite.rel.core.AggregateCall;
@@ -436,19 +437,62 @@ public RexToLixTranslator rowTranslator() {
                   resultBlock.toBlock(),
                   key_,
                   acc_));
-      builder.add(
-          Expressions.return_(null,
-              Expressions.call(childExp,
-                  BuiltInMethod.GROUP_BY2.method,
-                  Expressions.list(keySelector_,
-                      accumulatorInitializer,
-                      accumulatorAdder,
-                      resultSelector_)
-                      .appendIfNotNull(keyPhysType.comparer()))));
+      final long memoryLimit = EnumUtils.spillMemoryLimit(getCluster());
+      if (memoryLimit > 0) {
+        builder.add(
+            Expressions.return_(null,
+                Expressions.call(
+                    BuiltInMethod.SPILLING_GROUP_BY.method,
+                    Expressions.list(childExp,
+                        keySelector_,
+                        accumulatorInitializer,
+                        accumulatorAdder,
+                        resultSelector_,
+                        Util.first(keyPhysType.comparer(),
+                            Expressions.constant(null)),
+                        Expressions.constant(memoryLimit)))));
+      } else if (isPartitioned(child)) {
+        builder.add(
+            Expressions.return_(null,
+                Expressions.call(
+                    BuiltInMethod.PARALLEL_GROUP_BY.method,
+                    Expressions.list(childExp,
+                        keySelector_,
+                        accumulatorInitializer,
+                        accumulatorAdder,
+                        resultSelector_,
+                        Util.first(keyPhysType.comparer(),
+                            Expressions.constant(null))))));
+      } else {
+        builder.add(
+            Expressions.return_(null,
+                Expressions.call(childExp,
+                    BuiltInMethod.GROUP_BY2.method,
+                    Expressions.list(keySelector_,
+                        accumulatorInitializer,
+                        accumulatorAdder,
+                        resultSelector_)
+                        .appendIfNotNull(keyPhysType.comparer()))));
+      }
     }
     return implementor.result(physType, builder.toBlock());
   }
 
+  /** Returns whether the input is partitioned such that each group is
+   * wholly within one partition, and therefore partitions can be aggregated
+   * in parallel. */
+  private boolean isPartitioned(EnumerableRel input) {
+    if (!(input instanceof EnumerableExchange)) {
+      return false;
+    }
+    final EnumerableExchange exchange = (EnumerableExchange) input;
+    return exchange.isParallel()
+        && exchange.distribution.getType()
+            == RelDistribution.Type.HASH_DISTRIBUTED
+        && groupSet.contains(
+            ImmutableBitSet.of(exchange.distribution.getKeys()));
+  }
+
   /** An implementation of {@link AggContext}. */
   private class AggContextImpl implements AggContext {
     private final AggImpState agg;
@@ -19,13 +19,20 @@
 import org.apache.calcite.plan.Convention;
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelDistributions;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.Aggregate;
 import org.apache.calcite.rel.logical.LogicalAggregate;
+import org.apache.calcite.util.ImmutableBitSet;
 
 /**
  * Rule to convert a {@link org.apache.calcite.rel.logical.LogicalAggregate}
  * to an {@link EnumerableAggregate}.
+ *
+ * <p>If the connection allows more than one thread, and the aggregate can be
+ * computed by partition, the input is hash-distributed by the group key via an
+ * {@link EnumerableExchange}, so that partitions are aggregated in parallel.
  */
 class EnumerableAggregateRule extends ConverterRule {
   EnumerableAggregateRule() {
@@ -37,11 +44,16 @@ public RelNode convert(RelNode rel) {
     final LogicalAggregate agg = (LogicalAggregate) rel;
     final RelTraitSet traitSet =
         agg.getTraitSet().replace(EnumerableConvention.INSTANCE);
+    RelNode input = convert(agg.getInput(), EnumerableConvention.INSTANCE);
+    if (canPartition(agg)) {
+      input = EnumerableExchange.create(input,
+          RelDistributions.hash(agg.getGroupSet().asList()));
+    }
     try {
       return new EnumerableAggregate(
           rel.getCluster(),
           traitSet,
-          convert(agg.getInput(), EnumerableConvention.INSTANCE),
+          input,
           agg.indicator,
           agg.getGroupSet(),
           agg.getGroupSets(),
@@ -51,6 +63,20 @@ public RelNode convert(RelNode rel) {
       return null;
     }
   }
+
+  /** Returns whether parallel execution is enabled and an aggregate would be
+   * computed using a hash table on its group key. Such an aggregate can be
+   * computed on each hash partition of its input independently. */
+  private static boolean canPartition(Aggregate agg) {
+    return EnumUtils.parallelism(agg.getCluster()) > 1
+        && EnumUtils.spillMemoryLimit(agg.getCluster()) == 0
+        && agg.getGroupType() == Aggregate.Group.SIMPLE
+        && agg.getGroupCount() > 0
+        && !(agg.getAggCallList().isEmpty()
+            && agg.getGroupSet().equals(
+                ImmutableBitSet.range(
+                    agg.getInput().getRowType().getFieldCount())));
+  }
 }
 
 // End EnumerableAggregateRule.java
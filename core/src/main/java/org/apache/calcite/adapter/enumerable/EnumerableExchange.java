@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelDistributionTraitDef;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Exchange;
+import org.apache.calcite.util.BuiltInMethod;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Exchange} in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}.
+ *
+ * <p>If the distribution is hash, random or round-robin, and the
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#PARALLELISM parallelism}
+ * of the connection is greater than 1, divides its input into that many
+ * partitions, which an {@link EnumerableAggregate} aggregates in parallel.
+ * Otherwise, and to any other consumer, it returns its input unchanged.
+ *
+ * @see org.apache.calcite.runtime.ParallelEnumerables#exchange */
+public class EnumerableExchange extends Exchange implements EnumerableRel {
+  /** Creates an EnumerableExchange.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public EnumerableExchange(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RelDistribution distribution) {
+    super(cluster, traitSet, input, distribution);
+    assert getConvention() instanceof EnumerableConvention;
+  }
+
+  /** Creates an EnumerableExchange. */
+  public static EnumerableExchange create(RelNode input,
+      RelDistribution distribution) {
+    final RelOptCluster cluster = input.getCluster();
+    distribution = RelDistributionTraitDef.INSTANCE.canonize(distribution);
+    final RelTraitSet traitSet =
+        input.getTraitSet().replace(EnumerableConvention.INSTANCE)
+            .replace(distribution);
+    return new EnumerableExchange(cluster, traitSet, input, distribution);
+  }
+
+  @Override public EnumerableExchange copy(RelTraitSet traitSet,
+      RelNode newInput, RelDistribution newDistribution) {
+    return new EnumerableExchange(getCluster(), traitSet, newInput,
+        newDistribution);
+  }
+
+  /** Returns whether this exchange divides its input into partitions that
+   * are processed in parallel. */
+  boolean isParallel() {
+    switch (distribution.getType()) {
+    case HASH_DISTRIBUTED:
+    case RANDOM_DISTRIBUTED:
+    case ROUND_ROBIN_DISTRIBUTED:
+      return EnumUtils.parallelism(getCluster()) > 1;
+    default:
+      return false;
+    }
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel child = (EnumerableRel) getInput();
+    final Result result = implementor.visitChild(this, 0, child, pref);
+    final PhysType physType =
+        PhysTypeImpl.of(
+            implementor.getTypeFactory(),
+            getRowType(),
+            result.format);
+
+    Expression v = builder.append("child", result.block);
+    if (isParallel()) {
+      // Singleton, broadcast and range distributions need no work: the sole
+      // consumer sees every row. Hash and round-robin distributions are
+      // partitioned.
+      final Expression keySelector =
+          distribution.getType() == RelDistribution.Type.HASH_DISTRIBUTED
+              ? physType.generateAccessor(distribution.getKeys())
+              : Expressions.constant(null);
+      v = builder.append("exchange",
+          Expressions.call(BuiltInMethod.EXCHANGE.method, v, keySelector,
+              Expressions.constant(EnumUtils.parallelism(getCluster()))));
+    }
+    builder.add(Expressions.return_(null, v));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End EnumerableExchange.java
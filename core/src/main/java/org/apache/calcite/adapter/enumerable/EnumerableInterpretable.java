@@ -30,6 +30,8 @@
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.tree.ClassDeclaration;
 import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.FieldDeclaration;
+import org.apache.calcite.linq4j.tree.MemberDeclaration;
 import org.apache.calcite.plan.ConventionTraitDef;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelTraitSet;
@@ -41,6 +43,8 @@
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.runtime.Typed;
 import org.apache.calcite.runtime.Utilities;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.SaffronProperties;
 import org.apache.calcite.util.Util;
 
 import org.codehaus.commons.compiler.CompileException;
@@ -48,10 +52,19 @@
 import org.codehaus.commons.compiler.IClassBodyEvaluator;
 import org.codehaus.commons.compiler.ICompilerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.reflect.Modifier;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Relational expression that converts an enumerable input to interpretable
@@ -62,6 +75,16 @@
  */
 public class EnumerableInterpretable extends ConverterImpl
     implements InterpretableRel {
+  /** Cache of compiled classes, keyed by generated Java source and number of
+   * fields. Null if caching is disabled. */
+  private static final Cache<Pair<String, Integer>, CompiledBindable>
+      BINDABLE_CACHE = createBindableCache(
+          SaffronProperties.INSTANCE.bindableCacheMaximumSize().get());
+
+  /** Total time, in nanoseconds, spent compiling classes that were
+   * subsequently retrieved from {@link #BINDABLE_CACHE}. */
+  private static final AtomicLong COMPILE_NANOS_SAVED = new AtomicLong();
+
   protected EnumerableInterpretable(RelOptCluster cluster, RelNode input) {
     super(cluster, ConventionTraitDef.INSTANCE,
         cluster.traitSetOf(InterpretableConvention.INSTANCE), input);
@@ -116,8 +139,86 @@ static ArrayBindable getArrayBindable(ClassDeclaration expr, String s,
     return box(bindable);
   }
 
-  static Bindable getBindable(ClassDeclaration expr, String s, int fieldCount)
-      throws CompileException, IOException {
+  private static Cache<Pair<String, Integer>, CompiledBindable>
+      createBindableCache(int maximumSize) {
+    if (maximumSize == 0) {
+      return null;
+    }
+    final CacheBuilder<Object, Object> builder =
+        CacheBuilder.newBuilder().recordStats();
+    if (maximumSize > 0) {
+      builder.maximumSize(maximumSize);
+    }
+    return builder.build();
+  }
+
+  /** Returns statistics of the cache of compiled classes, or null if the
+   * cache is disabled.
+   *
+   * @see SaffronProperties#bindableCacheMaximumSize() */
+  public static CacheStats bindableCacheStats() {
+    return BINDABLE_CACHE == null ? null : BINDABLE_CACHE.stats();
+  }
+
+  /** Returns the total time, in nanoseconds, that has been saved by
+   * retrieving compiled classes from the cache rather than compiling them. */
+  public static long bindableCacheCompileNanosSaved() {
+    return COMPILE_NANOS_SAVED.get();
+  }
+
+  static Bindable getBindable(final ClassDeclaration expr, final String s,
+      final int fieldCount) throws CompileException, IOException {
+    if (BINDABLE_CACHE == null || !isCacheable(expr)) {
+      return compile(expr, s, fieldCount);
+    }
+    final Pair<String, Integer> key = Pair.of(s, fieldCount);
+    final boolean[] loaded = {false};
+    final CompiledBindable compiled;
+    try {
+      compiled = BINDABLE_CACHE.get(key,
+          new Callable<CompiledBindable>() {
+            public CompiledBindable call() throws Exception {
+              loaded[0] = true;
+              final long start = System.nanoTime();
+              final Bindable bindable = compile(expr, s, fieldCount);
+              return new CompiledBindable(bindable,
+                  System.nanoTime() - start);
+            }
+          });
+    } catch (UncheckedExecutionException | ExecutionException e) {
+      final Throwable cause = e.getCause();
+      Util.throwIfUnchecked(cause);
+      if (cause instanceof CompileException) {
+        throw (CompileException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+    if (!loaded[0]) {
+      COMPILE_NANOS_SAVED.addAndGet(compiled.compileNanos);
+    }
+    return compiled.bindable;
+  }
+
+  /** Returns whether instances of a generated class can be shared between
+   * queries. They can be if the class has no state; that is, if every field
+   * is a static final constant. */
+  private static boolean isCacheable(ClassDeclaration expr) {
+    for (MemberDeclaration member : expr.memberDeclarations) {
+      if (member instanceof FieldDeclaration) {
+        final int modifier = ((FieldDeclaration) member).modifier;
+        if (!Modifier.isStatic(modifier) || !Modifier.isFinal(modifier)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static Bindable compile(ClassDeclaration expr, String s,
+      int fieldCount) throws CompileException, IOException {
     ICompilerFactory compilerFactory;
     try {
       compilerFactory = CompilerFactoryFactory.getDefaultCompilerFactory();
@@ -179,6 +280,17 @@ public void close() {
     };
   }
 
+  /** A compiled {@link Bindable} and the time it took to compile. */
+  private static class CompiledBindable {
+    final Bindable bindable;
+    final long compileNanos;
+
+    CompiledBindable(Bindable bindable, long compileNanos) {
+      this.bindable = bindable;
+      this.compileNanos = compileNanos;
+    }
+  }
+
   /** Interpreter node that reads from an {@link Enumerable}.
    *
    * <p>From the interpreter's perspective, it is a leaf node. */
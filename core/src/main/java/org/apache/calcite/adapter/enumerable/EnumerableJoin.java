@@ -16,9 +16,12 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptPlanner;
@@ -34,10 +37,13 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableIntList;
+import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
 
 import com.google.common.collect.ImmutableList;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /** Implementation of {@link org.apache.calcite.rel.core.Join} in
@@ -195,9 +201,53 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     final PhysType physType =
         PhysTypeImpl.of(
             implementor.getTypeFactory(), getRowType(), pref.preferArray());
+    final Expression selector =
+        EnumUtils.joinSelector(joinType, physType,
+            ImmutableList.of(leftResult.physType, rightResult.physType));
+    final long memoryLimit = EnumUtils.spillMemoryLimit(getCluster());
+    final List<Primitive> keyPrimitives =
+        longKeyPrimitives(leftResult.physType, rightResult.physType);
+    if (keyPrimitives != null && memoryLimit == 0) {
+      // Keys can be packed into a long; use a hash table of primitive keys
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.HASH_JOIN_LONG.method,
+                  Expressions.list(
+                      leftExpression,
+                      rightExpression,
+                      longKeySelector(leftResult.physType, leftKeys,
+                          keyPrimitives),
+                      longKeySelector(rightResult.physType, rightKeys,
+                          keyPrimitives),
+                      selector,
+                      Expressions.constant(joinType.generatesNullsOnLeft()),
+                      Expressions.constant(
+                          joinType.generatesNullsOnRight())))).toBlock());
+    }
     final PhysType keyPhysType =
         leftResult.physType.project(
             leftKeys, JavaRowFormat.LIST);
+    if (memoryLimit > 0) {
+      // Build side may not fit into memory; partition and spill if necessary
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.SPILLING_JOIN.method,
+                  Expressions.list(
+                      leftExpression,
+                      rightExpression,
+                      leftResult.physType.generateAccessor(leftKeys),
+                      rightResult.physType.generateAccessor(rightKeys),
+                      selector,
+                      Util.first(keyPhysType.comparer(),
+                          Expressions.constant(null)),
+                      Expressions.constant(joinType.generatesNullsOnLeft()),
+                      Expressions.constant(joinType.generatesNullsOnRight()),
+                      Expressions.constant(memoryLimit)))).toBlock());
+    }
     return implementor.result(
         physType,
         builder.append(
@@ -208,10 +258,7 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
                     rightExpression,
                     leftResult.physType.generateAccessor(leftKeys),
                     rightResult.physType.generateAccessor(rightKeys),
-                    EnumUtils.joinSelector(joinType,
-                        physType,
-                        ImmutableList.of(
-                            leftResult.physType, rightResult.physType)))
+                    selector)
                     .append(
                         Util.first(keyPhysType.comparer(),
                             Expressions.constant(null)))
@@ -222,6 +269,85 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
                             joinType.generatesNullsOnRight())))).toBlock());
   }
 
+  /** Returns the primitive types of the join keys, if the keys can be
+   * packed into a single {@code long} without losing information, or null
+   * otherwise.
+   *
+   * <p>Keys must be non-nullable and of the same primitive type on both
+   * sides. A single key may be any integral type, {@code float} or
+   * {@code double}; two keys may be any integral types of 32 bits or
+   * fewer. */
+  private List<Primitive> longKeyPrimitives(PhysType leftPhysType,
+      PhysType rightPhysType) {
+    if (leftKeys.size() < 1 || leftKeys.size() > 2) {
+      return null;
+    }
+    final List<Primitive> primitives = new ArrayList<>();
+    for (Pair<Integer, Integer> pair : Pair.zip(leftKeys, rightKeys)) {
+      final Primitive primitive =
+          Primitive.of(leftPhysType.fieldClass(pair.left));
+      if (primitive == null
+          || primitive != Primitive.of(rightPhysType.fieldClass(pair.right))) {
+        return null;
+      }
+      switch (primitive) {
+      case BYTE:
+      case CHAR:
+      case SHORT:
+      case INT:
+        break;
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        if (leftKeys.size() > 1) {
+          return null;
+        }
+        break;
+      default:
+        return null;
+      }
+      primitives.add(primitive);
+    }
+    return primitives;
+  }
+
+  /** Generates a function that packs the join keys of a row into a
+   * {@code long}. */
+  private static Expression longKeySelector(PhysType physType,
+      List<Integer> keys, List<Primitive> primitives) {
+    final ParameterExpression v1 =
+        Expressions.parameter(physType.getJavaRowType(), "v1");
+    final List<Expression> list = new ArrayList<>();
+    for (Pair<Integer, Primitive> pair : Pair.zip(keys, primitives)) {
+      final Expression field = physType.fieldReference(v1, pair.left);
+      switch (pair.right) {
+      case DOUBLE:
+        // Same equality as Double.equals
+        list.add(Expressions.call(Double.class, "doubleToLongBits", field));
+        break;
+      case FLOAT:
+        list.add(
+            Expressions.convert_(
+                Expressions.call(Float.class, "floatToIntBits", field),
+                long.class));
+        break;
+      default:
+        list.add(Expressions.convert_(field, long.class));
+      }
+    }
+    final Expression body;
+    if (list.size() == 1) {
+      body = list.get(0);
+    } else {
+      // (k0 << 32) | (k1 & 0xFFFFFFFFL)
+      body =
+          Expressions.or(
+              Expressions.leftShift(list.get(0), Expressions.constant(32)),
+              Expressions.and(list.get(1),
+                  Expressions.constant(0xFFFFFFFFL)));
+    }
+    return Expressions.lambda(LongFunction1.class, body, v1);
+  }
 }
 
 // End EnumerableJoin.java
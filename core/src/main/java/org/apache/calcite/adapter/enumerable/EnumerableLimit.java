@@ -137,7 +137,8 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     return implementor.result(physType, builder.toBlock());
   }
 
-  private static Expression getExpression(RexNode offset) {
+  /** Generates an expression for the value of an offset or fetch. */
+  static Expression getExpression(RexNode offset) {
     if (offset instanceof RexDynamicParam) {
       final RexDynamicParam param = (RexDynamicParam) offset;
       return Expressions.convert_(
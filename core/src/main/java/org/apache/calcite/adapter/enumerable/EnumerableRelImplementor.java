@@ -27,6 +27,7 @@
 import org.apache.calcite.linq4j.tree.ConditionalStatement;
 import org.apache.calcite.linq4j.tree.ConstantExpression;
 import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.ExpressionType;
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.apache.calcite.linq4j.tree.GotoStatement;
 import org.apache.calcite.linq4j.tree.MemberDeclaration;
@@ -35,16 +36,20 @@
 import org.apache.calcite.linq4j.tree.NewExpression;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
 import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.linq4j.tree.Shuttle;
 import org.apache.calcite.linq4j.tree.Statement;
 import org.apache.calcite.linq4j.tree.Types;
+import org.apache.calcite.linq4j.tree.UnaryExpression;
 import org.apache.calcite.linq4j.tree.VisitorImpl;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.util.BuiltInMethod;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 
@@ -57,6 +62,7 @@
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -150,13 +156,22 @@ public Statement apply(ParameterExpression input) {
               }
             });
 
+    // Expressions whose value is the same for every row, such as dynamic
+    // parameters and CURRENT_TIMESTAMP, are evaluated once, as follows:
+    // final Object v0hoisted = root.get("?0")
+    final InvariantHoister hoister = new InvariantHoister();
+    final BlockStatement body = Hook.HOIST_INVARIANTS.get(true)
+        ? result.block.accept(hoister)
+        : result.block;
+
     final BlockStatement block = Expressions.block(
         Iterables.concat(
             ImmutableList.of(
                 Expressions.statement(
                     Expressions.assign(DataContext.ROOT, root0_))),
             stashed,
-            result.block.statements));
+            hoister.declarations(),
+            body.statements));
     memberDeclarations.add(
         Expressions.fieldDecl(0, DataContext.ROOT, null));
 
@@ -515,6 +530,96 @@ private static class TypeFinder extends VisitorImpl<Void> {
     }
   }
 
+  /** Shuttle that replaces expressions whose value is the same for every row
+   * of an execution with variables that are initialized once, at the start
+   * of {@link Bindable#bind}.
+   *
+   * <p>Such expressions read a value from the {@link DataContext}, such as a
+   * dynamic parameter or the time at which the statement started, and
+   * perhaps cast it. The variables are initialized even if no row is read,
+   * so the shuttle only hoists expressions that cannot throw; for example,
+   * it hoists a cast to {@code Integer} but not the unboxing of the
+   * result. Constant expressions are not hoisted here;
+   * {@link org.apache.calcite.linq4j.tree.DeterministicCodeOptimizer} has
+   * already moved them into static fields. */
+  private static class InvariantHoister extends Shuttle {
+    /** Methods whose value does not change during an execution, provided that
+     * their arguments do not. */
+    private static final Set<Method> METHODS =
+        ImmutableSet.of(BuiltInMethod.DATA_CONTEXT_GET.method,
+            BuiltInMethod.CURRENT_TIMESTAMP.method,
+            BuiltInMethod.CURRENT_TIME.method,
+            BuiltInMethod.CURRENT_DATE.method,
+            BuiltInMethod.LOCAL_TIMESTAMP.method,
+            BuiltInMethod.LOCAL_TIME.method,
+            BuiltInMethod.TIME_ZONE.method);
+
+    /** Variables, keyed by the expressions that initialize them, in the order
+     * that they must be declared. */
+    private final Map<Expression, ParameterExpression> variables =
+        new LinkedHashMap<>();
+    private final Set<ParameterExpression> hoisted = new HashSet<>();
+
+    /** Returns the declarations of the variables. */
+    List<Statement> declarations() {
+      final List<Statement> list = new ArrayList<>();
+      for (Map.Entry<Expression, ParameterExpression> entry
+          : variables.entrySet()) {
+        list.add(
+            Expressions.declare(Modifier.FINAL, entry.getValue(),
+                entry.getKey()));
+      }
+      return list;
+    }
+
+    private boolean isInvariant(Expression expression) {
+      return expression == null
+          || expression instanceof ConstantExpression
+          || expression == DataContext.ROOT
+          || hoisted.contains(expression);
+    }
+
+    private ParameterExpression hoist(Expression expression) {
+      ParameterExpression variable = variables.get(expression);
+      if (variable == null) {
+        variable = Expressions.parameter(expression.getType(),
+            "v" + variables.size() + "hoisted");
+        variables.put(expression, variable);
+        hoisted.add(variable);
+      }
+      return variable;
+    }
+
+    @Override public Expression visit(MethodCallExpression methodCallExpression,
+        Expression targetExpression, List<Expression> expressions) {
+      final Expression result =
+          super.visit(methodCallExpression, targetExpression, expressions);
+      if (!METHODS.contains(methodCallExpression.method)
+          || !isInvariant(targetExpression)) {
+        return result;
+      }
+      for (Expression expression : expressions) {
+        if (!isInvariant(expression)) {
+          return result;
+        }
+      }
+      return hoist(result);
+    }
+
+    @Override public Expression visit(UnaryExpression unaryExpression,
+        Expression expression) {
+      final Expression result = super.visit(unaryExpression, expression);
+      if (unaryExpression.getNodeType() == ExpressionType.Convert
+          && hoisted.contains(expression)
+          && (Primitive.is(expression.getType())
+              || !Primitive.is(unaryExpression.getType()))) {
+        // A cast that is not unboxing, so cannot throw NullPointerException
+        return hoist(result);
+      }
+      return result;
+    }
+  }
+
   /** Adds a declaration of each synthetic type found in a code block. */
   private class TypeRegistrar {
     private final List<MemberDeclaration> memberDeclarations;
@@ -64,6 +64,12 @@ private EnumerableRules() {
   public static final EnumerableLimitRule ENUMERABLE_LIMIT_RULE =
       new EnumerableLimitRule();
 
+  public static final EnumerableTopNRule ENUMERABLE_TOP_N_RULE =
+      new EnumerableTopNRule();
+
+  public static final EnumerableExchangeRule ENUMERABLE_EXCHANGE_RULE =
+      new EnumerableExchangeRule();
+
   public static final EnumerableUnionRule ENUMERABLE_UNION_RULE =
       new EnumerableUnionRule();
 
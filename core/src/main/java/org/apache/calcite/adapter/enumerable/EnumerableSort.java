@@ -27,6 +27,7 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
 
 /** Implementation of {@link org.apache.calcite.rel.core.Sort} in
  * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}. */
@@ -81,14 +82,28 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
         inputPhysType.generateCollationKey(
             collation.getFieldCollations());
 
-    builder.add(
-        Expressions.return_(null,
-            Expressions.call(childExp,
-                BuiltInMethod.ORDER_BY.method,
-                Expressions.list(
-                    builder.append("keySelector", pair.left))
-                    .appendIfNotNull(
-                        builder.appendIfNotNull("comparator", pair.right)))));
+    final Expression keySelector = builder.append("keySelector", pair.left);
+    final Expression comparator =
+        builder.appendIfNotNull("comparator", pair.right);
+    final long memoryLimit = EnumUtils.spillMemoryLimit(getCluster());
+    if (memoryLimit > 0) {
+      // Input may not fit into memory; sort runs, spill them, and merge
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(
+                  BuiltInMethod.SPILLING_ORDER_BY.method,
+                  childExp,
+                  keySelector,
+                  Util.first(comparator, Expressions.constant(null)),
+                  Expressions.constant(memoryLimit))));
+    } else {
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(childExp,
+                  BuiltInMethod.ORDER_BY.method,
+                  Expressions.list(keySelector)
+                      .appendIfNotNull(comparator))));
+    }
     return implementor.result(physType, builder.toBlock());
   }
 }
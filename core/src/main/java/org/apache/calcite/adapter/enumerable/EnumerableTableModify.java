@@ -125,21 +125,23 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     } else {
       convertedChildExp = childExp;
     }
+    // Materializations that read the table are brought up to date (or
+    // invalidated) as part of the modification.
     final Method method;
     switch (getOperation()) {
     case INSERT:
-      method = BuiltInMethod.INTO.method;
+      method = BuiltInMethod.MATERIALIZATION_INTO.method;
       break;
     case DELETE:
-      method = BuiltInMethod.REMOVE_ALL.method;
+      method = BuiltInMethod.MATERIALIZATION_REMOVE_ALL.method;
       break;
     default:
       throw new AssertionError(getOperation());
     }
     builder.add(
         Expressions.statement(
-            Expressions.call(
-                convertedChildExp, method, collectionParameter)));
+            Expressions.call(method, implementor.getRootExpression(),
+                convertedChildExp, collectionParameter, expression)));
     final Expression updatedCountParameter =
         builder.append(
             "updatedCount",
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Sort} in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}
+ * that has a {@code fetch}, and therefore returns only the first few rows.
+ *
+ * <p>Rather than sorting its whole input, it keeps the first
+ * {@code offset + fetch} rows seen so far in a bounded priority queue. It
+ * takes O(n log N) time and O(N) memory, where n is the number of input rows
+ * and N is {@code offset + fetch}, whereas an {@link EnumerableLimit} on top
+ * of an {@link EnumerableSort} takes O(n log n) time and O(n) memory. */
+public class EnumerableTopN extends Sort implements EnumerableRel {
+  /**
+   * Creates an EnumerableTopN.
+   *
+   * <p>Use {@link #create} unless you know what you're doing.
+   */
+  public EnumerableTopN(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RelCollation collation, RexNode offset, RexNode fetch) {
+    super(cluster, traitSet, input, collation, offset, fetch);
+    assert getConvention() instanceof EnumerableConvention;
+    assert getConvention() == input.getConvention();
+    assert fetch != null;
+  }
+
+  /** Creates an EnumerableTopN. */
+  public static EnumerableTopN create(RelNode child, RelCollation collation,
+      RexNode offset, RexNode fetch) {
+    final RelOptCluster cluster = child.getCluster();
+    final RelTraitSet traitSet =
+        cluster.traitSetOf(EnumerableConvention.INSTANCE)
+            .replace(collation);
+    return new EnumerableTopN(cluster, traitSet, child, collation, offset,
+        fetch);
+  }
+
+  @Override public EnumerableTopN copy(
+      RelTraitSet traitSet,
+      RelNode newInput,
+      RelCollation newCollation,
+      RexNode offset,
+      RexNode fetch) {
+    return new EnumerableTopN(getCluster(), traitSet, newInput, newCollation,
+        offset, fetch);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    // Each input row is compared with O(log N) rows in the queue.
+    final double inputRowCount = mq.getRowCount(getInput());
+    double n = inputRowCount;
+    if (fetch instanceof RexLiteral
+        && (offset == null || offset instanceof RexLiteral)) {
+      n = RexLiteral.intValue(fetch)
+          + (offset == null ? 0 : RexLiteral.intValue(offset));
+    }
+    final double bytesPerRow = getRowType().getFieldCount() * 4;
+    final double cpu = inputRowCount
+        * Math.log(Math.max(Math.E, Math.min(n, inputRowCount)))
+        * bytesPerRow;
+    return planner.getCostFactory().makeCost(mq.getRowCount(this), cpu, 0);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel child = (EnumerableRel) getInput();
+    final Result result = implementor.visitChild(this, 0, child, pref);
+    final PhysType physType =
+        PhysTypeImpl.of(
+            implementor.getTypeFactory(),
+            getRowType(),
+            result.format);
+    Expression childExp =
+        builder.append("child", result.block);
+
+    PhysType inputPhysType = result.physType;
+    final Pair<Expression, Expression> pair =
+        inputPhysType.generateCollationKey(
+            collation.getFieldCollations());
+
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(
+                BuiltInMethod.ORDER_BY_WITH_FETCH.method,
+                childExp,
+                builder.append("keySelector", pair.left),
+                Util.first(builder.appendIfNotNull("comparator", pair.right),
+                    Expressions.constant(null)),
+                offset == null
+                    ? Expressions.constant(0)
+                    : EnumerableLimit.getExpression(offset),
+                EnumerableLimit.getExpression(fetch))));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End EnumerableTopN.java
@@ -47,6 +47,7 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexWindowBound;
 import org.apache.calcite.runtime.SortedMultiMap;
+import org.apache.calcite.runtime.SpillingEnumerables;
 import org.apache.calcite.sql.SqlAggFunction;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableBitSet;
@@ -184,6 +185,8 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     builder.add(Expressions.declare(0, prevStart, null));
     builder.add(Expressions.declare(0, prevEnd, null));
 
+    final long memoryLimit = EnumUtils.spillMemoryLimit(getCluster());
+
     for (int windowIdx = 0; windowIdx < groups.size(); windowIdx++) {
       Group group = groups.get(windowIdx);
       // Comparator:
@@ -200,9 +203,16 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
               inputPhysType.generateComparator(
                   group.collation()));
 
+      // If there is a memory limit, and the rows have a partition key, read
+      // the partitions using an enumerator that may spill to disk; otherwise
+      // using an iterator over partitions in memory.
+      final boolean spill = memoryLimit > 0 && !group.keys.isEmpty();
       Pair<Expression, Expression> partitionIterator =
-          getPartitionIterator(builder, source_, inputPhysType, group,
-              comparator_);
+          spill
+              ? getSpillingPartitionEnumerator(builder, source_,
+                  inputPhysType, group, comparator_, memoryLimit)
+              : getPartitionIterator(builder, source_, inputPhysType, group,
+                  comparator_);
       final Expression collectionExpr = partitionIterator.left;
       final Expression iterator_ = partitionIterator.right;
 
@@ -227,10 +237,13 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
       final Expression list_ =
           builder.append(
               "list",
-              Expressions.new_(
-                  ArrayList.class,
-                  Expressions.call(
-                      collectionExpr, BuiltInMethod.COLLECTION_SIZE.method)),
+              spill
+                  ? Expressions.new_(ArrayList.class)
+                  : Expressions.new_(
+                      ArrayList.class,
+                      Expressions.call(
+                          collectionExpr,
+                          BuiltInMethod.COLLECTION_SIZE.method)),
               false);
 
       Pair<Expression, Expression> collationKey =
@@ -242,8 +255,10 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
           builder3.append(
               "rows",
               Expressions.convert_(
-                  Expressions.call(
-                      iterator_, BuiltInMethod.ITERATOR_NEXT.method),
+                  Expressions.call(iterator_,
+                      spill
+                          ? BuiltInMethod.ENUMERATOR_CURRENT.method
+                          : BuiltInMethod.ITERATOR_NEXT.method),
                   Object[].class),
               false);
 
@@ -371,6 +386,26 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
                     Expressions.constant(0)));
       }
 
+      final PhysType inputPhysTypeFinal = inputPhysType;
+      final Function<AggImpState, List<RexNode>> rexArguments =
+          new Function<AggImpState, List<RexNode>>() {
+            public List<RexNode> apply(AggImpState agg) {
+              List<Integer> argList = agg.call.getArgList();
+              List<RelDataType> inputTypes =
+                  EnumUtils.fieldRowTypes(
+                      result.physType.getRowType(),
+                      constants,
+                      argList);
+              List<RexNode> args = new ArrayList<RexNode>(
+                  inputTypes.size());
+              for (int i = 0; i < argList.size(); i++) {
+                Integer idx = argList.get(i);
+                args.add(new RexInputRef(idx, inputTypes.get(i)));
+              }
+              return args;
+            }
+          };
+
       ParameterExpression actualStart = Expressions.parameter(
           0, int.class, builder5.newName("actualStart"));
 
@@ -393,7 +428,58 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
           Expressions.lessThan(endX, prevEnd));
 
       BlockStatement resetWindowState = builder6.toBlock();
-      if (resetWindowState.statements.size() == 1) {
+      if (lowerBoundCanChange instanceof BinaryExpression
+          && isInvertible(aggs)) {
+        // If the frame has moved forward, and starts no later than the row
+        // after the previous frame ended, remove the rows that have left the
+        // frame rather than recomputing:
+        //
+        //   if (prevStart >= 0 && start > prevStart && start <= prevEnd + 1
+        //       && end >= prevEnd) {
+        //     for (int k = prevStart; k < start; k++) {
+        //       // implementRemove
+        //     }
+        //     actualStart = prevEnd + 1;
+        //   } else if (...)
+        final Expression canSlideWindow =
+            Expressions.foldAnd(
+                ImmutableList.<Expression>of(
+                    Expressions.greaterThanOrEqual(prevStart,
+                        Expressions.constant(0)),
+                    Expressions.greaterThan(startX, prevStart),
+                    Expressions.lessThanOrEqual(startX,
+                        Expressions.add(prevEnd, Expressions.constant(1))),
+                    Expressions.greaterThanOrEqual(endX, prevEnd)));
+        final BlockBuilder builder8 = new BlockBuilder(true, builder5);
+        final DeclarationStatement kDecl =
+            Expressions.declare(0, "k", prevStart);
+        implementRemove(aggs, builder8,
+            getBlockBuilderWinAggFrameResultContextFunction(typeFactory,
+                result, translatedConstants, comparator_, rows_, i_, startX,
+                endX, minX, maxX, hasRows, frameRowCount, partitionRowCount,
+                kDecl, inputPhysTypeFinal),
+            rexArguments, kDecl);
+        builder5.add(
+            Expressions.declare(0, actualStart, null));
+        builder5.add(
+            Expressions.ifThenElse(canSlideWindow,
+                Expressions.block(
+                    Expressions.for_(
+                        Arrays.asList(kDecl),
+                        Expressions.lessThan(kDecl.parameter, startX),
+                        Expressions.preIncrementAssign(kDecl.parameter),
+                        builder8.toBlock()),
+                    Expressions.statement(
+                        Expressions.assign(actualStart,
+                            Expressions.add(prevEnd,
+                                Expressions.constant(1))))),
+                Expressions.ifThenElse(needRecomputeWindow,
+                    resetWindowState,
+                    Expressions.statement(
+                        Expressions.assign(actualStart,
+                            Expressions.add(prevEnd,
+                                Expressions.constant(1)))))));
+      } else if (resetWindowState.statements.size() == 1) {
         builder5.add(
             Expressions.declare(0, actualStart,
                 Expressions.condition(needRecomputeWindow, startX,
@@ -420,7 +506,6 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
       final DeclarationStatement jDecl =
           Expressions.declare(0, "j", actualStart);
 
-      final PhysType inputPhysTypeFinal = inputPhysType;
       final Function<BlockBuilder, WinAggFrameResultContext>
           resultContextBuilder =
           getBlockBuilderWinAggFrameResultContextFunction(typeFactory, result,
@@ -429,25 +514,6 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
               hasRows, frameRowCount, partitionRowCount,
               jDecl, inputPhysTypeFinal);
 
-      final Function<AggImpState, List<RexNode>> rexArguments =
-          new Function<AggImpState, List<RexNode>>() {
-            public List<RexNode> apply(AggImpState agg) {
-              List<Integer> argList = agg.call.getArgList();
-              List<RelDataType> inputTypes =
-                  EnumUtils.fieldRowTypes(
-                      result.physType.getRowType(),
-                      constants,
-                      argList);
-              List<RexNode> args = new ArrayList<RexNode>(
-                  inputTypes.size());
-              for (int i = 0; i < argList.size(); i++) {
-                Integer idx = argList.get(i);
-                args.add(new RexInputRef(idx, inputTypes.get(i)));
-              }
-              return args;
-            }
-          };
-
       implementAdd(aggs, builder7, resultContextBuilder, rexArguments, jDecl);
 
       BlockStatement forBlock = builder7.toBlock();
@@ -492,17 +558,31 @@ public List<RexNode> apply(AggImpState agg) {
               Expressions.preIncrementAssign(i_),
               builder4.toBlock()));
 
-      builder.add(
-          Expressions.while_(
-              Expressions.call(
-                  iterator_,
-                  BuiltInMethod.ITERATOR_HAS_NEXT.method),
-              builder3.toBlock()));
-      builder.add(
-          Expressions.statement(
-              Expressions.call(
-                  collectionExpr,
-                  BuiltInMethod.MAP_CLEAR.method)));
+      if (spill) {
+        // Close the enumerator, even if there is an error, so that it deletes
+        // its spill files
+        builder.add(
+            Expressions.tryFinally(
+                Expressions.while_(
+                    Expressions.call(iterator_,
+                        BuiltInMethod.ENUMERATOR_MOVE_NEXT.method),
+                    builder3.toBlock()),
+                Expressions.statement(
+                    Expressions.call(iterator_,
+                        BuiltInMethod.ENUMERATOR_CLOSE.method))));
+      } else {
+        builder.add(
+            Expressions.while_(
+                Expressions.call(
+                    iterator_,
+                    BuiltInMethod.ITERATOR_HAS_NEXT.method),
+                builder3.toBlock()));
+        builder.add(
+            Expressions.statement(
+                Expressions.call(
+                    collectionExpr,
+                    BuiltInMethod.MAP_CLEAR.method)));
+      }
 
       // We're not assigning to "source". For each group, create a new
       // final variable called "source" or "sourceN".
@@ -691,32 +771,7 @@ private Pair<Expression, Expression> getPartitionIterator(
     final ParameterExpression v_ =
         Expressions.parameter(inputPhysType.getJavaRowType(),
             builder2.newName("v"));
-
-    Pair<Type, List<Expression>> selector =
-        inputPhysType.selector(v_, group.keys.asList(), JavaRowFormat.CUSTOM);
-    final ParameterExpression key_;
-    if (selector.left instanceof Types.RecordType) {
-      Types.RecordType keyJavaType = (Types.RecordType) selector.left;
-      List<Expression> initExpressions = selector.right;
-      key_ = Expressions.parameter(keyJavaType, "key");
-      builder2.add(Expressions.declare(0, key_, null));
-      builder2.add(
-          Expressions.statement(
-              Expressions.assign(key_, Expressions.new_(keyJavaType))));
-      List<Types.RecordField> fieldList = keyJavaType.getRecordFields();
-      for (int i = 0; i < initExpressions.size(); i++) {
-        Expression right = initExpressions.get(i);
-        builder2.add(
-            Expressions.statement(
-                Expressions.assign(
-                    Expressions.field(key_, fieldList.get(i)), right)));
-      }
-    } else {
-      DeclarationStatement declare =
-          Expressions.declare(0, "key", selector.right.get(0));
-      builder2.add(declare);
-      key_ = declare.parameter;
-    }
+    final Expression key_ = partitionKey(builder2, v_, inputPhysType, group);
     builder2.add(
         Expressions.statement(
             Expressions.call(
@@ -745,6 +800,74 @@ private Pair<Expression, Expression> getPartitionIterator(
             comparator_)));
   }
 
+  /** Returns an enumerator over the partitions of the input, each an array of
+   * rows sorted by {@code comparator_}, that spills to disk if the input does
+   * not fit into {@code memoryLimit} bytes. The left of the returned pair is
+   * null, because there is no collection of partitions.
+   *
+   * @see SpillingEnumerables#partitionArrays */
+  private Pair<Expression, Expression> getSpillingPartitionEnumerator(
+      BlockBuilder builder, Expression source_, PhysType inputPhysType,
+      Group group, Expression comparator_, long memoryLimit) {
+    //   final Enumerator<Employee[]> iterator =
+    //       SpillingEnumerables.partitionArrays(source,
+    //           new Function1<Employee, Integer>() {
+    //             public Integer apply(Employee v) {
+    //               return v.deptno;
+    //             }
+    //           },
+    //           comparator, memoryLimit).enumerator();
+    final BlockBuilder builder2 = new BlockBuilder();
+    final ParameterExpression v_ =
+        Expressions.parameter(inputPhysType.getJavaRowType(),
+            builder2.newName("v"));
+    final Expression key_ = partitionKey(builder2, v_, inputPhysType, group);
+    builder2.add(Expressions.return_(null, Expressions.box(key_)));
+    return Pair.of(null,
+        builder.append("iterator",
+            Expressions.call(
+                Expressions.call(
+                    BuiltInMethod.SPILLING_PARTITION_ARRAYS.method,
+                    source_,
+                    Expressions.lambda(builder2.toBlock(), v_),
+                    comparator_,
+                    Expressions.constant(memoryLimit)),
+                BuiltInMethod.ENUMERABLE_ENUMERATOR.method),
+            false));
+  }
+
+  /** Generates code to compute the partition key of a row, and returns the
+   * key. */
+  private Expression partitionKey(BlockBuilder builder2,
+      ParameterExpression v_, PhysType inputPhysType, Group group) {
+    Pair<Type, List<Expression>> selector =
+        inputPhysType.selector(v_, group.keys.asList(), JavaRowFormat.CUSTOM);
+    final ParameterExpression key_;
+    if (selector.left instanceof Types.RecordType) {
+      Types.RecordType keyJavaType = (Types.RecordType) selector.left;
+      List<Expression> initExpressions = selector.right;
+      key_ = Expressions.parameter(keyJavaType, "key");
+      builder2.add(Expressions.declare(0, key_, null));
+      builder2.add(
+          Expressions.statement(
+              Expressions.assign(key_, Expressions.new_(keyJavaType))));
+      List<Types.RecordField> fieldList = keyJavaType.getRecordFields();
+      for (int i = 0; i < initExpressions.size(); i++) {
+        Expression right = initExpressions.get(i);
+        builder2.add(
+            Expressions.statement(
+                Expressions.assign(
+                    Expressions.field(key_, fieldList.get(i)), right)));
+      }
+    } else {
+      DeclarationStatement declare =
+          Expressions.declare(0, "key", selector.right.get(0));
+      builder2.add(declare);
+      key_ = declare.parameter;
+    }
+    return key_;
+  }
+
   private Pair<Expression, Expression> getRowCollationKey(
       BlockBuilder builder, PhysType inputPhysType,
       Group group, int windowIdx) {
@@ -873,6 +996,45 @@ public RexNode rexFilterArgument() {
     }
   }
 
+  /** Returns whether every aggregate can remove rows from its accumulator.
+   *
+   * @see InvertibleAggImplementor */
+  private boolean isInvertible(List<AggImpState> aggs) {
+    for (AggImpState agg : aggs) {
+      if (!(agg.implementor instanceof InvertibleAggImplementor)
+          || !((InvertibleAggImplementor) agg.implementor)
+              .isInvertible(agg.context)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void implementRemove(List<AggImpState> aggs,
+      final BlockBuilder builder8,
+      final Function<BlockBuilder, WinAggFrameResultContext> frame,
+      final Function<AggImpState, List<RexNode>> rexArguments,
+      final DeclarationStatement kDecl) {
+    for (final AggImpState agg : aggs) {
+      final WinAggAddContext removeContext =
+          new WinAggAddContextImpl(builder8, agg.state, frame) {
+            public Expression currentPosition() {
+              return kDecl.parameter;
+            }
+
+            public List<RexNode> rexArguments() {
+              return rexArguments.apply(agg);
+            }
+
+            public RexNode rexFilterArgument() {
+              return null;
+            }
+          };
+      ((InvertibleAggImplementor) agg.implementor).implementRemove(
+          agg.context, removeContext);
+    }
+  }
+
   private boolean implementResult(List<AggImpState> aggs,
       final BlockBuilder builder,
       final Function<BlockBuilder, WinAggFrameResultContext> frame,
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+/**
+ * Implements an aggregate function whose accumulator can remove values as
+ * well as add them.
+ *
+ * <p>When the frame of a windowed aggregate moves forward, such as
+ * {@code SUM(x) OVER (ORDER BY t ROWS 100 PRECEDING)}, Calcite removes the rows
+ * that left the frame and adds the rows that entered it, rather than
+ * resetting the accumulator and adding every row in the new frame. Each row
+ * is then added and removed at most once per partition.
+ *
+ * <p>MIN and MAX cannot remove a value that is the current extreme without
+ * rescanning the frame, so they do not support removal, and a window group
+ * that contains them recomputes the frame whenever its start moves.
+ *
+ * @see org.apache.calcite.adapter.enumerable.StrictAggImplementor
+ */
+public interface InvertibleAggImplementor extends AggImplementor {
+  /**
+   * Returns whether this aggregate can remove values. Calcite calls this
+   * method after {@link #getStateType}.
+   *
+   * @param info Aggregate context
+   * @return Whether {@link #implementRemove} may be called
+   */
+  boolean isInvertible(AggContext info);
+
+  /**
+   * Updates intermediate values to account for a value that was previously
+   * added and is no longer part of the aggregate.
+   * {@link AggAddContext#accumulator()} should be used to reference
+   * the state variables.
+   *
+   * @param info Aggregate context
+   * @param remove Context of the value to remove; has the same form as the
+   *   context of {@link #implementAdd}
+   */
+  void implementRemove(AggContext info, AggAddContext remove);
+}
+
+// End InvertibleAggImplementor.java
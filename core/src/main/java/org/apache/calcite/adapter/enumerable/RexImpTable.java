@@ -40,6 +40,7 @@
 import org.apache.calcite.rex.RexCall;
 import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.MonotonicDeque;
 import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.schema.ImplementableAggFunction;
 import org.apache.calcite.schema.ImplementableFunction;
@@ -344,12 +345,14 @@ public Expression implement(RexToLixTranslator translator,
 
     // LIKE and SIMILAR
     final MethodImplementor likeImplementor =
-        new MethodImplementor(BuiltInMethod.LIKE.method);
+        new LikeImplementor(BuiltInMethod.LIKE.method,
+            BuiltInMethod.LIKE_MATCHER.method);
     defineImplementor(LIKE, NullPolicy.STRICT, likeImplementor, false);
     defineImplementor(NOT_LIKE, NullPolicy.STRICT,
         NotImplementor.of(likeImplementor), false);
     final MethodImplementor similarImplementor =
-        new MethodImplementor(BuiltInMethod.SIMILAR.method);
+        new LikeImplementor(BuiltInMethod.SIMILAR.method,
+            BuiltInMethod.SIMILAR_MATCHER.method);
     defineImplementor(SIMILAR_TO, NullPolicy.STRICT, similarImplementor, false);
     defineImplementor(NOT_SIMILAR_TO, NullPolicy.STRICT,
         NotImplementor.of(similarImplementor), false);
@@ -430,6 +433,10 @@ public Expression implement(RexToLixTranslator translator,
     winAggMap.put(LAG, constructorSupplier(LagImplementor.class));
     winAggMap.put(NTILE, constructorSupplier(NtileImplementor.class));
     winAggMap.put(COUNT, constructorSupplier(CountWinImplementor.class));
+    final Supplier<MinMaxWinImplementor> minMaxWin =
+        constructorSupplier(MinMaxWinImplementor.class);
+    winAggMap.put(MIN, minMaxWin);
+    winAggMap.put(MAX, minMaxWin);
   }
 
   private <T> Supplier<T> constructorSupplier(Class<T> klass) {
@@ -1122,6 +1129,20 @@ static class CountWinImplementor extends StrictWinAggImplementor {
               Expressions.postIncrementAssign(add.accumulator().get(0))));
     }
 
+    @Override protected boolean isNotNullInvertible(WinAggContext info) {
+      return true;
+    }
+
+    @Override protected void implementNotNullRemove(WinAggContext info,
+        WinAggAddContext remove) {
+      if (justFrameRowCount) {
+        return;
+      }
+      remove.currentBlock().add(
+          Expressions.statement(
+              Expressions.postDecrementAssign(remove.accumulator().get(0))));
+    }
+
     @Override protected Expression implementNotNullResult(WinAggContext info,
         WinAggResultContext result) {
       if (justFrameRowCount) {
@@ -1157,6 +1178,26 @@ static class SumImplementor extends StrictAggImplementor {
       accAdvance(add, acc, next);
     }
 
+    @Override protected boolean isNotNullInvertible(AggContext info) {
+      // Subtracting floating-point values would accumulate rounding errors
+      final Primitive p = Primitive.ofBoxOr(info.returnType());
+      return info.returnType() == BigDecimal.class
+          || p != null && p.isFixedNumeric();
+    }
+
+    @Override protected void implementNotNullRemove(AggContext info,
+        AggAddContext remove) {
+      Expression acc = remove.accumulator().get(0);
+      Expression next;
+      if (info.returnType() == BigDecimal.class) {
+        next = Expressions.call(acc, "subtract", remove.arguments().get(0));
+      } else {
+        next = Expressions.subtract(acc,
+            Types.castIfNecessary(acc.type, remove.arguments().get(0)));
+      }
+      accAdvance(remove, acc, next);
+    }
+
     @Override public Expression implementNotNullResult(AggContext info,
         AggResultContext result) {
       return super.implementNotNullResult(info, result);
@@ -1194,6 +1235,59 @@ static class MinMaxImplementor extends StrictAggImplementor {
     }
   }
 
+  /** Implementor for the {@code MIN} and {@code MAX} windowed aggregate
+   * functions.
+   *
+   * <p>Keeps the values that might become the extreme in a
+   * {@link MonotonicDeque}, so that it can remove rows that leave a sliding
+   * frame rather than recomputing the frame. */
+  static class MinMaxWinImplementor extends StrictWinAggImplementor {
+    @Override public List<Type> getNotNullState(WinAggContext info) {
+      return Collections.<Type>singletonList(MonotonicDeque.class);
+    }
+
+    @Override protected void implementNotNullReset(WinAggContext info,
+        WinAggResetContext reset) {
+      reset.currentBlock().add(
+          Expressions.statement(
+              Expressions.assign(reset.accumulator().get(0),
+                  Expressions.new_(MonotonicDeque.class,
+                      Expressions.constant(MAX == info.aggregation())))));
+    }
+
+    @Override public void implementNotNullAdd(WinAggContext info,
+        WinAggAddContext add) {
+      add.currentBlock().add(
+          Expressions.statement(
+              Expressions.call(add.accumulator().get(0),
+                  BuiltInMethod.MONOTONIC_DEQUE_ADD.method,
+                  Expressions.box(add.arguments().get(0)))));
+    }
+
+    @Override protected boolean isNotNullInvertible(WinAggContext info) {
+      return true;
+    }
+
+    @Override protected void implementNotNullRemove(WinAggContext info,
+        WinAggAddContext remove) {
+      remove.currentBlock().add(
+          Expressions.statement(
+              Expressions.call(remove.accumulator().get(0),
+                  BuiltInMethod.MONOTONIC_DEQUE_REMOVE.method,
+                  Expressions.box(remove.arguments().get(0)))));
+    }
+
+    @Override protected Expression implementNotNullResult(WinAggContext info,
+        WinAggResultContext result) {
+      final Type type =
+          Primitive.box(Primitive.unbox(EnumUtils.fromInternal(info.returnType())));
+      return Expressions.convert_(
+          Expressions.call(result.accumulator().get(0),
+              BuiltInMethod.MONOTONIC_DEQUE_FIRST.method),
+          type);
+    }
+  }
+
   /** Implementor for the {@code SINGLE_VALUE} aggregate function. */
   static class SingleValueImplementor implements AggImplementor {
     public List<Type> getStateType(AggContext info) {
@@ -1741,6 +1835,37 @@ public Expression implement(
     }
   }
 
+  /** Implementor for the {@code LIKE} and {@code SIMILAR TO} operators.
+   *
+   * <p>If the pattern and escape are literals, generates a call to a matcher
+   * that is compiled once; the code optimizer holds it in a static field of
+   * the generated class. Otherwise generates a call to a method that looks up
+   * the compiled pattern in a cache. */
+  private static class LikeImplementor extends MethodImplementor {
+    private final Method matcherMethod;
+
+    LikeImplementor(Method method, Method matcherMethod) {
+      super(method);
+      this.matcherMethod = matcherMethod;
+    }
+
+    @Override public Expression implement(
+        RexToLixTranslator translator,
+        RexCall call,
+        List<Expression> translatedOperands) {
+      final List<Expression> patternOperands = Util.skip(translatedOperands);
+      for (Expression operand : patternOperands) {
+        if (!(operand instanceof ConstantExpression)
+            || ((ConstantExpression) operand).value == null) {
+          return super.implement(translator, call, translatedOperands);
+        }
+      }
+      return Expressions.call(
+          Expressions.call(matcherMethod, patternOperands),
+          BuiltInMethod.MATCHER_MATCHES.method, translatedOperands.get(0));
+    }
+  }
+
   /** Implementor for a function that generates calls to a given method. */
   private static class SequenceImplementor extends MethodImplementor {
     SequenceImplementor(Method method) {
@@ -38,7 +38,8 @@
  * @see org.apache.calcite.adapter.enumerable.RexImpTable.CountImplementor
  * @see org.apache.calcite.adapter.enumerable.RexImpTable.SumImplementor
  */
-public abstract class StrictAggImplementor implements AggImplementor {
+public abstract class StrictAggImplementor
+    implements InvertibleAggImplementor {
   private boolean needTrackEmptySet;
   private boolean trackNullsPerRow;
   private int stateSize;
@@ -116,7 +117,25 @@ protected void implementNotNullReset(AggContext info,
     }
   }
 
-  public final void implementAdd(AggContext info, final AggAddContext add) {
+  public final void implementAdd(AggContext info, AggAddContext add) {
+    implementAddOrRemove(info, add, true);
+  }
+
+  /** {@inheritDoc}
+   *
+   * <p>Never if the aggregate records whether it has seen a row whose
+   * arguments are not null; a row's leaving cannot clear that flag. */
+  public final boolean isInvertible(AggContext info) {
+    return !trackNullsPerRow && isNotNullInvertible(info);
+  }
+
+  public final void implementRemove(AggContext info, AggAddContext remove) {
+    assert isInvertible(info);
+    implementAddOrRemove(info, remove, false);
+  }
+
+  private void implementAddOrRemove(AggContext info, final AggAddContext add,
+      boolean isAdd) {
     final List<RexNode> args = add.rexArguments();
     final RexToLixTranslator translator = add.rowTranslator();
     final List<Expression> conditions = new ArrayList<>();
@@ -145,7 +164,7 @@ public final void implementAdd(AggContext info, final AggAddContext add) {
                   Expressions.constant(true))));
     }
     if (argsNotNull) {
-      implementNotNullAdd(info, add);
+      implementNotNullAddOrRemove(info, add, isAdd);
       return;
     }
 
@@ -156,14 +175,38 @@ public final void implementAdd(AggContext info, final AggAddContext add) {
       }
     }
     add.nestBlock(thenBlock, nullables);
-    implementNotNullAdd(info, add);
+    implementNotNullAddOrRemove(info, add, isAdd);
     add.exitBlock();
     add.currentBlock().add(Expressions.ifThen(condition, thenBlock.toBlock()));
   }
 
+  private void implementNotNullAddOrRemove(AggContext info, AggAddContext add,
+      boolean isAdd) {
+    if (isAdd) {
+      implementNotNullAdd(info, add);
+    } else {
+      assert isNotNullInvertible(info);
+      implementNotNullRemove(info, add);
+    }
+  }
+
   protected abstract void implementNotNullAdd(AggContext info,
       AggAddContext add);
 
+  /** Returns whether {@link #implementNotNullRemove} is implemented. */
+  protected boolean isNotNullInvertible(AggContext info) {
+    return false;
+  }
+
+  /** Updates intermediate values to account for a row, whose arguments are
+   * not null, leaving the window frame. Called only if
+   * {@link #isNotNullInvertible} returns true, so a subclass that overrides
+   * that method must override this one too; this implementation generates
+   * no code. */
+  protected void implementNotNullRemove(AggContext info,
+      AggAddContext remove) {
+  }
+
   public final Expression implementResult(AggContext info,
       final AggResultContext result) {
     if (!needTrackEmptySet) {
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.rel.RelNode;
+
+import com.google.common.base.Preconditions;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Enumerable that executes a tree of {@link EnumerableBatchRel}s and returns
+ * its rows one at a time.
+ *
+ * <p>Generated code creates an instance of this class to implement
+ * {@link EnumerableBatchToEnumerableConverter}.
+ */
+public class BatchEnumerable extends AbstractEnumerable<Object[]> {
+  private final DataContext root;
+  private final RelNode rel;
+  private final int batchSize;
+  private final Enumerable[] inputs;
+
+  /** Creates a BatchEnumerable.
+   *
+   * @param root Execution context
+   * @param rel Root of the tree of relational expressions in batch calling
+   *            convention
+   * @param batchSize Maximum number of rows in each batch
+   * @param inputs Enumerable inputs to the tree, one for each element of
+   *               {@link Batches#converters(RelNode)}
+   */
+  public BatchEnumerable(DataContext root, RelNode rel, int batchSize,
+      Enumerable[] inputs) {
+    this.root = root;
+    this.rel = rel;
+    this.batchSize = batchSize;
+    this.inputs = inputs;
+  }
+
+  public Enumerator<Object[]> enumerator() {
+    final List<EnumerableToBatchConverter> converters =
+        Batches.converters(rel);
+    Preconditions.checkArgument(converters.size() == inputs.length);
+    final Map<RelNode, Enumerable<Object[]>> map = new IdentityHashMap<>();
+    for (int i = 0; i < inputs.length; i++) {
+      //noinspection unchecked
+      map.put(converters.get(i), (Enumerable<Object[]>) inputs[i]);
+    }
+    final BatchImplementor implementor =
+        new BatchImplementor(root, batchSize, map);
+    return new BatchEnumerator(implementor.visitChild(rel));
+  }
+
+  /** Enumerator that reads batches from a source and returns the rows that
+   * are present in each batch. */
+  private static class BatchEnumerator implements Enumerator<Object[]> {
+    private final BatchSource source;
+    private ColumnBatch batch;
+    private int i;
+    private Object[] current;
+
+    BatchEnumerator(BatchSource source) {
+      this.source = source;
+    }
+
+    public Object[] current() {
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      return current;
+    }
+
+    public boolean moveNext() {
+      for (;;) {
+        if (batch != null && i < batch.size) {
+          current = batch.row(i++);
+          return true;
+        }
+        batch = source.next();
+        i = 0;
+        if (batch == null) {
+          current = null;
+          return false;
+        }
+      }
+    }
+
+    public void reset() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      source.close();
+    }
+  }
+}
+
+// End BatchEnumerable.java
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.rel.RelNode;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Map;
+
+/**
+ * Context for converting a tree of {@link EnumerableBatchRel} nodes into a
+ * tree of {@link BatchSource}s, at the start of execution.
+ */
+public class BatchImplementor {
+  public final DataContext root;
+  public final int batchSize;
+  private final Map<RelNode, Enumerable<Object[]>> inputs;
+
+  /** Creates a BatchImplementor.
+   *
+   * @param root Execution context
+   * @param batchSize Maximum number of rows in each batch
+   * @param inputs Results of the enumerable inputs to the tree, keyed by the
+   *               {@link EnumerableToBatchConverter} that reads them
+   */
+  BatchImplementor(DataContext root, int batchSize,
+      Map<RelNode, Enumerable<Object[]>> inputs) {
+    Preconditions.checkArgument(batchSize > 0);
+    this.root = root;
+    this.batchSize = batchSize;
+    this.inputs = inputs;
+  }
+
+  /** Creates a source of batches for a relational expression. */
+  public BatchSource visitChild(RelNode rel) {
+    return ((EnumerableBatchRel) rel).implement(this);
+  }
+
+  /** Returns the rows produced by the enumerable input of a converter. */
+  public Enumerable<Object[]> getInput(EnumerableToBatchConverter converter) {
+    return Preconditions.checkNotNull(inputs.get(converter));
+  }
+}
+
+// End BatchImplementor.java
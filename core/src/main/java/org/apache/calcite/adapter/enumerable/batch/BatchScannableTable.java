@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.schema.ScannableTable;
+
+/**
+ * Table that can be scanned a batch of rows at a time, without converting
+ * each row to an array of objects.
+ *
+ * <p>Tables that store their data by column, such as the tables created by
+ * the {@link org.apache.calcite.adapter.clone clone adapter}, can implement
+ * this interface to fill {@link ColumnVector}s directly. Other
+ * {@link ScannableTable}s are read in
+ * {@link EnumerableBatchConvention batch calling convention} by converting
+ * their rows.
+ */
+public interface BatchScannableTable extends ScannableTable {
+  /** Returns a source of batches of all rows in this table.
+   *
+   * @param root Execution context
+   * @param rowType Row type of the table
+   * @param batchSize Maximum number of rows in each batch
+   */
+  BatchSource scanBatches(DataContext root, RelDataType rowType,
+      int batchSize);
+}
+
+// End BatchScannableTable.java
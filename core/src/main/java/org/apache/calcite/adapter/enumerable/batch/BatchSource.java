@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+/**
+ * Producer of {@link ColumnBatch batches} of rows.
+ *
+ * <p>It is the batch equivalent of an
+ * {@link org.apache.calcite.linq4j.Enumerator}.
+ */
+public interface BatchSource extends AutoCloseable {
+  /** Returns the next batch, or null if there are no more rows.
+   *
+   * <p>A batch returned may be empty, and is only valid until the next call
+   * to this method. */
+  ColumnBatch next();
+
+  // override, removing "throws"
+  @Override void close();
+}
+
+// End BatchSource.java
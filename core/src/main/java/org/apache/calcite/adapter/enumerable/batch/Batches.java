@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Utilities for {@link ColumnBatch} and {@link BatchSource}.
+ */
+public class Batches {
+  private Batches() {}
+
+  /** Creates an array of empty vectors, one for each field of a row
+   * type. */
+  public static ColumnVector[] newVectors(RelDataType rowType, int capacity) {
+    final List<RelDataTypeField> fields = rowType.getFieldList();
+    final ColumnVector[] vectors = new ColumnVector[fields.size()];
+    for (int i = 0; i < vectors.length; i++) {
+      vectors[i] = ColumnVector.of(fields.get(i).getType(), capacity);
+    }
+    return vectors;
+  }
+
+  /** Returns the {@link EnumerableToBatchConverter}s at the leaves of a
+   * tree of {@link EnumerableBatchRel}s, in depth-first order.
+   *
+   * <p>The order is the same at planning time, when the enumerable inputs
+   * are generated, and at execution time, when they are matched up with
+   * their converters. */
+  public static List<EnumerableToBatchConverter> converters(RelNode rel) {
+    final ImmutableList.Builder<EnumerableToBatchConverter> builder =
+        ImmutableList.builder();
+    addConverters(rel, builder);
+    return builder.build();
+  }
+
+  private static void addConverters(RelNode rel,
+      ImmutableList.Builder<EnumerableToBatchConverter> builder) {
+    if (rel instanceof EnumerableToBatchConverter) {
+      builder.add((EnumerableToBatchConverter) rel);
+      return;
+    }
+    for (RelNode input : rel.getInputs()) {
+      addConverters(input, builder);
+    }
+  }
+
+  /** Creates a source that reads rows from an enumerator and copies them
+   * into batches. */
+  public static BatchSource fromRows(Enumerator<Object[]> enumerator,
+      RelDataType rowType, int batchSize) {
+    return new RowBatchSource(enumerator, rowType, batchSize);
+  }
+
+  /** Source that reads rows from an enumerator and copies them into
+   * batches.
+   *
+   * <p>It is used to feed relational expressions in
+   * {@link EnumerableBatchConvention batch calling convention} from inputs
+   * that produce rows one at a time. */
+  private static class RowBatchSource implements BatchSource {
+    private final Enumerator<Object[]> enumerator;
+    private final RelDataType rowType;
+    private final int batchSize;
+    private boolean done;
+
+    RowBatchSource(Enumerator<Object[]> enumerator, RelDataType rowType,
+        int batchSize) {
+      this.enumerator = enumerator;
+      this.rowType = rowType;
+      this.batchSize = batchSize;
+    }
+
+    public ColumnBatch next() {
+      if (done) {
+        return null;
+      }
+      // Allocate new vectors each time; a consumer (such as an aggregate
+      // with a hash table) may retain values, but never vectors, so we
+      // could recycle them, but the saving is small.
+      final ColumnVector[] vectors = newVectors(rowType, batchSize);
+      int n = 0;
+      while (n < batchSize) {
+        if (!enumerator.moveNext()) {
+          done = true;
+          break;
+        }
+        final Object[] row = enumerator.current();
+        for (int i = 0; i < vectors.length; i++) {
+          vectors[i].set(n, row[i]);
+        }
+        ++n;
+      }
+      if (n == 0) {
+        return null;
+      }
+      return ColumnBatch.of(vectors, n);
+    }
+
+    public void close() {
+      enumerator.close();
+    }
+  }
+}
+
+// End Batches.java
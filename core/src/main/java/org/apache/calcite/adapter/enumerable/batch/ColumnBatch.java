@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Set of rows, stored as one {@link ColumnVector} per column.
+ *
+ * <p>A batch may have a selection vector, which contains the positions of
+ * the rows that are present, in ascending order. A filter creates a
+ * selection vector rather than copying the rows that pass; operators that
+ * consume the batch only look at the selected positions.
+ */
+public class ColumnBatch {
+  public final ColumnVector[] vectors;
+  /** Number of positions in each vector, whether selected or not. */
+  public final int rowCount;
+  /** Positions of the rows that are present, or null if all positions
+   * 0 .. {@code rowCount - 1} are present. */
+  public final int[] selection;
+  /** Number of rows that are present. */
+  public final int size;
+
+  /** Creates a ColumnBatch.
+   *
+   * @param vectors Vectors, one per column
+   * @param rowCount Number of positions in each vector
+   * @param selection Positions of the rows that are present, or null if all
+   *                  are present
+   * @param size Number of rows present; must equal {@code rowCount} if
+   *             {@code selection} is null
+   */
+  public ColumnBatch(ColumnVector[] vectors, int rowCount, int[] selection,
+      int size) {
+    this.vectors = Preconditions.checkNotNull(vectors);
+    this.rowCount = rowCount;
+    this.selection = selection;
+    this.size = size;
+    Preconditions.checkArgument(selection != null || size == rowCount);
+  }
+
+  /** Creates a ColumnBatch in which all rows are present. */
+  public static ColumnBatch of(ColumnVector[] vectors, int rowCount) {
+    return new ColumnBatch(vectors, rowCount, null, rowCount);
+  }
+
+  /** Returns the position of the {@code i}th row that is present. */
+  public int position(int i) {
+    return selection == null ? i : selection[i];
+  }
+
+  /** Returns a batch with the same vectors and a different selection. */
+  public ColumnBatch withSelection(int[] selection, int size) {
+    return new ColumnBatch(vectors, rowCount, selection, size);
+  }
+
+  /** Returns a batch with the same selection and different vectors. */
+  public ColumnBatch withVectors(ColumnVector[] vectors) {
+    return new ColumnBatch(vectors, rowCount, selection, size);
+  }
+
+  /** Returns the values of the {@code i}th row that is present. */
+  public Object[] row(int i) {
+    final int position = position(i);
+    final Object[] values = new Object[vectors.length];
+    for (int j = 0; j < values.length; j++) {
+      values[j] = vectors[j].get(position);
+    }
+    return values;
+  }
+}
+
+// End ColumnBatch.java
@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.sql.type.SqlTypeName;
+
+/**
+ * Values of one column for each row in a {@link ColumnBatch}.
+ *
+ * <p>Values are held in an array of primitive values if the column's type
+ * allows: all integer types are held as {@code long} values, all
+ * floating-point types as {@code double} values. Other types, such as
+ * {@code VARCHAR}, {@code DECIMAL} and {@code DATE}, are held as objects, in
+ * the same representation as used by the
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention}.
+ *
+ * <p>Whether a value is null is recorded in {@link #nulls}; the value in the
+ * primitive array at that position is undefined.
+ */
+public class ColumnVector {
+  public final Kind kind;
+  /** Java type of the column's values when they are converted to objects;
+   * for example {@link Primitive#INT} for an {@code INTEGER} column
+   * held in {@link #longs}. Null if {@link #kind} is {@link Kind#OBJECT}. */
+  public final Primitive primitive;
+  public final long[] longs;
+  public final double[] doubles;
+  public final boolean[] booleans;
+  public final Object[] objects;
+  public final boolean[] nulls;
+
+  private ColumnVector(Kind kind, Primitive primitive, int capacity) {
+    this.kind = kind;
+    this.primitive = primitive;
+    this.longs = kind == Kind.LONG ? new long[capacity] : null;
+    this.doubles = kind == Kind.DOUBLE ? new double[capacity] : null;
+    this.booleans = kind == Kind.BOOLEAN ? new boolean[capacity] : null;
+    this.objects = kind == Kind.OBJECT ? new Object[capacity] : null;
+    this.nulls = new boolean[capacity];
+  }
+
+  /** Creates a vector of a given kind. */
+  public static ColumnVector of(Kind kind, Primitive primitive, int capacity) {
+    return new ColumnVector(kind, primitive, capacity);
+  }
+
+  /** Creates a vector to hold values of a given SQL type. */
+  public static ColumnVector of(RelDataType type, int capacity) {
+    final SqlTypeName typeName = type.getSqlTypeName();
+    return new ColumnVector(kind(typeName), primitive(typeName), capacity);
+  }
+
+  /** Creates a vector with the same kind and primitive as this, with a given
+   * capacity. */
+  public ColumnVector like(int capacity) {
+    return new ColumnVector(kind, primitive, capacity);
+  }
+
+  /** Returns the kind of vector that holds values of a given SQL type. */
+  public static Kind kind(SqlTypeName typeName) {
+    switch (typeName) {
+    case BOOLEAN:
+      return Kind.BOOLEAN;
+    case TINYINT:
+    case SMALLINT:
+    case INTEGER:
+    case BIGINT:
+      return Kind.LONG;
+    case REAL:
+    case FLOAT:
+    case DOUBLE:
+      return Kind.DOUBLE;
+    default:
+      return Kind.OBJECT;
+    }
+  }
+
+  /** Returns the Java type of values of a given SQL type that are held in
+   * a primitive array, or null if they are held as objects. */
+  public static Primitive primitive(SqlTypeName typeName) {
+    switch (typeName) {
+    case BOOLEAN:
+      return Primitive.BOOLEAN;
+    case TINYINT:
+      return Primitive.BYTE;
+    case SMALLINT:
+      return Primitive.SHORT;
+    case INTEGER:
+      return Primitive.INT;
+    case BIGINT:
+      return Primitive.LONG;
+    case REAL:
+      return Primitive.FLOAT;
+    case FLOAT:
+    case DOUBLE:
+      return Primitive.DOUBLE;
+    default:
+      return null;
+    }
+  }
+
+  /** Returns whether the value at a given position is null. */
+  public boolean isNull(int i) {
+    return nulls[i];
+  }
+
+  /** Sets the value at a given position from an object, as it would appear
+   * in a row of the enumerable calling convention. */
+  public void set(int i, Object o) {
+    if (o == null) {
+      nulls[i] = true;
+      return;
+    }
+    nulls[i] = false;
+    switch (kind) {
+    case LONG:
+      longs[i] = ((Number) o).longValue();
+      break;
+    case DOUBLE:
+      doubles[i] = ((Number) o).doubleValue();
+      break;
+    case BOOLEAN:
+      booleans[i] = (Boolean) o;
+      break;
+    default:
+      objects[i] = o;
+    }
+  }
+
+  /** Copies the value at position {@code j} of another vector, which must
+   * be of the same kind, to position {@code i} of this vector. */
+  public void copy(int i, ColumnVector source, int j) {
+    if (source.nulls[j]) {
+      nulls[i] = true;
+      return;
+    }
+    nulls[i] = false;
+    switch (kind) {
+    case LONG:
+      longs[i] = source.longs[j];
+      break;
+    case DOUBLE:
+      doubles[i] = source.doubles[j];
+      break;
+    case BOOLEAN:
+      booleans[i] = source.booleans[j];
+      break;
+    default:
+      objects[i] = source.objects[j];
+    }
+  }
+
+  /** Returns the value at a given position as an object, of the class that
+   * the enumerable calling convention would use; for example an
+   * {@link Integer} for a column of type {@code INTEGER}. */
+  public Object get(int i) {
+    if (nulls[i]) {
+      return null;
+    }
+    switch (kind) {
+    case LONG:
+      final long v = longs[i];
+      switch (primitive) {
+      case BYTE:
+        return (byte) v;
+      case SHORT:
+        return (short) v;
+      case INT:
+        return (int) v;
+      default:
+        return v;
+      }
+    case DOUBLE:
+      final double d = doubles[i];
+      if (primitive == Primitive.FLOAT) {
+        return (float) d;
+      }
+      return d;
+    case BOOLEAN:
+      return booleans[i];
+    default:
+      return objects[i];
+    }
+  }
+
+  /** Returns the value at a given position as a {@code double}. The vector
+   * must be of kind {@link Kind#LONG} or {@link Kind#DOUBLE}. */
+  public double getDouble(int i) {
+    return kind == Kind.LONG ? longs[i] : doubles[i];
+  }
+
+  /** Narrows a {@code long} value to the range of this vector's primitive
+   * type, with the same overflow behavior as Java arithmetic. */
+  public long narrow(long v) {
+    switch (primitive) {
+    case BYTE:
+      return (byte) v;
+    case SHORT:
+      return (short) v;
+    case INT:
+      return (int) v;
+    default:
+      return v;
+    }
+  }
+
+  /** Converts a {@code double} value to this vector's primitive type, with the
+   * same behavior as a Java cast. */
+  public long narrowToLong(double d) {
+    switch (primitive) {
+    case BYTE:
+      return (byte) d;
+    case SHORT:
+      return (short) d;
+    case INT:
+      return (int) d;
+    default:
+      return (long) d;
+    }
+  }
+
+  /** Rounds a {@code double} value to the precision of this vector's primitive
+   * type. */
+  public double narrow(double d) {
+    return primitive == Primitive.FLOAT ? (float) d : d;
+  }
+
+  /** How the values of a vector are stored. */
+  public enum Kind {
+    BOOLEAN,
+    LONG,
+    DOUBLE,
+    OBJECT;
+
+    /** Returns whether values of this kind are numbers held in a primitive
+     * array. */
+    public boolean isNumeric() {
+      return this == LONG || this == DOUBLE;
+    }
+  }
+}
+
+// End ColumnVector.java
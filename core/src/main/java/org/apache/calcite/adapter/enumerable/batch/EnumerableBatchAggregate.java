@@ -0,0 +1,375 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementation of {@link org.apache.calcite.rel.core.Aggregate} in
+ * {@link EnumerableBatchConvention batch calling convention}.
+ *
+ * <p>Supports {@code COUNT}, {@code SUM}, {@code $SUM0}, {@code MIN} and
+ * {@code MAX} over numeric columns, without {@code DISTINCT} or
+ * {@code FILTER}, and only simple {@code GROUP BY}. Accumulators are held in
+ * primitive arrays indexed by group, and each aggregate function makes one
+ * pass over each batch.
+ */
+public class EnumerableBatchAggregate extends Aggregate
+    implements EnumerableBatchRel {
+  public EnumerableBatchAggregate(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, ImmutableBitSet groupSet,
+      List<ImmutableBitSet> groupSets, List<AggregateCall> aggCalls)
+      throws InvalidRelException {
+    super(cluster, traitSet, input, false, groupSet, groupSets, aggCalls);
+    assert getConvention() instanceof EnumerableBatchConvention;
+    if (getGroupType() != Group.SIMPLE) {
+      throw new InvalidRelException("grouping sets not supported");
+    }
+    for (AggregateCall aggCall : aggCalls) {
+      if (!canImplement(aggCall, input.getRowType())) {
+        throw new InvalidRelException("aggregation " + aggCall
+            + " not supported");
+      }
+    }
+  }
+
+  @Override public EnumerableBatchAggregate copy(RelTraitSet traitSet,
+      RelNode input, boolean indicator, ImmutableBitSet groupSet,
+      List<ImmutableBitSet> groupSets, List<AggregateCall> aggCalls) {
+    Preconditions.checkArgument(!indicator);
+    try {
+      return new EnumerableBatchAggregate(getCluster(), traitSet, input,
+          groupSet, groupSets, aggCalls);
+    } catch (InvalidRelException e) {
+      // Semantic error not possible. Must be a bug. Convert to
+      // internal error.
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return super.computeSelfCost(planner, mq)
+        .multiplyBy(EnumerableBatchConvention.COST_MULTIPLIER);
+  }
+
+  /** Returns whether an aggregate call can be evaluated over batches. */
+  static boolean canImplement(AggregateCall aggCall, RelDataType inputRowType) {
+    if (aggCall.isDistinct() || aggCall.filterArg >= 0) {
+      return false;
+    }
+    final Op op = Op.of(aggCall);
+    if (op == null) {
+      return false;
+    }
+    if (op == Op.COUNT) {
+      return aggCall.getArgList().size() <= 1;
+    }
+    if (aggCall.getArgList().size() != 1) {
+      return false;
+    }
+    final RelDataType argType = inputRowType.getFieldList()
+        .get(aggCall.getArgList().get(0)).getType();
+    final ColumnVector.Kind kind =
+        ColumnVector.kind(argType.getSqlTypeName());
+    if (!kind.isNumeric()
+        || kind != ColumnVector.kind(aggCall.getType().getSqlTypeName())) {
+      return false;
+    }
+    switch (op) {
+    case SUM:
+    case SUM0:
+      // A FLOAT or REAL sum would be rounded at each step by generated code,
+      // so we can only emulate it by summing in double if it is a double.
+      return kind == ColumnVector.Kind.LONG
+          || ColumnVector.primitive(argType.getSqlTypeName()) == Primitive.DOUBLE
+          && ColumnVector.primitive(aggCall.getType().getSqlTypeName())
+              == Primitive.DOUBLE;
+    default:
+      return true;
+    }
+  }
+
+  public BatchSource implement(BatchImplementor implementor) {
+    final BatchSource input = implementor.visitChild(getInput());
+    final int batchSize = implementor.batchSize;
+    return new BatchSource() {
+      private GroupTable table;
+      private int emitted;
+
+      public ColumnBatch next() {
+        if (table == null) {
+          table = new GroupTable(groupSet.toArray(), aggCalls);
+          for (;;) {
+            final ColumnBatch batch = input.next();
+            if (batch == null) {
+              break;
+            }
+            table.add(batch);
+          }
+        }
+        if (emitted >= table.groupCount) {
+          return null;
+        }
+        final int n = Math.min(batchSize, table.groupCount - emitted);
+        final ColumnVector[] vectors = Batches.newVectors(getRowType(), n);
+        table.emit(vectors, emitted, n);
+        emitted += n;
+        return ColumnBatch.of(vectors, n);
+      }
+
+      public void close() {
+        input.close();
+      }
+    };
+  }
+
+  /** Aggregate function. */
+  private enum Op {
+    COUNT, SUM, SUM0, MIN, MAX;
+
+    static Op of(AggregateCall aggCall) {
+      switch (aggCall.getAggregation().getKind()) {
+      case COUNT:
+        return COUNT;
+      case SUM:
+        return SUM;
+      case SUM0:
+        return SUM0;
+      case MIN:
+        return MIN;
+      case MAX:
+        return MAX;
+      default:
+        return null;
+      }
+    }
+  }
+
+  /** Hash table from group key to group number, and the accumulators of
+   * each group. */
+  private static class GroupTable {
+    private final int[] keys;
+    private final Accumulator[] accumulators;
+    private final Map<Object, Integer> map = new HashMap<>();
+    private final List<Object> groupKeys = new ArrayList<>();
+    int groupCount;
+
+    GroupTable(int[] keys, List<AggregateCall> aggCalls) {
+      this.keys = keys;
+      this.accumulators = new Accumulator[aggCalls.size()];
+      for (int i = 0; i < accumulators.length; i++) {
+        final AggregateCall aggCall = aggCalls.get(i);
+        accumulators[i] = new Accumulator(Op.of(aggCall),
+            aggCall.getArgList().isEmpty() ? -1 : aggCall.getArgList().get(0));
+      }
+      if (keys.length == 0) {
+        // With no GROUP BY, there is one group, even if there are no rows.
+        newGroup(null);
+      }
+    }
+
+    private int newGroup(Object key) {
+      final int group = groupCount++;
+      groupKeys.add(key);
+      for (Accumulator accumulator : accumulators) {
+        accumulator.ensureCapacity(groupCount);
+      }
+      return group;
+    }
+
+    void add(ColumnBatch batch) {
+      final int[] groups = new int[batch.size];
+      if (keys.length > 0) {
+        for (int j = 0; j < batch.size; j++) {
+          final Object key = key(batch, batch.position(j));
+          Integer group = map.get(key);
+          if (group == null) {
+            group = newGroup(key);
+            map.put(key, group);
+          }
+          groups[j] = group;
+        }
+      }
+      for (Accumulator accumulator : accumulators) {
+        accumulator.add(batch, groups);
+      }
+    }
+
+    private Object key(ColumnBatch batch, int i) {
+      if (keys.length == 1) {
+        return batch.vectors[keys[0]].get(i);
+      }
+      final Object[] values = new Object[keys.length];
+      for (int k = 0; k < keys.length; k++) {
+        values[k] = batch.vectors[keys[k]].get(i);
+      }
+      return Arrays.asList(values);
+    }
+
+    /** Writes {@code n} groups, starting at group {@code start}, to
+     * vectors. */
+    void emit(ColumnVector[] vectors, int start, int n) {
+      for (int k = 0; k < n; k++) {
+        final Object key = groupKeys.get(start + k);
+        if (keys.length == 1) {
+          vectors[0].set(k, key);
+        } else {
+          for (int j = 0; j < keys.length; j++) {
+            vectors[j].set(k, ((List) key).get(j));
+          }
+        }
+      }
+      for (int a = 0; a < accumulators.length; a++) {
+        accumulators[a].emit(vectors[keys.length + a], start, n);
+      }
+    }
+  }
+
+  /** Accumulator for one aggregate function, for all groups. */
+  private static class Accumulator {
+    private final Op op;
+    private final int arg;
+    /** Number of values (or, for {@code COUNT(*)}, rows) seen per group. */
+    private long[] counts = new long[16];
+    private long[] longs = new long[16];
+    private double[] doubles = new double[16];
+
+    Accumulator(Op op, int arg) {
+      this.op = op;
+      this.arg = arg;
+    }
+
+    void ensureCapacity(int groupCount) {
+      if (groupCount > counts.length) {
+        final int capacity = Math.max(groupCount, counts.length * 2);
+        counts = Arrays.copyOf(counts, capacity);
+        longs = Arrays.copyOf(longs, capacity);
+        doubles = Arrays.copyOf(doubles, capacity);
+      }
+    }
+
+    void add(ColumnBatch batch, int[] groups) {
+      final int[] sel = batch.selection;
+      final int n = batch.size;
+      if (arg < 0) {
+        for (int j = 0; j < n; j++) {
+          ++counts[groups[j]];
+        }
+        return;
+      }
+      final ColumnVector v = batch.vectors[arg];
+      final boolean[] nulls = v.nulls;
+      switch (op) {
+      case COUNT:
+        for (int j = 0; j < n; j++) {
+          if (!nulls[sel == null ? j : sel[j]]) {
+            ++counts[groups[j]];
+          }
+        }
+        break;
+      case SUM:
+      case SUM0:
+        if (v.kind == ColumnVector.Kind.LONG) {
+          final long[] values = v.longs;
+          for (int j = 0; j < n; j++) {
+            final int i = sel == null ? j : sel[j];
+            if (!nulls[i]) {
+              longs[groups[j]] += values[i];
+              ++counts[groups[j]];
+            }
+          }
+        } else {
+          final double[] values = v.doubles;
+          for (int j = 0; j < n; j++) {
+            final int i = sel == null ? j : sel[j];
+            if (!nulls[i]) {
+              doubles[groups[j]] += values[i];
+              ++counts[groups[j]];
+            }
+          }
+        }
+        break;
+      default:
+        final boolean min = op == Op.MIN;
+        if (v.kind == ColumnVector.Kind.LONG) {
+          final long[] values = v.longs;
+          for (int j = 0; j < n; j++) {
+            final int i = sel == null ? j : sel[j];
+            if (!nulls[i]) {
+              final int g = groups[j];
+              if (counts[g]++ == 0
+                  || (min ? values[i] < longs[g] : values[i] > longs[g])) {
+                longs[g] = values[i];
+              }
+            }
+          }
+        } else {
+          final double[] values = v.doubles;
+          for (int j = 0; j < n; j++) {
+            final int i = sel == null ? j : sel[j];
+            if (!nulls[i]) {
+              final int g = groups[j];
+              if (counts[g]++ == 0
+                  || (min ? values[i] < doubles[g] : values[i] > doubles[g])) {
+                doubles[g] = values[i];
+              }
+            }
+          }
+        }
+      }
+    }
+
+    /** Writes the results for {@code n} groups, starting at group
+     * {@code start}, to a vector. */
+    void emit(ColumnVector v, int start, int n) {
+      for (int k = 0; k < n; k++) {
+        final int g = start + k;
+        if (op == Op.COUNT) {
+          v.longs[k] = counts[g];
+        } else if (counts[g] == 0 && op != Op.SUM0) {
+          v.nulls[k] = true;
+        } else if (v.kind == ColumnVector.Kind.LONG) {
+          v.longs[k] = v.narrow(longs[g]);
+        } else {
+          v.doubles[k] = v.narrow(doubles[g]);
+        }
+      }
+    }
+  }
+}
+
+// End EnumerableBatchAggregate.java
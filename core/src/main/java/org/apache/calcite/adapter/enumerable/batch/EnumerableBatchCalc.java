@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Calc;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexLocalRef;
+import org.apache.calcite.rex.RexProgram;
+
+import java.util.List;
+
+/**
+ * Implementation of {@link org.apache.calcite.rel.core.Calc} in
+ * {@link EnumerableBatchConvention batch calling convention}.
+ *
+ * <p>The condition does not copy rows; it produces a batch with the same
+ * vectors as its input and a narrower selection. If the program only
+ * projects its input fields, unchanged and in order, that batch is the
+ * result.
+ */
+public class EnumerableBatchCalc extends Calc implements EnumerableBatchRel {
+  /** Creates an EnumerableBatchCalc.
+   *
+   * <p>Every expression in the program must be supported by
+   * {@link VectorExpression#of}; see
+   * {@link VectorExpression#canVectorize(RexProgram)}. */
+  public EnumerableBatchCalc(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RexProgram program) {
+    super(cluster, traitSet, input, program);
+    assert getConvention() instanceof EnumerableBatchConvention;
+    assert !program.containsAggs();
+  }
+
+  @Override public EnumerableBatchCalc copy(RelTraitSet traitSet,
+      RelNode child, RexProgram program) {
+    return new EnumerableBatchCalc(getCluster(), traitSet, child, program);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return super.computeSelfCost(planner, mq)
+        .multiplyBy(EnumerableBatchConvention.COST_MULTIPLIER);
+  }
+
+  public BatchSource implement(BatchImplementor implementor) {
+    final BatchSource input = implementor.visitChild(getInput());
+    final RexLocalRef condition = program.getCondition();
+    final VectorExpression conditionExp =
+        condition == null
+            ? null
+            : VectorExpression.of(program.expandLocalRef(condition));
+    final VectorExpression[] projectExps;
+    if (program.projectsOnlyIdentity()) {
+      projectExps = null;
+    } else {
+      final List<RexLocalRef> projects = program.getProjectList();
+      projectExps = new VectorExpression[projects.size()];
+      for (int i = 0; i < projectExps.length; i++) {
+        projectExps[i] =
+            VectorExpression.of(program.expandLocalRef(projects.get(i)));
+      }
+    }
+    return new BatchSource() {
+      public ColumnBatch next() {
+        ColumnBatch batch = input.next();
+        if (batch == null) {
+          return null;
+        }
+        if (conditionExp != null) {
+          batch = filter(batch, conditionExp);
+        }
+        if (projectExps != null) {
+          final ColumnVector[] vectors =
+              new ColumnVector[projectExps.length];
+          for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = projectExps[i].evaluate(batch);
+          }
+          batch = batch.withVectors(vectors);
+        }
+        return batch;
+      }
+
+      public void close() {
+        input.close();
+      }
+    };
+  }
+
+  /** Returns a batch that has the same vectors as a given batch, with only
+   * those rows for which a condition is TRUE. */
+  static ColumnBatch filter(ColumnBatch batch, VectorExpression condition) {
+    final ColumnVector v = condition.evaluate(batch);
+    final int[] selection = new int[batch.size];
+    int n = 0;
+    for (int j = 0; j < batch.size; j++) {
+      final int i = batch.position(j);
+      if (!v.nulls[i] && v.booleans[i]) {
+        selection[n++] = i;
+      }
+    }
+    return batch.withSelection(selection, n);
+  }
+}
+
+// End EnumerableBatchCalc.java
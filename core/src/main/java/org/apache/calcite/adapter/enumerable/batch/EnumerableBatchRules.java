@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.RelFactories;
+import org.apache.calcite.rel.logical.LogicalAggregate;
+import org.apache.calcite.rel.logical.LogicalCalc;
+import org.apache.calcite.rel.logical.LogicalFilter;
+import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.logical.LogicalTableScan;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexProgramBuilder;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rules and relational operators for
+ * {@link EnumerableBatchConvention batch calling convention}.
+ */
+public class EnumerableBatchRules {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(EnumerableBatchRules.class);
+
+  private EnumerableBatchRules() {}
+
+  public static final RelOptRule BATCH_TABLE_SCAN_RULE =
+      new EnumerableBatchTableScanRule();
+
+  public static final RelOptRule BATCH_FILTER_RULE =
+      new EnumerableBatchFilterRule();
+
+  public static final RelOptRule BATCH_PROJECT_RULE =
+      new EnumerableBatchProjectRule();
+
+  public static final RelOptRule BATCH_CALC_RULE =
+      new EnumerableBatchCalcRule();
+
+  public static final RelOptRule BATCH_AGGREGATE_RULE =
+      new EnumerableBatchAggregateRule();
+
+  public static final RelOptRule ENUMERABLE_TO_BATCH_RULE =
+      new EnumerableToBatchConverterRule();
+
+  public static final RelOptRule BATCH_TO_ENUMERABLE_RULE =
+      new EnumerableBatchToEnumerableConverterRule();
+
+  /** All rules for batch calling convention. */
+  public static final ImmutableList<RelOptRule> RULES =
+      ImmutableList.of(BATCH_TABLE_SCAN_RULE,
+          BATCH_FILTER_RULE,
+          BATCH_PROJECT_RULE,
+          BATCH_CALC_RULE,
+          BATCH_AGGREGATE_RULE,
+          ENUMERABLE_TO_BATCH_RULE,
+          BATCH_TO_ENUMERABLE_RULE);
+
+  /** Converts a relational expression's input to batch calling
+   * convention. */
+  private static RelNode convertInput(RelNode input) {
+    return RelOptRule.convert(input,
+        input.getTraitSet().replace(EnumerableBatchConvention.INSTANCE));
+  }
+
+  /** Creates an {@link EnumerableBatchCalc}, or returns null if the program
+   * cannot be evaluated over batches. */
+  private static RelNode createCalc(RelNode input, RexProgram program) {
+    if (!VectorExpression.canVectorize(program)) {
+      return null;
+    }
+    return new EnumerableBatchCalc(input.getCluster(),
+        input.getCluster().traitSetOf(EnumerableBatchConvention.INSTANCE),
+        convertInput(input), program);
+  }
+
+  /** Rule that converts a {@link LogicalTableScan} to
+   * {@link EnumerableBatchConvention batch calling convention}. */
+  private static class EnumerableBatchTableScanRule extends ConverterRule {
+    EnumerableBatchTableScanRule() {
+      super(LogicalTableScan.class, Convention.NONE,
+          EnumerableBatchConvention.INSTANCE, "EnumerableBatchTableScanRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalTableScan scan = (LogicalTableScan) rel;
+      if (!EnumerableBatchTableScan.canHandle(scan.getTable())) {
+        return null;
+      }
+      return EnumerableBatchTableScan.create(scan.getCluster(),
+          scan.getTable());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalFilter} to an
+   * {@link EnumerableBatchCalc}. */
+  private static class EnumerableBatchFilterRule extends ConverterRule {
+    EnumerableBatchFilterRule() {
+      super(LogicalFilter.class, RelOptUtil.FILTER_PREDICATE, Convention.NONE,
+          EnumerableBatchConvention.INSTANCE, RelFactories.LOGICAL_BUILDER,
+          "EnumerableBatchFilterRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalFilter filter = (LogicalFilter) rel;
+      final RelNode input = filter.getInput();
+      final RexProgramBuilder programBuilder =
+          new RexProgramBuilder(input.getRowType(),
+              filter.getCluster().getRexBuilder());
+      programBuilder.addIdentity();
+      programBuilder.addCondition(filter.getCondition());
+      return createCalc(input, programBuilder.getProgram());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalProject} to an
+   * {@link EnumerableBatchCalc}. */
+  private static class EnumerableBatchProjectRule extends ConverterRule {
+    EnumerableBatchProjectRule() {
+      super(LogicalProject.class, RelOptUtil.PROJECT_PREDICATE,
+          Convention.NONE, EnumerableBatchConvention.INSTANCE,
+          RelFactories.LOGICAL_BUILDER, "EnumerableBatchProjectRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalProject project = (LogicalProject) rel;
+      final RelNode input = project.getInput();
+      final RexProgram program =
+          RexProgram.create(input.getRowType(), project.getProjects(), null,
+              project.getRowType(), project.getCluster().getRexBuilder());
+      return createCalc(input, program);
+    }
+  }
+
+  /** Rule that converts a {@link LogicalCalc} to an
+   * {@link EnumerableBatchCalc}. */
+  private static class EnumerableBatchCalcRule extends ConverterRule {
+    EnumerableBatchCalcRule() {
+      super(LogicalCalc.class, RelOptUtil.CALC_PREDICATE, Convention.NONE,
+          EnumerableBatchConvention.INSTANCE, RelFactories.LOGICAL_BUILDER,
+          "EnumerableBatchCalcRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalCalc calc = (LogicalCalc) rel;
+      return createCalc(calc.getInput(), calc.getProgram());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalAggregate} to an
+   * {@link EnumerableBatchAggregate}. */
+  private static class EnumerableBatchAggregateRule extends ConverterRule {
+    EnumerableBatchAggregateRule() {
+      super(LogicalAggregate.class, Convention.NONE,
+          EnumerableBatchConvention.INSTANCE, "EnumerableBatchAggregateRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalAggregate agg = (LogicalAggregate) rel;
+      if (agg.indicator) {
+        return null;
+      }
+      final RelTraitSet traitSet =
+          agg.getTraitSet().replace(EnumerableBatchConvention.INSTANCE);
+      try {
+        return new EnumerableBatchAggregate(rel.getCluster(), traitSet,
+            convertInput(agg.getInput()), agg.getGroupSet(),
+            agg.getGroupSets(), agg.getAggCallList());
+      } catch (InvalidRelException e) {
+        LOGGER.debug(e.toString());
+        return null;
+      }
+    }
+  }
+
+  /** Rule that converts an enumerable relational expression to batch
+   * calling convention. */
+  private static class EnumerableToBatchConverterRule extends ConverterRule {
+    private static final Predicate<EnumerableRel> NOT_FROM_BATCH =
+        new Predicate<EnumerableRel>() {
+          public boolean apply(EnumerableRel rel) {
+            // Converting back would achieve nothing
+            return !(rel instanceof EnumerableBatchToEnumerableConverter);
+          }
+        };
+
+    EnumerableToBatchConverterRule() {
+      super(EnumerableRel.class, NOT_FROM_BATCH,
+          EnumerableConvention.INSTANCE, EnumerableBatchConvention.INSTANCE,
+          RelFactories.LOGICAL_BUILDER, "EnumerableToBatchConverterRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      return new EnumerableToBatchConverter(rel.getCluster(),
+          rel.getTraitSet().replace(EnumerableBatchConvention.INSTANCE), rel);
+    }
+  }
+
+  /** Rule that converts a relational expression in batch calling
+   * convention to enumerable calling convention. */
+  private static class EnumerableBatchToEnumerableConverterRule
+      extends ConverterRule {
+    private static final Predicate<EnumerableBatchRel> NOT_FROM_ENUMERABLE =
+        new Predicate<EnumerableBatchRel>() {
+          public boolean apply(EnumerableBatchRel rel) {
+            return !(rel instanceof EnumerableToBatchConverter);
+          }
+        };
+
+    EnumerableBatchToEnumerableConverterRule() {
+      super(EnumerableBatchRel.class, NOT_FROM_ENUMERABLE,
+          EnumerableBatchConvention.INSTANCE, EnumerableConvention.INSTANCE,
+          RelFactories.LOGICAL_BUILDER,
+          "EnumerableBatchToEnumerableConverterRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final CalciteConnectionConfig config =
+          rel.getCluster().getPlanner().getContext()
+              .unwrap(CalciteConnectionConfig.class);
+      final int batchSize = config == null || config.batchSize() <= 0
+          ? EnumerableBatchConvention.DEFAULT_BATCH_SIZE
+          : config.batchSize();
+      return new EnumerableBatchToEnumerableConverter(rel.getCluster(),
+          rel.getTraitSet().replace(EnumerableConvention.INSTANCE), rel,
+          batchSize);
+    }
+  }
+}
+
+// End EnumerableBatchRules.java
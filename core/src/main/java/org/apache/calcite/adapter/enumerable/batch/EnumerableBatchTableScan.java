@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.schema.ScannableTable;
+
+import java.util.List;
+
+/**
+ * Implementation of {@link org.apache.calcite.rel.core.TableScan} in
+ * {@link EnumerableBatchConvention batch calling convention}.
+ *
+ * <p>If the table implements {@link BatchScannableTable}, it fills the
+ * batches directly; otherwise it must implement {@link ScannableTable}, and
+ * its rows are copied into batches.
+ */
+public class EnumerableBatchTableScan extends TableScan
+    implements EnumerableBatchRel {
+  /** Creates an EnumerableBatchTableScan.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public EnumerableBatchTableScan(RelOptCluster cluster, RelTraitSet traitSet,
+      RelOptTable table) {
+    super(cluster, traitSet, table);
+    assert getConvention() instanceof EnumerableBatchConvention;
+  }
+
+  /** Creates an EnumerableBatchTableScan. */
+  public static EnumerableBatchTableScan create(RelOptCluster cluster,
+      RelOptTable relOptTable) {
+    final RelTraitSet traitSet =
+        cluster.traitSetOf(EnumerableBatchConvention.INSTANCE);
+    return new EnumerableBatchTableScan(cluster, traitSet, relOptTable);
+  }
+
+  /** Returns whether a table can be scanned in batch calling convention. */
+  public static boolean canHandle(RelOptTable table) {
+    return table.unwrap(ScannableTable.class) != null;
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    assert inputs.isEmpty();
+    return new EnumerableBatchTableScan(getCluster(), traitSet, table);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return super.computeSelfCost(planner, mq)
+        .multiplyBy(EnumerableBatchConvention.COST_MULTIPLIER);
+  }
+
+  public BatchSource implement(BatchImplementor implementor) {
+    final BatchScannableTable batchScannableTable =
+        table.unwrap(BatchScannableTable.class);
+    if (batchScannableTable != null) {
+      return batchScannableTable.scanBatches(implementor.root, getRowType(),
+          implementor.batchSize);
+    }
+    final ScannableTable scannableTable = table.unwrap(ScannableTable.class);
+    return Batches.fromRows(
+        scannableTable.scan(implementor.root).enumerator(), getRowType(),
+        implementor.batchSize);
+  }
+}
+
+// End EnumerableBatchTableScan.java
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.adapter.enumerable.JavaRowFormat;
+import org.apache.calcite.adapter.enumerable.PhysType;
+import org.apache.calcite.adapter.enumerable.PhysTypeImpl;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.util.BuiltInMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Relational expression that converts an input in
+ * {@link EnumerableBatchConvention batch calling convention} to
+ * {@link EnumerableConvention enumerable calling convention}.
+ *
+ * <p>The generated code creates a {@link BatchEnumerable}, passing it the
+ * enumerable inputs of the batch tree.
+ */
+public class EnumerableBatchToEnumerableConverter extends ConverterImpl
+    implements EnumerableRel {
+  /** Maximum number of rows in each batch. */
+  public final int batchSize;
+
+  protected EnumerableBatchToEnumerableConverter(RelOptCluster cluster,
+      RelTraitSet traits, RelNode input, int batchSize) {
+    super(cluster, ConventionTraitDef.INSTANCE, traits, input);
+    this.batchSize = batchSize;
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new EnumerableBatchToEnumerableConverter(getCluster(), traitSet,
+        sole(inputs), batchSize);
+  }
+
+  @Override public RelWriter explainTerms(RelWriter pw) {
+    return super.explainTerms(pw)
+        .item("batchSize", batchSize);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return super.computeSelfCost(planner, mq)
+        .multiplyBy(EnumerableBatchConvention.COST_MULTIPLIER);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+    final BlockBuilder builder = new BlockBuilder();
+    final List<Expression> inputs = new ArrayList<>();
+    for (EnumerableToBatchConverter converter
+        : Batches.converters(getInput())) {
+      final EnumerableRel input = (EnumerableRel) converter.getInput();
+      final Result result =
+          implementor.visitChild(null, 0, input, Prefer.ARRAY);
+      final Expression input_ =
+          builder.append("input", result.block);
+      // Inputs must produce Object[], even if they have only one field.
+      final PhysType arrayPhysType =
+          PhysTypeImpl.of(typeFactory, input.getRowType(), JavaRowFormat.ARRAY,
+              false);
+      inputs.add(result.physType.convertTo(input_, arrayPhysType));
+    }
+    final PhysType physType =
+        PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY);
+    final Expression enumerable_ = builder.append("batches",
+        Expressions.new_(BatchEnumerable.class,
+            implementor.getRootExpression(),
+            implementor.stash(getInput(), RelNode.class),
+            Expressions.constant(batchSize),
+            Expressions.newArrayInit(Enumerable.class, inputs)));
+    final Expression sliced_ =
+        getRowType().getFieldCount() == 1
+            ? Expressions.call(BuiltInMethod.SLICE0.method, enumerable_)
+            : enumerable_;
+    builder.add(sliced_);
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End EnumerableBatchToEnumerableConverter.java
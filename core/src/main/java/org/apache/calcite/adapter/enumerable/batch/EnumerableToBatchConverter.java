@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterImpl;
+
+import java.util.List;
+
+/**
+ * Relational expression that converts an input in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable
+ * calling convention} to
+ * {@link EnumerableBatchConvention batch calling convention}.
+ *
+ * <p>Code for the input is generated as part of the enclosing
+ * {@link EnumerableBatchToEnumerableConverter}; at execution time, this
+ * converter copies the rows it produces into batches.
+ */
+public class EnumerableToBatchConverter extends ConverterImpl
+    implements EnumerableBatchRel {
+  protected EnumerableToBatchConverter(RelOptCluster cluster,
+      RelTraitSet traits, RelNode input) {
+    super(cluster, ConventionTraitDef.INSTANCE, traits, input);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new EnumerableToBatchConverter(getCluster(), traitSet,
+        sole(inputs));
+  }
+
+  public BatchSource implement(BatchImplementor implementor) {
+    return Batches.fromRows(implementor.getInput(this).enumerator(),
+        getRowType(), implementor.batchSize);
+  }
+}
+
+// End EnumerableToBatchConverter.java
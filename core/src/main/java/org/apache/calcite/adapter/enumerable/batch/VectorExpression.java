@@ -0,0 +1,671 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable.batch;
+
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexLocalRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.sql.type.SqlTypeUtil;
+
+import com.google.common.collect.ImmutableList;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Expression that is evaluated over a {@link ColumnBatch}, producing a
+ * {@link ColumnVector}.
+ *
+ * <p>Only a subset of row expressions can be evaluated over batches:
+ * input references, literals, arithmetic and comparison operators,
+ * {@code AND}, {@code OR}, {@code NOT}, {@code IS [NOT] NULL} and casts
+ * between numeric types. Call {@link #of(RexNode)} to find out whether an
+ * expression is supported.
+ *
+ * <p>{@code AND} and {@code OR} only evaluate their second and subsequent
+ * operands for rows whose outcome is not yet known, as the
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable
+ * calling convention} would. So, for example,
+ * {@code x <> 0 AND 10 / x > 1} does not divide by zero.
+ */
+public abstract class VectorExpression {
+  /** Type of the result of this expression. */
+  protected final RelDataType type;
+
+  protected VectorExpression(RelDataType type) {
+    this.type = type;
+  }
+
+  /** Evaluates this expression for some of the rows of a batch.
+   *
+   * <p>The result vector has {@code batch.rowCount} positions; only those
+   * positions that are evaluated have defined values. The result may be one
+   * of the batch's vectors, so callers must not modify it.
+   *
+   * @param batch Batch
+   * @param sel Positions to evaluate, or null to evaluate positions
+   *            0 .. {@code n - 1}
+   * @param n Number of positions to evaluate
+   */
+  public abstract ColumnVector evaluate(ColumnBatch batch, int[] sel, int n);
+
+  /** Evaluates this expression for the rows that are present in a batch. */
+  public ColumnVector evaluate(ColumnBatch batch) {
+    return evaluate(batch, batch.selection, batch.size);
+  }
+
+  /** Creates an empty vector of this expression's type. */
+  protected ColumnVector newVector(ColumnBatch batch) {
+    return ColumnVector.of(type, batch.rowCount);
+  }
+
+  /** Creates an expression that evaluates a row expression over batches,
+   * or returns null if the row expression cannot be evaluated over
+   * batches. */
+  public static VectorExpression of(RexNode node) {
+    switch (node.getKind()) {
+    case INPUT_REF:
+      return new InputRef(node.getType(), ((RexInputRef) node).getIndex());
+    case LITERAL:
+      return literal((RexLiteral) node);
+    case PLUS:
+    case MINUS:
+    case TIMES:
+    case DIVIDE:
+      return arithmetic((RexCall) node);
+    case MINUS_PREFIX:
+      return negate((RexCall) node);
+    case PLUS_PREFIX:
+      return of(((RexCall) node).getOperands().get(0));
+    case EQUALS:
+    case NOT_EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      return comparison((RexCall) node);
+    case AND:
+    case OR:
+      return logical((RexCall) node);
+    case NOT:
+      return not((RexCall) node);
+    case IS_NULL:
+    case IS_NOT_NULL:
+      return isNull((RexCall) node);
+    case CAST:
+      return cast((RexCall) node);
+    default:
+      return null;
+    }
+  }
+
+  /** Returns whether every expression in a program can be evaluated over
+   * batches. */
+  public static boolean canVectorize(RexProgram program) {
+    if (program.getCondition() != null
+        && of(program.expandLocalRef(program.getCondition())) == null) {
+      return false;
+    }
+    for (RexLocalRef project : program.getProjectList()) {
+      if (of(program.expandLocalRef(project)) == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<VectorExpression> operands(RexCall call) {
+    final List<VectorExpression> list = new ArrayList<>();
+    for (RexNode operand : call.getOperands()) {
+      final VectorExpression e = of(operand);
+      if (e == null) {
+        return null;
+      }
+      list.add(e);
+    }
+    return list;
+  }
+
+  private static ColumnVector.Kind kind(RexNode node) {
+    return ColumnVector.kind(node.getType().getSqlTypeName());
+  }
+
+  private static VectorExpression literal(RexLiteral literal) {
+    final RelDataType type = literal.getType();
+    if (literal.getValue() == null) {
+      return new Literal(type, null);
+    }
+    switch (kind(literal)) {
+    case LONG:
+      return new Literal(type,
+          literal.getValueAs(BigDecimal.class).longValue());
+    case DOUBLE:
+      return new Literal(type,
+          literal.getValueAs(BigDecimal.class).doubleValue());
+    case BOOLEAN:
+      return new Literal(type, literal.getValueAs(Boolean.class));
+    default:
+      if (SqlTypeUtil.inCharFamily(type)) {
+        return new Literal(type, literal.getValueAs(String.class));
+      }
+      return null;
+    }
+  }
+
+  private static VectorExpression arithmetic(RexCall call) {
+    final List<VectorExpression> operands = operands(call);
+    if (operands == null
+        || operands.size() != 2
+        || !kind(call).isNumeric()) {
+      return null;
+    }
+    for (RexNode operand : call.getOperands()) {
+      // A LONG result requires LONG operands; a DOUBLE result allows either
+      if (!kind(operand).isNumeric()
+          || kind(call) == ColumnVector.Kind.LONG
+          && kind(operand) != ColumnVector.Kind.LONG) {
+        return null;
+      }
+    }
+    return new Arithmetic(call.getType(), call.getKind(), operands.get(0),
+        operands.get(1));
+  }
+
+  private static VectorExpression negate(RexCall call) {
+    final List<VectorExpression> operands = operands(call);
+    if (operands == null
+        || !kind(call).isNumeric()
+        || kind(call) != kind(call.getOperands().get(0))) {
+      return null;
+    }
+    return new Negate(call.getType(), operands.get(0));
+  }
+
+  private static VectorExpression comparison(RexCall call) {
+    final List<VectorExpression> operands = operands(call);
+    if (operands == null || operands.size() != 2) {
+      return null;
+    }
+    final RexNode left = call.getOperands().get(0);
+    final RexNode right = call.getOperands().get(1);
+    final ColumnVector.Kind leftKind = kind(left);
+    final ColumnVector.Kind rightKind = kind(right);
+    if (leftKind.isNumeric() && rightKind.isNumeric()
+        || leftKind == ColumnVector.Kind.BOOLEAN
+            && rightKind == ColumnVector.Kind.BOOLEAN) {
+      // ok
+    } else if (leftKind == ColumnVector.Kind.OBJECT
+        && rightKind == ColumnVector.Kind.OBJECT
+        && isComparable(left.getType(), right.getType())) {
+      // Values are Comparable of the same class
+    } else {
+      return null;
+    }
+    return new Comparison(call.getType(), call.getKind(), operands.get(0),
+        operands.get(1));
+  }
+
+  /** Returns whether values of two types are held as objects of the same
+   * {@link Comparable} class, so that comparing them using
+   * {@link Comparable#compareTo} gives the same result as the enumerable
+   * calling convention. */
+  private static boolean isComparable(RelDataType left, RelDataType right) {
+    if (SqlTypeUtil.inCharFamily(left)
+        && SqlTypeUtil.inCharFamily(right)
+        && (left.getSqlTypeName() == SqlTypeName.VARCHAR
+            || right.getSqlTypeName() == SqlTypeName.VARCHAR)) {
+      // Generated code compares VARCHAR with CHAR values without padding
+      return true;
+    }
+    if (left.getSqlTypeName() != right.getSqlTypeName()) {
+      return false;
+    }
+    switch (left.getSqlTypeName()) {
+    case CHAR:
+      // Values of different length would need padding
+      return left.getPrecision() == right.getPrecision();
+    case VARCHAR:
+    case DECIMAL:
+    case DATE:
+    case TIME:
+    case TIMESTAMP:
+    case BINARY:
+    case VARBINARY:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private static VectorExpression logical(RexCall call) {
+    final List<VectorExpression> operands = operands(call);
+    if (operands == null) {
+      return null;
+    }
+    for (RexNode operand : call.getOperands()) {
+      if (kind(operand) != ColumnVector.Kind.BOOLEAN) {
+        return null;
+      }
+    }
+    return new Logical(call.getType(), call.getKind() == SqlKind.AND,
+        operands);
+  }
+
+  private static VectorExpression not(RexCall call) {
+    final List<VectorExpression> operands = operands(call);
+    if (operands == null
+        || kind(call.getOperands().get(0)) != ColumnVector.Kind.BOOLEAN) {
+      return null;
+    }
+    return new Not(call.getType(), operands.get(0));
+  }
+
+  private static VectorExpression isNull(RexCall call) {
+    final List<VectorExpression> operands = operands(call);
+    if (operands == null) {
+      return null;
+    }
+    return new IsNull(call.getType(), operands.get(0),
+        call.getKind() == SqlKind.IS_NOT_NULL);
+  }
+
+  private static VectorExpression cast(RexCall call) {
+    final List<VectorExpression> operands = operands(call);
+    if (operands == null) {
+      return null;
+    }
+    final RexNode operand = call.getOperands().get(0);
+    final ColumnVector.Kind fromKind = kind(operand);
+    final ColumnVector.Kind toKind = kind(call);
+    if (fromKind.isNumeric() && toKind.isNumeric()) {
+      return new Cast(call.getType(), operands.get(0));
+    }
+    if (fromKind == toKind
+        && operand.getType().getSqlTypeName()
+            == call.getType().getSqlTypeName()
+        && (toKind == ColumnVector.Kind.BOOLEAN
+            || operand.getType().getPrecision()
+                == call.getType().getPrecision()
+            && operand.getType().getScale() == call.getType().getScale())) {
+      // Cast that only changes nullability
+      return operands.get(0);
+    }
+    return null;
+  }
+
+  /** Reference to a column of the batch. */
+  private static class InputRef extends VectorExpression {
+    private final int index;
+
+    InputRef(RelDataType type, int index) {
+      super(type);
+      this.index = index;
+    }
+
+    public ColumnVector evaluate(ColumnBatch batch, int[] sel, int n) {
+      return batch.vectors[index];
+    }
+  }
+
+  /** Literal value. */
+  private static class Literal extends VectorExpression {
+    private final Object value;
+
+    Literal(RelDataType type, Object value) {
+      super(type);
+      this.value = value;
+    }
+
+    public ColumnVector evaluate(ColumnBatch batch, int[] sel, int n) {
+      final ColumnVector v = newVector(batch);
+      for (int j = 0; j < n; j++) {
+        v.set(sel == null ? j : sel[j], value);
+      }
+      return v;
+    }
+  }
+
+  /** Binary arithmetic operator: {@code +}, {@code -}, {@code *} or
+   * {@code /}. The result is computed in {@code long} or {@code double}
+   * and then narrowed to the result type, which gives the same answer as
+   * Java arithmetic in the narrower type. */
+  private static class Arithmetic extends VectorExpression {
+    private final SqlKind op;
+    private final VectorExpression left;
+    private final VectorExpression right;
+
+    Arithmetic(RelDataType type, SqlKind op, VectorExpression left,
+        VectorExpression right) {
+      super(type);
+      this.op = op;
+      this.left = left;
+      this.right = right;
+    }
+
+    public ColumnVector evaluate(ColumnBatch batch, int[] sel, int n) {
+      final ColumnVector l = left.evaluate(batch, sel, n);
+      final ColumnVector r = right.evaluate(batch, sel, n);
+      final ColumnVector v = newVector(batch);
+      if (v.kind == ColumnVector.Kind.LONG) {
+        for (int j = 0; j < n; j++) {
+          final int i = sel == null ? j : sel[j];
+          if (l.nulls[i] || r.nulls[i]) {
+            v.nulls[i] = true;
+            continue;
+          }
+          v.longs[i] = v.narrow(apply(l.longs[i], r.longs[i]));
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel == null ? j : sel[j];
+          if (l.nulls[i] || r.nulls[i]) {
+            v.nulls[i] = true;
+            continue;
+          }
+          v.doubles[i] = v.narrow(apply(l.getDouble(i), r.getDouble(i)));
+        }
+      }
+      return v;
+    }
+
+    private long apply(long a, long b) {
+      switch (op) {
+      case PLUS:
+        return a + b;
+      case MINUS:
+        return a - b;
+      case TIMES:
+        return a * b;
+      default:
+        return a / b;
+      }
+    }
+
+    private double apply(double a, double b) {
+      switch (op) {
+      case PLUS:
+        return a + b;
+      case MINUS:
+        return a - b;
+      case TIMES:
+        return a * b;
+      default:
+        return a / b;
+      }
+    }
+  }
+
+  /** Unary minus. */
+  private static class Negate extends VectorExpression {
+    private final VectorExpression operand;
+
+    Negate(RelDataType type, VectorExpression operand) {
+      super(type);
+      this.operand = operand;
+    }
+
+    public ColumnVector evaluate(ColumnBatch batch, int[] sel, int n) {
+      final ColumnVector o = operand.evaluate(batch, sel, n);
+      final ColumnVector v = newVector(batch);
+      for (int j = 0; j < n; j++) {
+        final int i = sel == null ? j : sel[j];
+        if (o.nulls[i]) {
+          v.nulls[i] = true;
+        } else if (v.kind == ColumnVector.Kind.LONG) {
+          v.longs[i] = v.narrow(-o.longs[i]);
+        } else {
+          v.doubles[i] = -o.doubles[i];
+        }
+      }
+      return v;
+    }
+  }
+
+  /** Comparison operator. */
+  private static class Comparison extends VectorExpression {
+    private final SqlKind op;
+    private final VectorExpression left;
+    private final VectorExpression right;
+
+    Comparison(RelDataType type, SqlKind op, VectorExpression left,
+        VectorExpression right) {
+      super(type);
+      this.op = op;
+      this.left = left;
+      this.right = right;
+    }
+
+    public ColumnVector evaluate(ColumnBatch batch, int[] sel, int n) {
+      final ColumnVector l = left.evaluate(batch, sel, n);
+      final ColumnVector r = right.evaluate(batch, sel, n);
+      final ColumnVector v = newVector(batch);
+      if (l.kind == ColumnVector.Kind.LONG
+          && r.kind == ColumnVector.Kind.LONG) {
+        for (int j = 0; j < n; j++) {
+          final int i = sel == null ? j : sel[j];
+          if (l.nulls[i] || r.nulls[i]) {
+            v.nulls[i] = true;
+            continue;
+          }
+          final long a = l.longs[i];
+          final long b = r.longs[i];
+          v.booleans[i] = test(a < b ? -1 : a == b ? 0 : 1);
+        }
+      } else if (l.kind.isNumeric()) {
+        for (int j = 0; j < n; j++) {
+          final int i = sel == null ? j : sel[j];
+          if (l.nulls[i] || r.nulls[i]) {
+            v.nulls[i] = true;
+            continue;
+          }
+          v.booleans[i] = test(l.getDouble(i), r.getDouble(i));
+        }
+      } else if (l.kind == ColumnVector.Kind.BOOLEAN) {
+        for (int j = 0; j < n; j++) {
+          final int i = sel == null ? j : sel[j];
+          if (l.nulls[i] || r.nulls[i]) {
+            v.nulls[i] = true;
+            continue;
+          }
+          v.booleans[i] = test(Boolean.compare(l.booleans[i], r.booleans[i]));
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          final int i = sel == null ? j : sel[j];
+          if (l.nulls[i] || r.nulls[i]) {
+            v.nulls[i] = true;
+            continue;
+          }
+          @SuppressWarnings("unchecked")
+          final Comparable<Object> a = (Comparable<Object>) l.objects[i];
+          v.booleans[i] = test(a.compareTo(r.objects[i]));
+        }
+      }
+      return v;
+    }
+
+    private boolean test(int c) {
+      switch (op) {
+      case EQUALS:
+        return c == 0;
+      case NOT_EQUALS:
+        return c != 0;
+      case LESS_THAN:
+        return c < 0;
+      case LESS_THAN_OR_EQUAL:
+        return c <= 0;
+      case GREATER_THAN:
+        return c > 0;
+      default:
+        return c >= 0;
+      }
+    }
+
+    /** Compares two {@code double} values using Java operators, so that
+     * comparisons involving NaN behave as in generated code. */
+    private boolean test(double a, double b) {
+      switch (op) {
+      case EQUALS:
+        return a == b;
+      case NOT_EQUALS:
+        return a != b;
+      case LESS_THAN:
+        return a < b;
+      case LESS_THAN_OR_EQUAL:
+        return a <= b;
+      case GREATER_THAN:
+        return a > b;
+      default:
+        return a >= b;
+      }
+    }
+  }
+
+  /** {@code AND} or {@code OR}, with three-valued logic. Each operand after
+   * the first is evaluated only for rows whose result is not yet known. */
+  private static class Logical extends VectorExpression {
+    private final boolean and;
+    private final ImmutableList<VectorExpression> operands;
+
+    Logical(RelDataType type, boolean and, List<VectorExpression> operands) {
+      super(type);
+      this.and = and;
+      this.operands = ImmutableList.copyOf(operands);
+    }
+
+    public ColumnVector evaluate(ColumnBatch batch, int[] sel, int n) {
+      // Copy the first operand, because we will modify the result.
+      final ColumnVector first = operands.get(0).evaluate(batch, sel, n);
+      final ColumnVector v = newVector(batch);
+      for (int j = 0; j < n; j++) {
+        final int i = sel == null ? j : sel[j];
+        v.copy(i, first, i);
+      }
+      int[] pending = new int[n];
+      for (VectorExpression operand : operands.subList(1, operands.size())) {
+        // Positions whose result is not yet decided: for AND, those that are
+        // not FALSE; for OR, those that are not TRUE.
+        int m = 0;
+        for (int j = 0; j < n; j++) {
+          final int i = sel == null ? j : sel[j];
+          if (v.nulls[i] || v.booleans[i] == and) {
+            pending[m++] = i;
+          }
+        }
+        if (m == 0) {
+          break;
+        }
+        final ColumnVector o = operand.evaluate(batch, pending, m);
+        for (int k = 0; k < m; k++) {
+          final int i = pending[k];
+          if (o.nulls[i]) {
+            v.nulls[i] = true;
+          } else if (o.booleans[i] != and) {
+            // AND with FALSE is FALSE; OR with TRUE is TRUE
+            v.nulls[i] = false;
+            v.booleans[i] = !and;
+          }
+        }
+      }
+      return v;
+    }
+  }
+
+  /** {@code NOT}. */
+  private static class Not extends VectorExpression {
+    private final VectorExpression operand;
+
+    Not(RelDataType type, VectorExpression operand) {
+      super(type);
+      this.operand = operand;
+    }
+
+    public ColumnVector evaluate(ColumnBatch batch, int[] sel, int n) {
+      final ColumnVector o = operand.evaluate(batch, sel, n);
+      final ColumnVector v = newVector(batch);
+      for (int j = 0; j < n; j++) {
+        final int i = sel == null ? j : sel[j];
+        v.nulls[i] = o.nulls[i];
+        v.booleans[i] = !o.booleans[i];
+      }
+      return v;
+    }
+  }
+
+  /** {@code IS NULL} or {@code IS NOT NULL}. */
+  private static class IsNull extends VectorExpression {
+    private final VectorExpression operand;
+    private final boolean negate;
+
+    IsNull(RelDataType type, VectorExpression operand, boolean negate) {
+      super(type);
+      this.operand = operand;
+      this.negate = negate;
+    }
+
+    public ColumnVector evaluate(ColumnBatch batch, int[] sel, int n) {
+      final ColumnVector o = operand.evaluate(batch, sel, n);
+      final ColumnVector v = newVector(batch);
+      for (int j = 0; j < n; j++) {
+        final int i = sel == null ? j : sel[j];
+        v.booleans[i] = o.nulls[i] != negate;
+      }
+      return v;
+    }
+  }
+
+  /** Cast from one numeric type to another. */
+  private static class Cast extends VectorExpression {
+    private final VectorExpression operand;
+
+    Cast(RelDataType type, VectorExpression operand) {
+      super(type);
+      this.operand = operand;
+    }
+
+    public ColumnVector evaluate(ColumnBatch batch, int[] sel, int n) {
+      final ColumnVector o = operand.evaluate(batch, sel, n);
+      final ColumnVector v = newVector(batch);
+      for (int j = 0; j < n; j++) {
+        final int i = sel == null ? j : sel[j];
+        if (o.nulls[i]) {
+          v.nulls[i] = true;
+        } else if (v.kind == ColumnVector.Kind.LONG) {
+          v.longs[i] = o.kind == ColumnVector.Kind.LONG
+              ? v.narrow(o.longs[i])
+              : v.narrowToLong(o.doubles[i]);
+        } else if (o.kind == ColumnVector.Kind.LONG
+            && o.primitive != Primitive.LONG) {
+          v.doubles[i] = v.narrow((double) o.longs[i]);
+        } else {
+          v.doubles[i] = v.narrow(o.getDouble(i));
+        }
+      }
+      return v;
+    }
+  }
+}
+
+// End VectorExpression.java
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.util.Util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File that holds the metadata of the tables in a {@link JdbcSchema}, so
+ * that a process that restarts can read the metadata from the file rather
+ * than from the database.
+ *
+ * <p>The file records the catalog and schema pattern from which the tables
+ * were read, and the time at which they were read; a file written for a
+ * different catalog or schema, or in a different format, is ignored.
+ */
+class JdbcMetadataFile {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(JdbcMetadataFile.class);
+
+  /** Version of the format of the file. Increase it if the format changes;
+   * files written in other formats are ignored. */
+  private static final Integer FORMAT_VERSION = 1;
+
+  private final File file;
+
+  JdbcMetadataFile(File file) {
+    this.file = Preconditions.checkNotNull(file);
+  }
+
+  /** Reads the file. Returns null if it does not exist, was written in a
+   * different format, describes a different catalog or schema, or cannot be
+   * read; the caller then reads the metadata from the database. */
+  @SuppressWarnings("unchecked")
+  Contents read(String catalog, String schema) {
+    if (!file.exists()) {
+      return null;
+    }
+    try (ObjectInputStream in =
+             new ObjectInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+      final List<Object> list = (List<Object>) in.readObject();
+      if (!FORMAT_VERSION.equals(list.get(0))
+          || !list.get(1).equals(Util.first(catalog, ""))
+          || !list.get(2).equals(Util.first(schema, ""))) {
+        return null;
+      }
+      return new Contents((Long) list.get(3),
+          (List<TableInfo>) list.get(4));
+    } catch (IOException | ClassNotFoundException | ClassCastException
+        | IndexOutOfBoundsException e) {
+      // Truncated, or written by an incompatible version; ignore it. It will
+      // be overwritten when the metadata has been read from the database.
+      LOGGER.warn("Cannot read JDBC metadata file " + file
+          + "; reading metadata from the database", e);
+      return null;
+    }
+  }
+
+  /** Writes the file. Writes to a temporary file first, so that a partially
+   * written file is never read. */
+  void write(String catalog, String schema, long time,
+      List<TableInfo> tables) {
+    final File tempFile = new File(file.getPath() + ".tmp");
+    try {
+      final File directory = file.getAbsoluteFile().getParentFile();
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("cannot create directory " + directory);
+      }
+      try (ObjectOutputStream out =
+               new ObjectOutputStream(
+                   new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        // Null is not allowed in an immutable list, so store a null catalog
+        // or schema as the empty string.
+        out.writeObject(
+            ImmutableList.<Object>of(FORMAT_VERSION, Util.first(catalog, ""),
+                Util.first(schema, ""), time, new ArrayList<>(tables)));
+      }
+      Files.move(tempFile.toPath(), file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new RuntimeException("while writing metadata file " + file, e);
+    }
+  }
+
+  /** Contents of a metadata file. */
+  static class Contents {
+    /** Time, in milliseconds since the epoch, at which the metadata was read
+     * from the database. */
+    final long time;
+    final List<TableInfo> tables;
+
+    Contents(long time, List<TableInfo> tables) {
+      this.time = time;
+      this.tables = ImmutableList.copyOf(tables);
+    }
+  }
+
+  /** Description of a table. */
+  static class TableInfo implements Serializable {
+    final String catalogName;
+    final String schemaName;
+    final String tableName;
+    /** Name of a {@link org.apache.calcite.schema.Schema.TableType}. */
+    final String tableType;
+    /** Columns, or null if they were not read. */
+    final ArrayList<JdbcSchema.ColumnInfo> columns;
+
+    TableInfo(String catalogName, String schemaName, String tableName,
+        String tableType, List<JdbcSchema.ColumnInfo> columns) {
+      this.catalogName = catalogName;
+      this.schemaName = schemaName;
+      this.tableName = tableName;
+      this.tableType = tableType;
+      this.columns = columns == null ? null : new ArrayList<>(columns);
+    }
+  }
+}
+
+// End JdbcMetadataFile.java
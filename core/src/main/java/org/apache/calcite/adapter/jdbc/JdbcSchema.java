@@ -39,20 +39,35 @@
 import org.apache.calcite.util.Util;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.sql.DataSource;
 
 /**
@@ -63,13 +78,40 @@
  * as much as possible of the query logic to SQL.</p>
  */
 public class JdbcSchema implements Schema {
+  /** Number of partitions in which to scan a table that has a partition
+   * column, if the schema does not specify. */
+  public static final int DEFAULT_PARTITION_COUNT = 4;
+
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(JdbcSchema.class);
+
   final DataSource dataSource;
   final String catalog;
   final String schema;
   public final SqlDialect dialect;
   final JdbcConvention convention;
-  private ImmutableMap<String, JdbcTable> tableMap;
+  /** Number of rows to fetch at a time, or null to use the connection's
+   * {@link org.apache.calcite.config.CalciteConnectionConfig#jdbcFetchSize()}. */
+  final Integer fetchSize;
+  /** Whether to fetch rows incrementally, or null to use the connection's
+   * {@link org.apache.calcite.config.CalciteConnectionConfig#jdbcStreaming()}. */
+  final Boolean streaming;
+  /** Columns by which to partition scans of tables, keyed by table name. */
+  final ImmutableMap<String, String> partitionColumns;
+  /** Number of partitions in which to scan a table that has a partition
+   * column. */
+  final int partitionCount;
+  final MetadataOptions metadataOptions;
+  private volatile ImmutableMap<String, JdbcTable> tableMap;
+  /** Time, in milliseconds since the epoch, at which {@link #tableMap} was
+   * read from the database. */
+  private volatile long tableMapTime;
   private final boolean snapshot;
+  /** Whether a background refresh of {@link #tableMap} is in progress. */
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  /** Executor that reads metadata in the background; null if the options
+   * do not require one. */
+  private final ExecutorService executor;
 
   /**
    * Creates a JDBC schema.
@@ -82,11 +124,55 @@ public class JdbcSchema implements Schema {
    */
   public JdbcSchema(DataSource dataSource, SqlDialect dialect,
       JdbcConvention convention, String catalog, String schema) {
-    this(dataSource, dialect, convention, catalog, schema, null);
+    this(dataSource, dialect, convention, catalog, schema, null, null,
+        ImmutableMap.<String, String>of(), null, MetadataOptions.DEFAULT);
+  }
+
+  /**
+   * Creates a JDBC schema, specifying how rows are fetched.
+   *
+   * @param dataSource Data source
+   * @param dialect SQL dialect
+   * @param convention Calling convention
+   * @param catalog Catalog name, or null
+   * @param schema Schema name pattern
+   * @param fetchSize Number of rows to fetch from the database at a time,
+   *                  or null to use the connection's default
+   * @param streaming Whether to fetch rows incrementally, or null to use the
+   *                  connection's default
+   * @param partitionColumns Columns by which to partition scans of tables,
+   *                  keyed by table name
+   * @param partitionCount Number of partitions in which to scan a table that
+   *                  has a partition column, or null to use
+   *                  {@link #DEFAULT_PARTITION_COUNT}
+   * @param metadataOptions How to read the metadata of tables
+   */
+  public JdbcSchema(DataSource dataSource, SqlDialect dialect,
+      JdbcConvention convention, String catalog, String schema,
+      Integer fetchSize, Boolean streaming,
+      Map<String, String> partitionColumns, Integer partitionCount,
+      MetadataOptions metadataOptions) {
+    this(dataSource, dialect, convention, catalog, schema, fetchSize,
+        streaming, ImmutableMap.copyOf(partitionColumns),
+        partitionCount == null ? DEFAULT_PARTITION_COUNT : partitionCount,
+        metadataOptions, null);
+    if (metadataOptions.threads > 0) {
+      // Start reading the list of tables now, so that it is likely to be
+      // ready by the time that the first query needs it.
+      executor.submit(
+          new Runnable() {
+            public void run() {
+              loadTableMap(false);
+            }
+          });
+    }
   }
 
   private JdbcSchema(DataSource dataSource, SqlDialect dialect,
       JdbcConvention convention, String catalog, String schema,
+      Integer fetchSize, Boolean streaming,
+      ImmutableMap<String, String> partitionColumns, int partitionCount,
+      MetadataOptions metadataOptions,
       ImmutableMap<String, JdbcTable> tableMap) {
     super();
     this.dataSource = Preconditions.checkNotNull(dataSource);
@@ -94,8 +180,19 @@ private JdbcSchema(DataSource dataSource, SqlDialect dialect,
     this.convention = convention;
     this.catalog = catalog;
     this.schema = schema;
+    this.fetchSize = fetchSize;
+    this.streaming = streaming;
+    this.partitionColumns = Preconditions.checkNotNull(partitionColumns);
+    this.partitionCount = partitionCount;
+    this.metadataOptions = Preconditions.checkNotNull(metadataOptions);
     this.tableMap = tableMap;
     this.snapshot = tableMap != null;
+    this.executor = !snapshot
+        && (metadataOptions.ttl > 0
+            || metadataOptions.threads > 0
+            || metadataOptions.file != null)
+        ? createExecutor(metadataOptions.threads)
+        : null;
   }
 
   public static JdbcSchema create(
@@ -115,12 +212,31 @@ public static JdbcSchema create(
       SqlDialectFactory dialectFactory,
       String catalog,
       String schema) {
+    return create(parentSchema, name, dataSource, dialectFactory, catalog,
+        schema, null, null, ImmutableMap.<String, String>of(), null,
+        MetadataOptions.DEFAULT);
+  }
+
+  public static JdbcSchema create(
+      SchemaPlus parentSchema,
+      String name,
+      DataSource dataSource,
+      SqlDialectFactory dialectFactory,
+      String catalog,
+      String schema,
+      Integer fetchSize,
+      Boolean streaming,
+      Map<String, String> partitionColumns,
+      Integer partitionCount,
+      MetadataOptions metadataOptions) {
     final Expression expression =
         Schemas.subSchemaExpression(parentSchema, name, JdbcSchema.class);
     final SqlDialect dialect = createDialect(dialectFactory, dataSource);
     final JdbcConvention convention =
         JdbcConvention.of(dialect, expression, name);
-    return new JdbcSchema(dataSource, dialect, convention, catalog, schema);
+    return new JdbcSchema(dataSource, dialect, convention, catalog, schema,
+        fetchSize, streaming, partitionColumns, partitionCount,
+        metadataOptions);
   }
 
   /**
@@ -154,16 +270,34 @@ public static JdbcSchema create(
     String jdbcCatalog = (String) operand.get("jdbcCatalog");
     String jdbcSchema = (String) operand.get("jdbcSchema");
     String sqlDialectFactory = (String) operand.get("sqlDialectFactory");
-
+    final Number fetchSize = (Number) operand.get("fetchSize");
+    final Boolean streaming = (Boolean) operand.get("streaming");
+    @SuppressWarnings("unchecked")
+    final Map<String, String> partitionColumns =
+        (Map<String, String>) operand.get("partitionColumns");
+    final Number partitionCount = (Number) operand.get("partitionCount");
+    final Number metadataTtl = (Number) operand.get("metadataTtl");
+    final Number metadataThreads = (Number) operand.get("metadataThreads");
+    final String metadataFile = (String) operand.get("metadataFile");
+
+    final SqlDialectFactory factory;
     if (sqlDialectFactory == null || sqlDialectFactory.isEmpty()) {
-      return JdbcSchema.create(
-          parentSchema, name, dataSource, jdbcCatalog, jdbcSchema);
+      factory = SqlDialectFactoryImpl.INSTANCE;
     } else {
-      SqlDialectFactory factory = AvaticaUtils.instantiatePlugin(
+      factory = AvaticaUtils.instantiatePlugin(
           SqlDialectFactory.class, sqlDialectFactory);
-      return JdbcSchema.create(
-          parentSchema, name, dataSource, factory, jdbcCatalog, jdbcSchema);
     }
+    return JdbcSchema.create(parentSchema, name, dataSource, factory,
+        jdbcCatalog, jdbcSchema,
+        fetchSize == null ? null : fetchSize.intValue(), streaming,
+        partitionColumns == null
+            ? ImmutableMap.<String, String>of()
+            : partitionColumns,
+        partitionCount == null ? null : partitionCount.intValue(),
+        new MetadataOptions(
+            metadataTtl == null ? 0L : metadataTtl.longValue(),
+            metadataThreads == null ? 0 : metadataThreads.intValue(),
+            metadataFile == null ? null : new File(metadataFile)));
   }
 
   /**
@@ -201,7 +335,8 @@ public boolean isMutable() {
 
   public Schema snapshot(SchemaVersion version) {
     return new JdbcSchema(dataSource, dialect, convention, catalog, schema,
-        tableMap);
+        fetchSize, streaming, partitionColumns, partitionCount,
+        metadataOptions, tableMap);
   }
 
   // Used by generated code.
@@ -226,7 +361,22 @@ public final Set<String> getFunctionNames() {
     return getFunctions().keySet();
   }
 
-  private ImmutableMap<String, JdbcTable> computeTables() {
+  private ImmutableMap<String, JdbcTable> toTableMap(
+      List<JdbcMetadataFile.TableInfo> tables) {
+    final ImmutableMap.Builder<String, JdbcTable> builder =
+        ImmutableMap.builder();
+    for (JdbcMetadataFile.TableInfo tableInfo : tables) {
+      builder.put(tableInfo.tableName,
+          new JdbcTable(this, tableInfo.catalogName, tableInfo.schemaName,
+              tableInfo.tableName,
+              Util.enumVal(TableType.OTHER, tableInfo.tableType),
+              tableInfo.columns));
+    }
+    return builder.build();
+  }
+
+  /** Reads the list of tables from the database. */
+  private List<JdbcMetadataFile.TableInfo> readTables() {
     Connection connection = null;
     ResultSet resultSet = null;
     try {
@@ -237,8 +387,7 @@ private ImmutableMap<String, JdbcTable> computeTables() {
           schema,
           null,
           null);
-      final ImmutableMap.Builder<String, JdbcTable> builder =
-          ImmutableMap.builder();
+      final List<JdbcMetadataFile.TableInfo> tables = new ArrayList<>();
       while (resultSet.next()) {
         final String tableName = resultSet.getString(3);
         final String catalogName = resultSet.getString(1);
@@ -262,11 +411,11 @@ private ImmutableMap<String, JdbcTable> computeTables() {
         if (tableType == TableType.OTHER  && tableTypeName2 != null) {
           System.out.println("Unknown table type: " + tableTypeName2);
         }
-        final JdbcTable table =
-            new JdbcTable(this, catalogName, schemaName, tableName, tableType);
-        builder.put(tableName, table);
+        tables.add(
+            new JdbcMetadataFile.TableInfo(catalogName, schemaName, tableName,
+                tableType.name(), null));
       }
-      return builder.build();
+      return tables;
     } catch (SQLException e) {
       throw new RuntimeException(
           "Exception while reading tables", e);
@@ -279,37 +428,147 @@ public Table getTable(String name) {
     return getTableMap(false).get(name);
   }
 
-  private synchronized ImmutableMap<String, JdbcTable> getTableMap(
-      boolean force) {
-    if (force || tableMap == null) {
-      tableMap = computeTables();
+  /** Returns the tables in this schema, reading them if they have not been
+   * read, or if {@code force}.
+   *
+   * <p>If the tables were read longer ago than the time-to-live in the
+   * {@link MetadataOptions}, returns them anyway, but starts to read them
+   * again in the background. */
+  private ImmutableMap<String, JdbcTable> getTableMap(boolean force) {
+    final ImmutableMap<String, JdbcTable> tableMap = this.tableMap;
+    if (tableMap == null || force) {
+      return loadTableMap(force);
+    }
+    if (!snapshot
+        && metadataOptions.ttl > 0
+        && System.currentTimeMillis() - tableMapTime > metadataOptions.ttl
+        && refreshing.compareAndSet(false, true)) {
+      executor.submit(
+          new Runnable() {
+            public void run() {
+              try {
+                loadTableMap(true);
+              } catch (RuntimeException e) {
+                // Keep the stale tables; try again when they are next used
+                LOGGER.warn("Failed to refresh JDBC metadata", e);
+              } finally {
+                refreshing.set(false);
+              }
+            }
+          });
     }
     return tableMap;
   }
 
-  RelProtoDataType getRelDataType(String catalogName, String schemaName,
+  /** Reads the tables, if they have not been read, or if {@code force}.
+   *
+   * <p>The first time, uses the metadata file, if there is one and it has not
+   * expired. Otherwise reads from the database, and then, if the options
+   * say so, reads the columns of each table and writes the metadata file in
+   * the background. */
+  private synchronized ImmutableMap<String, JdbcTable> loadTableMap(
+      boolean force) {
+    if (this.tableMap != null && !force) {
+      return this.tableMap;
+    }
+    if (this.tableMap == null && metadataOptions.file != null) {
+      final JdbcMetadataFile.Contents contents =
+          new JdbcMetadataFile(metadataOptions.file).read(catalog, schema);
+      if (contents != null
+          && (metadataOptions.ttl <= 0
+              || System.currentTimeMillis() - contents.time
+                  <= metadataOptions.ttl)) {
+        this.tableMapTime = contents.time;
+        this.tableMap = toTableMap(contents.tables);
+        return this.tableMap;
+      }
+    }
+    final long time = System.currentTimeMillis();
+    final ImmutableMap<String, JdbcTable> tables = toTableMap(readTables());
+    this.tableMapTime = time;
+    this.tableMap = tables;
+    if (!snapshot
+        && (metadataOptions.threads > 0 || metadataOptions.file != null)) {
+      prefetch(tables, time);
+    }
+    return tables;
+  }
+
+  /** Reads the columns of each table in the background, and when all have
+   * been read, writes the metadata file, if there is one. */
+  private void prefetch(final ImmutableMap<String, JdbcTable> tableMap,
+      final long time) {
+    final AtomicInteger remaining = new AtomicInteger(tableMap.size());
+    for (final JdbcTable table : tableMap.values()) {
+      executor.submit(
+          new Runnable() {
+            public void run() {
+              try {
+                table.columns();
+              } catch (RuntimeException e) {
+                // Ignore. The same error will occur, and be reported, when a
+                // query uses the table.
+              }
+              if (remaining.decrementAndGet() == 0
+                  && metadataOptions.file != null) {
+                try {
+                  writeMetadataFile(tableMap, time);
+                } catch (RuntimeException e) {
+                  // Nothing reads the result of this task, so log the error
+                  LOGGER.warn("Failed to write JDBC metadata file "
+                      + metadataOptions.file, e);
+                }
+              }
+            }
+          });
+    }
+  }
+
+  private void writeMetadataFile(ImmutableMap<String, JdbcTable> tableMap,
+      long time) {
+    final List<JdbcMetadataFile.TableInfo> tables = new ArrayList<>();
+    for (JdbcTable table : tableMap.values()) {
+      tables.add(table.tableInfo());
+    }
+    new JdbcMetadataFile(metadataOptions.file)
+        .write(catalog, schema, time, tables);
+  }
+
+  /** Creates an executor to read metadata in the background. It starts
+   * threads only when it has work, and they end when they have been idle for
+   * a while. */
+  private static ExecutorService createExecutor(int threads) {
+    final int threadCount = Math.max(1, threads);
+    final ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(threadCount, threadCount, 60L,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("jdbc-metadata-%d")
+                .build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /** Reads the columns of a table from the database. */
+  ImmutableList<ColumnInfo> getColumns(String catalogName, String schemaName,
       String tableName) throws SQLException {
     Connection connection = null;
     try {
       connection = dataSource.getConnection();
       DatabaseMetaData metaData = connection.getMetaData();
-      return getRelDataType(metaData, catalogName, schemaName, tableName);
+      return getColumns(metaData, catalogName, schemaName, tableName);
     } finally {
       close(connection, null, null);
     }
   }
 
-  RelProtoDataType getRelDataType(DatabaseMetaData metaData, String catalogName,
-      String schemaName, String tableName) throws SQLException {
+  ImmutableList<ColumnInfo> getColumns(DatabaseMetaData metaData,
+      String catalogName, String schemaName, String tableName)
+      throws SQLException {
     final ResultSet resultSet =
         metaData.getColumns(catalogName, schemaName, tableName, null);
-
-    // Temporary type factory, just for the duration of this method. Allowable
-    // because we're creating a proto-type, not a type; before being used, the
-    // proto-type will be copied into a real type factory.
-    final RelDataTypeFactory typeFactory =
-        new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
-    final RelDataTypeFactory.Builder fieldInfo = typeFactory.builder();
+    final ImmutableList.Builder<ColumnInfo> columns = ImmutableList.builder();
     while (resultSet.next()) {
       final String columnName = resultSet.getString(4);
       final int dataType = resultSet.getInt(5);
@@ -327,12 +586,29 @@ RelProtoDataType getRelDataType(DatabaseMetaData metaData, String catalogName,
         scale = resultSet.getInt(9); // SCALE
         break;
       }
-      RelDataType sqlType =
-          sqlType(typeFactory, dataType, precision, scale, typeString);
       boolean nullable = resultSet.getInt(11) != DatabaseMetaData.columnNoNulls;
-      fieldInfo.add(columnName, sqlType).nullable(nullable);
+      columns.add(
+          new ColumnInfo(columnName, dataType, typeString, precision, scale,
+              nullable));
     }
     resultSet.close();
+    return columns.build();
+  }
+
+  /** Converts the columns of a table to a row type. */
+  RelProtoDataType getRelDataType(List<ColumnInfo> columns) {
+    // Temporary type factory, just for the duration of this method. Allowable
+    // because we're creating a proto-type, not a type; before being used, the
+    // proto-type will be copied into a real type factory.
+    final RelDataTypeFactory typeFactory =
+        new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataTypeFactory.Builder fieldInfo = typeFactory.builder();
+    for (ColumnInfo column : columns) {
+      RelDataType sqlType =
+          sqlType(typeFactory, column.dataType, column.precision,
+              column.scale, column.typeString);
+      fieldInfo.add(column.name, sqlType).nullable(column.nullable);
+    }
     return RelDataTypeImpl.proto(fieldInfo.build());
   }
 
@@ -406,8 +682,9 @@ private RelDataType parseTypeString(RelDataTypeFactory typeFactory,
 
   public Set<String> getTableNames() {
     // This method is called during a cache refresh. We can take it as a signal
-    // that we need to re-build our own cache.
-    return getTableMap(!snapshot).keySet();
+    // that we need to re-build our own cache; unless there is a time-to-live,
+    // in which case getTableMap refreshes when it has expired.
+    return getTableMap(!snapshot && metadataOptions.ttl <= 0).keySet();
   }
 
   public Schema getSubSchema(String name) {
@@ -444,6 +721,58 @@ private static void close(
     }
   }
 
+  /** Options that control how a {@link JdbcSchema} reads the metadata of its
+   * tables. */
+  public static class MetadataOptions {
+    /** Options that read the list of tables when it is first needed and each
+     * time that the schema is refreshed, and the columns of each table when
+     * they are first needed. */
+    public static final MetadataOptions DEFAULT =
+        new MetadataOptions(0L, 0, null);
+
+    /** Number of milliseconds after which the list of tables and their
+     * columns are read again, in the background; or 0 to read the list of
+     * tables each time that the schema is refreshed. */
+    public final long ttl;
+
+    /** Number of threads that read metadata in the background, or 0 to read
+     * the columns of each table only when it is first used. */
+    public final int threads;
+
+    /** File in which to store the metadata, so that a process that restarts
+     * does not need to read it from the database; or null. */
+    public final File file;
+
+    public MetadataOptions(long ttl, int threads, File file) {
+      Preconditions.checkArgument(ttl >= 0, "ttl must be non-negative");
+      Preconditions.checkArgument(threads >= 0,
+          "threads must be non-negative");
+      this.ttl = ttl;
+      this.threads = threads;
+      this.file = file;
+    }
+  }
+
+  /** Definition of a column, as read from JDBC metadata. */
+  static class ColumnInfo implements Serializable {
+    final String name;
+    final int dataType;
+    final String typeString;
+    final int precision;
+    final int scale;
+    final boolean nullable;
+
+    ColumnInfo(String name, int dataType, String typeString, int precision,
+        int scale, boolean nullable) {
+      this.name = name;
+      this.dataType = dataType;
+      this.typeString = typeString;
+      this.precision = precision;
+      this.scale = scale;
+      this.nullable = nullable;
+    }
+  }
+
   /** Schema factory that creates a
    * {@link org.apache.calcite.adapter.jdbc.JdbcSchema}.
    *
@@ -20,11 +20,15 @@
 import org.apache.calcite.adapter.java.AbstractQueryableTable;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.ColumnMetaData;
+import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.plan.Convention;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptTable;
@@ -38,6 +42,7 @@
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rel.type.RelProtoDataType;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.ParallelEnumerables;
 import org.apache.calcite.runtime.ResultSetEnumerable;
 import org.apache.calcite.schema.ModifiableTable;
 import org.apache.calcite.schema.ScannableTable;
@@ -45,9 +50,12 @@
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.TranslatableTable;
 import org.apache.calcite.schema.impl.AbstractTableQueryable;
+import org.apache.calcite.sql.SqlDynamicParam;
 import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.SqlNodeList;
 import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.parser.SqlParserPos;
 import org.apache.calcite.sql.pretty.SqlPrettyWriter;
 import org.apache.calcite.sql.util.SqlString;
@@ -56,9 +64,20 @@
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -76,21 +95,25 @@
  */
 public class JdbcTable extends AbstractQueryableTable
     implements TranslatableTable, ScannableTable, ModifiableTable {
-  private RelProtoDataType protoRowType;
-  private final JdbcSchema jdbcSchema;
+  /** Columns of the table; null until they have been read. */
+  private volatile ImmutableList<JdbcSchema.ColumnInfo> columns;
+  private volatile RelProtoDataType protoRowType;
+  final JdbcSchema jdbcSchema;
   private final String jdbcCatalogName;
   private final String jdbcSchemaName;
   private final String jdbcTableName;
   private final Schema.TableType jdbcTableType;
 
   JdbcTable(JdbcSchema jdbcSchema, String jdbcCatalogName,
-      String jdbcSchemaName, String tableName, Schema.TableType jdbcTableType) {
+      String jdbcSchemaName, String tableName, Schema.TableType jdbcTableType,
+      List<JdbcSchema.ColumnInfo> columns) {
     super(Object[].class);
     this.jdbcSchema = jdbcSchema;
     this.jdbcCatalogName = jdbcCatalogName;
     this.jdbcSchemaName = jdbcSchemaName;
     this.jdbcTableName = tableName;
     this.jdbcTableType = Preconditions.checkNotNull(jdbcTableType);
+    this.columns = columns == null ? null : ImmutableList.copyOf(columns);
   }
 
   public String toString() {
@@ -102,25 +125,47 @@ public String toString() {
   }
 
   public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+    return protoRowType().apply(typeFactory);
+  }
+
+  private RelProtoDataType protoRowType() {
+    RelProtoDataType protoRowType = this.protoRowType;
     if (protoRowType == null) {
+      protoRowType = jdbcSchema.getRelDataType(columns());
+      this.protoRowType = protoRowType;
+    }
+    return protoRowType;
+  }
+
+  /** Returns the columns of this table, reading them from the database if
+   * they have not been read. */
+  ImmutableList<JdbcSchema.ColumnInfo> columns() {
+    ImmutableList<JdbcSchema.ColumnInfo> columns = this.columns;
+    if (columns == null) {
       try {
-        protoRowType =
-            jdbcSchema.getRelDataType(
-                jdbcCatalogName,
-                jdbcSchemaName,
+        columns =
+            jdbcSchema.getColumns(jdbcCatalogName, jdbcSchemaName,
                 jdbcTableName);
       } catch (SQLException e) {
         throw new RuntimeException(
             "Exception while reading definition of table '" + jdbcTableName
                 + "'", e);
       }
+      this.columns = columns;
     }
-    return protoRowType.apply(typeFactory);
+    return columns;
+  }
+
+  /** Returns a description of this table, including its columns if they have
+   * been read, to be stored in a metadata file. */
+  JdbcMetadataFile.TableInfo tableInfo() {
+    return new JdbcMetadataFile.TableInfo(jdbcCatalogName, jdbcSchemaName,
+        jdbcTableName, jdbcTableType.name(), columns);
   }
 
   private List<Pair<ColumnMetaData.Rep, Integer>> fieldClasses(
       final JavaTypeFactory typeFactory) {
-    final RelDataType rowType = protoRowType.apply(typeFactory);
+    final RelDataType rowType = protoRowType().apply(typeFactory);
     return Lists.transform(rowType.getFieldList(),
         new Function<RelDataTypeField, Pair<ColumnMetaData.Rep, Integer>>() {
           public Pair<ColumnMetaData.Rep, Integer> apply(RelDataTypeField f) {
@@ -135,18 +180,26 @@ public Pair<ColumnMetaData.Rep, Integer> apply(RelDataTypeField f) {
   }
 
   SqlString generateSql() {
-    final SqlNodeList selectList =
-        new SqlNodeList(
-            Collections.singletonList(SqlIdentifier.star(SqlParserPos.ZERO)),
-            SqlParserPos.ZERO);
+    return generateSql(starList(), null);
+  }
+
+  /** Generates a query on this table with a given select list and WHERE
+   * clause. */
+  private SqlString generateSql(SqlNodeList selectList, SqlNode where) {
     SqlSelect node =
         new SqlSelect(SqlParserPos.ZERO, SqlNodeList.EMPTY, selectList,
-            tableName(), null, null, null, null, null, null, null);
+            tableName(), where, null, null, null, null, null, null);
     final SqlPrettyWriter writer = new SqlPrettyWriter(jdbcSchema.dialect);
     node.unparse(writer, 0, 0);
     return writer.toSqlString();
   }
 
+  private static SqlNodeList starList() {
+    return new SqlNodeList(
+        Collections.singletonList(SqlIdentifier.star(SqlParserPos.ZERO)),
+        SqlParserPos.ZERO);
+  }
+
   SqlIdentifier tableName() {
     final List<String> strings = new ArrayList<>();
     if (jdbcSchema.catalog != null) {
@@ -172,9 +225,240 @@ public <T> Queryable<T> asQueryable(QueryProvider queryProvider,
 
   public Enumerable<Object[]> scan(DataContext root) {
     final JavaTypeFactory typeFactory = root.getTypeFactory();
+    return enumerable(typeFactory, config(root.getQueryProvider()));
+  }
+
+  /** Returns the configuration of the connection that is executing a query,
+   * or null if it is not a Calcite connection. */
+  private static CalciteConnectionConfig config(QueryProvider queryProvider) {
+    return queryProvider instanceof CalciteConnection
+        ? ((CalciteConnection) queryProvider).config()
+        : null;
+  }
+
+  /** Returns an enumerable that reads all rows of this table.
+   *
+   * <p>If the schema has a partition column for this table, reads ranges of
+   * values of that column in parallel, each on its own connection, using the
+   * same fetch size and streaming options as a query pushed down to JDBC. */
+  private Enumerable<Object[]> enumerable(JavaTypeFactory typeFactory,
+      final CalciteConnectionConfig config) {
+    final Function1<ResultSet, Function0<Object[]>> rowBuilderFactory =
+        JdbcUtils.ObjectArrayRowBuilder.factory(fieldClasses(typeFactory));
+    final String partitionColumn = partitionColumn();
     final SqlString sql = generateSql();
-    return ResultSetEnumerable.of(jdbcSchema.getDataSource(), sql.getSql(),
-        JdbcUtils.ObjectArrayRowBuilder.factory(fieldClasses(typeFactory)));
+    if (partitionColumn == null) {
+      return ResultSetEnumerable.of(jdbcSchema.getDataSource(), sql.getSql(),
+          rowBuilderFactory);
+    }
+    final SqlIdentifier identifier =
+        new SqlIdentifier(partitionColumn, SqlParserPos.ZERO);
+    final SqlNode lower =
+        SqlStdOperatorTable.GREATER_THAN_OR_EQUAL.createCall(
+            SqlParserPos.ZERO, identifier,
+            new SqlDynamicParam(0, SqlParserPos.ZERO));
+    final SqlNode firstUpper =
+        SqlStdOperatorTable.LESS_THAN.createCall(SqlParserPos.ZERO,
+            identifier, new SqlDynamicParam(0, SqlParserPos.ZERO));
+    final SqlNode upper =
+        SqlStdOperatorTable.LESS_THAN.createCall(SqlParserPos.ZERO,
+            identifier, new SqlDynamicParam(1, SqlParserPos.ZERO));
+    final SqlNode first =
+        SqlStdOperatorTable.OR.createCall(SqlParserPos.ZERO, firstUpper,
+            SqlStdOperatorTable.IS_NULL.createCall(SqlParserPos.ZERO,
+                identifier));
+    final SqlNode middle =
+        SqlStdOperatorTable.AND.createCall(SqlParserPos.ZERO, lower, upper);
+    final Pair<Integer, Boolean> fetch =
+        JdbcToEnumerableConverter.fetchOptions(
+            ImmutableList.of(jdbcSchema), jdbcSchema.dialect, config);
+    return partitionedEnumerable(sql.getSql(),
+        generateSql(starList(), first).getSql(),
+        generateSql(starList(), middle).getSql(),
+        generateSql(starList(), lower).getSql(),
+        rowBuilderFactory, fetch.left, fetch.right);
+  }
+
+  /** Returns the column by which to partition scans of this table, or null
+   * if scans are not partitioned. */
+  String partitionColumn() {
+    return jdbcSchema.partitionCount > 1
+        ? jdbcSchema.partitionColumns.get(jdbcTableName)
+        : null;
+  }
+
+  /** Returns the name of this table in the JDBC schema. */
+  String jdbcTableName() {
+    return jdbcTableName;
+  }
+
+  /** Returns an enumerable that runs a query on this table as several
+   * queries, each reading a range of values of the partition column, in
+   * parallel, each on its own connection.
+   *
+   * <p>Used by scans of this table, and by code generated by
+   * {@link JdbcToEnumerableConverter} for a query that scans, filters and
+   * projects this table.
+   *
+   * @param sql Query, to be run as is if the column cannot be partitioned
+   * @param firstSql Query that reads the rows whose value is less than
+   *                 parameter 1, or null
+   * @param middleSql Query that reads the rows whose value is at least
+   *                  parameter 1 and less than parameter 2
+   * @param lastSql Query that reads the rows whose value is at least
+   *                parameter 1
+   * @param rowBuilderFactory Converts JDBC column values into rows
+   * @param fetchSize Number of rows to fetch at a time, or 0
+   * @param streaming Whether to turn off auto-commit while reading
+   */
+  public <T> Enumerable<T> partitionedEnumerable(final String sql,
+      final String firstSql, final String middleSql, final String lastSql,
+      final Function1<ResultSet, Function0<T>> rowBuilderFactory,
+      final int fetchSize, final boolean streaming) {
+    final SqlIdentifier identifier =
+        new SqlIdentifier(partitionColumn(), SqlParserPos.ZERO);
+    return new AbstractEnumerable<T>() {
+      public Enumerator<T> enumerator() {
+        // Read the range of the column each time, because it may have
+        // changed since the last scan.
+        final List<Object> bounds = partitionBounds(identifier);
+        final List<Enumerable<T>> enumerables = new ArrayList<>();
+        if (bounds.isEmpty()) {
+          enumerables.add(
+              query(sql, ImmutableList.of(), rowBuilderFactory, fetchSize,
+                  streaming));
+        }
+        for (int i = 0; i < bounds.size(); i++) {
+          enumerables.add(
+              i == 0
+                  ? query(firstSql, ImmutableList.of(bounds.get(i)),
+                      rowBuilderFactory, fetchSize, streaming)
+                  : query(middleSql,
+                      ImmutableList.of(bounds.get(i - 1), bounds.get(i)),
+                      rowBuilderFactory, fetchSize, streaming));
+        }
+        if (!bounds.isEmpty()) {
+          enumerables.add(
+              query(lastSql, ImmutableList.of(Util.last(bounds)),
+                  rowBuilderFactory, fetchSize, streaming));
+        }
+        return ParallelEnumerables.merge(enumerables).enumerator();
+      }
+    };
+  }
+
+  /** Returns an enumerable that runs a query with the given parameter
+   * values. */
+  private <T> Enumerable<T> query(String sql, final List<Object> values,
+      Function1<ResultSet, Function0<T>> rowBuilderFactory, int fetchSize,
+      boolean streaming) {
+    return ResultSetEnumerable.of(jdbcSchema.getDataSource(), sql,
+        rowBuilderFactory,
+        new ResultSetEnumerable.PreparedStatementEnricher() {
+          public void enrich(PreparedStatement statement)
+              throws SQLException {
+            for (int j = 0; j < values.size(); j++) {
+              statement.setObject(j + 1, values.get(j));
+            }
+          }
+        },
+        fetchSize, streaming);
+  }
+
+  /** Returns the values that divide the range of a column into
+   * {@link JdbcSchema#partitionCount} ranges of equal width, reading the
+   * minimum and maximum values of the column from the database.
+   *
+   * <p>Returns an empty list, meaning read the table in one piece, if the
+   * column has fewer than two distinct values, or is not numeric, DATE, TIME
+   * or TIMESTAMP. */
+  private List<Object> partitionBounds(SqlIdentifier column) {
+    final SqlNodeList selectList =
+        new SqlNodeList(
+            ImmutableList.<SqlNode>of(
+                SqlStdOperatorTable.MIN.createCall(SqlParserPos.ZERO, column),
+                SqlStdOperatorTable.MAX.createCall(SqlParserPos.ZERO, column)),
+            SqlParserPos.ZERO);
+    final SqlString sql = generateSql(selectList, null);
+    final Object min;
+    final Object max;
+    try (Connection connection = jdbcSchema.getDataSource().getConnection();
+         Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery(sql.getSql())) {
+      resultSet.next();
+      min = resultSet.getObject(1);
+      max = resultSet.getObject(2);
+    } catch (SQLException e) {
+      throw new RuntimeException("Exception while reading range of column '"
+          + column + "' of table '" + jdbcTableName + "'", e);
+    }
+    final List<Object> bounds = new ArrayList<>();
+    if (min instanceof java.util.Date && max instanceof java.util.Date) {
+      for (BigDecimal bound
+          : bounds(BigDecimal.valueOf(((java.util.Date) min).getTime()),
+              BigDecimal.valueOf(((java.util.Date) max).getTime()), true)) {
+        final long millis = bound.longValueExact();
+        // java.sql.Time and java.sql.Timestamp extend java.util.Date too;
+        // bind each bound as the same type as the column's values
+        bounds.add(min instanceof Timestamp
+            ? new Timestamp(millis)
+            : min instanceof Time
+            ? new Time(millis)
+            : new java.sql.Date(millis));
+      }
+    } else if (min instanceof Number && max instanceof Number) {
+      final boolean integral = min instanceof Byte
+          || min instanceof Short
+          || min instanceof Integer
+          || min instanceof Long
+          || min instanceof BigInteger;
+      final BigDecimal minDecimal = toBigDecimal((Number) min);
+      final BigDecimal maxDecimal = toBigDecimal((Number) max);
+      if (minDecimal != null && maxDecimal != null) {
+        for (BigDecimal bound : bounds(minDecimal, maxDecimal, integral)) {
+          bounds.add(integral ? (Object) bound.longValueExact() : bound);
+        }
+      }
+    }
+    return bounds;
+  }
+
+  /** Divides the range from {@code min} to {@code max} into
+   * {@link JdbcSchema#partitionCount} ranges of equal width, and returns the
+   * values that separate them, in ascending order, without duplicates. */
+  private List<BigDecimal> bounds(BigDecimal min, BigDecimal max,
+      boolean integral) {
+    final BigDecimal width =
+        max.subtract(min).divide(BigDecimal.valueOf(jdbcSchema.partitionCount),
+            MathContext.DECIMAL64);
+    final List<BigDecimal> bounds = new ArrayList<>();
+    BigDecimal previous = min;
+    for (int i = 1; i < jdbcSchema.partitionCount; i++) {
+      BigDecimal bound = min.add(width.multiply(BigDecimal.valueOf(i)));
+      if (integral) {
+        bound = bound.setScale(0, RoundingMode.CEILING);
+      }
+      if (bound.compareTo(previous) > 0 && bound.compareTo(max) <= 0) {
+        bounds.add(bound);
+        previous = bound;
+      }
+    }
+    return bounds;
+  }
+
+  /** Converts a number to a {@link BigDecimal}, or returns null if it is
+   * infinite or not a number. */
+  private static BigDecimal toBigDecimal(Number number) {
+    if (number instanceof BigDecimal) {
+      return (BigDecimal) number;
+    }
+    if (number instanceof Double || number instanceof Float) {
+      final double d = number.doubleValue();
+      return Double.isNaN(d) || Double.isInfinite(d)
+          ? null
+          : BigDecimal.valueOf(d);
+    }
+    return new BigDecimal(number.toString());
   }
 
   @Override public Collection getModifiableCollection() {
@@ -209,12 +493,9 @@ public Enumerable<Object[]> scan(DataContext root) {
     public Enumerator<T> enumerator() {
       final JavaTypeFactory typeFactory =
           ((CalciteConnection) queryProvider).getTypeFactory();
-      final SqlString sql = generateSql();
       //noinspection unchecked
-      final Enumerable<T> enumerable = (Enumerable<T>) ResultSetEnumerable.of(
-          jdbcSchema.getDataSource(),
-          sql.getSql(),
-          JdbcUtils.ObjectArrayRowBuilder.factory(fieldClasses(typeFactory)));
+      final Enumerable<T> enumerable =
+          (Enumerable<T>) enumerable(typeFactory, config(queryProvider));
       return enumerable.enumerator();
     }
   }
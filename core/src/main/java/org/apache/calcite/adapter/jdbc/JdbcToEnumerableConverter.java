@@ -22,6 +22,7 @@
 import org.apache.calcite.adapter.enumerable.PhysType;
 import org.apache.calcite.adapter.enumerable.PhysTypeImpl;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
@@ -35,23 +36,40 @@
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
 import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelVisitor;
 import org.apache.calcite.rel.convert.ConverterImpl;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexOver;
+import org.apache.calcite.rex.RexShuttle;
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.sql.util.SqlString;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.collect.ImmutableList;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 
 /**
@@ -60,6 +78,9 @@
 public class JdbcToEnumerableConverter
     extends ConverterImpl
     implements EnumerableRel {
+  /** Fetch size used when streaming rows and no fetch size is specified. */
+  private static final int DEFAULT_STREAMING_FETCH_SIZE = 1000;
+
   protected JdbcToEnumerableConverter(
       RelOptCluster cluster,
       RelTraitSet traits,
@@ -79,7 +100,8 @@ protected JdbcToEnumerableConverter(
 
   public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     // Generate:
-    //   ResultSetEnumerable.of(schema.getDataSource(), "select ...")
+    //   ResultSetEnumerable.of(schema.getDataSource(), "select ...",
+    //       rowBuilderFactory, enricher, fetchSize, streaming)
     final BlockBuilder builder0 = new BlockBuilder(false);
     final JdbcRel child = (JdbcRel) getInput();
     final PhysType physType =
@@ -88,7 +110,9 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
             pref.prefer(JavaRowFormat.CUSTOM));
     final JdbcConvention jdbcConvention =
         (JdbcConvention) child.getConvention();
-    String sql = generateSql(jdbcConvention.dialect);
+    final SqlString sqlString =
+        generateSql(jdbcConvention.dialect, getInput());
+    final String sql = sqlString.getSql();
     if (CalcitePrepareImpl.DEBUG) {
       System.out.println("[" + sql + "]");
     }
@@ -151,22 +175,216 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
                                                 RuntimeException.class,
                                                 e_)))))))),
                 resultSet_));
-    final Expression enumerable =
-        builder0.append(
-            "enumerable",
-            Expressions.call(
-                BuiltInMethod.RESULT_SET_ENUMERABLE_OF.method,
-                Expressions.call(
-                    Schemas.unwrap(jdbcConvention.expression,
-                        JdbcSchema.class),
-                    BuiltInMethod.JDBC_SCHEMA_DATA_SOURCE.method),
-                sql_,
-                rowBuilderFactory_));
+    final Map<Integer, RelDataType> parameterTypes =
+        dynamicParameterTypes(getInput());
+    final List<Expression> indexes = new ArrayList<>();
+    final List<Expression> types = new ArrayList<>();
+    for (Integer index : sqlString.getDynamicParameters()) {
+      indexes.add(Expressions.constant(index));
+      final RelDataType type = parameterTypes.get(index);
+      types.add(
+          Expressions.constant(
+              type == null
+                  ? Types.OTHER
+                  : type.getSqlTypeName().getJdbcOrdinal()));
+    }
+    final Expression enricher_ =
+        builder0.append("enricher",
+            Expressions.call(BuiltInMethod.CREATE_ENRICHER.method,
+                Expressions.newArrayInit(Integer.class, indexes),
+                Expressions.newArrayInit(Integer.class, types),
+                implementor.getRootExpression()));
+    final Pair<Integer, Boolean> fetch =
+        fetchOptions(schemas(getInput()), jdbcConvention.dialect,
+            getCluster().getPlanner().getContext()
+                .unwrap(CalciteConnectionConfig.class));
+    final Expression schema_ =
+        Schemas.unwrap(jdbcConvention.expression, JdbcSchema.class);
+    final JdbcTableScan scan = partitionedScan(getInput());
+    final Expression enumerable;
+    if (scan != null && indexes.isEmpty()) {
+      // Read ranges of the partition column in parallel. Generate the query
+      // for each kind of range; the table supplies the bounds when the query
+      // executes.
+      final List<RexNode> conditions =
+          partitionConditions(scan, scan.jdbcTable.partitionColumn());
+      final List<Expression> partitionSql_ = new ArrayList<>();
+      for (RexNode condition : conditions) {
+        partitionSql_.add(
+            Expressions.constant(
+                generateSql(jdbcConvention.dialect,
+                    addFilter(getInput(), scan, condition)).getSql()));
+      }
+      enumerable =
+          builder0.append(
+              "enumerable",
+              Expressions.call(
+                  Expressions.convert_(
+                      Expressions.call(schema_,
+                          BuiltInMethod.SCHEMA_GET_TABLE.method,
+                          Expressions.constant(
+                              scan.jdbcTable.jdbcTableName())),
+                      JdbcTable.class),
+                  BuiltInMethod.JDBC_TABLE_PARTITIONED_ENUMERABLE.method,
+                  sql_,
+                  partitionSql_.get(0),
+                  partitionSql_.get(1),
+                  partitionSql_.get(2),
+                  rowBuilderFactory_,
+                  Expressions.constant(fetch.left),
+                  Expressions.constant(fetch.right)));
+    } else {
+      enumerable =
+          builder0.append(
+              "enumerable",
+              Expressions.call(
+                  BuiltInMethod.RESULT_SET_ENUMERABLE_OF_PREPARED.method,
+                  Expressions.call(schema_,
+                      BuiltInMethod.JDBC_SCHEMA_DATA_SOURCE.method),
+                  sql_,
+                  rowBuilderFactory_,
+                  enricher_,
+                  Expressions.constant(fetch.left),
+                  Expressions.constant(fetch.right)));
+    }
     builder0.add(
         Expressions.return_(null, enumerable));
     return implementor.result(physType, builder0.toBlock());
   }
 
+  /** Returns the fetch size and whether to stream rows. A value specified by
+   * the schema of a table that the query reads overrides the connection's
+   * default; {@code config} may be null.
+   *
+   * <p>If streaming, and there is no fetch size, uses a moderate fetch size;
+   * MySQL's driver only streams if the fetch size is
+   * {@link Integer#MIN_VALUE}. */
+  static Pair<Integer, Boolean> fetchOptions(Iterable<JdbcSchema> schemas,
+      SqlDialect dialect, CalciteConnectionConfig config) {
+    Integer fetchSize = null;
+    Boolean streaming = null;
+    for (JdbcSchema jdbcSchema : schemas) {
+      if (fetchSize == null) {
+        fetchSize = jdbcSchema.fetchSize;
+      }
+      if (streaming == null) {
+        streaming = jdbcSchema.streaming;
+      }
+    }
+    if (fetchSize == null) {
+      fetchSize = config == null ? 0 : config.jdbcFetchSize();
+    }
+    if (streaming == null) {
+      streaming = config != null && config.jdbcStreaming();
+    }
+    if (streaming) {
+      if (dialect.getDatabaseProduct() == SqlDialect.DatabaseProduct.MYSQL) {
+        fetchSize = Integer.MIN_VALUE;
+      } else if (fetchSize == 0) {
+        fetchSize = DEFAULT_STREAMING_FETCH_SIZE;
+      }
+    }
+    return Pair.of(fetchSize, streaming);
+  }
+
+  /** Returns the scan of a table whose scans are partitioned, if a relational
+   * expression is such a scan, possibly under filters and projections;
+   * otherwise null.
+   *
+   * <p>The results of other queries, such as aggregates or joins, are not
+   * the union of the results of each partition. */
+  private static JdbcTableScan partitionedScan(RelNode rel) {
+    for (;;) {
+      if (rel instanceof JdbcTableScan) {
+        final JdbcTableScan scan = (JdbcTableScan) rel;
+        final String column = scan.jdbcTable.partitionColumn();
+        return column != null
+            && scan.getRowType().getField(column, true, false) != null
+            ? scan
+            : null;
+      } else if (rel instanceof JdbcRules.JdbcFilter) {
+        rel = ((JdbcRules.JdbcFilter) rel).getInput();
+      } else if (rel instanceof JdbcRules.JdbcProject
+          && !RexOver.containsOver(
+              ((JdbcRules.JdbcProject) rel).getProjects(), null)) {
+        rel = ((JdbcRules.JdbcProject) rel).getInput();
+      } else {
+        return null;
+      }
+    }
+  }
+
+  /** Returns the conditions on the partition column of a scan that read the
+   * first, a middle and the last range of values; they use dynamic
+   * parameters 0 and 1 for the bounds of the range. */
+  private static List<RexNode> partitionConditions(JdbcTableScan scan,
+      String column) {
+    final RexBuilder rexBuilder = scan.getCluster().getRexBuilder();
+    final RelDataTypeField field =
+        scan.getRowType().getField(column, true, false);
+    final RexNode ref = rexBuilder.makeInputRef(scan, field.getIndex());
+    final RexNode lower =
+        rexBuilder.makeCall(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, ref,
+            rexBuilder.makeDynamicParam(field.getType(), 0));
+    final RexNode first =
+        rexBuilder.makeCall(SqlStdOperatorTable.OR,
+            rexBuilder.makeCall(SqlStdOperatorTable.LESS_THAN, ref,
+                rexBuilder.makeDynamicParam(field.getType(), 0)),
+            rexBuilder.makeCall(SqlStdOperatorTable.IS_NULL, ref));
+    final RexNode middle =
+        rexBuilder.makeCall(SqlStdOperatorTable.AND, lower,
+            rexBuilder.makeCall(SqlStdOperatorTable.LESS_THAN, ref,
+                rexBuilder.makeDynamicParam(field.getType(), 1)));
+    return ImmutableList.of(first, middle, lower);
+  }
+
+  /** Copies a relational expression, adding a filter directly above one of
+   * its descendants, a scan. */
+  private static RelNode addFilter(RelNode rel, JdbcTableScan scan,
+      RexNode condition) {
+    if (rel == scan) {
+      return new JdbcRules.JdbcFilter(scan.getCluster(), scan.getTraitSet(),
+          scan, condition);
+    }
+    return rel.copy(rel.getTraitSet(),
+        ImmutableList.of(addFilter(rel.getInput(0), scan, condition)));
+  }
+
+  /** Returns the JDBC schemas of the tables read by a relational
+   * expression. */
+  private static Set<JdbcSchema> schemas(RelNode rel) {
+    final Set<JdbcSchema> schemas = new LinkedHashSet<>();
+    new RelVisitor() {
+      @Override public void visit(RelNode node, int ordinal, RelNode parent) {
+        if (node instanceof JdbcTableScan) {
+          schemas.add(((JdbcTableScan) node).jdbcTable.jdbcSchema);
+        }
+        super.visit(node, ordinal, parent);
+      }
+    }.go(rel);
+    return schemas;
+  }
+
+  /** Returns the type of each dynamic parameter used by a relational
+   * expression and its inputs, keyed by the parameter's index. */
+  private static Map<Integer, RelDataType> dynamicParameterTypes(
+      RelNode rel) {
+    final Map<Integer, RelDataType> types = new HashMap<>();
+    final RexShuttle shuttle = new RexShuttle() {
+      @Override public RexNode visitDynamicParam(RexDynamicParam param) {
+        types.put(param.getIndex(), param.getType());
+        return param;
+      }
+    };
+    new RelVisitor() {
+      @Override public void visit(RelNode node, int ordinal, RelNode parent) {
+        node.accept(shuttle);
+        super.visit(node, ordinal, parent);
+      }
+    }.go(rel);
+    return types;
+  }
+
   private UnaryExpression getTimeZoneExpression(
       EnumerableRelImplementor implementor) {
     return Expressions.convert_(
@@ -292,13 +510,13 @@ private String jdbcGetMethod(Primitive primitive) {
         : "get" + SqlFunctions.initcap(primitive.primitiveName);
   }
 
-  private String generateSql(SqlDialect dialect) {
+  private SqlString generateSql(SqlDialect dialect, RelNode input) {
     final JdbcImplementor jdbcImplementor =
         new JdbcImplementor(dialect,
             (JavaTypeFactory) getCluster().getTypeFactory());
     final JdbcImplementor.Result result =
-        jdbcImplementor.visitChild(0, getInput());
-    return result.asStatement().toSqlString(dialect).getSql();
+        jdbcImplementor.visitChild(0, input);
+    return result.asStatement().toSqlString(dialect);
   }
 }
 
@@ -34,6 +34,8 @@ public interface CalciteConnectionConfig extends ConnectionConfig {
   boolean approximateDecimal();
   /** @see CalciteConnectionProperty#AUTO_TEMP */
   boolean autoTemp();
+  /** @see CalciteConnectionProperty#BATCH_SIZE */
+  int batchSize();
   /** @see CalciteConnectionProperty#MATERIALIZATIONS_ENABLED */
   boolean materializationsEnabled();
   /** @see CalciteConnectionProperty#CREATE_MATERIALIZATIONS */
@@ -42,6 +44,16 @@ public interface CalciteConnectionConfig extends ConnectionConfig {
   NullCollation defaultNullCollation();
   /** @see CalciteConnectionProperty#FUN */
   <T> T fun(Class<T> operatorTableClass, T defaultOperatorTable);
+  /** @see CalciteConnectionProperty#JDBC_FETCH_SIZE */
+  int jdbcFetchSize();
+  /** @see CalciteConnectionProperty#JDBC_STREAMING */
+  boolean jdbcStreaming();
+  /** @see CalciteConnectionProperty#PARALLELISM */
+  int parallelism();
+  /** @see CalciteConnectionProperty#PLAN_CACHE_SIZE */
+  int planCacheSize();
+  /** @see CalciteConnectionProperty#PLANNING_TIMEOUT */
+  long planningTimeout();
   /** @see CalciteConnectionProperty#MODEL */
   String model();
   /** @see CalciteConnectionProperty#LEX */
@@ -62,6 +74,8 @@ public interface CalciteConnectionConfig extends ConnectionConfig {
   JsonSchema.Type schemaType();
   /** @see CalciteConnectionProperty#SPARK */
   boolean spark();
+  /** @see CalciteConnectionProperty#SPILL_MEMORY_LIMIT */
+  int spillMemoryLimit();
   /** @see CalciteConnectionProperty#FORCE_DECORRELATE */
   boolean forceDecorrelate();
   /** @see CalciteConnectionProperty#TYPE_SYSTEM */
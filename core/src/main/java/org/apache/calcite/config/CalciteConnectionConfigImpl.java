@@ -67,6 +67,10 @@ public boolean autoTemp() {
     return CalciteConnectionProperty.AUTO_TEMP.wrap(properties).getBoolean();
   }
 
+  public int batchSize() {
+    return CalciteConnectionProperty.BATCH_SIZE.wrap(properties).getInt();
+  }
+
   public boolean materializationsEnabled() {
     return CalciteConnectionProperty.MATERIALIZATIONS_ENABLED.wrap(properties)
         .getBoolean();
@@ -116,6 +120,29 @@ private static void operatorTable(String s,
     }
   }
 
+  public int jdbcFetchSize() {
+    return CalciteConnectionProperty.JDBC_FETCH_SIZE.wrap(properties).getInt();
+  }
+
+  public boolean jdbcStreaming() {
+    return CalciteConnectionProperty.JDBC_STREAMING.wrap(properties)
+        .getBoolean();
+  }
+
+  public int parallelism() {
+    return CalciteConnectionProperty.PARALLELISM.wrap(properties).getInt();
+  }
+
+  public int planCacheSize() {
+    return CalciteConnectionProperty.PLAN_CACHE_SIZE.wrap(properties)
+        .getInt();
+  }
+
+  public long planningTimeout() {
+    return CalciteConnectionProperty.PLANNING_TIMEOUT.wrap(properties)
+        .getLong();
+  }
+
   public String model() {
     return CalciteConnectionProperty.MODEL.wrap(properties).getString();
   }
@@ -165,6 +192,11 @@ public boolean spark() {
     return CalciteConnectionProperty.SPARK.wrap(properties).getBoolean();
   }
 
+  public int spillMemoryLimit() {
+    return CalciteConnectionProperty.SPILL_MEMORY_LIMIT.wrap(properties)
+        .getInt();
+  }
+
   public boolean forceDecorrelate() {
     return CalciteConnectionProperty.FORCE_DECORRELATE.wrap(properties)
         .getBoolean();
@@ -51,6 +51,11 @@ public enum CalciteConnectionProperty implements ConnectionProperty {
   /** Whether to store query results in temporary tables. */
   AUTO_TEMP("autoTemp", Type.BOOLEAN, false, false),
 
+  /** Number of rows in each batch when executing relational expressions in
+   * {@link org.apache.calcite.adapter.enumerable.batch.EnumerableBatchConvention
+   * batch calling convention}. The default, 0, disables batch execution. */
+  BATCH_SIZE("batchSize", Type.NUMBER, 0, false),
+
   /** Whether Calcite should use materializations. */
   MATERIALIZATIONS_ENABLED("materializationsEnabled", Type.BOOLEAN, true,
       false),
@@ -67,6 +72,36 @@ public enum CalciteConnectionProperty implements ConnectionProperty {
    * "select" queries. */
   DRUID_FETCH("druidFetch", Type.NUMBER, 16384, false),
 
+  /** Number of rows that the JDBC adapter fetches from a database at a time,
+   * for schemas that do not specify a "fetchSize" operand. The default, 0,
+   * uses the driver's default. */
+  JDBC_FETCH_SIZE("jdbcFetchSize", Type.NUMBER, 0, false),
+
+  /** Whether the JDBC adapter fetches rows from a database incrementally, for
+   * schemas that do not specify a "streaming" operand. Some drivers, such as
+   * those of PostgreSQL and MySQL, otherwise read the whole result of a query
+   * into memory before returning the first row. Default false. */
+  JDBC_STREAMING("jdbcStreaming", Type.BOOLEAN, false, false),
+
+  /** Number of threads that an aggregation may use when executing in
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention
+   * enumerable calling convention}. If greater than 1, the planner
+   * hash-partitions the input of an aggregation by its group key, and
+   * aggregates each partition in a separate thread. The default, 1, means
+   * that queries execute in a single thread. */
+  PARALLELISM("parallelism", Type.NUMBER, 1, false),
+
+  /** Maximum number of prepared statements a connection keeps in its plan
+   * cache. The cache is keyed on SQL text, and is invalidated when the schema
+   * changes. The default, 0, disables the cache. */
+  PLAN_CACHE_SIZE("planCacheSize", Type.NUMBER, 0, false),
+
+  /** Number of milliseconds that the planner may spend optimizing a
+   * statement. When it expires, the planner stops firing rules and uses the
+   * cheapest plan found so far, or, if it has not yet found a plan, stops as
+   * soon as it finds one. The default, 0, means no limit. */
+  PLANNING_TIMEOUT("planningTimeout", Type.NUMBER, 0, false),
+
   /** URI of the model. */
   MODEL("model", Type.STRING, null, false),
 
@@ -124,6 +159,12 @@ public enum CalciteConnectionProperty implements ConnectionProperty {
    * generates code that implements the Enumerable interface. */
   SPARK("spark", Type.BOOLEAN, false, false),
 
+  /** Amount of memory, in megabytes, that a hash join, hash aggregate, sort
+   * or windowed aggregate may use before it spills rows to temporary files.
+   * The default, 0, means that there is no limit, and operators never
+   * spill. */
+  SPILL_MEMORY_LIMIT("spillMemoryLimit", Type.NUMBER, 0, false),
+
   /** Time zone, for example 'gmt-3'. Default is the JVM's time zone. */
   TIME_ZONE("timeZone", Type.STRING, null, false),
 
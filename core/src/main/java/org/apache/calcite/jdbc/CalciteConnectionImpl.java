@@ -94,6 +94,8 @@
   final CalciteSchema rootSchema;
   final Function0<CalcitePrepare> prepareFactory;
   final CalciteServer server = new CalciteServerImpl();
+  /** Cache of prepared statements, or null if caching is disabled. */
+  private final PlanCache planCache;
 
   // must be package-protected
   static final Trojan TROJAN = createTrojan();
@@ -128,6 +130,9 @@ protected CalciteConnectionImpl(Driver driver, AvaticaFactory factory,
             ? rootSchema
             : CalciteSchema.createRootSchema(true));
     Preconditions.checkArgument(this.rootSchema.isRoot(), "must be root schema");
+    this.planCache = cfg.planCacheSize() > 0
+        ? new PlanCache(this.rootSchema, cfg.planCacheSize())
+        : null;
     this.properties.put(InternalProperty.CASE_SENSITIVE, cfg.caseSensitive());
     this.properties.put(InternalProperty.UNQUOTED_CASING, cfg.unquotedCasing());
     this.properties.put(InternalProperty.QUOTED_CASING, cfg.quotedCasing());
@@ -174,6 +179,9 @@ public PreparedStatement prepare(RelNode rel) {
             }
           });
     }
+    if (iface == PlanCache.class && planCache != null) {
+      return iface.cast(planCache);
+    }
     return super.unwrap(iface);
   }
 
@@ -215,11 +223,27 @@ private CalcitePreparedStatement prepareStatement_(
   <T> CalcitePrepare.CalciteSignature<T> parseQuery(
       CalcitePrepare.Query<T> query,
       CalcitePrepare.Context prepareContext, long maxRowCount) {
+    final List<Object> key;
+    if (planCache != null && query.sql != null) {
+      key = PlanCache.key(query.sql, prepareContext.getDefaultSchemaPath(),
+          maxRowCount, info);
+      final CalcitePrepare.CalciteSignature<T> signature = planCache.get(key);
+      if (signature != null) {
+        return signature;
+      }
+    } else {
+      key = null;
+    }
     CalcitePrepare.Dummy.push(prepareContext);
     try {
       final CalcitePrepare prepare = prepareFactory.apply();
-      return prepare.prepareSql(prepareContext, query, Object[].class,
-          maxRowCount);
+      final CalcitePrepare.CalciteSignature<T> signature =
+          prepare.prepareSql(prepareContext, query, Object[].class,
+              maxRowCount);
+      if (key != null) {
+        planCache.put(key, signature);
+      }
+      return signature;
     } finally {
       CalcitePrepare.Dummy.pop(prepareContext);
     }
@@ -47,6 +47,7 @@
 import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Schema.
@@ -67,6 +68,9 @@ public abstract class CalciteSchema {
   protected final NameMap<FunctionEntry> nullaryFunctionMap;
   protected final NameMap<CalciteSchema> subSchemaMap;
   private List<? extends List<String>> path;
+  /** Number of times this schema has been modified. Only the counter of the
+   * root schema is used; see {@link #getModCount()}. */
+  private final AtomicLong modCount = new AtomicLong();
 
   protected CalciteSchema(CalciteSchema parent, Schema schema,
       String name, NameMap<CalciteSchema> subSchemaMap,
@@ -169,6 +173,7 @@ public TableEntry add(String tableName, Table table,
     final TableEntryImpl entry =
         new TableEntryImpl(this, tableName, table, sqls);
     tableMap.put(tableName, entry);
+    changed();
     return entry;
   }
 
@@ -180,6 +185,7 @@ private FunctionEntry add(String name, Function function) {
     if (function.getParameters().isEmpty()) {
       nullaryFunctionMap.put(name, entry);
     }
+    changed();
     return entry;
   }
 
@@ -189,6 +195,7 @@ private LatticeEntry add(String name, Lattice lattice) {
     }
     final LatticeEntryImpl entry = new LatticeEntryImpl(this, name, lattice);
     latticeMap.put(name, entry);
+    changed();
     return entry;
   }
 
@@ -201,6 +208,23 @@ public CalciteSchema root() {
     }
   }
 
+  /** Returns the number of times that this schema, or any schema in the same
+   * tree, has been modified by adding or removing a table, sub-schema,
+   * function or lattice.
+   *
+   * <p>Callers that cache objects derived from the schema, such as prepared
+   * statements, can compare the value before and after to detect that the
+   * cached objects are stale. Changes to the contents of an underlying
+   * {@link Schema} are not detected. */
+  public long getModCount() {
+    return root().modCount.get();
+  }
+
+  /** Records that this schema has been modified. */
+  protected void changed() {
+    root().modCount.incrementAndGet();
+  }
+
   /** Returns whether this is a root schema. */
   public boolean isRoot() {
     return parent == null;
@@ -463,12 +487,20 @@ public static CalciteSchema createRootSchema(boolean addMetadataSchema,
 
   @Experimental
   public boolean removeSubSchema(String name) {
-    return subSchemaMap.remove(name) != null;
+    if (subSchemaMap.remove(name) == null) {
+      return false;
+    }
+    changed();
+    return true;
   }
 
   @Experimental
   public boolean removeTable(String name) {
-    return tableMap.remove(name) != null;
+    if (tableMap.remove(name) == null) {
+      return false;
+    }
+    changed();
+    return true;
   }
 
   @Experimental
@@ -478,6 +510,7 @@ public boolean removeFunction(String name) {
       return false;
     }
     functionMap.remove(name, remove);
+    changed();
     return true;
   }
 
@@ -625,6 +658,7 @@ public <T> T unwrap(Class<T> clazz) {
 
     public void setPath(ImmutableList<ImmutableList<String>> path) {
       CalciteSchema.this.path = path;
+      changed();
     }
 
     public void add(String name, Table table) {
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.jdbc;
+
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.runtime.Hook;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Cache of prepared statements, keyed on SQL text.
+ *
+ * <p>Each connection whose
+ * {@link CalciteConnectionProperty#PLAN_CACHE_SIZE planCacheSize} property
+ * is positive has a plan cache. When a SQL string is prepared a second time,
+ * with the same default schema and the same values of the connection
+ * properties that affect preparation, the connection re-uses the
+ * {@link CalcitePrepare.CalciteSignature} (including its compiled
+ * {@link org.apache.calcite.runtime.Bindable}) and skips parsing,
+ * validation, planning and code generation.
+ *
+ * <p>The cache is emptied whenever the root schema is modified (see
+ * {@link CalciteSchema#getModCount()}). Only queries are cached; DDL and DML
+ * statements are always prepared afresh.
+ *
+ * <p>Each lookup calls {@link Hook#PLAN_CACHE} with a two-element array
+ * containing the SQL string and a {@link Boolean} that is true if the lookup
+ * was a hit. Statistics (hits, misses, evictions) are available from
+ * {@link #stats()}; you can obtain the cache by calling
+ * {@code connection.unwrap(PlanCache.class)}.
+ */
+public class PlanCache {
+  /** Properties whose values affect how a statement is prepared, and
+   * therefore form part of the key. Names are upper-case, and each property
+   * is present both under its camel-case name and its enum constant name,
+   * as in {@link CalciteConnectionProperty#wrap}. */
+  private static final Set<String> KEY_PROPERTIES = keyProperties(
+      CalciteConnectionProperty.APPROXIMATE_DECIMAL,
+      CalciteConnectionProperty.APPROXIMATE_DISTINCT_COUNT,
+      CalciteConnectionProperty.APPROXIMATE_TOP_N,
+      CalciteConnectionProperty.CASE_SENSITIVE,
+      CalciteConnectionProperty.CONFORMANCE,
+      CalciteConnectionProperty.CREATE_MATERIALIZATIONS,
+      CalciteConnectionProperty.DEFAULT_NULL_COLLATION,
+      CalciteConnectionProperty.FORCE_DECORRELATE,
+      CalciteConnectionProperty.FUN,
+      CalciteConnectionProperty.LEX,
+      CalciteConnectionProperty.MATERIALIZATIONS_ENABLED,
+      CalciteConnectionProperty.PARSER_FACTORY,
+      CalciteConnectionProperty.QUOTED_CASING,
+      CalciteConnectionProperty.QUOTING,
+      CalciteConnectionProperty.SPARK,
+      CalciteConnectionProperty.TIME_ZONE,
+      CalciteConnectionProperty.TYPE_SYSTEM,
+      CalciteConnectionProperty.UNQUOTED_CASING);
+
+  private final CalciteSchema rootSchema;
+  private final Cache<List<Object>, CalcitePrepare.CalciteSignature<?>> cache;
+
+  /** Value of {@link CalciteSchema#getModCount()} when the entries currently
+   * in the cache were prepared. */
+  private long modCount;
+
+  /** Creates a PlanCache.
+   *
+   * @param rootSchema Root schema of the connection
+   * @param maximumSize Maximum number of statements in the cache
+   */
+  PlanCache(CalciteSchema rootSchema, int maximumSize) {
+    this.rootSchema = rootSchema;
+    this.modCount = rootSchema.getModCount();
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+  }
+
+  private static Set<String> keyProperties(
+      CalciteConnectionProperty... properties) {
+    final ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+    for (CalciteConnectionProperty property : properties) {
+      builder.add(property.camelName().toUpperCase(Locale.ROOT));
+      builder.add(property.name());
+    }
+    return builder.build();
+  }
+
+  /** Creates a key for a statement.
+   *
+   * @param sql SQL text
+   * @param schemaPath Default schema path of the connection
+   * @param maxRowCount Maximum number of rows to return, or -1
+   * @param info Connection properties
+   */
+  static List<Object> key(String sql, List<String> schemaPath,
+      long maxRowCount, Properties info) {
+    final ImmutableSortedMap.Builder<String, String> properties =
+        ImmutableSortedMap.naturalOrder();
+    for (String name : info.stringPropertyNames()) {
+      final String upperName = name.toUpperCase(Locale.ROOT);
+      if (KEY_PROPERTIES.contains(upperName)) {
+        properties.put(upperName, info.getProperty(name));
+      }
+    }
+    return ImmutableList.of(sql, schemaPath, maxRowCount, properties.build());
+  }
+
+  /** Returns the cached signature for a key, or null. */
+  synchronized <T> CalcitePrepare.CalciteSignature<T> get(List<Object> key) {
+    final long currentModCount = rootSchema.getModCount();
+    if (currentModCount != modCount) {
+      cache.invalidateAll();
+      modCount = currentModCount;
+    }
+    @SuppressWarnings("unchecked")
+    final CalcitePrepare.CalciteSignature<T> signature =
+        (CalcitePrepare.CalciteSignature<T>) cache.getIfPresent(key);
+    Hook.PLAN_CACHE.run(new Object[] {key.get(0), signature != null});
+    return signature;
+  }
+
+  /** Adds a signature to the cache, if it is a query and the schema has not
+   * changed since the cache was last validated. */
+  synchronized void put(List<Object> key,
+      CalcitePrepare.CalciteSignature<?> signature) {
+    if (signature.statementType != Meta.StatementType.SELECT
+        || rootSchema.getModCount() != modCount) {
+      return;
+    }
+    cache.put(key, signature);
+  }
+
+  /** Removes all entries from the cache. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** Returns the number of statements in the cache. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Returns statistics about the cache: hit, miss and eviction counts. */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+}
+
+// End PlanCache.java
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.materialize;
+
+import org.apache.calcite.schema.Table;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Implementation of {@link MaterializationStore} that stores each
+ * materialization in a sub-directory of a given directory.
+ *
+ * <p>The rows of each materialization are stored in columnar form, as
+ * written by {@link org.apache.calcite.adapter.clone.ArrayTable.Content#save}.
+ * A manifest file records the query of each materialization, and the
+ * versions of the tables it read when it was stored.
+ *
+ * <p>This implementation does not know the version of any table; sub-classes
+ * should override {@link #getVersion} if the tables can change. */
+public class FileMaterializationStore implements MaterializationStore {
+  /** Name of the manifest file. */
+  private static final String MANIFEST_FILE = "manifest.ser";
+
+  /** Version of the format of the manifest. Increase it if the format
+   * changes; materializations written in other formats are ignored. */
+  private static final Integer FORMAT_VERSION = 1;
+
+  private final File directory;
+
+  /** Entries, keyed by query and schema path. Null until the manifest has
+   * been read. */
+  private Map<String, Entry> entries;
+
+  /** Creates a FileMaterializationStore.
+   *
+   * @param directory Directory in which to store materializations; created
+   *                  if it does not exist
+   */
+  public FileMaterializationStore(File directory) {
+    this.directory = Preconditions.checkNotNull(directory);
+  }
+
+  public String getVersion(List<String> qualifiedName, Table table) {
+    return null;
+  }
+
+  public synchronized File directory(String sql, List<String> viewSchemaPath,
+      Map<String, String> versions) {
+    final String key = key(sql, viewSchemaPath);
+    final Map<String, Entry> entries = entries();
+    final Entry entry = entries.get(key);
+    if (entry != null && entry.versions.equals(versions)) {
+      return new File(directory, entry.name);
+    }
+
+    // The directory name is a hash of the query and the versions, so the
+    // rows of a stale materialization are never read as current.
+    final String name = "m-"
+        + Hashing.sha256()
+            .hashString(key + "\n" + new TreeMap<>(versions),
+                StandardCharsets.UTF_8)
+            .toString();
+    if (entry != null) {
+      delete(new File(directory, entry.name));
+    }
+    entries.put(key, new Entry(name, sql, viewSchemaPath, versions));
+    writeManifest();
+    return new File(directory, name);
+  }
+
+  public synchronized void remove(String sql, List<String> viewSchemaPath) {
+    final Entry entry = entries().remove(key(sql, viewSchemaPath));
+    if (entry != null) {
+      delete(new File(directory, entry.name));
+      writeManifest();
+    }
+  }
+
+  private static String key(String sql, List<String> viewSchemaPath) {
+    return viewSchemaPath + "\n" + sql;
+  }
+
+  /** Returns the entries, reading the manifest if this is the first call.
+   * Returns an empty map if there is no manifest, or if it was written in a
+   * different format. */
+  @SuppressWarnings("unchecked")
+  private Map<String, Entry> entries() {
+    if (entries == null) {
+      entries = new HashMap<>();
+      final File file = new File(directory, MANIFEST_FILE);
+      if (file.exists()) {
+        try (ObjectInputStream in =
+                 new ObjectInputStream(
+                     new BufferedInputStream(new FileInputStream(file)))) {
+          final List<Object> manifest = (List<Object>) in.readObject();
+          if (FORMAT_VERSION.equals(manifest.get(0))) {
+            entries.putAll((Map<String, Entry>) manifest.get(1));
+          }
+        } catch (InvalidClassException | ClassNotFoundException e) {
+          // Written by an incompatible version; ignore it
+        } catch (IOException e) {
+          throw new RuntimeException("while reading manifest " + file, e);
+        }
+      }
+    }
+    return entries;
+  }
+
+  /** Writes the manifest. Writes to a temporary file first, so that a
+   * partially written manifest is never read. */
+  private void writeManifest() {
+    final File file = new File(directory, MANIFEST_FILE);
+    final File tempFile = new File(directory, MANIFEST_FILE + ".tmp");
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("cannot create directory " + directory);
+      }
+      try (ObjectOutputStream out =
+               new ObjectOutputStream(
+                   new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeObject(
+            ImmutableList.of(FORMAT_VERSION, new HashMap<>(entries)));
+      }
+      Files.move(tempFile.toPath(), file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new RuntimeException("while writing manifest " + file, e);
+    }
+  }
+
+  /** Deletes a file, or a directory and its contents. */
+  private static void delete(File file) {
+    final File[] files = file.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        delete(f);
+      }
+    }
+    //noinspection ResultOfMethodCallIgnored
+    file.delete();
+  }
+
+  /** Description of a stored materialization. */
+  private static class Entry implements Serializable {
+    /** Name of the sub-directory that holds the rows. */
+    final String name;
+    final String sql;
+    final ArrayList<String> viewSchemaPath;
+    /** Versions of the tables read by the query when the rows were
+     * written. */
+    final TreeMap<String, String> versions;
+
+    Entry(String name, String sql, List<String> viewSchemaPath,
+        Map<String, String> versions) {
+      this.name = name;
+      this.sql = sql;
+      this.viewSchemaPath = new ArrayList<>(viewSchemaPath);
+      this.versions = new TreeMap<>(versions);
+    }
+  }
+}
+
+// End FileMaterializationStore.java
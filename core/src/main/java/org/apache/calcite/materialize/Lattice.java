@@ -97,6 +97,8 @@ public Integer apply(Column input) {
   public final ImmutableList<Tile> tiles;
   public final ImmutableList<String> uniqueColumnNames;
   public final LatticeStatisticProvider statisticProvider;
+  public final String statisticDirectory;
+  public final String statisticVersion;
 
   private final Function<Integer, Column> toColumnFunction =
       new Function<Integer, Column>() {
@@ -115,9 +117,12 @@ public Measure apply(AggregateCall input) {
   private Lattice(CalciteSchema rootSchema, ImmutableList<Node> nodes,
       boolean auto, boolean algorithm, long algorithmMaxMillis,
       LatticeStatisticProvider.Factory statisticProviderFactory,
+      String statisticDirectory, String statisticVersion,
       Double rowCountEstimate, ImmutableList<Column> columns,
       ImmutableList<Measure> defaultMeasures, ImmutableList<Tile> tiles) {
     this.rootSchema = rootSchema;
+    this.statisticDirectory = statisticDirectory;
+    this.statisticVersion = statisticVersion;
     this.nodes = Preconditions.checkNotNull(nodes);
     this.columns = Preconditions.checkNotNull(columns);
     this.auto = auto;
@@ -614,6 +619,8 @@ public static class Builder {
     private boolean auto = true;
     private Double rowCountEstimate;
     private String statisticProvider;
+    private String statisticDirectory;
+    private String statisticVersion;
 
     public Builder(CalciteSchema schema, String sql) {
       this.rootSchema = Preconditions.checkNotNull(schema.root());
@@ -729,6 +736,18 @@ public Builder statisticProvider(String statisticProvider) {
       return this;
     }
 
+    /** Sets the "statisticDirectory" attribute (default null). */
+    public Builder statisticDirectory(String statisticDirectory) {
+      this.statisticDirectory = statisticDirectory;
+      return this;
+    }
+
+    /** Sets the "statisticVersion" attribute (default null). */
+    public Builder statisticVersion(String statisticVersion) {
+      this.statisticVersion = statisticVersion;
+      return this;
+    }
+
     /** Builds a lattice. */
     public Lattice build() {
       LatticeStatisticProvider.Factory statisticProvider =
@@ -739,8 +758,9 @@ public Lattice build() {
               : Lattices.CACHED_SQL;
       Preconditions.checkArgument(rootSchema.isRoot(), "must be root schema");
       return new Lattice(rootSchema, ImmutableList.copyOf(nodes), auto,
-          algorithm, algorithmMaxMillis, statisticProvider, rowCountEstimate,
-          columns, defaultMeasureListBuilder.build(), tileListBuilder.build());
+          algorithm, algorithmMaxMillis, statisticProvider, statisticDirectory,
+          statisticVersion, rowCountEstimate, columns,
+          defaultMeasureListBuilder.build(), tileListBuilder.build());
     }
 
     /** Resolves the arguments of a
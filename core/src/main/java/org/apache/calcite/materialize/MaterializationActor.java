@@ -20,6 +20,7 @@
 import org.apache.calcite.rel.type.RelDataType;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
@@ -30,6 +31,12 @@
 
 /**
  * Actor that manages the state of materializations in the system.
+ *
+ * <p>Queries, and {@link TileAdvisor}s, use the state from several threads.
+ * {@link MaterializationService} holds the lock on the actor while it reads
+ * or modifies {@link #keyMap}, {@link #keyBySql}, {@link #keyByTile} and
+ * {@link #tilesByDimensionality}, but not while it creates or populates a
+ * table.
  */
 class MaterializationActor {
   // Not an actor yet -- TODO make members private and add request/response
@@ -47,6 +54,18 @@ class MaterializationActor {
   final Multimap<TileKey, TileKey> tilesByDimensionality =
       HashMultimap.create();
 
+  /** Number of times that queries have asked for each combination of
+   * dimensions and measures of a lattice. Thread-safe, because queries are
+   * planned concurrently. Only lattices in {@link #advisedLattices} are
+   * recorded. */
+  final ConcurrentHashMultiset<TileKey> tileRequests =
+      ConcurrentHashMultiset.create();
+
+  /** Lattices that have a {@link TileAdvisor}, with the number of advisors
+   * for each. */
+  final ConcurrentHashMultiset<Lattice> advisedLattices =
+      ConcurrentHashMultiset.create();
+
   /** A query materialized in a table, so that reading from the table gives the
    * same results as executing the query. */
   static class Materialization {
@@ -56,6 +75,12 @@ static class Materialization {
     final String sql;
     final RelDataType rowType;
     final List<String> viewSchemaPath;
+    /** Whether the materialization service created the table, and may
+     * therefore replace it. */
+    final boolean owned;
+    /** Keeps the materialization up to date as tables it reads are modified;
+     * created on first use. */
+    MaterializationMaintainer maintainer;
 
     /** Creates a materialization.
      *
@@ -67,13 +92,16 @@ static class Materialization {
      *                          materialization service will change the value as
      * @param sql  Query that is materialized
      * @param rowType Row type
+     * @param viewSchemaPath Schema path for resolving the query
+     * @param owned Whether the materialization service created the table
      */
     Materialization(MaterializationKey key,
         CalciteSchema rootSchema,
         CalciteSchema.TableEntry materializedTable,
         String sql,
         RelDataType rowType,
-        List<String> viewSchemaPath) {
+        List<String> viewSchemaPath,
+        boolean owned) {
       this.key = key;
       this.rootSchema = Preconditions.checkNotNull(rootSchema);
       Preconditions.checkArgument(rootSchema.isRoot(), "must be root schema");
@@ -81,6 +109,7 @@ static class Materialization {
       this.sql = sql;
       this.rowType = rowType;
       this.viewSchemaPath = viewSchemaPath;
+      this.owned = owned;
     }
   }
 
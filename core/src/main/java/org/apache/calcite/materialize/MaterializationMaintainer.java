@@ -0,0 +1,534 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.materialize;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.clone.CloneSchema;
+import org.apache.calcite.interpreter.Interpreter;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.CalciteMetaImpl;
+import org.apache.calcite.jdbc.CalcitePrepare;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgramBuilder;
+import org.apache.calcite.prepare.RelOptTableImpl;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelShuttleImpl;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.core.Union;
+import org.apache.calcite.rel.core.Values;
+import org.apache.calcite.rel.logical.LogicalTableScan;
+import org.apache.calcite.rel.logical.LogicalValues;
+import org.apache.calcite.rel.stream.Delta;
+import org.apache.calcite.rel.stream.LogicalDelta;
+import org.apache.calcite.rel.stream.StreamRules;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rel.type.RelDataTypeImpl;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.SqlFunctions;
+import org.apache.calcite.schema.ModifiableTable;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.collect.ImmutableList;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brings a materialization up to date after rows have been inserted into a
+ * table that its query reads, by applying the change in the query's result
+ * (its delta) rather than executing the query again.
+ *
+ * <p>To derive the delta, we wrap the query in a {@link LogicalDelta} and
+ * push it down using {@link StreamRules} until it sits on the scans of the
+ * tables. The delta of the modified table is the inserted rows, and the delta
+ * of every other table is empty. The {@link Interpreter} executes the
+ * resulting plan.
+ *
+ * <p>If the query is an aggregate whose functions are {@code SUM},
+ * {@code COUNT}, {@code MIN} and {@code MAX}, the delta is merged into the
+ * existing rows by group key. If the query is a combination of
+ * {@link Project}, {@link Filter}, inner {@link Join} and {@link Union} over
+ * scans, the delta is appended to the existing rows. Other materializations
+ * cannot be maintained, and the caller must invalidate them.
+ */
+class MaterializationMaintainer {
+  private final MaterializationActor.Materialization materialization;
+  private final CalciteConnection connection;
+
+  /** Number of times that each table is read by the query. */
+  private final Map<Table, Integer> tables = new IdentityHashMap<>();
+
+  /** The query, with any top-level sort and project removed; null if the
+   * materialization cannot be maintained. */
+  private final RelNode core;
+
+  /** For each field of the materialization, the field of {@link #core} that
+   * computes it. */
+  private final int[] sources;
+
+  /** For each field of the materialization, the kind of aggregate function
+   * that computes it, or null if it is a group key; null if the query has no
+   * aggregate. */
+  private final List<SqlKind> kinds;
+
+  MaterializationMaintainer(
+      MaterializationActor.Materialization materialization) {
+    this.materialization = materialization;
+    this.connection =
+        CalciteMetaImpl.connect(materialization.rootSchema, null);
+    final CalcitePrepare.ConvertResult convert =
+        Schemas.convert(connection, materialization.rootSchema,
+            materialization.viewSchemaPath, materialization.sql);
+    for (RelOptTable relOptTable : RelOptUtil.findAllTables(convert.root.rel)) {
+      final Table table = relOptTable.unwrap(Table.class);
+      final Integer count = tables.get(table);
+      tables.put(table, count == null ? 1 : count + 1);
+    }
+
+    RelNode rel = convert.root.rel;
+    if (rel instanceof Sort
+        && ((Sort) rel).offset == null
+        && ((Sort) rel).fetch == null) {
+      // Order is not significant in the materialized table.
+      rel = ((Sort) rel).getInput();
+    }
+    final int[] sources = new int[convert.root.fields.size()];
+    for (Ord<Pair<Integer, String>> field : Ord.zip(convert.root.fields)) {
+      sources[field.i] = field.e.left;
+    }
+    if (rel instanceof Project
+        && ((Project) rel).getInput() instanceof Aggregate
+        && isRefs(((Project) rel).getProjects())) {
+      final List<RexNode> projects = ((Project) rel).getProjects();
+      for (int i = 0; i < sources.length; i++) {
+        sources[i] = ((RexInputRef) projects.get(sources[i])).getIndex();
+      }
+      rel = ((Project) rel).getInput();
+    }
+    this.sources = sources;
+    if (rel instanceof Aggregate) {
+      this.kinds = aggregateKinds((Aggregate) rel, sources);
+      this.core = kinds == null ? null : rel;
+    } else {
+      this.kinds = null;
+      this.core = isSpj(rel) ? rel : null;
+    }
+  }
+
+  /** Returns whether the query reads a given table. */
+  boolean reads(Table table) {
+    return tables.containsKey(table);
+  }
+
+  /** Ensures that the materialized table holds its rows. Called before rows
+   * are inserted into a table that the query reads; a table created by the
+   * materialization service is populated lazily, and if it were populated
+   * after the insert, its rows would already include the delta. */
+  void populate() {
+    final Table materializedTable =
+        materialization.materializedTable.getTable();
+    if (core != null
+        && materialization.owned
+        && materializedTable instanceof ScannableTable) {
+      final DataContext dataContext =
+          Schemas.createDataContext(connection,
+              materialization.rootSchema.plus());
+      ((ScannableTable) materializedTable).scan(dataContext).enumerator()
+          .close();
+    }
+  }
+
+  /** Applies rows that have been inserted into a table that the query reads.
+   * Returns false if the materialization cannot be maintained, and must be
+   * invalidated. */
+  boolean onInsert(Table table, List<Object[]> rows) {
+    final Integer count = tables.get(table);
+    if (core == null || count == null || count != 1) {
+      // If the query reads the table more than once, say in a self-join, the
+      // delta of each scan depends on the other; we do not handle that.
+      return false;
+    }
+    final CalciteSchema.TableEntry entry = materialization.materializedTable;
+    final Table materializedTable = entry.getTable();
+    if (!(materializedTable instanceof ModifiableTable
+        || materializedTable instanceof ScannableTable
+        && materialization.owned)) {
+      return false;
+    }
+    final DataContext dataContext =
+        Schemas.createDataContext(connection,
+            materialization.rootSchema.plus());
+    final List<Object[]> deltaRows = new ArrayList<>();
+    try (Interpreter interpreter =
+             new Interpreter(dataContext, deltaRel(table, rows))) {
+      for (Object[] values : interpreter) {
+        final Object[] row = new Object[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+          row[i] = values[sources[i]];
+        }
+        deltaRows.add(row);
+      }
+    }
+    if (deltaRows.isEmpty()) {
+      return true;
+    }
+
+    final RelDataTypeFactory typeFactory = connection.getTypeFactory();
+    final int fieldCount =
+        materializedTable.getRowType(typeFactory).getFieldCount();
+    if (materializedTable instanceof ModifiableTable) {
+      @SuppressWarnings("unchecked")
+      final Collection<Object> collection =
+          ((ModifiableTable) materializedTable).getModifiableCollection();
+      final boolean scalar = fieldCount == 1
+          && !collection.isEmpty()
+          && !(collection.iterator().next() instanceof Object[]);
+      if (kinds == null) {
+        collection.addAll(toElements(deltaRows, scalar));
+        return true;
+      }
+      final List<Object[]> rows0 = toRows(collection, fieldCount);
+      if (rows0 == null) {
+        return false;
+      }
+      final List<Object[]> merged = merge(rows0, deltaRows);
+      collection.clear();
+      collection.addAll(toElements(merged, scalar));
+      return true;
+    }
+
+    // The materialized table was created by the materialization service, and
+    // is immutable, so replace it with a new table.
+    final List<Object[]> rows0 =
+        ((ScannableTable) materializedTable).scan(dataContext).toList();
+    final List<Object[]> newRows;
+    if (kinds == null) {
+      newRows = new ArrayList<>(rows0);
+      newRows.addAll(deltaRows);
+    } else {
+      newRows = merge(rows0, deltaRows);
+    }
+    final Table newTable =
+        CloneSchema.createCloneTable(connection.getTypeFactory(),
+            RelDataTypeImpl.proto(materializedTable.getRowType(typeFactory)),
+            ImmutableList.<RelCollation>of(), null,
+            Linq4j.asEnumerable(toElements(newRows, fieldCount == 1)));
+    materialization.materializedTable =
+        entry.schema.add(entry.name, newTable, entry.sqls);
+    return true;
+  }
+
+  /** Derives a plan that computes the delta of {@link #core} after rows are
+   * inserted into a given table. */
+  private RelNode deltaRel(final Table table, final List<Object[]> rows) {
+    final HepProgramBuilder programBuilder = new HepProgramBuilder();
+    for (RelOptRule rule : StreamRules.RULES) {
+      // We replace each Delta over a TableScan ourselves, below.
+      if (!(rule instanceof StreamRules.DeltaTableScanRule
+          || rule instanceof StreamRules.DeltaTableScanToEmptyRule)) {
+        programBuilder.addRuleInstance(rule);
+      }
+    }
+    final HepPlanner planner = new HepPlanner(programBuilder.build());
+    planner.setRoot(LogicalDelta.create(core));
+    return planner.findBestExp().accept(
+        new RelShuttleImpl() {
+          @Override public RelNode visit(RelNode other) {
+            if (other instanceof Delta) {
+              final RelNode input = ((Delta) other).getInput();
+              if (input instanceof TableScan
+                  && input.getTable().unwrap(Table.class) == table) {
+                final RelOptTable relOptTable = input.getTable();
+                return LogicalTableScan.create(other.getCluster(),
+                    RelOptTableImpl.create(relOptTable.getRelOptSchema(),
+                        relOptTable.getRowType(),
+                        new DeltaTable(relOptTable.getRowType(), rows),
+                        ImmutableList.<String>builder()
+                            .addAll(relOptTable.getQualifiedName())
+                            .add("(DELTA)").build()));
+              }
+              // Any other table, or a VALUES, has not changed.
+              assert input instanceof TableScan || input instanceof Values
+                  : input;
+              return LogicalValues.createEmpty(other.getCluster(),
+                  other.getRowType());
+            }
+            return super.visit(other);
+          }
+        });
+  }
+
+  /** Merges the delta of an aggregate query into its previous rows. */
+  private List<Object[]> merge(List<Object[]> rows, List<Object[]> deltaRows) {
+    final Map<List<Object>, Object[]> map = new LinkedHashMap<>();
+    for (Object[] row : rows) {
+      map.put(key(row), row.clone());
+    }
+    for (Object[] deltaRow : deltaRows) {
+      final List<Object> key = key(deltaRow);
+      final Object[] row = map.get(key);
+      if (row == null) {
+        map.put(key, deltaRow);
+        continue;
+      }
+      for (int i = 0; i < row.length; i++) {
+        final SqlKind kind = kinds.get(i);
+        if (kind == null) {
+          continue;
+        }
+        switch (kind) {
+        case SUM:
+        case SUM0:
+        case COUNT:
+          row[i] = plus(row[i], deltaRow[i]);
+          break;
+        case MIN:
+          row[i] = least(row[i], deltaRow[i]);
+          break;
+        case MAX:
+          row[i] = greatest(row[i], deltaRow[i]);
+          break;
+        default:
+          throw new AssertionError(kind);
+        }
+      }
+    }
+    return new ArrayList<>(map.values());
+  }
+
+  /** Returns the values of the group keys of a row of an aggregate query. */
+  private List<Object> key(Object[] row) {
+    final List<Object> key = new ArrayList<>();
+    for (int i = 0; i < row.length; i++) {
+      if (kinds.get(i) == null) {
+        key.add(row[i]);
+      }
+    }
+    return key;
+  }
+
+  /** Adds two values of the same numeric type; null is treated as zero. */
+  private static Object plus(Object v0, Object v1) {
+    if (v0 == null) {
+      return v1;
+    }
+    if (v1 == null) {
+      return v0;
+    }
+    final Number n0 = (Number) v0;
+    final Number n1 = (Number) v1;
+    if (v0 instanceof BigDecimal) {
+      return ((BigDecimal) v0).add(SqlFunctions.toBigDecimal(n1));
+    } else if (v0 instanceof Double) {
+      return n0.doubleValue() + n1.doubleValue();
+    } else if (v0 instanceof Float) {
+      return n0.floatValue() + n1.floatValue();
+    } else if (v0 instanceof Long) {
+      return n0.longValue() + n1.longValue();
+    } else if (v0 instanceof Integer) {
+      return n0.intValue() + n1.intValue();
+    } else if (v0 instanceof Short) {
+      return (short) (n0.shortValue() + n1.shortValue());
+    } else if (v0 instanceof Byte) {
+      return (byte) (n0.byteValue() + n1.byteValue());
+    } else {
+      throw new AssertionError("cannot add " + v0.getClass());
+    }
+  }
+
+  /** Returns the lesser of two values, ignoring null, as MIN does. */
+  @SuppressWarnings("unchecked")
+  private static Object least(Object v0, Object v1) {
+    if (v0 == null) {
+      return v1;
+    }
+    if (v1 == null) {
+      return v0;
+    }
+    return ((Comparable) v0).compareTo(v1) <= 0 ? v0 : v1;
+  }
+
+  /** Returns the greater of two values, ignoring null, as MAX does. */
+  @SuppressWarnings("unchecked")
+  private static Object greatest(Object v0, Object v1) {
+    if (v0 == null) {
+      return v1;
+    }
+    if (v1 == null) {
+      return v0;
+    }
+    return ((Comparable) v0).compareTo(v1) >= 0 ? v0 : v1;
+  }
+
+  /** Returns the kinds of the fields of an aggregate, or null if it cannot be
+   * maintained. */
+  private static List<SqlKind> aggregateKinds(Aggregate aggregate,
+      int[] sources) {
+    if (aggregate.getGroupType() != Aggregate.Group.SIMPLE
+        || aggregate.indicator
+        || !isSpj(aggregate.getInput())) {
+      return null;
+    }
+    // Every group key must be visible, so that we can find the row that a
+    // delta row belongs to.
+    final int groupCount = aggregate.getGroupCount();
+    final boolean[] visible = new boolean[groupCount];
+    final List<SqlKind> kinds = new ArrayList<>();
+    for (int source : sources) {
+      if (source < groupCount) {
+        visible[source] = true;
+        kinds.add(null);
+        continue;
+      }
+      final AggregateCall aggCall =
+          aggregate.getAggCallList().get(source - groupCount);
+      final SqlKind kind = aggCall.getAggregation().getKind();
+      switch (kind) {
+      case SUM:
+      case SUM0:
+      case COUNT:
+      case MIN:
+      case MAX:
+        if (aggCall.isDistinct()) {
+          return null;
+        }
+        kinds.add(kind);
+        break;
+      default:
+        return null;
+      }
+    }
+    for (boolean b : visible) {
+      if (!b) {
+        return null;
+      }
+    }
+    return kinds;
+  }
+
+  /** Returns whether a relational expression consists only of project,
+   * filter, inner join, union-all, values and table scan, and therefore
+   * whether inserting rows into a table it reads only adds rows to its
+   * result. */
+  private static boolean isSpj(RelNode rel) {
+    if (rel instanceof TableScan || rel instanceof Values) {
+      return true;
+    }
+    if (rel instanceof Join) {
+      if (((Join) rel).getJoinType() != JoinRelType.INNER) {
+        return false;
+      }
+    } else if (rel instanceof Union) {
+      if (!((Union) rel).all) {
+        return false;
+      }
+    } else if (!(rel instanceof Project || rel instanceof Filter)) {
+      return false;
+    }
+    for (RelNode input : rel.getInputs()) {
+      if (!isSpj(input)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isRefs(List<RexNode> nodes) {
+    for (RexNode node : nodes) {
+      if (!(node instanceof RexInputRef)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Converts elements of a table, which are arrays, or scalars if the table
+   * has one column, to rows. */
+  static List<Object[]> toRows(Collection<?> elements, int fieldCount) {
+    final List<Object[]> rows = new ArrayList<>(elements.size());
+    for (Object element : elements) {
+      if (element instanceof Object[]) {
+        rows.add((Object[]) element);
+      } else if (fieldCount == 1) {
+        rows.add(new Object[] {element});
+      } else {
+        return null;
+      }
+    }
+    return rows;
+  }
+
+  /** Converts rows to elements of a table, which are arrays, or scalars if
+   * {@code scalar}. */
+  private static List<Object> toElements(List<Object[]> rows,
+      boolean scalar) {
+    final List<Object> elements = new ArrayList<>(rows.size());
+    for (Object[] row : rows) {
+      elements.add(scalar ? row[0] : row);
+    }
+    return elements;
+  }
+
+  /** Table whose rows are the rows inserted into another table. */
+  private static class DeltaTable extends AbstractTable
+      implements ScannableTable {
+    private final RelDataType rowType;
+    private final List<Object[]> rows;
+
+    DeltaTable(RelDataType rowType, List<Object[]> rows) {
+      this.rowType = rowType;
+      this.rows = rows;
+    }
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return rowType;
+    }
+
+    public Enumerable<Object[]> scan(DataContext root) {
+      return Linq4j.asEnumerable(rows);
+    }
+  }
+}
+
+// End MaterializationMaintainer.java
@@ -24,14 +24,19 @@
 import org.apache.calcite.jdbc.CalciteMetaImpl;
 import org.apache.calcite.jdbc.CalcitePrepare;
 import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
 import org.apache.calcite.linq4j.AbstractQueryable;
+import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.prepare.Prepare;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeImpl;
 import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.ModifiableTable;
 import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.util.ImmutableBitSet;
@@ -42,16 +47,21 @@
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 
+import java.io.File;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.TreeMap;
 
 /**
  * Manages the collection of materialized tables known to the system,
@@ -88,10 +98,26 @@ public int compare(Pair<CalciteSchema.TableEntry, TileKey> o0,
 
   private final MaterializationActor actor = new MaterializationActor();
   private final DefaultTableFactory tableFactory = new DefaultTableFactory();
+  private MaterializationStore store;
 
   private MaterializationService() {
   }
 
+  /** Returns the store in which materializations are persisted, or null if
+   * they are held only in memory. */
+  public MaterializationStore getStore() {
+    return store;
+  }
+
+  /** Sets the store in which to persist materializations that are created
+   * subsequently, or null to hold them only in memory.
+   *
+   * <p>Only tables created by the default {@link TableFactory} are
+   * persisted. */
+  public void setStore(MaterializationStore store) {
+    this.store = store;
+  }
+
   /** Defines a new materialization. Returns its key. */
   public MaterializationKey defineMaterialization(final CalciteSchema schema,
       TileKey tileKey, String viewSql, List<String> viewSchemaPath,
@@ -107,9 +133,11 @@ public MaterializationKey defineMaterialization(final CalciteSchema schema,
       boolean existing) {
     final MaterializationActor.QueryKey queryKey =
         new MaterializationActor.QueryKey(viewSql, schema, viewSchemaPath);
-    final MaterializationKey existingKey = actor.keyBySql.get(queryKey);
-    if (existingKey != null) {
-      return existingKey;
+    synchronized (actor) {
+      final MaterializationKey existingKey = actor.keyBySql.get(queryKey);
+      if (existingKey != null) {
+        return existingKey;
+      }
     }
     if (!create) {
       return null;
@@ -133,8 +161,10 @@ public MaterializationKey defineMaterialization(final CalciteSchema schema,
     }
 
     RelDataType rowType = null;
+    final boolean owned = tableEntry == null;
     if (tableEntry == null) {
-      Table table = tableFactory.createTable(schema, viewSql, viewSchemaPath);
+      Table table = createTable(connection, schema, viewSql, viewSchemaPath,
+          tableFactory);
       final String tableName = Schemas.uniqueTableName(schema,
           Util.first(suggestedTableName, "m"));
       tableEntry = schema.add(tableName, table, ImmutableList.of(viewSql));
@@ -151,20 +181,61 @@ public MaterializationKey defineMaterialization(final CalciteSchema schema,
     final MaterializationKey key = new MaterializationKey();
     final MaterializationActor.Materialization materialization =
         new MaterializationActor.Materialization(key, schema.root(),
-            tableEntry, viewSql, rowType, viewSchemaPath);
-    actor.keyMap.put(materialization.key, materialization);
-    actor.keyBySql.put(queryKey, materialization.key);
-    if (tileKey != null) {
-      actor.keyByTile.put(tileKey, materialization.key);
+            tableEntry, viewSql, rowType, viewSchemaPath, owned);
+    synchronized (actor) {
+      // Another thread may have defined the same materialization while we
+      // were creating the table; if so, use that one.
+      final MaterializationKey existingKey = actor.keyBySql.get(queryKey);
+      if (existingKey != null) {
+        if (owned) {
+          tableEntry.schema.removeTable(tableEntry.name);
+        }
+        return existingKey;
+      }
+      actor.keyMap.put(materialization.key, materialization);
+      actor.keyBySql.put(queryKey, materialization.key);
+      if (tileKey != null) {
+        actor.keyByTile.put(tileKey, materialization.key);
+      }
     }
     return key;
   }
 
+  /** Creates a table to hold a materialization. If there is a store, and the
+   * table factory is the default one, the table's rows are read from the
+   * store, or written there after they are first populated. */
+  private Table createTable(CalciteConnection connection,
+      CalciteSchema schema, String viewSql, List<String> viewSchemaPath,
+      TableFactory tableFactory) {
+    if (store == null || !(tableFactory instanceof DefaultTableFactory)) {
+      return tableFactory.createTable(schema, viewSql, viewSchemaPath);
+    }
+    final CalcitePrepare.ConvertResult convert =
+        Schemas.convert(connection, schema, viewSchemaPath, viewSql);
+    final Map<String, String> versions = new TreeMap<>();
+    for (RelOptTable relOptTable : RelOptUtil.findTables(convert.root.rel)) {
+      final Table table = relOptTable.unwrap(Table.class);
+      if (table != null) {
+        final String version =
+            store.getVersion(relOptTable.getQualifiedName(), table);
+        if (version != null) {
+          versions.put(relOptTable.getQualifiedName().toString(), version);
+        }
+      }
+    }
+    final File directory =
+        store.directory(viewSql, viewSchemaPath, versions);
+    return ((DefaultTableFactory) tableFactory).createTable(schema, viewSql,
+        viewSchemaPath, directory);
+  }
+
   /** Checks whether a materialization is valid, and if so, returns the table
    * where the data are stored. */
   public CalciteSchema.TableEntry checkValid(MaterializationKey key) {
-    final MaterializationActor.Materialization materialization =
-        actor.keyMap.get(key);
+    final MaterializationActor.Materialization materialization;
+    synchronized (actor) {
+      materialization = actor.keyMap.get(key);
+    }
     if (materialization != null) {
       return materialization.materializedTable;
     }
@@ -190,9 +261,70 @@ public Pair<CalciteSchema.TableEntry, TileKey> defineTile(Lattice lattice,
       ImmutableBitSet groupSet, List<Lattice.Measure> measureList,
       CalciteSchema schema, boolean create, boolean exact,
       String suggestedTableName, TableFactory tableFactory) {
-    MaterializationKey materializationKey;
     final TileKey tileKey =
         new TileKey(lattice, groupSet, ImmutableList.copyOf(measureList));
+    final TileKey tileKey0 =
+        new TileKey(lattice, groupSet, ImmutableList.<Lattice.Measure>of());
+    final List<TileKey> obsolete = Lists.newArrayList();
+    final LinkedHashSet<Lattice.Measure> measureSet = Sets.newLinkedHashSet();
+    synchronized (actor) {
+      final Pair<CalciteSchema.TableEntry, TileKey> pair =
+          findTile(lattice, groupSet, measureList, tileKey, tileKey0, exact);
+      if (pair != null) {
+        return pair;
+      }
+
+      // What we need is not there. If we can't create, we're done.
+      if (!create) {
+        return null;
+      }
+
+      // Step 4. Create the tile we need.
+      //
+      // If there were any tiles at this dimensionality, regardless of
+      // whether they were current, create a wider tile that contains their
+      // measures plus the currently requested measures. Then we can obsolete
+      // all other tiles.
+      for (TileKey tileKey1 : actor.tilesByDimensionality.get(tileKey0)) {
+        measureSet.addAll(tileKey1.measures);
+        obsolete.add(tileKey1);
+      }
+    }
+    measureSet.addAll(measureList);
+    final TileKey newTileKey =
+        new TileKey(lattice, groupSet, ImmutableList.copyOf(measureSet));
+
+    final String sql = lattice.sql(groupSet, newTileKey.measures);
+    final MaterializationKey materializationKey =
+        defineMaterialization(schema, newTileKey, sql, schema.path(null),
+            suggestedTableName, tableFactory, true, false);
+    if (materializationKey != null) {
+      final CalciteSchema.TableEntry tableEntry =
+          checkValid(materializationKey);
+      if (tableEntry != null) {
+        synchronized (actor) {
+          // Obsolete all of the narrower tiles.
+          for (TileKey tileKey1 : obsolete) {
+            actor.tilesByDimensionality.remove(tileKey0, tileKey1);
+            actor.keyByTile.remove(tileKey1);
+          }
+
+          actor.tilesByDimensionality.put(tileKey0, newTileKey);
+          actor.keyByTile.put(newTileKey, materializationKey);
+        }
+        return Pair.of(tableEntry, newTileKey);
+      }
+    }
+    return null;
+  }
+
+  /** Looks for an existing tile that satisfies a request: one with the
+   * requested dimensions and measures, or, if not {@code exact}, one that
+   * can roll up to them. The caller must hold the lock on the actor. */
+  private Pair<CalciteSchema.TableEntry, TileKey> findTile(Lattice lattice,
+      ImmutableBitSet groupSet, List<Lattice.Measure> measureList,
+      TileKey tileKey, TileKey tileKey0, boolean exact) {
+    MaterializationKey materializationKey;
 
     // Step 1. Look for an exact match for the tile.
     materializationKey = actor.keyByTile.get(tileKey);
@@ -206,8 +338,6 @@ public Pair<CalciteSchema.TableEntry, TileKey> defineTile(Lattice lattice,
 
     // Step 2. Look for a match of the tile with the same dimensionality and an
     // acceptable list of measures.
-    final TileKey tileKey0 =
-        new TileKey(lattice, groupSet, ImmutableList.<Lattice.Measure>of());
     for (TileKey tileKey1 : actor.tilesByDimensionality.get(tileKey0)) {
       assert tileKey1.dimensions.equals(groupSet);
       if (allSatisfiable(measureList, tileKey1)) {
@@ -255,51 +385,10 @@ && allSatisfiable(measureList, tileKey2)) {
         return queue.peek();
       }
     }
-
-    // What we need is not there. If we can't create, we're done.
-    if (!create) {
-      return null;
-    }
-
-    // Step 4. Create the tile we need.
-    //
-    // If there were any tiles at this dimensionality, regardless of
-    // whether they were current, create a wider tile that contains their
-    // measures plus the currently requested measures. Then we can obsolete all
-    // other tiles.
-    final List<TileKey> obsolete = Lists.newArrayList();
-    final LinkedHashSet<Lattice.Measure> measureSet = Sets.newLinkedHashSet();
-    for (TileKey tileKey1 : actor.tilesByDimensionality.get(tileKey0)) {
-      measureSet.addAll(tileKey1.measures);
-      obsolete.add(tileKey1);
-    }
-    measureSet.addAll(measureList);
-    final TileKey newTileKey =
-        new TileKey(lattice, groupSet, ImmutableList.copyOf(measureSet));
-
-    final String sql = lattice.sql(groupSet, newTileKey.measures);
-    materializationKey =
-        defineMaterialization(schema, newTileKey, sql, schema.path(null),
-            suggestedTableName, tableFactory, true, false);
-    if (materializationKey != null) {
-      final CalciteSchema.TableEntry tableEntry =
-          checkValid(materializationKey);
-      if (tableEntry != null) {
-        // Obsolete all of the narrower tiles.
-        for (TileKey tileKey1 : obsolete) {
-          actor.tilesByDimensionality.remove(tileKey0, tileKey1);
-          actor.keyByTile.remove(tileKey1);
-        }
-
-        actor.tilesByDimensionality.put(tileKey0, newTileKey);
-        actor.keyByTile.put(newTileKey, materializationKey);
-        return Pair.of(tableEntry, newTileKey);
-      }
-    }
     return null;
   }
 
-  private boolean allSatisfiable(List<Lattice.Measure> measureList,
+  static boolean allSatisfiable(List<Lattice.Measure> measureList,
       TileKey tileKey) {
     // A measure can be satisfied if it is contained in the measure list, or,
     // less obviously, if it is composed of grouping columns.
@@ -312,6 +401,95 @@ private boolean allSatisfiable(List<Lattice.Measure> measureList,
     return true;
   }
 
+  /** Records that a query needs a tile of a lattice with the given
+   * dimensions and measures.
+   *
+   * <p>The counts are used by {@link TileAdvisor} to choose which tiles to
+   * materialize. Requests are recorded only for lattices that have an
+   * advisor. */
+  public void recordTileRequest(Lattice lattice, ImmutableBitSet groupSet,
+      List<Lattice.Measure> measureList) {
+    if (actor.advisedLattices.contains(lattice)) {
+      actor.tileRequests.add(
+          new TileKey(lattice, groupSet, ImmutableList.copyOf(measureList)));
+    }
+  }
+
+  /** Registers a {@link TileAdvisor} for a lattice, so that requests for its
+   * tiles are recorded. */
+  void registerAdvisor(Lattice lattice) {
+    actor.advisedLattices.add(lattice);
+  }
+
+  /** Unregisters a {@link TileAdvisor}. If the lattice has no other advisor,
+   * discards the requests recorded for it. */
+  void unregisterAdvisor(Lattice lattice) {
+    actor.advisedLattices.remove(lattice);
+    if (!actor.advisedLattices.contains(lattice)) {
+      for (TileKey tileKey : actor.tileRequests.elementSet()) {
+        if (tileKey.lattice == lattice) {
+          actor.tileRequests.setCount(tileKey, 0);
+        }
+      }
+    }
+  }
+
+  /** Returns the number of times that queries have asked for each
+   * combination of dimensions and measures of a lattice, and halves the
+   * counts, so that requests made long ago count for less. */
+  Map<TileKey, Integer> decayTileRequests(Lattice lattice) {
+    final Map<TileKey, Integer> map = new HashMap<>();
+    for (Multiset.Entry<TileKey> entry : actor.tileRequests.entrySet()) {
+      if (entry.getElement().lattice == lattice) {
+        final int count = entry.getCount();
+        map.put(entry.getElement(), count);
+        actor.tileRequests.remove(entry.getElement(), count - count / 2);
+      }
+    }
+    return map;
+  }
+
+  /** Returns the valid tiles of a lattice, and the tables that hold them. */
+  Map<TileKey, CalciteSchema.TableEntry> tiles(Lattice lattice) {
+    final Map<TileKey, CalciteSchema.TableEntry> map = new HashMap<>();
+    synchronized (actor) {
+      for (Map.Entry<TileKey, MaterializationKey> entry
+          : actor.keyByTile.entrySet()) {
+        if (entry.getKey().lattice == lattice) {
+          final CalciteSchema.TableEntry tableEntry =
+              checkValid(entry.getValue());
+          if (tableEntry != null) {
+            map.put(entry.getKey(), tableEntry);
+          }
+        }
+      }
+    }
+    return map;
+  }
+
+  /** Removes a tile, and the table that holds it if the service created the
+   * table. A subsequent request for the tile, or for a roll-up of it, uses
+   * another tile, or creates the tile again if the lattice is "auto". */
+  public void removeTile(TileKey tileKey) {
+    final MaterializationActor.Materialization materialization;
+    synchronized (actor) {
+      final MaterializationKey key = actor.keyByTile.get(tileKey);
+      if (key == null) {
+        return;
+      }
+      materialization = actor.keyMap.get(key);
+      if (materialization == null) {
+        return;
+      }
+      invalidate(materialization);
+    }
+    final CalciteSchema.TableEntry tableEntry =
+        materialization.materializedTable;
+    if (materialization.owned && tableEntry != null) {
+      tableEntry.schema.removeTable(tableEntry.name);
+    }
+  }
+
   /** Gathers a list of all materialized tables known within a given root
    * schema. (Each root schema defines a disconnected namespace, with no overlap
    * with the current schema. Especially in a test run, the contents of two
@@ -319,7 +497,7 @@ private boolean allSatisfiable(List<Lattice.Measure> measureList,
   public List<Prepare.Materialization> query(CalciteSchema rootSchema) {
     final List<Prepare.Materialization> list = new ArrayList<>();
     for (MaterializationActor.Materialization materialization
-        : actor.keyMap.values()) {
+        : materializations()) {
       if (materialization.rootSchema.schema == rootSchema.schema
           && materialization.materializedTable != null) {
         list.add(
@@ -330,9 +508,26 @@ public List<Prepare.Materialization> query(CalciteSchema rootSchema) {
     return list;
   }
 
+  /** Returns whether there are any materializations. */
+  private boolean hasMaterializations() {
+    synchronized (actor) {
+      return !actor.keyMap.isEmpty();
+    }
+  }
+
+  /** Returns a copy of the list of materializations, so that the caller can
+   * read them without holding the lock on the actor. */
+  private List<MaterializationActor.Materialization> materializations() {
+    synchronized (actor) {
+      return ImmutableList.copyOf(actor.keyMap.values());
+    }
+  }
+
   /** De-registers all materialized tables in the system. */
   public void clear() {
-    actor.keyMap.clear();
+    synchronized (actor) {
+      actor.keyMap.clear();
+    }
   }
 
   /** Used by tests, to ensure that they see their own service. */
@@ -351,8 +546,150 @@ public static MaterializationService instance() {
     return INSTANCE;
   }
 
+  /** Inserts rows into a modifiable table, and brings up to date the
+   * materializations that read the table.
+   *
+   * <p>Called by code generated for
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableTableModify}. */
+  public static <T> Collection<T> into(DataContext root, Enumerable<T> rows,
+      Collection<T> collection, ModifiableTable table) {
+    final MaterializationService service = instance();
+    if (!service.hasMaterializations()) {
+      return rows.into(collection);
+    }
+    final CalciteSchema rootSchema = CalciteSchema.from(root.getRootSchema());
+    final List<MaterializationActor.Materialization> readers =
+        service.readers(rootSchema, table);
+    if (readers.isEmpty()) {
+      return rows.into(collection);
+    }
+    for (MaterializationActor.Materialization materialization : readers) {
+      maintainer(materialization).populate();
+    }
+    final List<T> list = rows.toList();
+    collection.addAll(list);
+    service.onInsert(readers, table, list);
+    return collection;
+  }
+
+  /** Removes rows from a modifiable table, and invalidates the
+   * materializations that read the table.
+   *
+   * <p>Called by code generated for
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableTableModify}. */
+  public static <T> Collection<T> removeAll(DataContext root,
+      Enumerable<T> rows, Collection<T> collection, ModifiableTable table) {
+    final MaterializationService service = instance();
+    final int size = collection.size();
+    rows.removeAll(collection);
+    if (collection.size() != size && service.hasMaterializations()) {
+      final CalciteSchema rootSchema =
+          CalciteSchema.from(root.getRootSchema());
+      for (MaterializationActor.Materialization materialization
+          : service.readers(rootSchema, table)) {
+        service.invalidate(materialization);
+      }
+    }
+    return collection;
+  }
+
+  /** Returns the materializations within a given root schema that read a
+   * given table.
+   *
+   * <p>A materialization whose query can no longer be converted, say because
+   * a table that it reads has been dropped, is invalidated rather than
+   * returned, so that it does not prevent modifications to other tables. */
+  private List<MaterializationActor.Materialization> readers(
+      CalciteSchema rootSchema, Table table) {
+    final List<MaterializationActor.Materialization> list = new ArrayList<>();
+    final List<MaterializationActor.Materialization> invalid =
+        new ArrayList<>();
+    for (MaterializationActor.Materialization materialization
+        : materializations()) {
+      if (materialization.rootSchema.schema == rootSchema.schema
+          && materialization.materializedTable != null) {
+        final MaterializationMaintainer maintainer;
+        try {
+          maintainer = maintainer(materialization);
+        } catch (RuntimeException e) {
+          invalid.add(materialization);
+          continue;
+        }
+        if (maintainer.reads(table)) {
+          list.add(materialization);
+        }
+      }
+    }
+    for (MaterializationActor.Materialization materialization : invalid) {
+      invalidate(materialization);
+    }
+    return list;
+  }
+
+  /** Brings up to date the materializations that read a table, after rows
+   * have been inserted into it. A materialization whose delta cannot be
+   * computed, or cannot be applied, is invalidated. */
+  private void onInsert(List<MaterializationActor.Materialization> readers,
+      Table table, List<?> elements) {
+    final int fieldCount =
+        table.getRowType(new JavaTypeFactoryImpl()).getFieldCount();
+    final List<Object[]> rows =
+        MaterializationMaintainer.toRows(elements, fieldCount);
+    for (MaterializationActor.Materialization materialization : readers) {
+      if (rows == null
+          || !maintainer(materialization).onInsert(table, rows)) {
+        invalidate(materialization);
+      } else if (store != null && materialization.owned) {
+        // The stored copy no longer matches the table.
+        store.remove(materialization.sql, materialization.viewSchemaPath);
+      }
+    }
+  }
+
+  private static MaterializationMaintainer maintainer(
+      MaterializationActor.Materialization materialization) {
+    synchronized (materialization) {
+      if (materialization.maintainer == null) {
+        materialization.maintainer =
+            new MaterializationMaintainer(materialization);
+      }
+      return materialization.maintainer;
+    }
+  }
+
+  /** Removes a materialization whose table no longer gives the same results
+   * as its query. A subsequent request for the same query or tile creates a
+   * new materialization. */
+  private void invalidate(
+      MaterializationActor.Materialization materialization) {
+    synchronized (actor) {
+      removeMaterialization(materialization.key);
+      actor.keyBySql.values().remove(materialization.key);
+      final List<TileKey> tileKeys = new ArrayList<>();
+      for (Map.Entry<TileKey, MaterializationKey> entry
+          : actor.keyByTile.entrySet()) {
+        if (entry.getValue().equals(materialization.key)) {
+          tileKeys.add(entry.getKey());
+        }
+      }
+      for (TileKey tileKey : tileKeys) {
+        actor.keyByTile.remove(tileKey);
+        actor.tilesByDimensionality.remove(
+            new TileKey(tileKey.lattice, tileKey.dimensions,
+                ImmutableList.<Lattice.Measure>of()),
+            tileKey);
+      }
+    }
+  }
+
   public void removeMaterialization(MaterializationKey key) {
-    actor.keyMap.remove(key);
+    final MaterializationActor.Materialization materialization;
+    synchronized (actor) {
+      materialization = actor.keyMap.remove(key);
+    }
+    if (materialization != null && store != null) {
+      store.remove(materialization.sql, materialization.viewSchemaPath);
+    }
   }
 
   /**
@@ -370,6 +707,20 @@ Table createTable(CalciteSchema schema, String viewSql,
   public static class DefaultTableFactory implements TableFactory {
     public Table createTable(CalciteSchema schema, String viewSql,
         List<String> viewSchemaPath) {
+      return createTable(schema, viewSql, viewSchemaPath, null);
+    }
+
+    /** Creates a table that is stored in a directory.
+     *
+     * <p>The first time the table is scanned, its rows are read from the
+     * directory if they were written there previously, otherwise the query is
+     * executed and its rows are written there.
+     *
+     * @param directory Directory in which to store the rows, or null to hold
+     *                  them only in memory
+     */
+    public Table createTable(CalciteSchema schema, String viewSql,
+        List<String> viewSchemaPath, File directory) {
       final CalciteConnection connection =
           CalciteMetaImpl.connect(schema.root(), null);
       final ImmutableMap<CalciteConnectionProperty, String> map =
@@ -412,7 +763,8 @@ public Iterator<Object> iterator() {
                       calciteSignature.rootSchema.plus());
               return calciteSignature.enumerable(dataContext).iterator();
             }
-          });
+          },
+          directory);
     }
   }
 }
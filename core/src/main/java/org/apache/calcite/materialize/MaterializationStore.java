@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.materialize;
+
+import org.apache.calcite.schema.Table;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent store of the rows of materializations, so that they survive a
+ * restart of the JVM.
+ *
+ * <p>If a store has been set (see {@link MaterializationService#setStore}),
+ * then when the {@link MaterializationService} creates a table to hold a
+ * materialization it asks the store for a directory. The first time the
+ * table is scanned, it is read from that directory if a previous run wrote
+ * it there, otherwise it is populated by executing the query and then
+ * written there.
+ *
+ * <p>A stored materialization is stale if any of the tables that its query
+ * reads now has a different version than when it was stored. The store
+ * discards stale materializations.
+ *
+ * @see FileMaterializationStore
+ */
+public interface MaterializationStore {
+  /** Returns the current version of a table that is read by a
+   * materialization, or null if the table is not versioned.
+   *
+   * <p>A version might be the modification time of the file that holds the
+   * table, or the sequence number of the last transaction that modified
+   * it. Changes to a table that is not versioned go undetected. */
+  String getVersion(List<String> qualifiedName, Table table);
+
+  /** Returns the directory in which to store the rows of a materialization.
+   *
+   * <p>If the store holds the materialization, and it is not stale, returns
+   * the directory that holds it. Otherwise discards any stale copy, and
+   * returns a directory that does not contain a materialization.
+   *
+   * @param sql Query that is materialized
+   * @param viewSchemaPath Schema path for resolving the query
+   * @param versions Current version of each versioned table read by the
+   *                 query, keyed by the table's qualified name
+   */
+  File directory(String sql, List<String> viewSchemaPath,
+      Map<String, String> versions);
+
+  /** Discards a materialization, if the store holds it. */
+  void remove(String sql, List<String> viewSchemaPath);
+}
+
+// End MaterializationStore.java
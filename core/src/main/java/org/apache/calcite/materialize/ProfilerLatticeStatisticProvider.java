@@ -29,7 +29,20 @@
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -61,31 +74,34 @@ public List<Comparable> apply(Object[] values) {
         }
       };
 
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(ProfilerLatticeStatisticProvider.class);
+
+  /** Changes if the format of saved profiles changes. */
+  private static final String FORMAT_VERSION = "1";
+
   private final Lattice lattice;
   private final Supplier<Profiler.Profile> profile =
       Suppliers.memoize(new Supplier<Profiler.Profile>() {
         public Profiler.Profile get() {
-          final ProfilerImpl profiler =
-              ProfilerImpl.builder()
-                  .withPassSize(200)
-                  .withMinimumSurprise(0.3D)
-                  .build();
-          final List<Profiler.Column> columns = new ArrayList<>();
-          for (Lattice.Column column : lattice.columns) {
-            columns.add(new Profiler.Column(column.ordinal, column.alias));
-          }
           final String sql =
               lattice.sql(ImmutableBitSet.range(lattice.columns.size()),
                   false, ImmutableList.<Lattice.Measure>of());
-          final Table table =
-              new MaterializationService.DefaultTableFactory()
-                  .createTable(lattice.rootSchema, sql,
-                      ImmutableList.<String>of());
-          final ImmutableList<ImmutableBitSet> initialGroups =
-              ImmutableList.of();
-          final Enumerable<List<Comparable>> rows =
-              ((ScannableTable) table).scan(null).select(TO_LIST);
-          return profiler.profile(rows, columns, initialGroups);
+          if (lattice.statisticDirectory == null) {
+            return profile(sql);
+          }
+          final File file = file(sql);
+          try {
+            Profiler.Profile result = load(file);
+            if (result == null) {
+              result = profile(sql);
+              save(file, result);
+            }
+            return result;
+          } catch (IOException e) {
+            throw new RuntimeException("while reading or writing statistics "
+                + "file " + file, e);
+          }
         }
       });
 
@@ -94,6 +110,80 @@ private ProfilerLatticeStatisticProvider(Lattice lattice) {
     this.lattice = Preconditions.checkNotNull(lattice);
   }
 
+  /** Profiles the lattice, collecting values on as many threads as there are
+   * processors. */
+  private Profiler.Profile profile(String sql) {
+    final ProfilerImpl profiler =
+        ProfilerImpl.builder()
+            .withPassSize(200)
+            .withMinimumSurprise(0.3D)
+            .withParallelism(Runtime.getRuntime().availableProcessors())
+            .build();
+    final List<Profiler.Column> columns = new ArrayList<>();
+    for (Lattice.Column column : lattice.columns) {
+      columns.add(new Profiler.Column(column.ordinal, column.alias));
+    }
+    final Table table =
+        new MaterializationService.DefaultTableFactory()
+            .createTable(lattice.rootSchema, sql,
+                ImmutableList.<String>of());
+    final ImmutableList<ImmutableBitSet> initialGroups =
+        ImmutableList.of();
+    final Enumerable<List<Comparable>> rows =
+        ((ScannableTable) table).scan(null).select(TO_LIST);
+    return profiler.profile(rows, columns, initialGroups);
+  }
+
+  /** Returns the file in which to save the profile. Its name is a hash of
+   * the lattice's SQL and the version of its data, so that a profile is
+   * never used for a different lattice or a different version of the
+   * data. */
+  private File file(String sql) {
+    final String key = FORMAT_VERSION + "\n" + lattice.statisticVersion
+        + "\n" + sql;
+    final String hash =
+        Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString();
+    return new File(lattice.statisticDirectory, "profile-" + hash + ".ser");
+  }
+
+  /** Reads a profile written by {@link #save}, or returns null if the file
+   * does not exist or cannot be read, say because it is truncated or was
+   * written by an incompatible version of this class. The caller will
+   * profile the lattice again and overwrite the file. */
+  private static Profiler.Profile load(File file) {
+    if (!file.exists()) {
+      return null;
+    }
+    try (ObjectInputStream in =
+             new ObjectInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+      return (Profiler.Profile) in.readObject();
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      LOGGER.warn("Cannot read statistics file " + file
+          + "; profiling lattice again", e);
+      return null;
+    }
+  }
+
+  /** Writes a profile to a file. Writes to a temporary file first, so that a
+   * partially written file is never read. */
+  private static void save(File file, Profiler.Profile profile)
+      throws IOException {
+    final File directory = file.getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("cannot create directory " + directory);
+    }
+    final File tempFile = new File(directory, file.getName() + ".tmp");
+    try (ObjectOutputStream out =
+             new ObjectOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      out.writeObject(profile);
+    }
+    if (!tempFile.renameTo(file)) {
+      throw new IOException("cannot rename " + tempFile + " to " + file);
+    }
+  }
+
   public double cardinality(List<Lattice.Column> columns) {
     final ImmutableBitSet build = Lattice.Column.toBitSet(columns);
     final double cardinality = profile.get().cardinality(build);
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.materialize;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.CalciteMetaImpl;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+
+/**
+ * Chooses which tiles of a lattice to materialize, based on the queries that
+ * have recently used the lattice.
+ *
+ * <p>Each time a query is matched to a lattice by
+ * {@link org.apache.calcite.rel.rules.AggregateStarTableRule}, the
+ * {@link MaterializationService} records the dimensions and measures that the
+ * query needs. Each time the advisor runs, it reads those counts and halves
+ * them, so that recent queries count for more than old ones.
+ *
+ * <p>The advisor then chooses tiles, greedily, in order of the number of rows
+ * that they save queries from reading per byte of memory, until no more tiles
+ * fit within its memory budget. A tile may serve queries that need a subset of
+ * its dimensions and measures, by rolling up. The size of a tile is
+ * estimated from its row count, as given by the lattice's
+ * {@link LatticeStatisticProvider}.
+ *
+ * <p>The advisor creates the tiles it has chosen, populating them in the
+ * background using an {@link Executor}, and removes the tiles it created
+ * previously that it no longer chooses. It never removes a tile that it did
+ * not create, such as a tile defined in the model; such tiles count as
+ * already materialized, and do not count against the budget.
+ *
+ * <p>Run the advisor periodically, say using a
+ * {@link java.util.concurrent.ScheduledExecutorService}. If the lattice's
+ * {@link Lattice#auto} attribute is true, queries also create the tiles they
+ * need; set it to false to leave the choice of tiles to the advisor.
+ *
+ * <p>The service records the tiles that queries need only while the lattice
+ * has an advisor; close the advisor when it is no longer needed.
+ */
+public class TileAdvisor implements Runnable, AutoCloseable {
+  /** Estimated number of bytes to hold one value of a tile. */
+  private static final int BYTES_PER_VALUE = 8;
+
+  private final MaterializationService service;
+  private final Lattice lattice;
+  private final CalciteSchema schema;
+  private final long memoryBudget;
+  private final Executor executor;
+
+  /** Tiles that this advisor has created, keyed by their dimensions. */
+  private final Map<ImmutableBitSet, TileKey> tiles = new HashMap<>();
+
+  /** Creates a TileAdvisor.
+   *
+   * @param lattice      Lattice
+   * @param schema       Schema that contains the lattice, in which tiles are
+   *                     created
+   * @param memoryBudget Maximum total estimated size, in bytes, of the tiles
+   *                     that the advisor creates
+   * @param executor     Executor that populates tiles
+   */
+  public TileAdvisor(Lattice lattice, CalciteSchema schema, long memoryBudget,
+      Executor executor) {
+    this.service = MaterializationService.instance();
+    this.lattice = Preconditions.checkNotNull(lattice);
+    this.schema = Preconditions.checkNotNull(schema);
+    this.memoryBudget = memoryBudget;
+    this.executor = Preconditions.checkNotNull(executor);
+    service.registerAdvisor(lattice);
+  }
+
+  /** Returns the tiles that this advisor has created and not yet removed. */
+  public synchronized List<TileKey> getTiles() {
+    return ImmutableList.copyOf(tiles.values());
+  }
+
+  /** Stops recording requests for the lattice's tiles, unless it has another
+   * advisor. Does not remove the tiles that this advisor created. */
+  public void close() {
+    service.unregisterAdvisor(lattice);
+  }
+
+  public synchronized void run() {
+    final Map<TileKey, Integer> requests = service.decayTileRequests(lattice);
+    final List<TileKey> chosen = choose(requests);
+
+    // Remove tiles that we created previously and no longer need.
+    final Map<ImmutableBitSet, TileKey> chosenByDimensions = new HashMap<>();
+    for (TileKey tileKey : chosen) {
+      chosenByDimensions.put(tileKey.dimensions, tileKey);
+    }
+    for (Iterator<Map.Entry<ImmutableBitSet, TileKey>> iterator =
+             tiles.entrySet().iterator(); iterator.hasNext();) {
+      final Map.Entry<ImmutableBitSet, TileKey> entry = iterator.next();
+      if (!chosenByDimensions.containsKey(entry.getKey())) {
+        service.removeTile(entry.getValue());
+        iterator.remove();
+      }
+    }
+
+    // Create tiles that we need and do not have.
+    final Map<TileKey, CalciteSchema.TableEntry> validTiles =
+        service.tiles(lattice);
+    for (TileKey tileKey : chosen) {
+      final TileKey existing = tiles.get(tileKey.dimensions);
+      if (existing != null
+          && validTiles.containsKey(existing)
+          && MaterializationService.allSatisfiable(tileKey.measures,
+              existing)) {
+        continue;
+      }
+      if (existing != null) {
+        // The tile we built at these dimensions lacks measures that we now
+        // need. Remove it, so that its table does not outlive our record of
+        // it, then build a wider tile.
+        service.removeTile(existing);
+        tiles.remove(tileKey.dimensions);
+      }
+      final Pair<CalciteSchema.TableEntry, TileKey> pair =
+          service.defineTile(lattice, tileKey.dimensions, tileKey.measures,
+              schema, true, true);
+      if (pair != null) {
+        tiles.put(tileKey.dimensions, pair.right);
+        executor.execute(populate(pair.left));
+      }
+    }
+  }
+
+  /** Chooses the tiles to materialize, given the number of times that each
+   * combination of dimensions and measures has been requested. */
+  private List<TileKey> choose(Map<TileKey, Integer> requests) {
+    // For each request, the number of rows that a query must currently read
+    // to satisfy it: from the fact table, or from the smallest tile not
+    // created by this advisor that can roll up to it.
+    final double factRowCount = lattice.getFactRowCount();
+    final Map<TileKey, Double> costs = new HashMap<>();
+    for (TileKey request : requests.keySet()) {
+      costs.put(request, factRowCount);
+    }
+    final Map<ImmutableBitSet, Double> rowCounts = new HashMap<>();
+    final List<ImmutableBitSet> foreignDimensions = new ArrayList<>();
+    for (TileKey tileKey : service.tiles(lattice).keySet()) {
+      if (tiles.containsValue(tileKey)) {
+        continue;
+      }
+      foreignDimensions.add(tileKey.dimensions);
+      reduceCosts(tileKey, rowCount(tileKey.dimensions, rowCounts), costs);
+    }
+
+    // Candidates are the combinations of dimensions that queries have asked
+    // for, each with all of the measures needed by requests it can serve.
+    final Map<ImmutableBitSet, TreeSet<Lattice.Measure>> measuresByDimensions =
+        new HashMap<>();
+    for (TileKey request : requests.keySet()) {
+      if (!foreignDimensions.contains(request.dimensions)) {
+        measuresByDimensions.put(request.dimensions,
+            new TreeSet<Lattice.Measure>());
+      }
+    }
+    for (Map.Entry<ImmutableBitSet, TreeSet<Lattice.Measure>> entry
+        : measuresByDimensions.entrySet()) {
+      for (TileKey request : requests.keySet()) {
+        if (entry.getKey().contains(request.dimensions)) {
+          entry.getValue().addAll(request.measures);
+        }
+      }
+    }
+    final List<TileKey> candidates = new ArrayList<>();
+    for (Map.Entry<ImmutableBitSet, TreeSet<Lattice.Measure>> entry
+        : measuresByDimensions.entrySet()) {
+      candidates.add(
+          new TileKey(lattice, entry.getKey(),
+              ImmutableList.copyOf(entry.getValue())));
+    }
+
+    final List<TileKey> chosen = new ArrayList<>();
+    double bytesUsed = 0d;
+    for (;;) {
+      TileKey best = null;
+      double bestScore = 0d;
+      double bestBytes = 0d;
+      for (TileKey candidate : candidates) {
+        if (chosen.contains(candidate)) {
+          continue;
+        }
+        final double rowCount = rowCount(candidate.dimensions, rowCounts);
+        final double bytes = rowCount * BYTES_PER_VALUE
+            * (candidate.dimensions.cardinality() + candidate.measures.size());
+        if (bytesUsed + bytes > memoryBudget) {
+          continue;
+        }
+        double benefit = 0d;
+        for (Map.Entry<TileKey, Integer> request : requests.entrySet()) {
+          if (canServe(candidate, request.getKey())) {
+            benefit += request.getValue()
+                * Math.max(0d, costs.get(request.getKey()) - rowCount);
+          }
+        }
+        final double score = benefit / Math.max(bytes, 1d);
+        if (score > bestScore) {
+          best = candidate;
+          bestScore = score;
+          bestBytes = bytes;
+        }
+      }
+      if (best == null) {
+        return chosen;
+      }
+      chosen.add(best);
+      bytesUsed += bestBytes;
+      reduceCosts(best, rowCount(best.dimensions, rowCounts), costs);
+    }
+  }
+
+  /** Reduces the cost of each request that a tile can serve to the number of
+   * rows in the tile. */
+  private static void reduceCosts(TileKey tileKey, double rowCount,
+      Map<TileKey, Double> costs) {
+    for (Map.Entry<TileKey, Double> entry : costs.entrySet()) {
+      if (canServe(tileKey, entry.getKey())
+          && rowCount < entry.getValue()) {
+        entry.setValue(rowCount);
+      }
+    }
+  }
+
+  /** Returns whether a tile can satisfy a request, possibly by rolling
+   * up. */
+  private static boolean canServe(TileKey tileKey, TileKey request) {
+    return tileKey.dimensions.contains(request.dimensions)
+        && MaterializationService.allSatisfiable(request.measures, tileKey);
+  }
+
+  private double rowCount(ImmutableBitSet dimensions,
+      Map<ImmutableBitSet, Double> rowCounts) {
+    Double rowCount = rowCounts.get(dimensions);
+    if (rowCount == null) {
+      final List<Lattice.Column> columns = new ArrayList<>();
+      for (int i : dimensions) {
+        columns.add(lattice.columns.get(i));
+      }
+      rowCount = lattice.getRowCount(columns);
+      rowCounts.put(dimensions, rowCount);
+    }
+    return rowCount;
+  }
+
+  /** Returns a task that reads a tile's table, so that the first query to
+   * use the tile does not have to wait while it is populated. */
+  private Runnable populate(final CalciteSchema.TableEntry tableEntry) {
+    return new Runnable() {
+      public void run() {
+        final Table table = tableEntry.getTable();
+        if (table instanceof ScannableTable) {
+          final CalciteConnection connection =
+              CalciteMetaImpl.connect(schema.root(), null);
+          final DataContext dataContext =
+              Schemas.createDataContext(connection, schema.root().plus());
+          ((ScannableTable) table).scan(dataContext).enumerator().close();
+        }
+      }
+    };
+  }
+}
+
+// End TileAdvisor.java
@@ -16,6 +16,8 @@
  */
 package org.apache.calcite.model;
 
+import java.util.Map;
+
 /**
  * JSON object representing a schema that maps to a JDBC database.
  *
@@ -69,6 +71,66 @@ public class JsonJdbcSchema extends JsonSchema {
    */
   public String jdbcSchema;
 
+  /** Number of rows to fetch from the JDBC data source at a time.
+   *
+   * <p>Optional. If not specified, the value of the connection property
+   * "jdbcFetchSize" is used.
+   */
+  public Integer fetchSize;
+
+  /** Whether to fetch rows from the JDBC data source incrementally, rather
+   * than letting the driver read the whole result of a query into memory.
+   *
+   * <p>Optional. If not specified, the value of the connection property
+   * "jdbcStreaming" is used.
+   */
+  public Boolean streaming;
+
+  /** Columns by which to partition scans of tables, keyed by table name.
+   *
+   * <p>Optional. When Calcite reads the whole of a table that has a partition
+   * column, for example to clone it, it reads the minimum and maximum values
+   * of the column, divides that range into {@link #partitionCount} ranges,
+   * and reads each range in parallel, on a separate connection. The column
+   * must be numeric, DATE or TIMESTAMP.
+   */
+  public Map<String, String> partitionColumns;
+
+  /** Number of partitions in which to scan a table that has a partition
+   * column.
+   *
+   * <p>Optional. Default is
+   * {@link org.apache.calcite.adapter.jdbc.JdbcSchema#DEFAULT_PARTITION_COUNT}.
+   */
+  public Integer partitionCount;
+
+  /** Number of milliseconds after which the list of tables, and their
+   * columns, are read again from the JDBC data source.
+   *
+   * <p>Optional. If not specified, the list of tables is read each time that
+   * the schema is refreshed, and the columns of each table when it is first
+   * used.
+   */
+  public Long metadataTtl;
+
+  /** Number of threads that read metadata from the JDBC data source in the
+   * background.
+   *
+   * <p>Optional. If specified, Calcite starts reading the list of tables when
+   * the schema is created, and then reads the columns of every table, rather
+   * than waiting until a query needs them.
+   */
+  public Integer metadataThreads;
+
+  /** Name of a file in which to store metadata read from the JDBC data
+   * source, so that it does not need to be read again if the process
+   * restarts.
+   *
+   * <p>Optional. The file is ignored if it is older than
+   * {@link #metadataTtl}.
+   */
+  public String metadataFile;
+
   @Override public void accept(ModelHandler handler) {
     handler.visit(this);
   }
@@ -86,6 +86,22 @@ public class JsonLattice {
    * real value, and cache the results. */
   public String statisticProvider;
 
+  /** Directory in which to save statistics, so that they can be re-used the
+   * next time the lattice is created.
+   *
+   * <p>Used by the
+   * {@link org.apache.calcite.materialize.Lattices#PROFILER profiler}
+   * statistic provider. If not set, statistics are computed each time. */
+  public String statisticDirectory;
+
+  /** Version of the data in the lattice's tables.
+   *
+   * <p>Saved statistics are re-used only if they were computed from the same
+   * version of the data and the same lattice definition. Change it whenever
+   * the data changes significantly; for example, set it to the time of the
+   * last load. */
+  public String statisticVersion;
+
   /** List of materialized aggregates to create up front. */
   public final List<JsonTile> tiles = new ArrayList<>();
 
@@ -38,6 +38,7 @@
 import org.apache.calcite.schema.impl.TableMacroImpl;
 import org.apache.calcite.schema.impl.ViewTable;
 import org.apache.calcite.sql.SqlDialectFactory;
+import org.apache.calcite.sql.SqlDialectFactoryImpl;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
 
@@ -321,18 +322,27 @@ public void visit(JsonJdbcSchema jsonSchema) {
             jsonSchema.jdbcDriver,
             jsonSchema.jdbcUser,
             jsonSchema.jdbcPassword);
-    final JdbcSchema schema;
+    final SqlDialectFactory factory;
     if (jsonSchema.sqlDialectFactory == null || jsonSchema.sqlDialectFactory.isEmpty()) {
-      schema =
-          JdbcSchema.create(parentSchema, jsonSchema.name, dataSource,
-              jsonSchema.jdbcCatalog, jsonSchema.jdbcSchema);
+      factory = SqlDialectFactoryImpl.INSTANCE;
     } else {
-      SqlDialectFactory factory = AvaticaUtils.instantiatePlugin(
+      factory = AvaticaUtils.instantiatePlugin(
           SqlDialectFactory.class, jsonSchema.sqlDialectFactory);
-      schema =
-          JdbcSchema.create(parentSchema, jsonSchema.name, dataSource,
-              factory, jsonSchema.jdbcCatalog, jsonSchema.jdbcSchema);
     }
+    final JdbcSchema schema =
+        JdbcSchema.create(parentSchema, jsonSchema.name, dataSource, factory,
+            jsonSchema.jdbcCatalog, jsonSchema.jdbcSchema, jsonSchema.fetchSize,
+            jsonSchema.streaming,
+            jsonSchema.partitionColumns == null
+                ? ImmutableMap.<String, String>of()
+                : jsonSchema.partitionColumns,
+            jsonSchema.partitionCount,
+            new JdbcSchema.MetadataOptions(
+                Util.first(jsonSchema.metadataTtl, 0L),
+                Util.first(jsonSchema.metadataThreads, 0),
+                jsonSchema.metadataFile == null
+                    ? null
+                    : new File(jsonSchema.metadataFile)));
     final SchemaPlus schemaPlus = parentSchema.add(jsonSchema.name, schema);
     populateSchema(jsonSchema, schemaPlus);
   }
@@ -391,6 +401,12 @@ public void visit(JsonLattice jsonLattice) {
       if (jsonLattice.statisticProvider != null) {
         latticeBuilder.statisticProvider(jsonLattice.statisticProvider);
       }
+      if (jsonLattice.statisticDirectory != null) {
+        latticeBuilder.statisticDirectory(jsonLattice.statisticDirectory);
+      }
+      if (jsonLattice.statisticVersion != null) {
+        latticeBuilder.statisticVersion(jsonLattice.statisticVersion);
+      }
       populateLattice(jsonLattice, latticeBuilder);
       schema.add(jsonLattice.name, latticeBuilder.build());
     } catch (Exception e) {
@@ -60,6 +60,10 @@ public RelNode rewrite(RelNode node) {
    * <p>The current implementation creates a materialization and populates it,
    * provided that {@link Lattice#auto} is true.
    *
+   * <p>Records the request, so that a
+   * {@link org.apache.calcite.materialize.TileAdvisor} can later materialize
+   * the tiles that queries use most.
+   *
    * <p>Future implementations might return materializations at a different
    * level of aggregation, from which the desired result can be obtained by
    * rolling up.
@@ -78,6 +82,7 @@ public Pair<CalciteSchema.TableEntry, TileKey> getAggregate(
       return null;
     }
     final MaterializationService service = MaterializationService.instance();
+    service.recordTileRequest(lattice, groupSet, measureList);
     boolean create = lattice.auto && config.createMaterializations();
     final CalciteSchema schema = starRelOptTable.unwrap(CalciteSchema.class);
     return service.defineTile(lattice, groupSet, measureList, schema, create,
@@ -192,6 +192,14 @@ public Class<? extends RelNode> getMatchedClass() {
     return clazz;
   }
 
+  /**
+   * Returns the trait that a relational expression must have to match this
+   * operand, or null if it may have any trait.
+   */
+  public RelTrait getTrait() {
+    return trait;
+  }
+
   /**
    * Returns the child operands.
    *
@@ -48,7 +48,20 @@ public enum HepMatchOrder {
    * {@link #ARBITRARY} in cases such as
    * {@link org.apache.calcite.rel.core.Union} with large fan-out.
    */
-  DEPTH_FIRST
+  DEPTH_FIRST,
+
+  /**
+   * Match incrementally, using a work-list.
+   *
+   * <p>Visits each vertex once, in depth-first order, trying only those
+   * rules whose root operand matches the class of the vertex's relational
+   * expression. After a transformation, visits only the vertices that it
+   * may have affected: the new vertices, their inputs, and the ancestors of
+   * the new vertex. It reaches the same fixed point as {@link #ARBITRARY},
+   * but does not scan the whole graph after each transformation, so it is
+   * much more efficient on large graphs.
+   */
+  INCREMENTAL
 }
 
 // End HepMatchOrder.java
@@ -48,10 +48,13 @@
 import org.apache.calcite.util.graph.TopologicalOrderIterator;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -96,6 +99,12 @@ public class HepPlanner extends AbstractRelOptPlanner {
 
   private final Function2<RelNode, RelNode, Void> onCopyHook;
 
+  /**
+   * If not null, {@link #addRelToGraph(RelNode)} adds to this list each vertex
+   * that it creates. Used in {@link HepMatchOrder#INCREMENTAL} order.
+   */
+  private List<HepRelVertex> newVertices;
+
   //~ Constructors -----------------------------------------------------------
 
   /**
@@ -398,6 +407,11 @@ private void applyRules(
 
     LOGGER.trace("Applying rule set {}", rules);
 
+    if (currentProgram.matchOrder == HepMatchOrder.INCREMENTAL) {
+      applyRulesIncrementally(rules, forceConversions);
+      return;
+    }
+
     boolean fullRestartAfterTransformation =
         currentProgram.matchOrder != HepMatchOrder.ARBITRARY
         && currentProgram.matchOrder != HepMatchOrder.DEPTH_FIRST;
@@ -444,6 +458,132 @@ private void applyRules(
     } while (!fixedPoint);
   }
 
+  /** Applies rules in {@link HepMatchOrder#INCREMENTAL} order.
+   *
+   * <p>Visits every vertex once, then only those vertices that a
+   * transformation may have affected, until there are none left. */
+  private void applyRulesIncrementally(Collection<RelOptRule> rules,
+      boolean forceConversions) {
+    // Rules that may match each class of relational expression, according to
+    // the class of the rule's root operand.
+    final Map<Class<? extends RelNode>, List<RelOptRule>> rulesByClass =
+        new HashMap<>();
+
+    // Rules can't deal with firing on garbage, and requeue assumes that
+    // there is none.
+    collectGarbage();
+
+    // Vertices to visit; "queued" contains the same vertices, for fast
+    // lookup.
+    final Deque<HepRelVertex> queue = new ArrayDeque<>();
+    final Set<HepRelVertex> queued = new HashSet<>();
+    for (HepRelVertex vertex : DepthFirstIterator.of(graph, root)) {
+      queue.add(vertex);
+      queued.add(vertex);
+    }
+
+    int nMatches = 0;
+    final List<HepRelVertex> savedNewVertices = newVertices;
+    try {
+      while (!queue.isEmpty()) {
+        final HepRelVertex vertex = queue.removeFirst();
+        queued.remove(vertex);
+        if (!graph.vertexSet().contains(vertex)) {
+          // Vertex has been garbage-collected.
+          continue;
+        }
+        final Class<? extends RelNode> relClass =
+            vertex.getCurrentRel().getClass();
+        List<RelOptRule> classRules = rulesByClass.get(relClass);
+        if (classRules == null) {
+          classRules = new ArrayList<>();
+          for (RelOptRule rule : rules) {
+            if (rule.getOperand().getMatchedClass()
+                .isAssignableFrom(relClass)) {
+              classRules.add(rule);
+            }
+          }
+          rulesByClass.put(relClass, classRules);
+        }
+        for (RelOptRule rule : classRules) {
+          newVertices = new ArrayList<>();
+          final HepRelVertex newVertex =
+              applyRule(rule, vertex, forceConversions);
+          if (newVertex == null || newVertex == vertex) {
+            continue;
+          }
+          ++nMatches;
+          if (nMatches >= currentProgram.matchLimit) {
+            return;
+          }
+          requeue(queue, queued, vertex, newVertex, newVertices);
+          break;
+        }
+      }
+    } finally {
+      newVertices = savedNewVertices;
+    }
+  }
+
+  /** Called after {@code vertex} has been transformed into
+   * {@code newVertex}; collects any garbage it left, and adds to the front
+   * of the queue the vertices that may now match rules that they did not
+   * before.
+   *
+   * <p>These are: the new vertex and any other vertices created by the
+   * transformation; their inputs, which have new parents (significant for
+   * converter rules and {@link CommonRelSubExprRule}s); and all ancestors of
+   * the new vertex, because they might match rules whose operands reach
+   * down to it, or whose conditions depend on metadata of their inputs. */
+  private void requeue(Deque<HepRelVertex> queue, Set<HepRelVertex> queued,
+      HepRelVertex vertex, HepRelVertex newVertex,
+      List<HepRelVertex> createdVertices) {
+    // The graph contained no garbage before the transformation, so the only
+    // vertices that can have become garbage are the vertex that was replaced
+    // and its descendants, and vertices that were created but are not used.
+    final List<HepRelVertex> candidates = new ArrayList<>();
+    candidates.add(vertex);
+    candidates.add(newVertex);
+    candidates.addAll(createdVertices);
+    collectGarbage(candidates);
+
+    final List<HepRelVertex> list = new ArrayList<>();
+    final Set<HepRelVertex> seen = new HashSet<>();
+    list.add(newVertex);
+    seen.add(newVertex);
+    for (HepRelVertex created : createdVertices) {
+      if (seen.add(created)) {
+        list.add(created);
+      }
+    }
+    for (int i = 0, n = list.size(); i < n; i++) {
+      for (RelNode input : list.get(i).getCurrentRel().getInputs()) {
+        if (seen.add((HepRelVertex) input)) {
+          list.add((HepRelVertex) input);
+        }
+      }
+    }
+    final Deque<HepRelVertex> ancestors = new ArrayDeque<>();
+    ancestors.add(newVertex);
+    while (!ancestors.isEmpty()) {
+      for (HepRelVertex parent
+          : Graphs.predecessorListOf(graph, ancestors.removeFirst())) {
+        if (seen.add(parent)) {
+          list.add(parent);
+          ancestors.add(parent);
+        }
+      }
+    }
+
+    // Push in reverse, so that the new vertex is visited first. A vertex
+    // that is already queued stays where it is.
+    for (HepRelVertex v : Lists.reverse(list)) {
+      if (graph.vertexSet().contains(v) && queued.add(v)) {
+        queue.addFirst(v);
+      }
+    }
+  }
+
   private Iterator<HepRelVertex> getGraphIterator(HepRelVertex start) {
     // Make sure there's no garbage, because topological sort
     // doesn't start from a specific root, and rules can't
@@ -458,6 +598,7 @@ private Iterator<HepRelVertex> getGraphIterator(HepRelVertex start) {
     switch (currentProgram.matchOrder) {
     case ARBITRARY:
     case DEPTH_FIRST:
+    case INCREMENTAL:
       return DepthFirstIterator.of(graph, start).iterator();
 
     case TOP_DOWN:
@@ -831,6 +972,9 @@ private HepRelVertex addRelToGraph(
     HepRelVertex newVertex = new HepRelVertex(rel);
     graph.addVertex(newVertex);
     updateVertex(newVertex, rel);
+    if (newVertices != null) {
+      newVertices.add(newVertex);
+    }
 
     for (RelNode input : rel.getInputs()) {
       graph.addEdge(newVertex, (HepRelVertex) input);
@@ -973,6 +1117,78 @@ private void collectGarbage() {
     }
   }
 
+  /** Removes those of {@code candidates} that are no longer reachable from
+   * the root, and their descendants that are reachable only through them.
+   *
+   * <p>Unlike {@link #collectGarbage()}, does not mark the whole graph. It
+   * counts the parents of the candidates and their descendants, and sweeps
+   * vertices whose count drops to zero. It is only precise if every vertex
+   * that is not a candidate was reachable before. */
+  private void collectGarbage(Collection<HepRelVertex> candidates) {
+    // Find the candidates and their descendants.
+    final Map<HepRelVertex, Integer> parentCounts = new HashMap<>();
+    final Deque<HepRelVertex> stack = new ArrayDeque<>();
+    for (HepRelVertex candidate : candidates) {
+      if (graph.vertexSet().contains(candidate)
+          && parentCounts.put(candidate, 0) == null) {
+        stack.push(candidate);
+      }
+    }
+    while (!stack.isEmpty()) {
+      for (DefaultEdge edge : graph.getOutwardEdges(stack.pop())) {
+        final HepRelVertex child = (HepRelVertex) edge.target;
+        if (!parentCounts.containsKey(child)) {
+          parentCounts.put(child, 0);
+          stack.push(child);
+        }
+      }
+    }
+
+    // Count their parents.
+    for (HepRelVertex vertex : graph.vertexSet()) {
+      for (DefaultEdge edge : graph.getOutwardEdges(vertex)) {
+        final Integer count = parentCounts.get(edge.target);
+        if (count != null) {
+          parentCounts.put((HepRelVertex) edge.target, count + 1);
+        }
+      }
+    }
+
+    // Sweep the candidates that have no parents, then each descendant whose
+    // parents have all been swept.
+    final Set<HepRelVertex> sweepSet = new HashSet<>();
+    for (HepRelVertex candidate : candidates) {
+      if (candidate != root
+          && Integer.valueOf(0).equals(parentCounts.get(candidate))
+          && sweepSet.add(candidate)) {
+        stack.push(candidate);
+      }
+    }
+    while (!stack.isEmpty()) {
+      for (DefaultEdge edge : graph.getOutwardEdges(stack.pop())) {
+        final HepRelVertex child = (HepRelVertex) edge.target;
+        final int count = parentCounts.get(child) - 1;
+        parentCounts.put(child, count);
+        if (count == 0 && child != root && sweepSet.add(child)) {
+          stack.push(child);
+        }
+      }
+    }
+    if (sweepSet.isEmpty()) {
+      return;
+    }
+
+    LOGGER.trace("collecting garbage below replaced vertex");
+    for (HepRelVertex vertex : sweepSet) {
+      notifyDiscard(vertex.getCurrentRel());
+      final String digest = vertex.getCurrentRel().toString();
+      if (mapDigestToVertex.get(digest) == vertex) {
+        mapDigestToVertex.remove(digest);
+      }
+    }
+    graph.removeAllVertices(sweepSet);
+  }
+
   private void assertNoCycles() {
     // Verify that the graph is acyclic.
     final CycleDetector<HepRelVertex, DefaultEdge> cycleDetector =
@@ -21,7 +21,6 @@
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelNodes;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
-import org.apache.calcite.util.ChunkList;
 import org.apache.calcite.util.Util;
 import org.apache.calcite.util.trace.CalciteTrace;
 
@@ -43,7 +42,9 @@
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -89,12 +90,6 @@ class RuleQueue {
   final Map<VolcanoPlannerPhase, PhaseMatchList> matchListMap =
       new EnumMap<>(VolcanoPlannerPhase.class);
 
-  /**
-   * Sorts rule-matches into decreasing order of importance.
-   */
-  private static final Comparator<VolcanoRuleMatch> MATCH_COMPARATOR =
-      new RuleMatchImportanceComparator();
-
   private final VolcanoPlanner planner;
 
   /**
@@ -157,6 +152,14 @@ public void phaseCompleted(VolcanoPlannerPhase phase) {
     matchListMap.get(phase).clear();
   }
 
+  /**
+   * Returns the number of rule-matches waiting to be fired in the given
+   * planner phase.
+   */
+  public int matchCount(VolcanoPlannerPhase phase) {
+    return matchListMap.get(phase).size();
+  }
+
   /**
    * Computes the importance of a set (which is that of its most important
    * subset).
@@ -287,6 +290,7 @@ void updateImportance(RelSubset subset, Double importance) {
       if (relMatchMap.containsKey(subset)) {
         for (VolcanoRuleMatch match : relMatchMap.get(subset)) {
           match.clearCachedImportance();
+          matchList.invalidate(match);
         }
       }
     }
@@ -348,7 +352,7 @@ void addMatch(VolcanoRuleMatch match) {
 
       LOGGER.trace("{} Rule-match queued: {}", matchList.phase.toString(), matchName);
 
-      matchList.list.add(match);
+      matchList.add(match);
 
       matchList.matchMap.put(
           planner.getSubset(match.rels[0]), match);
@@ -445,19 +449,16 @@ VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase) {
           + " after phase complete");
     }
 
-    final List<VolcanoRuleMatch> matchList = phaseMatchList.list;
     VolcanoRuleMatch match;
     for (;;) {
-      if (matchList.isEmpty()) {
+      match = phaseMatchList.poll();
+      if (match == null) {
         return null;
       }
       if (LOGGER.isTraceEnabled()) {
-        Collections.sort(matchList, MATCH_COMPARATOR);
-        match = matchList.remove(0);
-
         StringBuilder b = new StringBuilder();
         b.append("Sorted rule queue:");
-        for (VolcanoRuleMatch match2 : matchList) {
+        for (VolcanoRuleMatch match2 : phaseMatchList.sortedMatches()) {
           final double importance = match2.computeImportance();
           b.append("\n");
           b.append(match2);
@@ -466,21 +467,6 @@ VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase) {
         }
 
         LOGGER.trace(b.toString());
-      } else {
-        // If we're not tracing, it's not worth the effort of sorting the
-        // list to find the minimum.
-        match = null;
-        int bestPos = -1;
-        int i = -1;
-        for (VolcanoRuleMatch match2 : matchList) {
-          ++i;
-          if (match == null
-              || MATCH_COMPARATOR.compare(match2, match) < 0) {
-            bestPos = i;
-            match = match2;
-          }
-        }
-        match = matchList.remove(bestPos);
       }
 
       if (skipMatch(match)) {
@@ -597,6 +583,26 @@ private double toDouble(RelOptCost cost) {
     }
   }
 
+  /**
+   * Compares {@link VolcanoRuleMatch} objects according to their importance.
+   * Matches which are more important collate earlier. Ties are adjudicated by
+   * comparing the {@link RelNode#getId id}s of the relational expressions
+   * matched.
+   */
+  private static int compareMatches(double imp1, VolcanoRuleMatch match1,
+      double imp2, VolcanoRuleMatch match2) {
+    int c = Double.compare(imp1, imp2);
+    if (c != 0) {
+      return -c;
+    }
+    c = match1.rule.getClass().getName()
+        .compareTo(match2.rule.getClass().getName());
+    if (c != 0) {
+      return -c;
+    }
+    return -RelNodes.compareRels(match1.rels, match2.rels);
+  }
+
   private static double computeOneMinusEpsilon() {
     for (double d = 0d;;) {
       double d0 = d;
@@ -627,27 +633,32 @@ public int compare(
   }
 
   /**
-   * Compares {@link VolcanoRuleMatch} objects according to their importance.
-   * Matches which are more important collate earlier. Ties are adjudicated by
-   * comparing the {@link RelNode#getId id}s of the relational expressions
-   * matched.
+   * A rule-match in the heap of a {@link PhaseMatchList}, with the importance
+   * by which it is currently ordered.
    */
-  private static class RuleMatchImportanceComparator
-      implements Comparator<VolcanoRuleMatch> {
-    public int compare(VolcanoRuleMatch match1,
-        VolcanoRuleMatch match2) {
-      double imp1 = match1.getImportance();
-      double imp2 = match2.getImportance();
-      int c = Double.compare(imp1, imp2);
-      if (c != 0) {
-        return -c;
-      }
-      c = match1.rule.getClass().getName()
-          .compareTo(match2.rule.getClass().getName());
-      if (c != 0) {
-        return -c;
-      }
-      return -RelNodes.compareRels(match1.rels, match2.rels);
+  private static class MatchEntry {
+    final VolcanoRuleMatch match;
+
+    /** Order in which the match was added; breaks remaining ties, so that
+     * matches that are otherwise equal are popped first-in, first-out. */
+    final int ordinal;
+
+    /** Importance of the match when it was last placed in the heap. */
+    double importance;
+
+    /** Position in the heap, or -1 if not yet placed in the heap. */
+    int index = -1;
+
+    MatchEntry(VolcanoRuleMatch match, int ordinal) {
+      this.match = match;
+      this.ordinal = ordinal;
+    }
+
+    /** Returns whether this entry should be popped before another. */
+    boolean precedes(MatchEntry e) {
+      final int c =
+          compareMatches(importance, match, e.importance, e.match);
+      return c < 0 || c == 0 && ordinal < e.ordinal;
     }
   }
 
@@ -663,19 +674,34 @@ private static class PhaseMatchList {
     final VolcanoPlannerPhase phase;
 
     /**
-     * Current list of VolcanoRuleMatches for this phase. New rule-matches
-     * are appended to the end of this list. When removing a rule-match, the
-     * list is sorted and the highest importance rule-match removed. It is
-     * important for performance that this list remain mostly sorted.
-     *
-     * <p>Use a hunkList because {@link java.util.ArrayList} does not implement
-     * remove(0) efficiently.</p>
+     * Current VolcanoRuleMatches for this phase, in a binary heap whose root
+     * is the most important rule-match. Adding or removing a rule-match, or
+     * changing its importance, costs O(log n) rather than the O(n) of
+     * searching a list.
+     */
+    private final List<MatchEntry> heap = new ArrayList<>();
+
+    /**
+     * Entry for each rule-match in this phase, whether or not it has yet
+     * been placed in {@link #heap}.
      */
-    final List<VolcanoRuleMatch> list = new ChunkList<>();
+    private final Map<VolcanoRuleMatch, MatchEntry> entries =
+        new IdentityHashMap<>();
 
     /**
-     * A set of rule-match names contained in {@link #list}. Allows fast
-     * detection of duplicate rule-matches.
+     * Entries that are not yet in {@link #heap}, or whose importance may
+     * have changed since they were placed there. They are (re)placed the
+     * next time a rule-match is popped; until then, their importance is not
+     * computed.
+     */
+    private final Set<MatchEntry> dirty = new LinkedHashSet<>();
+
+    /** Number of rule-matches ever added; gives each entry its ordinal. */
+    private int addCount;
+
+    /**
+     * A set of rule-match names that have been added to this phase. Allows
+     * fast detection of duplicate rule-matches.
      */
     final Set<String> names = new HashSet<>();
 
@@ -694,10 +720,121 @@ private static class PhaseMatchList {
     }
 
     void clear() {
-      list.clear();
+      heap.clear();
+      entries.clear();
+      dirty.clear();
       names.clear();
       matchMap.clear();
     }
+
+    /** Returns the number of rule-matches. */
+    int size() {
+      return entries.size();
+    }
+
+    /** Adds a rule-match. */
+    void add(VolcanoRuleMatch match) {
+      final MatchEntry entry = new MatchEntry(match, addCount++);
+      entries.put(match, entry);
+      dirty.add(entry);
+    }
+
+    /** Notes that the importance of a rule-match may have changed. */
+    void invalidate(VolcanoRuleMatch match) {
+      final MatchEntry entry = entries.get(match);
+      if (entry != null) {
+        dirty.add(entry);
+      }
+    }
+
+    /** Removes the most important rule-match, and returns it; or returns
+     * null if there are no rule-matches. */
+    VolcanoRuleMatch poll() {
+      flush();
+      if (heap.isEmpty()) {
+        return null;
+      }
+      final MatchEntry entry = heap.get(0);
+      final MatchEntry last = heap.remove(heap.size() - 1);
+      if (last != entry) {
+        set(0, last);
+        siftDown(last);
+      }
+      entries.remove(entry.match);
+      return entry.match;
+    }
+
+    /** Returns the remaining rule-matches, most important first. */
+    List<VolcanoRuleMatch> sortedMatches() {
+      flush();
+      final List<MatchEntry> list = new ArrayList<>(heap);
+      Collections.sort(list,
+          new Comparator<MatchEntry>() {
+            public int compare(MatchEntry e1, MatchEntry e2) {
+              return e1.precedes(e2) ? -1 : e2.precedes(e1) ? 1 : 0;
+            }
+          });
+      final List<VolcanoRuleMatch> matches = new ArrayList<>();
+      for (MatchEntry entry : list) {
+        matches.add(entry.match);
+      }
+      return matches;
+    }
+
+    /** Computes the importance of dirty entries, and moves them to their
+     * correct places in the heap. */
+    private void flush() {
+      for (MatchEntry entry : dirty) {
+        final double importance = entry.match.getImportance();
+        if (entry.index < 0) {
+          entry.importance = importance;
+          heap.add(entry);
+          entry.index = heap.size() - 1;
+          siftUp(entry);
+        } else if (importance != entry.importance) {
+          entry.importance = importance;
+          siftUp(entry);
+          siftDown(entry);
+        }
+      }
+      dirty.clear();
+    }
+
+    private void siftUp(MatchEntry entry) {
+      while (entry.index > 0) {
+        final MatchEntry parent = heap.get((entry.index - 1) / 2);
+        if (!entry.precedes(parent)) {
+          break;
+        }
+        final int i = entry.index;
+        set(parent.index, entry);
+        set(i, parent);
+      }
+    }
+
+    private void siftDown(MatchEntry entry) {
+      for (;;) {
+        final int left = entry.index * 2 + 1;
+        if (left >= heap.size()) {
+          break;
+        }
+        MatchEntry child = heap.get(left);
+        if (left + 1 < heap.size() && heap.get(left + 1).precedes(child)) {
+          child = heap.get(left + 1);
+        }
+        if (!child.precedes(entry)) {
+          break;
+        }
+        final int i = entry.index;
+        set(child.index, entry);
+        set(i, child);
+      }
+    }
+
+    private void set(int index, MatchEntry entry) {
+      heap.set(index, entry);
+      entry.index = index;
+    }
   }
 }
 
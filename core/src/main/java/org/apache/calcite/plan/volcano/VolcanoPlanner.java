@@ -18,6 +18,7 @@
 
 import org.apache.calcite.avatica.util.Spaces;
 import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.apache.calcite.plan.AbstractRelOptPlanner;
 import org.apache.calcite.plan.Context;
@@ -66,6 +67,7 @@
 import org.apache.calcite.util.SaffronProperties;
 import org.apache.calcite.util.Util;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.LinkedListMultimap;
@@ -88,6 +90,7 @@
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -131,6 +134,20 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
    */
   protected boolean impatient = false;
 
+  /**
+   * Number of milliseconds that {@link #findBestExp()} may spend firing
+   * rules, or 0 for no limit, or -1 to use the
+   * {@link CalciteConnectionProperty#PLANNING_TIMEOUT planning timeout} of
+   * the connection.
+   */
+  private long planningTimeout = -1;
+
+  /**
+   * If the most recent call to {@link #findBestExp()} stopped because its
+   * planning timeout expired, describes what happened; otherwise null.
+   */
+  private TimeoutReport timeoutReport;
+
   /**
    * Operands that apply to a given class of {@link RelNode}.
    *
@@ -141,11 +158,37 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
   private final Multimap<Class<? extends RelNode>, RelOptRuleOperand>
       classOperands = LinkedListMultimap.create();
 
+  /**
+   * Operands that may match a relational expression of a given class and
+   * calling convention.
+   *
+   * <p>Each list is the subset of {@link #classOperands} for the class whose
+   * operands either have no trait or have a trait that is not a convention
+   * or is that convention. Built on first use and discarded whenever the
+   * rules change, so that {@link #fireRules} does not test operands that
+   * cannot match.</p>
+   */
+  private final Map<Pair<Class<? extends RelNode>, Convention>,
+      List<RelOptRuleOperand>> operandIndex = new HashMap<>();
+
+  /**
+   * Number of times that an operand has been tested against a relational
+   * expression, and the number of times that the test succeeded.
+   */
+  long operandMatchAttemptCount;
+  long operandMatchCount;
+
   /**
    * List of all sets. Used only for debugging.
    */
   final List<RelSet> allSets = new ArrayList<>();
 
+  /**
+   * Sets that have gained relational expressions or been merged since
+   * cached metadata was last cleared. See {@link #clearChangedMetadata}.
+   */
+  private final Set<RelSet> changedSets = new LinkedHashSet<>();
+
   /**
    * Canonical map from {@link String digest} to the unique
    * {@link RelNode relational expression} with that digest.
@@ -433,7 +476,9 @@ public RelSet getSet(RelNode rel) {
       removeRule(rule);
     }
     this.classOperands.clear();
+    this.operandIndex.clear();
     this.allSets.clear();
+    this.changedSets.clear();
     this.mapDigestToRel.clear();
     this.mapRel2Subset.clear();
     this.relImportances.clear();
@@ -478,6 +523,7 @@ public boolean addRule(RelOptRule rule) {
         classOperands.put(subClass, operand);
       }
     }
+    operandIndex.clear();
 
     // If this is a converter rule, check that it operates on one of the
     // kinds of trait we are interested in, and if so, register the rule
@@ -512,6 +558,7 @@ public boolean removeRule(RelOptRule rule) {
         iter.remove();
       }
     }
+    operandIndex.clear();
 
     // Remove trait mappings. (In particular, entries from conversion
     // graph.)
@@ -539,6 +586,7 @@ public boolean removeRule(RelOptRule rule) {
         }
       }
     }
+    operandIndex.clear();
   }
 
   public RelNode changeTraits(final RelNode rel, RelTraitSet toTraits) {
@@ -576,6 +624,9 @@ public RelOptPlanner chooseDelegate() {
    * number of iterations necessary to first reach an implementable plan or 25
    * iterations whichever is larger).</li>
    * <li>For non-ambitious planners: When an implementable plan is found.</li>
+   * <li>When the {@link #getPlanningTimeout() planning timeout} has expired
+   * and an implementable plan has been found. Planning stops in all phases,
+   * and {@link #getTimeoutReport()} describes the plan returned.</li>
    * </ol>
    *
    * <p>Furthermore, after every 10 iterations without an implementable plan,
@@ -591,6 +642,13 @@ public RelNode findBestExp() {
     ensureRootConverters();
     registerMaterializations();
     int cumulativeTicks = 0;
+    final long timeout = getPlanningTimeout();
+    final long startNanos = System.nanoTime();
+    final long deadlineNanos =
+        timeout == 0 ? Long.MAX_VALUE : startNanos + timeout * 1000000L;
+    RelOptCost firstCost = null;
+    timeoutReport = null;
+  phases:
     for (VolcanoPlannerPhase phase : VolcanoPlannerPhase.values()) {
       setInitialImportance();
 
@@ -603,6 +661,25 @@ public RelNode findBestExp() {
       while (true) {
         ++tick;
         ++cumulativeTicks;
+        if (firstCost == null && !root.bestCost.isInfinite()) {
+          firstCost = root.bestCost;
+        }
+        if (firstCost != null
+            && deadlineNanos != Long.MAX_VALUE
+            && System.nanoTime() - deadlineNanos > 0) {
+          // Out of time. We have a plan, so use the best so far. (If we
+          // had no plan, we would keep going until we found one.)
+          timeoutReport =
+              new TimeoutReport(timeout,
+                  (System.nanoTime() - startNanos) / 1000000L,
+                  cumulativeTicks, firstCost, root.bestCost,
+                  ruleQueue.matchCount(phase));
+          LOGGER.debug("Planning timeout of {} ms expired; {}", timeout,
+              timeoutReport);
+          Hook.PLANNER_TIMEOUT.run(timeoutReport);
+          ruleQueue.phaseCompleted(phase);
+          break phases;
+        }
         if (root.bestCost.isLe(targetCost)) {
           if (firstFiniteTick < 0) {
             firstFiniteTick = cumulativeTicks;
@@ -669,6 +746,9 @@ public RelNode findBestExp() {
           "Cheapest plan:\n{}", RelOptUtil.toString(cheapest, SqlExplainLevel.ALL_ATTRIBUTES));
 
       LOGGER.debug("Provenance:\n{}", provenance(cheapest));
+      LOGGER.debug("Operand matches: {} of {} attempts", operandMatchCount,
+          operandMatchAttemptCount);
+      LOGGER.debug("Metadata: {}", cheapest.getCluster().getMetadataQuery().cache);
     }
     return cheapest;
   }
@@ -1350,8 +1430,10 @@ private RelSubset canonize(final RelSubset subset) {
   void fireRules(
       RelNode rel,
       boolean deferred) {
-    for (RelOptRuleOperand operand : classOperands.get(rel.getClass())) {
+    for (RelOptRuleOperand operand : getOperands(rel)) {
+      ++operandMatchAttemptCount;
       if (operand.matches(rel)) {
+        ++operandMatchCount;
         final VolcanoRuleCall ruleCall;
         if (deferred) {
           ruleCall = new DeferringRuleCall(this, operand);
@@ -1363,6 +1445,45 @@ void fireRules(
     }
   }
 
+  /**
+   * Returns the operands that may match a relational expression, based on
+   * its class and calling convention.
+   */
+  private List<RelOptRuleOperand> getOperands(RelNode rel) {
+    final Class<? extends RelNode> clazz = rel.getClass();
+    final Convention convention = rel.getConvention();
+    final Pair<Class<? extends RelNode>, Convention> key =
+        Pair.<Class<? extends RelNode>, Convention>of(clazz, convention);
+    List<RelOptRuleOperand> operands = operandIndex.get(key);
+    if (operands == null) {
+      final ImmutableList.Builder<RelOptRuleOperand> builder =
+          ImmutableList.builder();
+      for (RelOptRuleOperand operand : classOperands.get(clazz)) {
+        final RelTrait trait = operand.getTrait();
+        if (trait instanceof Convention && !trait.equals(convention)) {
+          continue;
+        }
+        builder.add(operand);
+      }
+      operands = builder.build();
+      operandIndex.put(key, operands);
+    }
+    return operands;
+  }
+
+  /** Returns the number of times that a rule operand has been tested
+   * against a relational expression, when the expression was registered or
+   * while matching the other operands of a rule. */
+  public long getOperandMatchAttemptCount() {
+    return operandMatchAttemptCount;
+  }
+
+  /** Returns the number of times that a rule operand matched a relational
+   * expression. Compare with {@link #getOperandMatchAttemptCount()}. */
+  public long getOperandMatchCount() {
+    return operandMatchCount;
+  }
+
   private boolean fixUpInputs(RelNode rel) {
     List<RelNode> inputs = rel.getInputs();
     int i = -1;
@@ -1406,7 +1527,9 @@ private RelSet merge(RelSet set, RelSet set2) {
       set2 = t;
     }
 
-    // Merge.
+    // Merge. Metadata of both sets, and of their ancestors, is now stale.
+    changedSets.add(set);
+    changedSets.add(set2);
     set.mergeWith(this, set2);
 
     // Was the set we merged with the root? If so, the result is the new
@@ -1643,6 +1766,7 @@ private RelSubset registerImpl(
   private RelSubset addRelToSet(RelNode rel, RelSet set) {
     RelSubset subset = set.add(rel);
     mapRel2Subset.put(rel, subset);
+    changedSets.add(set);
 
     // While a tree of RelNodes is being registered, sometimes nodes' costs
     // improve and the subset doesn't hear about it. You can end up with
@@ -1656,6 +1780,45 @@ private RelSubset addRelToSet(RelNode rel, RelSet set) {
     return subset;
   }
 
+  /**
+   * Removes cached metadata of relational expressions whose metadata may
+   * have changed since the last call: those in sets that have gained
+   * expressions or been merged, and their ancestors.
+   *
+   * <p>Cheaper than discarding the whole cache after each rule call, because
+   * the rest of the graph keeps its metadata.
+   *
+   * @param mq Metadata query whose cache to clear
+   */
+  void clearChangedMetadata(RelMetadataQuery mq) {
+    final Set<RelSet> visited = new HashSet<>();
+    final Deque<RelSet> queue = new ArrayDeque<>(changedSets);
+    changedSets.clear();
+    while (!queue.isEmpty()) {
+      final RelSet set = queue.pop();
+      if (!visited.add(set)) {
+        continue;
+      }
+      for (RelSubset subset : set.subsets) {
+        mq.clearCache(subset);
+      }
+      for (RelNode rel : set.rels) {
+        mq.clearCache(rel);
+      }
+      if (set.equivalentSet != null) {
+        queue.add(equivRoot(set));
+      }
+      for (RelNode parent : set.getParentRels()) {
+        final RelSubset parentSubset = mapRel2Subset.get(parent);
+        if (parentSubset != null) {
+          queue.add(parentSubset.set);
+        } else {
+          mq.clearCache(parent);
+        }
+      }
+    }
+  }
+
   private RelSubset registerSubset(
       RelSet set,
       RelSubset subset) {
@@ -1758,6 +1921,38 @@ public void setLocked(boolean locked) {
     this.locked = locked;
   }
 
+  /**
+   * Sets the number of milliseconds that {@link #findBestExp()} may spend
+   * firing rules. Overrides the
+   * {@link CalciteConnectionProperty#PLANNING_TIMEOUT planning timeout} of
+   * the connection; so you can set the timeout of a single statement, say
+   * in a {@link Hook#PLANNER} handler.
+   *
+   * @param planningTimeout Timeout in milliseconds, or 0 for no limit
+   */
+  public void setPlanningTimeout(long planningTimeout) {
+    Preconditions.checkArgument(planningTimeout >= 0);
+    this.planningTimeout = planningTimeout;
+  }
+
+  /** Returns the planning timeout, in milliseconds, or 0 if there is no
+   * limit. */
+  public long getPlanningTimeout() {
+    if (planningTimeout >= 0) {
+      return planningTimeout;
+    }
+    final CalciteConnectionConfig config =
+        context.unwrap(CalciteConnectionConfig.class);
+    return config == null ? 0 : Math.max(config.planningTimeout(), 0);
+  }
+
+  /** Returns a description of why the most recent call to
+   * {@link #findBestExp()} stopped early, or null if it did not stop because
+   * its planning timeout expired. */
+  public TimeoutReport getTimeoutReport() {
+    return timeoutReport;
+  }
+
   public void ensureRegistered(
       RelNode rel,
       RelNode equivRel,
@@ -1769,6 +1964,49 @@ public void ensureRegistered(
 
   //~ Inner Classes ----------------------------------------------------------
 
+  /**
+   * Describes a call to {@link #findBestExp()} that stopped because its
+   * planning timeout expired.
+   *
+   * <p>The ratio of {@link #bestCost} to {@link #firstCost} shows how much
+   * planning had improved the plan before it stopped, and
+   * {@link #unfiredMatchCount} how much work remained.
+   */
+  public static class TimeoutReport {
+    /** Planning timeout, in milliseconds. */
+    public final long timeout;
+    /** Time spent planning, in milliseconds. */
+    public final long elapsed;
+    /** Number of rule-matches fired (or skipped). */
+    public final int tickCount;
+    /** Cost of the first implementable plan found. */
+    public final RelOptCost firstCost;
+    /** Cost of the plan returned. */
+    public final RelOptCost bestCost;
+    /** Number of rule-matches in the queue that were not fired. */
+    public final int unfiredMatchCount;
+
+    TimeoutReport(long timeout, long elapsed, int tickCount,
+        RelOptCost firstCost, RelOptCost bestCost, int unfiredMatchCount) {
+      this.timeout = timeout;
+      this.elapsed = elapsed;
+      this.tickCount = tickCount;
+      this.firstCost = firstCost;
+      this.bestCost = bestCost;
+      this.unfiredMatchCount = unfiredMatchCount;
+    }
+
+    @Override public String toString() {
+      return "TimeoutReport(timeout=" + timeout
+          + ", elapsed=" + elapsed
+          + ", tickCount=" + tickCount
+          + ", firstCost=" + firstCost
+          + ", bestCost=" + bestCost
+          + ", unfiredMatchCount=" + unfiredMatchCount
+          + ")";
+    }
+  }
+
   /**
    * A rule call which defers its actions. Whereas {@link RelOptRuleCall}
    * invokes the rule when it finds a match, a <code>DeferringRuleCall</code>
@@ -133,7 +133,8 @@ public void transformTo(RelNode rel, Map<RelNode, RelNode> equiv) {
             entry.getKey(), entry.getValue(), this);
       }
       volcanoPlanner.ensureRegistered(rel, rels[0], this);
-      rels[0].getCluster().invalidateMetadataQuery();
+      volcanoPlanner.clearChangedMetadata(
+          rels[0].getCluster().getMetadataQuery());
 
       if (volcanoPlanner.listener != null) {
         RelOptListener.RuleProductionEvent event =
@@ -301,9 +302,11 @@ private void matchRecurse(int solve) {
       }
 
       for (RelNode rel : successors) {
+        ++volcanoPlanner.operandMatchAttemptCount;
         if (!operand.matches(rel)) {
           continue;
         }
+        ++volcanoPlanner.operandMatchCount;
         if (ascending) {
           // We know that the previous operand was *a* child of its parent,
           // but now check that it is the *correct* child.
@@ -25,6 +25,7 @@
 import org.apache.calcite.adapter.enumerable.EnumerableRel;
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
 import org.apache.calcite.adapter.enumerable.RexToLixTranslator;
+import org.apache.calcite.adapter.enumerable.batch.EnumerableBatchRules;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.AvaticaParameter;
 import org.apache.calcite.avatica.ColumnMetaData;
@@ -206,6 +207,8 @@ public class CalcitePrepareImpl implements CalcitePrepare {
           EnumerableRules.ENUMERABLE_AGGREGATE_RULE,
           EnumerableRules.ENUMERABLE_SORT_RULE,
           EnumerableRules.ENUMERABLE_LIMIT_RULE,
+          EnumerableRules.ENUMERABLE_TOP_N_RULE,
+          EnumerableRules.ENUMERABLE_EXCHANGE_RULE,
           EnumerableRules.ENUMERABLE_COLLECT_RULE,
           EnumerableRules.ENUMERABLE_UNCOLLECT_RULE,
           EnumerableRules.ENUMERABLE_UNION_RULE,
@@ -556,6 +559,11 @@ protected RelOptPlanner createPlanner(
         planner.addRule(rule);
       }
       planner.addRule(EnumerableInterpreterRule.INSTANCE);
+      if (prepareContext.config().batchSize() > 0) {
+        for (RelOptRule rule : EnumerableBatchRules.RULES) {
+          planner.addRule(rule);
+        }
+      }
     }
 
     if (enableBindable && ENABLE_ENUMERABLE) {
@@ -25,6 +25,7 @@
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -52,7 +53,7 @@ Profile profile(Iterable<List<Comparable>> rows, List<Column> columns,
       Collection<ImmutableBitSet> initialGroups);
 
   /** Column. */
-  class Column implements Comparable<Column> {
+  class Column implements Comparable<Column>, Serializable {
     public final int ordinal;
     public final String name;
 
@@ -94,7 +95,7 @@ static ImmutableBitSet toOrdinals(Iterable<Column> columns) {
   }
 
   /** Statistic produced by the profiler. */
-  interface Statistic {
+  interface Statistic extends Serializable {
     Object toMap(JsonBuilder jsonBuilder);
   }
 
@@ -223,8 +224,11 @@ ImmutableBitSet columnOrdinals() {
   }
 
   /** The result of profiling, contains various statistics about the
-   * data in a table. */
-  class Profile {
+   * data in a table.
+   *
+   * <p>A profile is serializable, so that it can be saved and re-used until
+   * the data changes, if its values are serializable. */
+  class Profile implements Serializable {
     public final RowCount rowCount;
     public final List<FunctionalDependency> functionalDependencyList;
     public final List<Distribution> distributionList;
@@ -16,12 +16,16 @@
  */
 package org.apache.calcite.profile;
 
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.materialize.Lattice;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
 import org.apache.calcite.rel.metadata.NullSentinel;
 import org.apache.calcite.runtime.FlatLists;
+import org.apache.calcite.runtime.ParallelEnumerables;
 import org.apache.calcite.runtime.PredicateImpl;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.Pair;
@@ -65,6 +69,10 @@
  * combinations of columns.
  */
 public class ProfilerImpl implements Profiler {
+  /** Number of distinct values of a column or combination of columns above
+   * which a collector switches from a set of values to a sketch. */
+  private static final int SKETCH_THRESHOLD = 1000;
+
   /** The number of combinations to consider per pass.
    * The number is determined by memory, but a value of 1,000 is typical.
    * You need 2KB memory per sketch, and one sketch for each combination. */
@@ -78,10 +86,23 @@ public class ProfilerImpl implements Profiler {
   /** Whether a successor is considered interesting enough to analyze. */
   private final Predicate<Pair<Space, Column>> predicate;
 
+  /** Number of threads that collect values each pass. If greater than 1, rows
+   * are divided among threads round-robin, and each thread's collectors are
+   * merged at the end of the pass. */
+  private final int parallelism;
+
   public static Builder builder() {
     return new Builder();
   }
 
+  /**
+   * Creates a {@code ProfilerImpl} that collects values on a single thread.
+   */
+  ProfilerImpl(int combinationsPerPass,
+      int interestingCount, Predicate<Pair<Space, Column>> predicate) {
+    this(combinationsPerPass, interestingCount, predicate, 1);
+  }
+
   /**
    * Creates a {@code ProfilerImpl}.
    *
@@ -91,14 +112,18 @@ public static Builder builder() {
    *   interesting
    * @param predicate Whether a successor is considered interesting enough to
    *   analyze
+   * @param parallelism Number of threads that collect values each pass
    */
   ProfilerImpl(int combinationsPerPass,
-      int interestingCount, Predicate<Pair<Space, Column>> predicate) {
+      int interestingCount, Predicate<Pair<Space, Column>> predicate,
+      int parallelism) {
     Preconditions.checkArgument(combinationsPerPass > 2);
     Preconditions.checkArgument(interestingCount > 2);
+    Preconditions.checkArgument(parallelism > 0);
     this.combinationsPerPass = combinationsPerPass;
     this.interestingCount = interestingCount;
     this.predicate = predicate;
+    this.parallelism = parallelism;
   }
 
   public Profile profile(Iterable<List<Comparable>> rows,
@@ -290,23 +315,44 @@ private boolean containsKey(ImmutableBitSet ordinals) {
       return false;
     }
 
-    void pass(int pass, List<Space> spaces, Iterable<List<Comparable>> rows) {
+    void pass(int pass, final List<Space> spaces,
+        Iterable<List<Comparable>> rows) {
       if (CalcitePrepareImpl.DEBUG) {
         System.out.println("pass: " + pass
             + ", spaces.size: " + spaces.size()
             + ", distributions.size: " + distributions.size());
       }
 
-      for (Space space : spaces) {
-        space.collector = Collector.create(space, 1000);
-      }
-
-      int rowCount = 0;
-      for (final List<Comparable> row : rows) {
-        ++rowCount;
-        for (Space space : spaces) {
-          space.collector.add(row);
+      final int rowCount;
+      final List<Collector> collectors;
+      if (parallelism == 1) {
+        final Pair<Integer, List<Collector>> pair = collect(spaces, rows);
+        rowCount = pair.left;
+        collectors = pair.right;
+      } else {
+        // Each thread collects values from its share of the rows; then we
+        // merge each space's collectors.
+        final List<Pair<Integer, List<Collector>>> pairs =
+            ParallelEnumerables.applyPartitions(Linq4j.asEnumerable(rows),
+                parallelism,
+                new Function1<Enumerable<List<Comparable>>,
+                    Pair<Integer, List<Collector>>>() {
+                  public Pair<Integer, List<Collector>> apply(
+                      Enumerable<List<Comparable>> partition) {
+                    return collect(spaces, partition);
+                  }
+                });
+        int n = 0;
+        collectors = new ArrayList<>(pairs.get(0).right);
+        for (Ord<Pair<Integer, List<Collector>>> pair : Ord.zip(pairs)) {
+          n += pair.e.left;
+          if (pair.i > 0) {
+            for (int i = 0; i < collectors.size(); i++) {
+              collectors.set(i, collectors.get(i).merge(pair.e.right.get(i)));
+            }
+          }
         }
+        rowCount = n;
       }
 
       // Populate unique keys.
@@ -314,9 +360,9 @@ void pass(int pass, List<Space> spaces, Iterable<List<Comparable>> rows) {
       // then [x, y, z] is a non-minimal key (therefore not interesting),
       // and [x, y] => [a] is a functional dependency but not interesting,
       // and [x, y, z] is not an interesting distribution.
-      for (Space space : spaces) {
-        space.collector.finish();
-        space.collector = null;
+      for (Ord<Space> ord : Ord.zip(spaces)) {
+        final Space space = ord.e;
+        collectors.get(ord.i).finish();
 //        results.add(space);
 
         int nonMinimal = 0;
@@ -404,6 +450,25 @@ void pass(int pass, List<Space> spaces, Iterable<List<Comparable>> rows) {
       }
     }
 
+    /** Collects the values of each space in a sequence of rows. Returns the
+     * number of rows and, for each space, a collector that has not been
+     * {@link Collector#finish() finished}. */
+    private Pair<Integer, List<Collector>> collect(List<Space> spaces,
+        Iterable<List<Comparable>> rows) {
+      final Collector[] collectors = new Collector[spaces.size()];
+      for (int i = 0; i < collectors.length; i++) {
+        collectors[i] = Collector.create(spaces.get(i), SKETCH_THRESHOLD);
+      }
+      int rowCount = 0;
+      for (final List<Comparable> row : rows) {
+        ++rowCount;
+        for (int i = 0; i < collectors.length; i++) {
+          collectors[i] = collectors[i].add(row);
+        }
+      }
+      return Pair.of(rowCount, Arrays.asList(collectors));
+    }
+
     /** Estimates the cardinality of a collection of columns represented by
      * {@code columnOrdinals}, drawing on existing distributions. */
     private double cardinality(double rowCount, ImmutableBitSet columns) {
@@ -461,7 +526,6 @@ static class Space {
     final BitSet dependencies = new BitSet();
     final Set<ImmutableBitSet> dependents = new HashSet<>();
     double expectedCardinality;
-    Collector collector;
     /** Assigned by {@link Collector#finish()}. */
     int nullCount;
     /** Number of distinct values. Null is counted as a value, if present.
@@ -501,9 +565,17 @@ public Distribution distribution() {
   public static class Builder {
     int combinationsPerPass = 100;
     Predicate<Pair<Space, Column>> predicate = Predicates.alwaysTrue();
+    int parallelism = 1;
 
     public ProfilerImpl build() {
-      return new ProfilerImpl(combinationsPerPass, 200, predicate);
+      return new ProfilerImpl(combinationsPerPass, 200, predicate,
+          parallelism);
+    }
+
+    /** Sets the number of threads that collect values (default 1). */
+    public Builder withParallelism(int parallelism) {
+      this.parallelism = parallelism;
+      return this;
     }
 
     public Builder withPassSize(int passSize) {
@@ -531,9 +603,19 @@ abstract static class Collector {
       this.space = space;
     }
 
-    abstract void add(List<Comparable> row);
+    /** Adds a row, and returns the collector that should receive the next
+     * row; usually this collector, but a collector may replace itself with
+     * one that uses less memory. */
+    abstract Collector add(List<Comparable> row);
+
+    /** Assigns the cardinality, null count and values of the space. */
     abstract void finish();
 
+    /** Merges another collector, which has collected values of the same
+     * columns from different rows, into this, and returns the collector that
+     * has the values of both; usually this collector. */
+    abstract Collector merge(Collector collector);
+
     /** Creates an initial collector of the appropriate kind. */
     public static Collector create(Space space, int sketchThreshold) {
       final List<Integer> columnOrdinalList = space.columnOrdinals.asList();
@@ -560,21 +642,41 @@ static class SingletonCollector extends Collector {
       this.sketchThreshold = sketchThreshold;
     }
 
-    public void add(List<Comparable> row) {
+    public Collector add(List<Comparable> row) {
       final Comparable v = row.get(columnOrdinal);
       if (v == NullSentinel.INSTANCE) {
         nullCount++;
       } else {
         if (values.add(v) && values.size() == sketchThreshold) {
           // Too many values. Switch to a sketch collector.
-          final HllSingletonCollector collector =
-              new HllSingletonCollector(space, columnOrdinal);
-          for (Comparable value : values) {
-            collector.add(value);
-          }
-          space.collector = collector;
+          return toSketch();
         }
       }
+      return this;
+    }
+
+    private HllSingletonCollector toSketch() {
+      final HllSingletonCollector collector =
+          new HllSingletonCollector(space, columnOrdinal);
+      for (Comparable value : values) {
+        collector.add(value);
+      }
+      return collector;
+    }
+
+    Collector merge(Collector collector) {
+      if (collector instanceof HllCollector) {
+        return collector.merge(this);
+      }
+      final SingletonCollector that = (SingletonCollector) collector;
+      values.addAll(that.values);
+      nullCount += that.nullCount;
+      if (values.size() >= sketchThreshold) {
+        final HllSingletonCollector sketchCollector = toSketch();
+        sketchCollector.addNulls(nullCount);
+        return sketchCollector;
+      }
+      return this;
     }
 
     public void finish() {
@@ -600,7 +702,7 @@ static class CompositeCollector extends Collector {
       this.sketchThreshold = sketchThreshold;
     }
 
-    public void add(List<Comparable> row) {
+    public Collector add(List<Comparable> row) {
       if (space.columnOrdinals.equals(OF)) {
         Util.discard(0);
       }
@@ -618,22 +720,42 @@ public void add(List<Comparable> row) {
       if (((Set) values).add(FlatLists.copyOf(columnValues))
           && values.size() == sketchThreshold) {
         // Too many values. Switch to a sketch collector.
-        final HllCompositeCollector collector =
-            new HllCompositeCollector(space, columnOrdinals);
-        final List<Comparable> list =
-            new ArrayList<>(
-                Collections.nCopies(columnOrdinals[columnOrdinals.length - 1]
-                        + 1,
-                    (Comparable) null));
-        for (FlatLists.ComparableList value : this.values) {
-          for (int i = 0; i < value.size(); i++) {
-            Comparable c = (Comparable) value.get(i);
-            list.set(columnOrdinals[i], c);
-          }
-          collector.add(list);
+        return toSketch();
+      }
+      return this;
+    }
+
+    private HllCompositeCollector toSketch() {
+      final HllCompositeCollector collector =
+          new HllCompositeCollector(space, columnOrdinals);
+      final List<Comparable> list =
+          new ArrayList<>(
+              Collections.nCopies(columnOrdinals[columnOrdinals.length - 1]
+                      + 1,
+                  (Comparable) null));
+      for (FlatLists.ComparableList value : this.values) {
+        for (int i = 0; i < value.size(); i++) {
+          Comparable c = (Comparable) value.get(i);
+          list.set(columnOrdinals[i], c);
         }
-        space.collector = collector;
+        collector.add(list);
       }
+      return collector;
+    }
+
+    Collector merge(Collector collector) {
+      if (collector instanceof HllCollector) {
+        return collector.merge(this);
+      }
+      final CompositeCollector that = (CompositeCollector) collector;
+      values.addAll(that.values);
+      nullCount += that.nullCount;
+      if (values.size() >= sketchThreshold) {
+        final HllCompositeCollector sketchCollector = toSketch();
+        sketchCollector.nullCount = nullCount;
+        return sketchCollector;
+      }
+      return this;
     }
 
     public void finish() {
@@ -682,6 +804,34 @@ public void finish() {
       space.cardinality = (int) sketch.getEstimate();
       space.valueSet = null;
     }
+
+    Collector merge(Collector collector) {
+      if (collector instanceof HllCollector) {
+        final HllCollector that = (HllCollector) collector;
+        sketch.union(that.sketch);
+        nullCount += that.nullCount;
+      } else if (collector instanceof SingletonCollector) {
+        final SingletonCollector that = (SingletonCollector) collector;
+        for (Comparable value : that.values) {
+          add(value);
+        }
+        addNulls(that.nullCount);
+      } else {
+        final CompositeCollector that = (CompositeCollector) collector;
+        final HllCompositeCollector sketchCollector = that.toSketch();
+        sketch.union(sketchCollector.sketch);
+        nullCount += that.nullCount;
+      }
+      return this;
+    }
+
+    /** Records that there were {@code count} rows whose value was null. */
+    void addNulls(int count) {
+      if (count > 0) {
+        nullCount += count;
+        sketch.update(NULL_BITS);
+      }
+    }
   }
 
   /** Collector that collects one column value into a HyperLogLog sketch. */
@@ -693,7 +843,7 @@ static class HllSingletonCollector extends HllCollector {
       this.columnOrdinal = columnOrdinal;
     }
 
-    public void add(List<Comparable> row) {
+    public Collector add(List<Comparable> row) {
       final Comparable value = row.get(columnOrdinal);
       if (value == NullSentinel.INSTANCE) {
         nullCount++;
@@ -701,6 +851,7 @@ public void add(List<Comparable> row) {
       } else {
         add(value);
       }
+      return this;
     }
   }
 
@@ -715,7 +866,7 @@ static class HllCompositeCollector extends HllCollector {
       this.columnOrdinals = columnOrdinals;
     }
 
-    public void add(List<Comparable> row) {
+    public Collector add(List<Comparable> row) {
       if (space.columnOrdinals.equals(OF)) {
         Util.discard(0);
       }
@@ -747,6 +898,7 @@ public void add(List<Comparable> row) {
         }
       }
       sketch.update(Arrays.copyOf(buf.array(), buf.position()));
+      return this;
     }
   }
 
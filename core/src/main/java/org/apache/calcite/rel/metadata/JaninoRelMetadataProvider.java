@@ -256,24 +256,24 @@ private static <M extends Metadata> MetadataHandler<M> load3(
           .append(" mq");
       paramList(buff, method.e)
           .append(") {\n");
-      buff.append("    final java.util.List key = ")
-          .append(
-              (method.e.getParameterTypes().length < 4
-              ? org.apache.calcite.runtime.FlatLists.class
-              : ImmutableList.class).getName())
-          .append(".of(")
-          .append(def.metadataClass.getName());
-      if (method.i == 0) {
-        buff.append(".DEF");
+      // The key is the method if it has no arguments, otherwise a list of
+      // the method and its arguments. (The relational expression is not
+      // part of the key; the cache has a slot for each expression.)
+      buff.append("    final Object key = ");
+      if (method.e.getParameterTypes().length == 0) {
+        methodRef(buff, def, method.i)
+            .append(";\n");
       } else {
-        buff.append(".DEF.methods.get(")
-            .append(method.i)
-            .append(")");
+        buff.append(
+            (method.e.getParameterTypes().length < 5
+                ? org.apache.calcite.runtime.FlatLists.class
+                : ImmutableList.class).getName())
+            .append(".of(");
+        methodRef(buff, def, method.i);
+        safeArgList(buff, method.e)
+            .append(");\n");
       }
-      buff.append(", r");
-      safeArgList(buff, method.e)
-          .append(");\n")
-          .append("    final Object v = mq.map.get(key);\n")
+      buff.append("    final Object v = mq.cache.get(r, key);\n")
           .append("    if (v != null) {\n")
           .append("      if (v == ")
           .append(NullSentinel.class.getName())
@@ -291,7 +291,7 @@ private static <M extends Metadata> MetadataHandler<M> load3(
           .append(method.e.getReturnType().getName())
           .append(") v;\n")
           .append("    }\n")
-          .append("    mq.map.put(key,")
+          .append("    mq.cache.put(r, key, ")
           .append(NullSentinel.class.getName())
           .append(".ACTIVE);\n")
           .append("    try {\n")
@@ -302,14 +302,14 @@ private static <M extends Metadata> MetadataHandler<M> load3(
           .append("_(r, mq");
       argList(buff, method.e)
           .append(");\n")
-          .append("      mq.map.put(key, ")
+          .append("      mq.cache.put(r, key, ")
           .append(NullSentinel.class.getName())
           .append(".mask(x));\n")
           .append("      return x;\n")
           .append("    } catch (")
           .append(Exception.class.getName())
           .append(" e) {\n")
-          .append("      mq.map.remove(key);\n")
+          .append("      mq.cache.remove(r, key);\n")
           .append("      throw e;\n")
           .append("    }\n")
           .append("  }\n")
@@ -395,6 +395,16 @@ private static String findProvider(
     throw new AssertionError("not found: " + declaringClass);
   }
 
+  /** Returns e.g. "org.apache.calcite.rel.metadata.BuiltInMetadata.Size
+   * .DEF.methods.get(1)". */
+  private static StringBuilder methodRef(StringBuilder buff,
+      MetadataDef<?> def, int i) {
+    return buff.append(def.metadataClass.getName())
+        .append(".DEF.methods.get(")
+        .append(i)
+        .append(")");
+  }
+
   /** Returns e.g. ", ignoreNulls". */
   private static StringBuilder argList(StringBuilder buff, Method method) {
     for (Ord<Class<?>> t : Ord.zip(method.getParameterTypes())) {
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.rel.RelNode;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of metadata values, and of metadata requests that are in progress,
+ * used by {@link RelMetadataQuery}.
+ *
+ * <p>Values are held in a slot for each relational expression, keyed within
+ * the slot by the metadata method if the method has no arguments, otherwise
+ * by a list consisting of the method followed by the arguments. Thus
+ * {@link #clear(RelNode)} can discard all values for a relational expression
+ * whose inputs have changed, leaving the rest of the cache intact.
+ *
+ * <p>The cache holds values for at most {@code capacity} relational
+ * expressions. When it is full, it discards the slot of the relational
+ * expression that was used least recently, unless a request for that
+ * expression's metadata is in progress.
+ *
+ * <p>For each metadata method, the cache counts how many look-ups found a
+ * value; see {@link #getStatistics()}.
+ */
+public class MetadataCache {
+  /** Default maximum number of relational expressions whose metadata is
+   * held. */
+  public static final int DEFAULT_CAPACITY = 100000;
+
+  private final int capacity;
+
+  /** Slot for each relational expression, in access order, so that the
+   * first is the least recently used. */
+  private final LinkedHashMap<RelNode, Map<Object, Object>> slots =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private final Map<Method, Stats> statistics = new HashMap<>();
+
+  /** Creates a MetadataCache with the default capacity. */
+  public MetadataCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /** Creates a MetadataCache.
+   *
+   * @param capacity Maximum number of relational expressions whose metadata
+   *                 is held
+   */
+  public MetadataCache(int capacity) {
+    Preconditions.checkArgument(capacity > 0);
+    this.capacity = capacity;
+  }
+
+  /** Returns the value of a metadata request, or null if it is not cached.
+   *
+   * <p>The value may be {@link NullSentinel#INSTANCE}, meaning that the
+   * value is null, or {@link NullSentinel#ACTIVE}, meaning that the value is
+   * being computed.
+   *
+   * @param rel Relational expression
+   * @param key Metadata method, or a list of the method and its arguments
+   */
+  public Object get(RelNode rel, Object key) {
+    final Map<Object, Object> slot = slots.get(rel);
+    final Object value = slot == null ? null : slot.get(key);
+    final Stats stats = stats(key);
+    if (value == null) {
+      ++stats.missCount;
+    } else {
+      ++stats.hitCount;
+    }
+    return value;
+  }
+
+  /** Stores the value of a metadata request, and returns the previous
+   * value, or null. */
+  public Object put(RelNode rel, Object key, Object value) {
+    Map<Object, Object> slot = slots.get(rel);
+    if (slot == null) {
+      // Make room before adding the new slot, so that the new slot is not
+      // itself evicted.
+      evict(capacity - 1);
+      slot = new HashMap<>(4);
+      slots.put(rel, slot);
+    }
+    return slot.put(key, value);
+  }
+
+  /** Removes the value of a metadata request, and returns the previous
+   * value, or null. */
+  public Object remove(RelNode rel, Object key) {
+    final Map<Object, Object> slot = slots.get(rel);
+    return slot == null ? null : slot.remove(key);
+  }
+
+  /** Removes all values for a relational expression. Returns whether there
+   * were any. */
+  public boolean clear(RelNode rel) {
+    return slots.remove(rel) != null;
+  }
+
+  /** Removes all values, but not the statistics. */
+  public void clear() {
+    slots.clear();
+  }
+
+  /** Returns the number of relational expressions that have a value. */
+  public int size() {
+    return slots.size();
+  }
+
+  /** Returns the number of hits and misses for each metadata method. */
+  public Map<Method, Stats> getStatistics() {
+    return ImmutableMap.copyOf(statistics);
+  }
+
+  @Override public String toString() {
+    return "MetadataCache{size: " + slots.size() + ", statistics: "
+        + statistics.values() + "}";
+  }
+
+  private Stats stats(Object key) {
+    final Method method =
+        (Method) (key instanceof List ? ((List) key).get(0) : key);
+    Stats stats = statistics.get(method);
+    if (stats == null) {
+      stats = new Stats(method);
+      statistics.put(method, stats);
+    }
+    return stats;
+  }
+
+  /** Discards least recently used slots until the cache holds at most
+   * {@code size} slots. Does not discard a slot while a request for its
+   * metadata is in progress, because the cache is how we detect cycles. */
+  private void evict(int size) {
+    final Iterator<Map<Object, Object>> iterator = slots.values().iterator();
+    while (slots.size() > size && iterator.hasNext()) {
+      if (!iterator.next().containsValue(NullSentinel.ACTIVE)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /** Number of look-ups of a metadata method that found a cached value, and
+   * that did not. */
+  public static class Stats {
+    public final Method method;
+    long hitCount;
+    long missCount;
+
+    Stats(Method method) {
+      this.method = method;
+    }
+
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    public long getMissCount() {
+      return missCount;
+    }
+
+    /** Returns the proportion of look-ups that found a value, between 0 and
+     * 1, or 0 if there have been no look-ups. */
+    public double getHitRatio() {
+      final long count = hitCount + missCount;
+      return count == 0 ? 0d : (double) hitCount / count;
+    }
+
+    @Override public String toString() {
+      return method.getDeclaringClass().getSimpleName() + "."
+          + method.getName() + ": " + hitCount + "/" + (hitCount + missCount);
+    }
+  }
+}
+
+// End MetadataCache.java
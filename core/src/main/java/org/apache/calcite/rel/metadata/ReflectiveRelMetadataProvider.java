@@ -61,6 +61,13 @@
 public class ReflectiveRelMetadataProvider
     implements RelMetadataProvider, ReflectiveVisitor {
 
+  //~ Static fields/initializers ---------------------------------------------
+
+  /** Second element of the key under which a request in progress is
+   * recorded in the {@link MetadataCache}. */
+  private static final Object KEY_TAG =
+      ReflectiveRelMetadataProvider.class;
+
   //~ Instance fields --------------------------------------------------------
   private final ConcurrentMap<Class<RelNode>, UnboundMetadata> map;
   private final Class<? extends Metadata> metadataClass0;
@@ -166,29 +173,37 @@ public Object invoke(Object proxy, Method method,
                             + " for " + rel);
                       }
                       final Object[] args1;
-                      final List key;
                       if (args == null) {
                         args1 = new Object[]{rel, mq};
-                        key = FlatLists.of(rel, method);
                       } else {
                         args1 = new Object[args.length + 2];
                         args1[0] = rel;
                         args1[1] = mq;
                         System.arraycopy(args, 0, args1, 2, args.length);
+                      }
 
-                        final Object[] args2 = args1.clone();
-                        args2[1] = method; // replace RelMetadataQuery with method
-                        for (int j = 0; j < args2.length; j++) {
-                          if (args2[j] == null) {
-                            args2[j] = NullSentinel.INSTANCE;
-                          } else if (args2[j] instanceof RexNode) {
-                            // Can't use RexNode.equals - it is not deep
-                            args2[j] = args2[j].toString();
-                          }
+                      // Key is the method, a tag, then the arguments; the
+                      // cache has a slot for each relational expression. The
+                      // tag keeps these keys apart from the keys of
+                      // JaninoRelMetadataProvider, which caches values in
+                      // the same slot, whereas we store only ACTIVE markers.
+                      final int argCount = args == null ? 0 : args.length;
+                      final Object[] args2 = new Object[argCount + 2];
+                      args2[0] = method;
+                      args2[1] = KEY_TAG;
+                      for (int j = 0; j < argCount; j++) {
+                        if (args[j] == null) {
+                          args2[j + 2] = NullSentinel.INSTANCE;
+                        } else if (args[j] instanceof RexNode) {
+                          // Can't use RexNode.equals - it is not deep
+                          args2[j + 2] = args[j].toString();
+                        } else {
+                          args2[j + 2] = args[j];
                         }
-                        key = FlatLists.copyOf(args2);
                       }
-                      if (mq.map.put(key, NullSentinel.INSTANCE) != null) {
+                      final Object key = FlatLists.copyOf(args2);
+                      if (mq.cache.put(rel, key, NullSentinel.ACTIVE)
+                          != null) {
                         throw CyclicMetadataException.INSTANCE;
                       }
                       try {
@@ -198,7 +213,7 @@ public Object invoke(Object proxy, Method method,
                         Util.throwIfUnchecked(e.getCause());
                         throw new RuntimeException(e.getCause());
                       } finally {
-                        mq.map.remove(key);
+                        mq.cache.remove(rel, key);
                       }
                     }
                   });
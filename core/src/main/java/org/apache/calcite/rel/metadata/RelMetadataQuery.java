@@ -78,6 +78,10 @@
  */
 public class RelMetadataQuery {
   /** Set of active metadata queries, and cache of previous results. */
+  public final MetadataCache cache = new MetadataCache();
+
+  /** No longer used; metadata values are held in {@link #cache}. */
+  @Deprecated // to be removed before 2.0
   public final Map<List, Object> map = new HashMap<>();
 
   public final JaninoRelMetadataProvider metadataProvider;
@@ -196,6 +200,21 @@ private RelMetadataQuery(boolean dummy) {
     this.uniqueKeysHandler = initialHandler(BuiltInMetadata.UniqueKeys.Handler.class);
   }
 
+  /**
+   * Removes cached metadata values for a relational expression.
+   *
+   * <p>Call this method if the expression, or any of its descendants, has
+   * changed in a way that may change its metadata; for example, if the
+   * expression's input is a {@code RelSubset} whose set has been merged with
+   * another.
+   *
+   * @param rel Relational expression
+   * @return Whether there were any cached values
+   */
+  public boolean clearCache(RelNode rel) {
+    return cache.clear(rel);
+  }
+
   /** Re-generates the handler for a given kind of metadata, adding support for
    * {@code class_} if it is not already present. */
   protected <M extends Metadata, H extends MetadataHandler<M>> H
@@ -18,7 +18,6 @@
 
 import org.apache.calcite.avatica.util.TimeUnitRange;
 import org.apache.calcite.plan.RelOptMaterialization;
-import org.apache.calcite.plan.RelOptMaterializations;
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptPredicateList;
 import org.apache.calcite.plan.RelOptRule;
@@ -77,6 +76,8 @@
 import org.apache.commons.lang3.tuple.Triple;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
@@ -134,6 +135,11 @@ public abstract class AbstractMaterializedViewRule extends RelOptRule {
       new MaterializedViewOnlyAggregateRule(RelFactories.LOGICAL_BUILDER,
           true, null);
 
+  /** Index of the materializations of each planner. Rules are shared between
+   * planners, so the index is keyed by planner. */
+  private static final Cache<RelOptPlanner, MaterializedViewIndex> INDEXES =
+      CacheBuilder.newBuilder().weakKeys().build();
+
   //~ Instance fields --------------------------------------------------------
 
   /** Whether to generate rewritings containing union if the query results
@@ -161,6 +167,18 @@ protected AbstractMaterializedViewRule(RelOptRuleOperand operand,
     this.fastBailOut = fastBailOut;
   }
 
+  /** Returns the index of a planner's materializations, building it if the
+   * materializations have changed since it was last built. */
+  private static MaterializedViewIndex index(RelOptPlanner planner,
+      List<RelOptMaterialization> materializations, RelMetadataQuery mq) {
+    MaterializedViewIndex index = INDEXES.getIfPresent(planner);
+    if (index == null || !index.materializations.equals(materializations)) {
+      index = new MaterializedViewIndex(materializations, mq);
+      INDEXES.put(planner, index);
+    }
+    return index;
+  }
+
   /**
    * Rewriting logic is based on "Optimizing Queries Using Materialized Views:
    * A Practical, Scalable Solution" by Goldstein and Larson.
@@ -222,23 +240,23 @@ protected void perform(RelOptRuleCall call, Project topProject, RelNode node) {
         return;
       }
 
-      // Obtain applicable (filtered) materializations
-      // TODO: Filtering of relevant materializations needs to be
-      // improved so we gather only materializations that might
-      // actually generate a valid rewriting.
+      // Generate query table references
+      final Set<RelTableRef> queryTableRefs = mq.getTableReferences(node);
+      if (queryTableRefs == null) {
+        // Bail out
+        return;
+      }
+
+      // Obtain applicable (filtered) materializations. The index rejects
+      // views whose tables or aggregate functions cannot match the query,
+      // so that we only extract predicates from plausible views.
       final List<RelOptMaterialization> applicableMaterializations =
-          RelOptMaterializations.getApplicableMaterializations(node, materializations);
+          index(planner, materializations, mq)
+              .getCandidates(queryTableRefs, topProject, node);
 
       if (!applicableMaterializations.isEmpty()) {
         // 2. Initialize all query related auxiliary data structures
         // that will be used throughout query rewriting process
-        // Generate query table references
-        final Set<RelTableRef> queryTableRefs = mq.getTableReferences(node);
-        if (queryTableRefs == null) {
-          // Bail out
-          return;
-        }
-
         // Extract query predicates
         final RelOptPredicateList queryPredicateList =
             mq.getAllPredicates(node);
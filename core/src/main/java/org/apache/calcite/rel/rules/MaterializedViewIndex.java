@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.rules;
+
+import org.apache.calcite.plan.RelOptMaterialization;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexTableInputRef.RelTableRef;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Index of materialized views, used by {@link AbstractMaterializedViewRule}
+ * to find the views that might be used to rewrite a query, without matching
+ * the predicates and expressions of every view.
+ *
+ * <p>For each view, the index holds a signature: the qualified names of the
+ * tables that the view reads, whether it is an aggregate, and if so the kinds
+ * of its aggregate functions. A view is a candidate for a query only if:
+ *
+ * <ul>
+ * <li>the view reads the same tables as the query, or a subset or superset of
+ * them, counting a table once for each time it is read;
+ * <li>the view is an aggregate if and only if the query is; and
+ * <li>for each aggregate function whose value the query uses, the view has a
+ * function of the same kind, distinctness and number of arguments, without a
+ * filter.
+ * </ul>
+ *
+ * <p>The rule cannot rewrite the query using any other view.
+ */
+class MaterializedViewIndex {
+  /** Materializations from which the index was built, in their original
+   * order. */
+  final List<RelOptMaterialization> materializations;
+
+  /** Signatures of the views, keyed by the qualified name of each table that
+   * the view reads. */
+  private final Multimap<List<String>, Signature> signaturesByTable =
+      ArrayListMultimap.create();
+
+  MaterializedViewIndex(List<RelOptMaterialization> materializations,
+      RelMetadataQuery mq) {
+    this.materializations = ImmutableList.copyOf(materializations);
+    for (int i = 0; i < materializations.size(); i++) {
+      final RelOptMaterialization materialization = materializations.get(i);
+      if (materialization.qualifiedTableName == null
+          || materialization.starTable != null) {
+        // A tile in a lattice; lattices are used by a different mechanism
+        continue;
+      }
+      final RelNode viewNode = materialization.queryRel instanceof Project
+          ? ((Project) materialization.queryRel).getInput()
+          : materialization.queryRel;
+      final Set<RelTableRef> viewTableRefs = mq.getTableReferences(viewNode);
+      if (viewTableRefs == null) {
+        // The rule cannot use the view
+        continue;
+      }
+      final Signature signature =
+          new Signature(i, tableNames(viewTableRefs),
+              viewNode instanceof Aggregate
+                  ? aggKeys(((Aggregate) viewNode).getAggCallList())
+                  : null);
+      for (List<String> tableName : signature.tableNames.elementSet()) {
+        signaturesByTable.put(tableName, signature);
+      }
+    }
+  }
+
+  /** Returns the materializations that might be used to rewrite a query, in
+   * the order that they were registered.
+   *
+   * @param queryTableRefs Tables read by the query
+   * @param topProject     Project on top of the query, or null
+   * @param node           Query, without its top project
+   */
+  List<RelOptMaterialization> getCandidates(Set<RelTableRef> queryTableRefs,
+      Project topProject, RelNode node) {
+    final Multiset<List<String>> queryTableNames = tableNames(queryTableRefs);
+    final Set<List<Object>> queryAggKeys;
+    if (node instanceof Aggregate) {
+      queryAggKeys = usedAggKeys(topProject, (Aggregate) node);
+    } else {
+      queryAggKeys = null;
+    }
+    final BitSet ordinals = new BitSet();
+    for (List<String> tableName : queryTableNames.elementSet()) {
+      for (Signature signature : signaturesByTable.get(tableName)) {
+        if (!ordinals.get(signature.ordinal)
+            && signature.matches(queryTableNames, queryAggKeys)) {
+          ordinals.set(signature.ordinal);
+        }
+      }
+    }
+    final List<RelOptMaterialization> candidates = new ArrayList<>();
+    for (int i = ordinals.nextSetBit(0); i >= 0;
+         i = ordinals.nextSetBit(i + 1)) {
+      candidates.add(materializations.get(i));
+    }
+    return candidates;
+  }
+
+  private static Multiset<List<String>> tableNames(
+      Set<RelTableRef> tableRefs) {
+    final Multiset<List<String>> tableNames = HashMultiset.create();
+    for (RelTableRef tableRef : tableRefs) {
+      tableNames.add(tableRef.getQualifiedName());
+    }
+    return tableNames;
+  }
+
+  /** Returns the keys of the aggregate calls whose values are used. If there
+   * is a project on top of the aggregate, these are the calls that the
+   * project references; otherwise all calls. */
+  private static Set<List<Object>> usedAggKeys(Project topProject,
+      Aggregate aggregate) {
+    if (topProject == null) {
+      return aggKeys(aggregate.getAggCallList());
+    }
+    final ImmutableBitSet references =
+        RelOptUtil.InputFinder.bits(topProject.getProjects(), null);
+    final List<AggregateCall> aggCalls = new ArrayList<>();
+    for (int i = 0; i < aggregate.getAggCallList().size(); i++) {
+      if (references.get(aggregate.getGroupCount() + i)) {
+        aggCalls.add(aggregate.getAggCallList().get(i));
+      }
+    }
+    return aggKeys(aggCalls);
+  }
+
+  private static Set<List<Object>> aggKeys(List<AggregateCall> aggCalls) {
+    final ImmutableSet.Builder<List<Object>> builder = ImmutableSet.builder();
+    for (AggregateCall aggCall : aggCalls) {
+      builder.add(
+          ImmutableList.<Object>of(aggCall.getAggregation().getKind(),
+              aggCall.isDistinct(), aggCall.getArgList().size(),
+              aggCall.filterArg >= 0));
+    }
+    return builder.build();
+  }
+
+  /** Signature of a view. */
+  private static class Signature {
+    final int ordinal;
+    final ImmutableMultiset<List<String>> tableNames;
+    /** Keys of the aggregate calls, or null if the view is not an
+     * aggregate. */
+    final Set<List<Object>> aggKeys;
+
+    Signature(int ordinal, Multiset<List<String>> tableNames,
+        Set<List<Object>> aggKeys) {
+      this.ordinal = ordinal;
+      this.tableNames = ImmutableMultiset.copyOf(tableNames);
+      this.aggKeys = aggKeys;
+    }
+
+    boolean matches(Multiset<List<String>> queryTableNames,
+        Set<List<Object>> queryAggKeys) {
+      if (!Multisets.containsOccurrences(tableNames, queryTableNames)
+          && !Multisets.containsOccurrences(queryTableNames, tableNames)) {
+        return false;
+      }
+      if (queryAggKeys == null || aggKeys == null) {
+        return queryAggKeys == aggKeys;
+      }
+      for (List<Object> queryAggKey : queryAggKeys) {
+        if ((Boolean) queryAggKey.get(3)) {
+          // The rule cannot rewrite an aggregate call with a filter
+          return false;
+        }
+        if (!aggKeys.contains(queryAggKey)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
+
+// End MaterializedViewIndex.java
@@ -48,6 +48,12 @@ public enum Hook {
    * Default false. */
   ENABLE_BINDABLE,
 
+  /** Returns a boolean value, whether generated Enumerable code should
+   * evaluate expressions that have the same value for every row, such as
+   * dynamic parameters, once per execution rather than once per row.
+   * Default true. */
+  HOIST_INVARIANTS,
+
   /** Called with the SQL string and parse tree, in an array. */
   PARSE_TREE,
 
@@ -61,12 +67,22 @@ public enum Hook {
    * Janino. */
   JAVA_PLAN,
 
+  /** Called when a connection looks up a statement in its plan cache, with
+   * the SQL string and a {@link Boolean} that is true if the statement was
+   * found, in an array. See {@link org.apache.calcite.jdbc.PlanCache}. */
+  PLAN_CACHE,
+
   /** Called with the output of sql-to-rel-converter. */
   CONVERTED,
 
   /** Called with the created planner. */
   PLANNER,
 
+  /** Called when the planner stops because its planning timeout has
+   * expired, with a
+   * {@link org.apache.calcite.plan.volcano.VolcanoPlanner.TimeoutReport}. */
+  PLANNER_TIMEOUT,
+
   /** Called after de-correlation and field trimming, but before
    * optimization. */
   TRIMMED,
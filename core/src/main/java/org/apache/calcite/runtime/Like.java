@@ -16,6 +16,13 @@
  */
 package org.apache.calcite.runtime;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
 /**
  * Utilities for converting SQL {@code LIKE} and {@code SIMILAR} operators
  * to regular expressions.
@@ -40,14 +47,135 @@ public class Like {
       "[:alnum:]", "\\p{Alnum}"
   };
 
+  /** Maximum number of compiled patterns to cache. */
+  private static final int CACHE_SIZE = 1000;
+
+  /** Compiled patterns, keyed by operator, pattern and escape. */
+  private static final Cache<List<Object>, Matcher> MATCHERS =
+      CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
   private Like() {
   }
 
+  /** Returns a matcher for a SQL {@code LIKE} pattern, with optional escape
+   * string. */
+  static Matcher likeMatcher(String sqlPattern, String escapeStr) {
+    final List<Object> key = Arrays.<Object>asList(false, sqlPattern, escapeStr);
+    Matcher matcher = MATCHERS.getIfPresent(key);
+    if (matcher == null) {
+      final char escapeChar = escapeChar(escapeStr);
+      matcher = simpleMatcher(sqlPattern, escapeChar);
+      if (matcher == null) {
+        matcher = new RegexMatcher(
+            Pattern.compile(sqlToRegexLike(sqlPattern, escapeChar)));
+      }
+      MATCHERS.put(key, matcher);
+    }
+    return matcher;
+  }
+
+  /** Returns a matcher for a SQL {@code SIMILAR} pattern, with optional
+   * escape string. */
+  static Matcher similarMatcher(String sqlPattern, String escapeStr) {
+    final List<Object> key = Arrays.<Object>asList(true, sqlPattern, escapeStr);
+    Matcher matcher = MATCHERS.getIfPresent(key);
+    if (matcher == null) {
+      final char escapeChar = escapeChar(escapeStr);
+      matcher = escapeStr == null && !hasSimilarSpecials(sqlPattern)
+          ? simpleMatcher(sqlPattern, escapeChar)
+          : null;
+      if (matcher == null) {
+        matcher = new RegexMatcher(
+            Pattern.compile(sqlToRegexSimilar(sqlPattern, escapeChar)));
+      }
+      MATCHERS.put(key, matcher);
+    }
+    return matcher;
+  }
+
+  private static char escapeChar(String escapeStr) {
+    if (escapeStr == null) {
+      return 0;
+    }
+    if (escapeStr.length() != 1) {
+      throw invalidEscapeCharacter(escapeStr);
+    }
+    return escapeStr.charAt(0);
+  }
+
+  /** Returns whether a {@code SIMILAR} pattern contains characters, other
+   * than {@code %} and {@code _}, that have a special meaning in the
+   * pattern or in the regular expression it is translated to. */
+  private static boolean hasSimilarSpecials(String sqlPattern) {
+    for (int i = 0; i < sqlPattern.length(); i++) {
+      final char c = sqlPattern.charAt(i);
+      switch (c) {
+      case '%':
+      case '_':
+      case '\\':
+      case '$':
+        break;
+      default:
+        if (SQL_SIMILAR_SPECIALS.indexOf(c) >= 0
+            || JAVA_REGEX_SPECIALS.indexOf(c) >= 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** Returns a matcher that does not use a regular expression, if the
+   * {@code LIKE} pattern is a literal string optionally preceded and followed
+   * by {@code %}; otherwise returns null. */
+  private static Matcher simpleMatcher(String sqlPattern, char escapeChar) {
+    final StringBuilder literal = new StringBuilder();
+    boolean leading = false;
+    boolean trailing = false;
+    final int len = sqlPattern.length();
+    for (int i = 0; i < len; i++) {
+      char c = sqlPattern.charAt(i);
+      if (c == escapeChar) {
+        if (i == len - 1) {
+          return null;
+        }
+        c = sqlPattern.charAt(++i);
+        if (c != '_' && c != '%' && c != escapeChar) {
+          return null;
+        }
+      } else if (c == '_') {
+        return null;
+      } else if (c == '%') {
+        if (literal.length() == 0 && !trailing) {
+          leading = true;
+        } else {
+          trailing = true;
+        }
+        continue;
+      }
+      if (trailing) {
+        // Literal after a '%' that follows a literal, as in 'a%b'
+        return null;
+      }
+      literal.append(c);
+    }
+    final String s = literal.toString();
+    if (leading && trailing) {
+      return new ContainsMatcher(s);
+    } else if (leading) {
+      return new SuffixMatcher(s);
+    } else if (trailing) {
+      return new PrefixMatcher(s);
+    } else {
+      return new ExactMatcher(s);
+    }
+  }
+
   /**
    * Translates a SQL LIKE pattern to Java regex pattern, with optional
    * escape string.
    */
-  static String sqlToRegexLike(
+  public static String sqlToRegexLike(
       String sqlPattern,
       CharSequence escapeStr) {
     final char escapeChar;
@@ -207,7 +335,7 @@ private static int sqlSimilarRewriteCharEnumeration(
    * Translates a SQL SIMILAR pattern to Java regex pattern, with optional
    * escape string.
    */
-  static String sqlToRegexSimilar(
+  public static String sqlToRegexSimilar(
       String sqlPattern,
       CharSequence escapeStr) {
     final char escapeChar;
@@ -301,6 +429,80 @@ static String sqlToRegexSimilar(
 
     return javaPattern.toString();
   }
+
+  /** Compiled {@code LIKE} or {@code SIMILAR} pattern.
+   *
+   * <p>Generated code obtains a matcher once for each literal pattern, and
+   * holds it in a field. */
+  public interface Matcher {
+    /** Returns whether a string matches the pattern. */
+    boolean matches(String s);
+  }
+
+  /** Matcher for a pattern without wildcards. */
+  private static class ExactMatcher implements Matcher {
+    private final String literal;
+
+    ExactMatcher(String literal) {
+      this.literal = literal;
+    }
+
+    public boolean matches(String s) {
+      return s.equals(literal);
+    }
+  }
+
+  /** Matcher for a pattern of the form {@code 'abc%'}. */
+  private static class PrefixMatcher implements Matcher {
+    private final String literal;
+
+    PrefixMatcher(String literal) {
+      this.literal = literal;
+    }
+
+    public boolean matches(String s) {
+      return s.startsWith(literal);
+    }
+  }
+
+  /** Matcher for a pattern of the form {@code '%abc'}. */
+  private static class SuffixMatcher implements Matcher {
+    private final String literal;
+
+    SuffixMatcher(String literal) {
+      this.literal = literal;
+    }
+
+    public boolean matches(String s) {
+      return s.endsWith(literal);
+    }
+  }
+
+  /** Matcher for a pattern of the form {@code '%abc%'}. */
+  private static class ContainsMatcher implements Matcher {
+    private final String literal;
+
+    ContainsMatcher(String literal) {
+      this.literal = literal;
+    }
+
+    public boolean matches(String s) {
+      return s.contains(literal);
+    }
+  }
+
+  /** Matcher that uses a regular expression. */
+  private static class RegexMatcher implements Matcher {
+    private final Pattern pattern;
+
+    RegexMatcher(Pattern pattern) {
+      this.pattern = pattern;
+    }
+
+    public boolean matches(String s) {
+      return pattern.matcher(s).matches();
+    }
+  }
 }
 
 // End Like.java
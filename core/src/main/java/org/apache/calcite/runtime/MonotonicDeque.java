@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import java.util.ArrayDeque;
+
+/**
+ * Deque that maintains the minimum or maximum of the values in a sliding
+ * window, where values leave the window in the order that they entered it.
+ *
+ * <p>The deque holds, in order of arrival, only the values that might yet
+ * become the extreme: for a minimum, each value is less than or equal to
+ * the values after it. Adding a value discards the values before it that
+ * are greater than it, because they will leave the window first. The
+ * extreme is therefore the value at the front, and removing the oldest
+ * value from the window removes the front if it is that value. Each value is
+ * added and discarded at most once, so the amortized cost of each operation
+ * is constant.
+ *
+ * <p>Used to implement the {@code MIN} and {@code MAX} windowed aggregate
+ * functions over frames whose start moves.
+ *
+ * @param <E> Value type
+ */
+public class MonotonicDeque<E extends Comparable<E>> {
+  private final ArrayDeque<E> deque = new ArrayDeque<>();
+  private final boolean max;
+
+  /** Creates a MonotonicDeque.
+   *
+   * @param max Whether to maintain the maximum; otherwise the minimum */
+  public MonotonicDeque(boolean max) {
+    this.max = max;
+  }
+
+  /** Adds a value, which has entered the window. */
+  public void add(E e) {
+    while (!deque.isEmpty() && before(e, deque.peekLast())) {
+      deque.pollLast();
+    }
+    deque.addLast(e);
+  }
+
+  /** Removes a value, which must be the oldest value in the window. */
+  public void remove(E e) {
+    final E first = deque.peekFirst();
+    if (first != null && first.compareTo(e) == 0) {
+      deque.pollFirst();
+    }
+  }
+
+  /** Returns the minimum or maximum of the values in the window, or null if
+   * the window is empty. */
+  public E first() {
+    return deque.peekFirst();
+  }
+
+  /** Returns whether {@code e0} is strictly closer to the extreme than
+   * {@code e1}. */
+  private boolean before(E e0, E e1) {
+    final int c = e0.compareTo(e1);
+    return max ? c > 0 : c < 0;
+  }
+}
+
+// End MonotonicDeque.java
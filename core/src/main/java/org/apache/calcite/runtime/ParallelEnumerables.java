@@ -0,0 +1,454 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementations of exchange and aggregation over {@link Enumerable} that
+ * process partitions of their input in parallel, and of {@link #merge},
+ * which reads several inputs in parallel.
+ *
+ * <p>{@link #exchange} marks an enumerable as divided into partitions, by
+ * hash of a key or round-robin. Enumerated as a whole, it returns the rows
+ * of its input, unchanged and in the same order. But an operator that knows
+ * how, such as {@link #groupBy}, can read the partitions separately.
+ *
+ * <p>The thread that enumerates the input sends batches of rows to each
+ * partition through a bounded queue; a task in a {@link ForkJoinPool}
+ * consumes each partition. The input (typically a scan, filter and project)
+ * therefore runs concurrently with the work done on the partitions.
+ */
+public class ParallelEnumerables {
+  /** Number of rows sent to a partition at a time. */
+  static final int BATCH_SIZE = 1024;
+
+  /** Number of batches that may be waiting to be consumed in each
+   * partition. */
+  private static final int QUEUE_CAPACITY = 4;
+
+  /** Batch that marks the end of a partition. Compared by identity. */
+  private static final List<Object> END = new ArrayList<>();
+
+  private ParallelEnumerables() {}
+
+  /**
+   * Divides an enumerable into partitions.
+   *
+   * @param source Input
+   * @param keySelector Function that returns the key by whose hash a row is
+   *                    partitioned, or null to partition round-robin
+   * @param partitionCount Number of partitions
+   */
+  public static <T> Enumerable<T> exchange(Enumerable<T> source,
+      Function1<T, Object> keySelector, int partitionCount) {
+    return new PartitionedEnumerable<>(source, keySelector, partitionCount);
+  }
+
+  /**
+   * Divides an enumerable into partitions, round-robin, and applies a
+   * function to each partition in parallel. Returns the results in partition
+   * order.
+   *
+   * <p>The current thread enumerates the input; each partition receives
+   * every {@code partitionCount}th row.
+   *
+   * @param source Input
+   * @param partitionCount Number of partitions
+   * @param function Function to apply to each partition
+   */
+  public static <T, R> List<R> applyPartitions(Enumerable<T> source,
+      int partitionCount, Function1<Enumerable<T>, R> function) {
+    return new PartitionedEnumerable<>(source, null, partitionCount)
+        .apply(function);
+  }
+
+  /**
+   * Returns the rows of several enumerables, enumerating them in parallel.
+   *
+   * <p>A task in a {@link ForkJoinPool} enumerates each input, and sends
+   * batches of rows through a bounded queue to the thread that enumerates the
+   * result. The rows of each input arrive in order, but interleaved with the
+   * rows of the other inputs.
+   *
+   * <p>Closing the result before the end stops the tasks and closes the
+   * inputs.
+   *
+   * @param sources Inputs
+   */
+  public static <T> Enumerable<T> merge(final List<Enumerable<T>> sources) {
+    if (sources.size() == 1) {
+      return sources.get(0);
+    }
+    return new AbstractEnumerable<T>() {
+      public Enumerator<T> enumerator() {
+        return new MergeEnumerator<>(sources);
+      }
+    };
+  }
+
+  /**
+   * Groups the elements of a sequence according to a specified key selector
+   * function, and aggregates each group, aggregating partitions in parallel
+   * if the sequence was created by {@link #exchange}.
+   *
+   * <p>Gives the same result as
+   * {@link EnumerableDefaults#groupBy(Enumerable, Function1, Function0, Function2, Function2, EqualityComparer)},
+   * but if the input is partitioned, not in the same order.
+   *
+   * <p>The caller must ensure that rows with the same grouping key are in the
+   * same partition; that is, that the input is partitioned by hash of a
+   * subset of the grouping key. If the input is partitioned round-robin,
+   * aggregation is not parallel.
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult>
+  groupBy(final Enumerable<TSource> source,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer) {
+    if (!(source instanceof PartitionedEnumerable)
+        || ((PartitionedEnumerable) source).keySelector == null
+        || ((PartitionedEnumerable) source).partitionCount <= 1) {
+      return groupBy_(source, keySelector, accumulatorInitializer,
+          accumulatorAdder, resultSelector, comparer);
+    }
+    final PartitionedEnumerable<TSource> partitioned =
+        (PartitionedEnumerable<TSource>) source;
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final List<List<TResult>> results =
+            partitioned.apply(
+                new Function1<Enumerable<TSource>, List<TResult>>() {
+                  public List<TResult> apply(Enumerable<TSource> partition) {
+                    return groupBy_(partition, keySelector,
+                        accumulatorInitializer, accumulatorAdder,
+                        resultSelector, comparer).toList();
+                  }
+                });
+        final List<TResult> list = new ArrayList<>();
+        for (List<TResult> result : results) {
+          list.addAll(result);
+        }
+        return Linq4j.enumerator(list);
+      }
+    };
+  }
+
+  private static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult>
+  groupBy_(Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      Function0<TAccumulate> accumulatorInitializer,
+      Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      Function2<TKey, TAccumulate, TResult> resultSelector,
+      EqualityComparer<TKey> comparer) {
+    return comparer == null
+        ? EnumerableDefaults.groupBy(source, keySelector,
+            accumulatorInitializer, accumulatorAdder, resultSelector)
+        : EnumerableDefaults.groupBy(source, keySelector,
+            accumulatorInitializer, accumulatorAdder, resultSelector,
+            comparer);
+  }
+
+  /** Returns the partition of a key. Spreads the bits of its hash code
+   * (using the finalization step of MurmurHash3) so that keys whose hash
+   * codes differ only in their high bits go to different partitions. */
+  static int partition(Object key, int partitionCount) {
+    int h = key == null ? 0 : key.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return (h & Integer.MAX_VALUE) % partitionCount;
+  }
+
+  /** Enumerable that is divided into partitions.
+   *
+   * @param <T> Element type */
+  private static class PartitionedEnumerable<T> extends AbstractEnumerable<T> {
+    private final Enumerable<T> source;
+    private final Function1<T, Object> keySelector;
+    private final int partitionCount;
+
+    PartitionedEnumerable(Enumerable<T> source,
+        Function1<T, Object> keySelector, int partitionCount) {
+      this.source = source;
+      this.keySelector = keySelector;
+      this.partitionCount = partitionCount;
+    }
+
+    public Enumerator<T> enumerator() {
+      return source.enumerator();
+    }
+
+    /** Applies a function to each partition, in parallel, and returns the
+     * results in partition order.
+     *
+     * <p>The current thread enumerates the input and distributes its rows;
+     * it returns when every partition has been consumed. */
+    <R> List<R> apply(final Function1<Enumerable<T>, R> function) {
+      final ForkJoinPool pool = new ForkJoinPool(partitionCount);
+      try {
+        final List<BlockingQueue<List<T>>> queues = new ArrayList<>();
+        final List<ForkJoinTask<R>> tasks = new ArrayList<>();
+        for (int i = 0; i < partitionCount; i++) {
+          final BlockingQueue<List<T>> queue =
+              new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+          queues.add(queue);
+          tasks.add(
+              pool.submit(
+                  new Callable<R>() {
+                    public R call() {
+                      return function.apply(new QueueEnumerable<>(queue));
+                    }
+                  }));
+        }
+        distribute(queues, tasks);
+        final List<R> results = new ArrayList<>();
+        for (ForkJoinTask<R> task : tasks) {
+          results.add(task.join());
+        }
+        return results;
+      } finally {
+        // If we are here because of an exception, interrupts tasks that are
+        // waiting for rows that will never come.
+        pool.shutdownNow();
+      }
+    }
+
+    private void distribute(List<BlockingQueue<List<T>>> queues,
+        List<? extends ForkJoinTask<?>> tasks) {
+      final List<List<T>> batches = new ArrayList<>();
+      for (int i = 0; i < partitionCount; i++) {
+        batches.add(new ArrayList<T>(BATCH_SIZE));
+      }
+      int next = 0;
+      try (Enumerator<T> enumerator = source.enumerator()) {
+        while (enumerator.moveNext()) {
+          final T t = enumerator.current();
+          final int p;
+          if (keySelector == null) {
+            p = next;
+            next = (next + 1) % partitionCount;
+          } else {
+            p = partition(keySelector.apply(t), partitionCount);
+          }
+          final List<T> batch = batches.get(p);
+          batch.add(t);
+          if (batch.size() == BATCH_SIZE) {
+            put(queues.get(p), batch, tasks.get(p));
+            batches.set(p, new ArrayList<T>(BATCH_SIZE));
+          }
+        }
+      }
+      for (int p = 0; p < partitionCount; p++) {
+        if (!batches.get(p).isEmpty()) {
+          put(queues.get(p), batches.get(p), tasks.get(p));
+        }
+        //noinspection unchecked
+        put(queues.get(p), (List<T>) END, tasks.get(p));
+      }
+    }
+
+    /** Adds a batch to a partition's queue, waiting if the queue is full.
+     * Fails if the task consuming the partition has failed. */
+    private static <T> void put(BlockingQueue<List<T>> queue, List<T> batch,
+        ForkJoinTask<?> consumer) {
+      try {
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+          if (consumer.isDone()) {
+            // Re-throws the consumer's exception, if any
+            consumer.join();
+            throw new IllegalStateException(
+                "partition consumer finished before end of input");
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /** Enumerator that reads the batches of rows sent by tasks that enumerate
+   * several inputs, until it has received {@link #END} from each.
+   *
+   * @param <T> Element type */
+  private static class MergeEnumerator<T> implements Enumerator<T> {
+    private final ForkJoinPool pool;
+    private final BlockingQueue<List<T>> queue;
+    private final List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+    private int remaining;
+    private List<T> batch = Collections.emptyList();
+    private int i = 0;
+
+    MergeEnumerator(List<Enumerable<T>> sources) {
+      this.pool = new ForkJoinPool(sources.size());
+      this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY * sources.size());
+      this.remaining = sources.size();
+      for (final Enumerable<T> source : sources) {
+        tasks.add(
+            pool.submit(
+                new Callable<Void>() {
+                  public Void call() throws InterruptedException {
+                    List<T> batch = new ArrayList<>(BATCH_SIZE);
+                    try (Enumerator<T> enumerator = source.enumerator()) {
+                      while (enumerator.moveNext()) {
+                        batch.add(enumerator.current());
+                        if (batch.size() == BATCH_SIZE) {
+                          queue.put(batch);
+                          batch = new ArrayList<>(BATCH_SIZE);
+                        }
+                      }
+                    }
+                    if (!batch.isEmpty()) {
+                      queue.put(batch);
+                    }
+                    //noinspection unchecked
+                    queue.put((List<T>) END);
+                    return null;
+                  }
+                }));
+      }
+    }
+
+    public T current() {
+      return batch.get(i - 1);
+    }
+
+    public boolean moveNext() {
+      while (i >= batch.size()) {
+        if (remaining == 0) {
+          return false;
+        }
+        batch = take();
+        i = 0;
+        if (batch == END) {
+          batch = Collections.emptyList();
+          --remaining;
+        }
+      }
+      ++i;
+      return true;
+    }
+
+    /** Takes the next batch from the queue, waiting if necessary. Fails if
+     * any of the tasks has failed. */
+    private List<T> take() {
+      try {
+        for (;;) {
+          for (ForkJoinTask<Void> task : tasks) {
+            if (task.isCompletedAbnormally()) {
+              // Re-throws the task's exception
+              task.join();
+            }
+          }
+          final List<T> batch = queue.poll(100, TimeUnit.MILLISECONDS);
+          if (batch != null) {
+            return batch;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+
+    public void reset() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      // Interrupts tasks that are waiting to send rows that will never be
+      // read; each closes its input.
+      pool.shutdownNow();
+    }
+  }
+
+  /** Enumerable that reads batches of rows from a queue until it receives
+   * {@link #END}. Can be enumerated only once.
+   *
+   * @param <T> Element type */
+  private static class QueueEnumerable<T> extends AbstractEnumerable<T> {
+    private final BlockingQueue<List<T>> queue;
+
+    QueueEnumerable(BlockingQueue<List<T>> queue) {
+      this.queue = queue;
+    }
+
+    public Enumerator<T> enumerator() {
+      return new Enumerator<T>() {
+        private List<T> batch = Collections.emptyList();
+        private int i = 0;
+        private boolean done;
+
+        public T current() {
+          return batch.get(i - 1);
+        }
+
+        public boolean moveNext() {
+          while (i >= batch.size()) {
+            if (done) {
+              return false;
+            }
+            try {
+              batch = queue.take();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new RuntimeException(e);
+            }
+            i = 0;
+            if (batch == END) {
+              batch = Collections.emptyList();
+              done = true;
+            }
+          }
+          ++i;
+          return true;
+        }
+
+        public void reset() {
+          throw new UnsupportedOperationException();
+        }
+
+        public void close() {
+        }
+      };
+    }
+  }
+}
+
+// End ParallelEnumerables.java
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.runtime;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
@@ -24,10 +25,13 @@
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.tree.Primitive;
 
+import com.google.common.base.Preconditions;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -47,6 +51,9 @@
   private final DataSource dataSource;
   private final String sql;
   private final Function1<ResultSet, Function0<T>> rowBuilderFactory;
+  private final PreparedStatementEnricher preparedStatementEnricher;
+  private final int fetchSize;
+  private final boolean streaming;
   private static final Logger LOGGER = LoggerFactory.getLogger(
       ResultSetEnumerable.class);
 
@@ -102,10 +109,16 @@ public Object[] apply() {
   private ResultSetEnumerable(
       DataSource dataSource,
       String sql,
-      Function1<ResultSet, Function0<T>> rowBuilderFactory) {
+      Function1<ResultSet, Function0<T>> rowBuilderFactory,
+      PreparedStatementEnricher preparedStatementEnricher,
+      int fetchSize,
+      boolean streaming) {
     this.dataSource = dataSource;
     this.sql = sql;
     this.rowBuilderFactory = rowBuilderFactory;
+    this.preparedStatementEnricher = preparedStatementEnricher;
+    this.fetchSize = fetchSize;
+    this.streaming = streaming;
   }
 
   /** Creates an ResultSetEnumerable. */
@@ -126,25 +139,109 @@ public static <T> Enumerable<T> of(
       DataSource dataSource,
       String sql,
       Function1<ResultSet, Function0<T>> rowBuilderFactory) {
-    return new ResultSetEnumerable<T>(dataSource, sql, rowBuilderFactory);
+    return new ResultSetEnumerable<T>(dataSource, sql, rowBuilderFactory, null,
+        0, false);
+  }
+
+  /** Executes a SQL query as a prepared statement and returns the results as
+   * an enumerator.
+   *
+   * @param dataSource Data source
+   * @param sql SQL query, which may contain parameters
+   * @param rowBuilderFactory Converts JDBC column values into rows
+   * @param preparedStatementEnricher Sets the values of the parameters
+   * @param fetchSize Number of rows to fetch from the database at a time, or 0
+   *                  to use the driver's default
+   * @param streaming Whether to turn off auto-commit while the query executes;
+   *                  some drivers, such as PostgreSQL's, read the whole result
+   *                  into memory unless auto-commit is off and the fetch size
+   *                  is set
+   */
+  public static <T> Enumerable<T> of(
+      DataSource dataSource,
+      String sql,
+      Function1<ResultSet, Function0<T>> rowBuilderFactory,
+      PreparedStatementEnricher preparedStatementEnricher,
+      int fetchSize,
+      boolean streaming) {
+    return new ResultSetEnumerable<T>(dataSource, sql, rowBuilderFactory,
+        Preconditions.checkNotNull(preparedStatementEnricher), fetchSize,
+        streaming);
+  }
+
+  /** Creates a {@link PreparedStatementEnricher} that sets each parameter of
+   * a statement to the value of a dynamic parameter of the query.
+   *
+   * @param indexes Index of the dynamic parameter that provides the value of
+   *                each parameter of the statement
+   * @param types   JDBC type of each parameter of the statement, as in
+   *                {@link Types}
+   * @param context Data context, which holds the values of the dynamic
+   *                parameters
+   */
+  public static PreparedStatementEnricher createEnricher(
+      final Integer[] indexes, final Integer[] types,
+      final DataContext context) {
+    return new PreparedStatementEnricher() {
+      public void enrich(PreparedStatement statement) throws SQLException {
+        for (int i = 0; i < indexes.length; i++) {
+          final Object value = context.get("?" + indexes[i]);
+          if (value == null) {
+            statement.setNull(i + 1, types[i]);
+          } else {
+            statement.setObject(i + 1, toJdbc(value, types[i]));
+          }
+        }
+      }
+    };
+  }
+
+  /** Converts the internal representation of a parameter value, as held in
+   * the data context, to the object that JDBC expects for the given type.
+   * DATE and TIME are held as {@code int} and TIMESTAMP as {@code long}. */
+  private static Object toJdbc(Object value, int type) {
+    if (value instanceof Number) {
+      switch (type) {
+      case Types.DATE:
+        return SqlFunctions.internalToDate(((Number) value).intValue());
+      case Types.TIME:
+        return SqlFunctions.internalToTime(((Number) value).intValue());
+      case Types.TIMESTAMP:
+        return SqlFunctions.internalToTimestamp(((Number) value).longValue());
+      }
+    }
+    return value;
   }
 
   public Enumerator<T> enumerator() {
     Connection connection = null;
     Statement statement = null;
+    boolean restoreAutoCommit = false;
     try {
       connection = dataSource.getConnection();
-      statement = connection.createStatement();
-      try {
-        statement.setQueryTimeout(10);
-      } catch (SQLFeatureNotSupportedException e) {
-        LOGGER.debug("Failed to set query timeout.");
+      if (streaming && connection.getAutoCommit()) {
+        connection.setAutoCommit(false);
+        restoreAutoCommit = true;
+      }
+      final boolean hasResultSet;
+      if (preparedStatementEnricher == null) {
+        statement = connection.createStatement();
+        configure(statement);
+        hasResultSet = statement.execute(sql);
+      } else {
+        final PreparedStatement preparedStatement =
+            connection.prepareStatement(sql);
+        statement = preparedStatement;
+        configure(statement);
+        preparedStatementEnricher.enrich(preparedStatement);
+        hasResultSet = preparedStatement.execute();
       }
-      if (statement.execute(sql)) {
+      if (hasResultSet) {
         final ResultSet resultSet = statement.getResultSet();
         statement = null;
         connection = null;
-        return new ResultSetEnumerator<T>(resultSet, rowBuilderFactory);
+        return new ResultSetEnumerator<T>(resultSet, rowBuilderFactory,
+            restoreAutoCommit);
       } else {
         Integer updateCount = statement.getUpdateCount();
         return Linq4j.singletonEnumerator((T) updateCount);
@@ -161,6 +258,9 @@ public Enumerator<T> enumerator() {
       }
       if (connection != null) {
         try {
+          if (restoreAutoCommit) {
+            connection.setAutoCommit(true);
+          }
           connection.close();
         } catch (SQLException e) {
           // ignore
@@ -169,19 +269,39 @@ public Enumerator<T> enumerator() {
     }
   }
 
+  private void configure(Statement statement) throws SQLException {
+    try {
+      statement.setQueryTimeout(10);
+    } catch (SQLFeatureNotSupportedException e) {
+      LOGGER.debug("Failed to set query timeout.");
+    }
+    if (fetchSize != 0) {
+      statement.setFetchSize(fetchSize);
+    }
+  }
+
+  /** Sets the parameters of a {@link PreparedStatement} before it is
+   * executed. */
+  public interface PreparedStatementEnricher {
+    void enrich(PreparedStatement statement) throws SQLException;
+  }
+
   /** Implementation of {@link Enumerator} that reads from a
    * {@link ResultSet}.
    *
    * @param <T> element type */
   private static class ResultSetEnumerator<T> implements Enumerator<T> {
     private final Function0<T> rowBuilder;
+    private final boolean restoreAutoCommit;
     private ResultSet resultSet;
 
     ResultSetEnumerator(
         ResultSet resultSet,
-        Function1<ResultSet, Function0<T>> rowBuilderFactory) {
+        Function1<ResultSet, Function0<T>> rowBuilderFactory,
+        boolean restoreAutoCommit) {
       this.resultSet = resultSet;
       this.rowBuilder = rowBuilderFactory.apply(resultSet);
+      this.restoreAutoCommit = restoreAutoCommit;
     }
 
     public T current() {
@@ -215,6 +335,9 @@ public void close() {
             final Connection connection = statement.getConnection();
             statement.close();
             if (connection != null) {
+              if (restoreAutoCommit) {
+                connection.setAutoCommit(true);
+              }
               connection.close();
             }
           }
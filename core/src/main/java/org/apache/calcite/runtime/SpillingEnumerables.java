@@ -0,0 +1,975 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Implementations of join, aggregation, sort and partitioning over
+ * {@link Enumerable} that spill to disk if their input does not fit into a
+ * given amount of memory.
+ *
+ * <p>Join and aggregation use hash partitioning. While the estimated size of
+ * the rows held in memory is below the limit, they behave like
+ * {@link EnumerableDefaults#join} and {@link EnumerableDefaults#groupBy}.
+ * When the limit is exceeded, they write rows to one of
+ * {@link #PARTITION_COUNT} temporary files according to the hash of their
+ * key, then process the files one at a time. A file that is still too large
+ * is partitioned again using different bits of the hash.
+ *
+ * <p>Sort is an external merge sort; see {@link #orderBy}.
+ *
+ * <p>Partitioning, for windowed aggregates, also uses hash partitioning; see
+ * {@link #partitionArrays}.
+ *
+ * <p>Rows are written using Java serialization, so can only be spilled if
+ * they are {@link Serializable}. Arrays and the record types generated by
+ * Calcite are. If rows are not serializable, the operator works in memory,
+ * as if there were no limit.
+ *
+ * <p>Memory use is estimated, not measured; see {@link #estimateSize}.
+ */
+public class SpillingEnumerables {
+  /** Number of files into which an input is partitioned when it spills. */
+  static final int PARTITION_COUNT = 16;
+
+  /** Number of bits of the hash code used to choose a partition. */
+  private static final int PARTITION_BITS = 4;
+
+  /** Number of times an input may be partitioned. If a partition at this
+   * depth is still too large (which only happens if very many rows have the
+   * same key) it is processed in memory. */
+  static final int MAX_DEPTH = 3;
+
+  /** Number of rows written to a spill file between resets of its stream.
+   * Until it is reset, an {@link ObjectOutputStream} holds a reference to
+   * every object it has written. */
+  private static final int RESET_INTERVAL = 1000;
+
+  /** Estimated overhead, in bytes, of holding an entry in a hash table. */
+  private static final int ENTRY_SIZE = 48;
+
+  /** Estimated size, in bytes, of an object whose size we do not know how to
+   * estimate. */
+  private static final int DEFAULT_SIZE = 64;
+
+  /** Maximum number of sorted runs that are merged at a time. */
+  static final int MERGE_WIDTH = 64;
+
+  @SuppressWarnings("unchecked")
+  private static final Comparator<Object> NATURAL =
+      new Comparator<Object>() {
+        public int compare(Object o1, Object o2) {
+          return ((Comparable) o1).compareTo(o2);
+        }
+      };
+
+  private SpillingEnumerables() {}
+
+  /**
+   * Correlates the elements of two sequences based on matching keys, spilling
+   * to disk if the inner sequence does not fit into {@code memoryLimit}
+   * bytes.
+   *
+   * <p>Gives the same result as
+   * {@link EnumerableDefaults#join(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean)},
+   * but if it spills, not in the same order.
+   */
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> join(
+      Enumerable<TSource> outer, Enumerable<TInner> inner,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<TSource, TInner, TResult> resultSelector,
+      EqualityComparer<TKey> comparer, boolean generateNullsOnLeft,
+      boolean generateNullsOnRight, long memoryLimit) {
+    return join_(outer, inner, outerKeySelector, innerKeySelector,
+        resultSelector, comparer, generateNullsOnLeft, generateNullsOnRight,
+        memoryLimit, 0);
+  }
+
+  private static <TSource, TInner, TKey, TResult> Enumerable<TResult> join_(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final boolean generateNullsOnLeft,
+      final boolean generateNullsOnRight, final long memoryLimit,
+      final int depth) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final List<TInner> innerList = new ArrayList<>();
+        final List<SpillFile<TInner>> innerFiles;
+        try (Enumerator<TInner> inners = inner.enumerator()) {
+          if (!fill(inners, innerList, memoryLimit, depth)) {
+            // The inner input fits into memory. Join as usual.
+            return EnumerableDefaults.join(outer,
+                Linq4j.asEnumerable(innerList), outerKeySelector,
+                innerKeySelector, resultSelector, comparer,
+                generateNullsOnLeft, generateNullsOnRight).enumerator();
+          }
+          innerFiles =
+              partition(innerList, inners, innerKeySelector, comparer, depth);
+        }
+        final List<SpillFile<TSource>> outerFiles;
+        try (Enumerator<TSource> outers = outer.enumerator()) {
+          outerFiles = partition(Collections.<TSource>emptyList(), outers,
+              outerKeySelector, comparer, depth);
+        } catch (RuntimeException | Error e) {
+          delete(innerFiles);
+          throw e;
+        }
+
+        // Rows with equal keys are in the same partition, so we can join
+        // each pair of partitions independently.
+        final List<Enumerable<TResult>> joins = new ArrayList<>();
+        for (int i = 0; i < PARTITION_COUNT; i++) {
+          final SpillFile<TSource> outerFile = outerFiles.get(i);
+          final SpillFile<TInner> innerFile = innerFiles.get(i);
+          if (outerFile.count == 0
+              && (innerFile.count == 0 || !generateNullsOnLeft)
+              || innerFile.count == 0 && !generateNullsOnRight) {
+            continue;
+          }
+          joins.add(
+              join_(outerFile.asEnumerable(), innerFile.asEnumerable(),
+                  outerKeySelector, innerKeySelector, resultSelector, comparer,
+                  generateNullsOnLeft, generateNullsOnRight, memoryLimit,
+                  depth + 1));
+        }
+        final List<SpillFile<?>> files = new ArrayList<>();
+        files.addAll(innerFiles);
+        files.addAll(outerFiles);
+        return new DeletingEnumerator<>(
+            Linq4j.concat(joins).enumerator(), files);
+      }
+    };
+  }
+
+  /**
+   * Groups the elements of a sequence according to a key and aggregates each
+   * group, spilling to disk if the groups do not fit into {@code memoryLimit}
+   * bytes.
+   *
+   * <p>Gives the same result as
+   * {@link EnumerableDefaults#groupBy(Enumerable, Function1, Function0, Function2, Function2, EqualityComparer)},
+   * but if it spills, not in the same order.
+   *
+   * <p>The algorithm is a hybrid: groups created before the limit is reached
+   * stay in memory and continue to accumulate; rows whose key is not in
+   * memory are spilled, and aggregated later, one partition at a time.
+   * Accumulators are never written to disk.
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
+      Enumerable<TSource> enumerable, Function1<TSource, TKey> keySelector,
+      Function0<TAccumulate> accumulatorInitializer,
+      Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      Function2<TKey, TAccumulate, TResult> resultSelector,
+      EqualityComparer<TKey> comparer, long memoryLimit) {
+    return groupBy_(enumerable, keySelector, accumulatorInitializer,
+        accumulatorAdder, resultSelector, comparer, memoryLimit, 0);
+  }
+
+  private static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy_(
+      final Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final long memoryLimit,
+      final int depth) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final Map<Object, TAccumulate> map = new HashMap<>();
+        List<SpillFile<TSource>> files = null;
+        long size = 0;
+        boolean success = false;
+        try (Enumerator<TSource> os = enumerable.enumerator()) {
+          while (os.moveNext()) {
+            final TSource o = os.current();
+            final TKey key = keySelector.apply(o);
+            final Object mapKey =
+                comparer == null ? key : new ComparerKey<>(key, comparer);
+            TAccumulate accumulator = map.get(mapKey);
+            if (accumulator == null) {
+              if (files != null) {
+                files.get(partition(key, comparer, depth)).add(o);
+                continue;
+              }
+              accumulator = accumulatorInitializer.apply();
+              accumulator = accumulatorAdder.apply(accumulator, o);
+              map.put(mapKey, accumulator);
+              size += ENTRY_SIZE + estimateSize(key)
+                  + estimateSize(accumulator);
+              if (size > memoryLimit
+                  && depth < MAX_DEPTH
+                  && o instanceof Serializable) {
+                files = newFiles();
+              }
+            } else {
+              final TAccumulate accumulator0 = accumulator;
+              accumulator = accumulatorAdder.apply(accumulator, o);
+              if (accumulator != accumulator0) {
+                map.put(mapKey, accumulator);
+              }
+            }
+          }
+          if (files != null) {
+            for (SpillFile<TSource> file : files) {
+              file.finish();
+            }
+          }
+          success = true;
+        } finally {
+          if (!success && files != null) {
+            delete(files);
+          }
+        }
+
+        final List<Enumerable<TResult>> results = new ArrayList<>();
+        results.add(
+            Linq4j.asEnumerable(map.entrySet())
+                .select(
+                    new Function1<Map.Entry<Object, TAccumulate>, TResult>() {
+                      public TResult apply(
+                          Map.Entry<Object, TAccumulate> entry) {
+                        return resultSelector.apply(unwrap(entry.getKey()),
+                            entry.getValue());
+                      }
+                    }));
+        if (files == null) {
+          return results.get(0).enumerator();
+        }
+        for (SpillFile<TSource> file : files) {
+          if (file.count > 0) {
+            results.add(
+                groupBy_(file.asEnumerable(), keySelector,
+                    accumulatorInitializer, accumulatorAdder, resultSelector,
+                    comparer, memoryLimit, depth + 1));
+          }
+        }
+        return new DeletingEnumerator<>(Linq4j.concat(results).enumerator(),
+            files);
+      }
+
+      private TKey unwrap(Object mapKey) {
+        //noinspection unchecked
+        return comparer == null
+            ? (TKey) mapKey
+            : ((ComparerKey<TKey>) mapKey).key;
+      }
+    };
+  }
+
+  /**
+   * Sorts the elements of a sequence according to a key, spilling to disk if
+   * the sequence does not fit into {@code memoryLimit} bytes.
+   *
+   * <p>Gives the same result as
+   * {@link EnumerableDefaults#orderBy(Enumerable, Function1, Comparator)};
+   * in particular, elements with equal keys are returned in their original
+   * order.
+   *
+   * <p>Reads elements into memory until their estimated size exceeds the
+   * limit, sorts them, and writes them to a temporary file as a sorted run.
+   * The last run stays in memory. The runs are merged using a priority queue;
+   * if there are more than {@link #MERGE_WIDTH} runs, consecutive runs are
+   * first merged into longer runs, so that not too many files are open at a
+   * time.
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(
+      final Enumerable<TSource> source,
+      final Function1<TSource, TKey> keySelector,
+      Comparator<TKey> comparator, final long memoryLimit) {
+    //noinspection unchecked
+    final Comparator<TKey> keyComparator =
+        comparator == null ? (Comparator<TKey>) NATURAL : comparator;
+    return new AbstractEnumerable<TSource>() {
+      public Enumerator<TSource> enumerator() {
+        final List<SpillFile<TSource>> files = new ArrayList<>();
+        final List<Keyed<TKey, TSource>> list = new ArrayList<>();
+        List<SpillFile<TSource>> runs = new ArrayList<>();
+        long size = 0;
+        boolean success = false;
+        try {
+          try (Enumerator<TSource> os = source.enumerator()) {
+            while (os.moveNext()) {
+              final TSource o = os.current();
+              final TKey key = keySelector.apply(o);
+              list.add(new Keyed<>(key, o));
+              size += ENTRY_SIZE + estimateSize(key) + estimateSize(o);
+              if (size > memoryLimit && o instanceof Serializable) {
+                final SpillFile<TSource> run = new SpillFile<>();
+                files.add(run);
+                runs.add(run);
+                for (TSource e : sort(list, keyComparator)) {
+                  run.add(e);
+                }
+                run.finish();
+                list.clear();
+                size = 0;
+              }
+            }
+          }
+          final List<TSource> lastRun = sort(list, keyComparator);
+          if (runs.isEmpty()) {
+            success = true;
+            return Linq4j.enumerator(lastRun);
+          }
+
+          // Reduce the number of runs, leaving room for the last run
+          while (runs.size() >= MERGE_WIDTH) {
+            final List<SpillFile<TSource>> mergedRuns = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i += MERGE_WIDTH) {
+              final List<SpillFile<TSource>> group =
+                  runs.subList(i, Math.min(i + MERGE_WIDTH, runs.size()));
+              if (group.size() == 1) {
+                mergedRuns.add(group.get(0));
+                continue;
+              }
+              final SpillFile<TSource> run = new SpillFile<>();
+              files.add(run);
+              mergedRuns.add(run);
+              try (Enumerator<TSource> merged =
+                       merge(enumerators(group), keySelector, keyComparator)) {
+                while (merged.moveNext()) {
+                  run.add(merged.current());
+                }
+              }
+              run.finish();
+              delete(group);
+            }
+            runs = mergedRuns;
+          }
+
+          final List<Enumerator<TSource>> enumerators = enumerators(runs);
+          enumerators.add(Linq4j.enumerator(lastRun));
+          success = true;
+          return new DeletingEnumerator<>(
+              merge(enumerators, keySelector, keyComparator), files);
+        } finally {
+          if (!success) {
+            delete(files);
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Partitions the elements of a sequence according to a key, and returns
+   * each partition as an array sorted by {@code comparator}, spilling to disk
+   * if the sequence does not fit into {@code memoryLimit} bytes.
+   *
+   * <p>Gives the same partitions as {@link SortedMultiMap#arrays}, but if it
+   * spills, not in the same order.
+   *
+   * <p>If the limit is exceeded, writes the elements to
+   * {@link #PARTITION_COUNT} temporary files according to the hash of their
+   * key, then partitions the files one at a time. Each partition is returned
+   * as an array, so must fit into memory; a file that holds a single large
+   * partition is read into memory at {@link #MAX_DEPTH}.
+   */
+  public static <TSource, TKey> Enumerable<TSource[]> partitionArrays(
+      Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      Comparator<TSource> comparator, long memoryLimit) {
+    return partitionArrays_(source, keySelector, comparator, memoryLimit, 0);
+  }
+
+  private static <TSource, TKey> Enumerable<TSource[]> partitionArrays_(
+      final Enumerable<TSource> source,
+      final Function1<TSource, TKey> keySelector,
+      final Comparator<TSource> comparator, final long memoryLimit,
+      final int depth) {
+    return new AbstractEnumerable<TSource[]>() {
+      public Enumerator<TSource[]> enumerator() {
+        final SortedMultiMap<TKey, TSource> map = new SortedMultiMap<>();
+        List<SpillFile<TSource>> files = null;
+        long size = 0;
+        boolean success = false;
+        try (Enumerator<TSource> os = source.enumerator()) {
+          while (os.moveNext()) {
+            final TSource o = os.current();
+            final TKey key = keySelector.apply(o);
+            if (files != null) {
+              files.get(partition(key, null, depth)).add(o);
+              continue;
+            }
+            map.putMulti(key, o);
+            size += ENTRY_SIZE + estimateSize(o);
+            if (size > memoryLimit
+                && depth < MAX_DEPTH
+                && o instanceof Serializable) {
+              // Unlike an accumulator, a partition keeps growing, so move
+              // every element read so far to disk
+              files = newFiles();
+              for (Map.Entry<TKey, List<TSource>> entry : map.entrySet()) {
+                final int i = partition(entry.getKey(), null, depth);
+                for (TSource e : entry.getValue()) {
+                  files.get(i).add(e);
+                }
+              }
+              map.clear();
+            }
+          }
+          if (files != null) {
+            for (SpillFile<TSource> file : files) {
+              file.finish();
+            }
+          }
+          success = true;
+        } finally {
+          if (!success && files != null) {
+            delete(files);
+          }
+        }
+
+        if (files == null) {
+          return Linq4j.iterableEnumerator(
+              new Iterable<TSource[]>() {
+                public Iterator<TSource[]> iterator() {
+                  return map.arrays(comparator);
+                }
+              });
+        }
+        final List<Enumerable<TSource[]>> results = new ArrayList<>();
+        for (SpillFile<TSource> file : files) {
+          if (file.count > 0) {
+            results.add(
+                partitionArrays_(file.asEnumerable(), keySelector, comparator,
+                    memoryLimit, depth + 1));
+          }
+        }
+        return new DeletingEnumerator<>(Linq4j.concat(results).enumerator(),
+            files);
+      }
+    };
+  }
+
+  /** Sorts a list of keyed elements, and returns a view of the elements. */
+  private static <K, V> List<V> sort(final List<Keyed<K, V>> list,
+      final Comparator<K> comparator) {
+    Collections.sort(list,
+        new Comparator<Keyed<K, V>>() {
+          public int compare(Keyed<K, V> o1, Keyed<K, V> o2) {
+            return comparator.compare(o1.key, o2.key);
+          }
+        });
+    return new AbstractList<V>() {
+      public V get(int index) {
+        return list.get(index).value;
+      }
+
+      public int size() {
+        return list.size();
+      }
+    };
+  }
+
+  private static <E> List<Enumerator<E>> enumerators(
+      List<SpillFile<E>> files) {
+    final List<Enumerator<E>> enumerators = new ArrayList<>();
+    for (SpillFile<E> file : files) {
+      enumerators.add(file.asEnumerable().enumerator());
+    }
+    return enumerators;
+  }
+
+  private static <TSource, TKey> Enumerator<TSource> merge(
+      List<Enumerator<TSource>> enumerators,
+      Function1<TSource, TKey> keySelector, Comparator<TKey> comparator) {
+    return new MergeEnumerator<>(enumerators, keySelector, comparator);
+  }
+
+  /** Reads elements into a list until there are no more elements or the
+   * estimated size of the list exceeds a limit. Returns whether the limit was
+   * exceeded.
+   *
+   * <p>Never exceeds the limit if the elements are not serializable, or at
+   * the maximum depth of partitioning. */
+  private static <E> boolean fill(Enumerator<E> enumerator, List<E> list,
+      long memoryLimit, int depth) {
+    long size = 0;
+    while (enumerator.moveNext()) {
+      final E e = enumerator.current();
+      list.add(e);
+      size += ENTRY_SIZE + estimateSize(e);
+      if (size > memoryLimit && depth < MAX_DEPTH && e instanceof Serializable) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Writes the elements of a list, followed by the remaining elements of an
+   * enumerator, to partition files. Clears the list. */
+  private static <E, K> List<SpillFile<E>> partition(List<E> list,
+      Enumerator<E> enumerator, Function1<E, K> keySelector,
+      EqualityComparer<K> comparer, int depth) {
+    final List<SpillFile<E>> files = newFiles();
+    boolean success = false;
+    try {
+      for (E e : list) {
+        files.get(partition(key(e, keySelector), comparer, depth)).add(e);
+      }
+      list.clear();
+      while (enumerator.moveNext()) {
+        final E e = enumerator.current();
+        files.get(partition(key(e, keySelector), comparer, depth)).add(e);
+      }
+      for (SpillFile<E> file : files) {
+        file.finish();
+      }
+      success = true;
+      return files;
+    } finally {
+      if (!success) {
+        delete(files);
+      }
+    }
+  }
+
+  private static <E> List<SpillFile<E>> newFiles() {
+    final List<SpillFile<E>> files = new ArrayList<>(PARTITION_COUNT);
+    for (int i = 0; i < PARTITION_COUNT; i++) {
+      files.add(new SpillFile<E>());
+    }
+    return files;
+  }
+
+  private static void delete(List<? extends SpillFile<?>> files) {
+    for (SpillFile<?> file : files) {
+      file.delete();
+    }
+  }
+
+  private static <E, K> K key(E e, Function1<E, K> keySelector) {
+    return e == null ? null : keySelector.apply(e);
+  }
+
+  /** Returns the partition of a key.
+   *
+   * <p>Each depth of partitioning uses different bits of the hash code, so
+   * that the rows of a partition that is too large are spread over several
+   * partitions when it is partitioned again. */
+  private static <K> int partition(K key, EqualityComparer<K> comparer,
+      int depth) {
+    int h = key == null
+        ? 0
+        : comparer == null ? key.hashCode() : comparer.hashCode(key);
+    // Finalization step of MurmurHash3, so that every bit of the key affects
+    // the bits we use
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return (h >>> (depth * PARTITION_BITS)) & (PARTITION_COUNT - 1);
+  }
+
+  /** Returns an estimate of the number of bytes of memory used by an object,
+   * including the objects it references.
+   *
+   * <p>Understands the types that typically occur in rows: arrays, lists,
+   * strings, boxed primitives, {@link BigDecimal} and {@link ByteString}.
+   * Any other object is assumed to use {@link #DEFAULT_SIZE} bytes. */
+  public static long estimateSize(Object o) {
+    if (o == null) {
+      return 0;
+    } else if (o instanceof Object[]) {
+      final Object[] objects = (Object[]) o;
+      long size = 16 + 8L * objects.length;
+      for (Object object : objects) {
+        size += estimateSize(object);
+      }
+      return size;
+    } else if (o instanceof List) {
+      final List<?> list = (List<?>) o;
+      long size = 40 + 8L * list.size();
+      for (Object object : list) {
+        size += estimateSize(object);
+      }
+      return size;
+    } else if (o instanceof String) {
+      return 40 + 2L * ((String) o).length();
+    } else if (o instanceof BigDecimal) {
+      return 48;
+    } else if (o instanceof Number
+        || o instanceof Boolean
+        || o instanceof Character) {
+      return 16;
+    } else if (o instanceof ByteString) {
+      return 32 + ((ByteString) o).length();
+    } else if (o instanceof byte[]) {
+      return 16 + ((byte[]) o).length;
+    } else {
+      return DEFAULT_SIZE;
+    }
+  }
+
+  /** Element and its sort key.
+   *
+   * @param <K> Key type
+   * @param <V> Element type */
+  private static class Keyed<K, V> {
+    final K key;
+    final V value;
+
+    Keyed(K key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  /** Enumerator that merges enumerators whose elements are sorted. Of
+   * elements with equal keys, returns first those of the enumerator that is
+   * earlier in the list.
+   *
+   * @param <TSource> Element type
+   * @param <TKey> Key type */
+  private static class MergeEnumerator<TSource, TKey>
+      implements Enumerator<TSource> {
+    private final List<Enumerator<TSource>> enumerators;
+    private final Function1<TSource, TKey> keySelector;
+    private final PriorityQueue<Cursor<TSource, TKey>> queue;
+    private boolean started;
+    private TSource current;
+
+    MergeEnumerator(List<Enumerator<TSource>> enumerators,
+        Function1<TSource, TKey> keySelector,
+        final Comparator<TKey> comparator) {
+      this.enumerators = enumerators;
+      this.keySelector = keySelector;
+      this.queue = new PriorityQueue<>(Math.max(1, enumerators.size()),
+          new Comparator<Cursor<TSource, TKey>>() {
+            public int compare(Cursor<TSource, TKey> o1,
+                Cursor<TSource, TKey> o2) {
+              final int c = comparator.compare(o1.key, o2.key);
+              return c != 0 ? c : Integer.compare(o1.ordinal, o2.ordinal);
+            }
+          });
+    }
+
+    public TSource current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (!started) {
+        started = true;
+        for (Ord<Enumerator<TSource>> e : Ord.zip(enumerators)) {
+          advance(new Cursor<TSource, TKey>(e.i, e.e));
+        }
+      }
+      final Cursor<TSource, TKey> cursor = queue.poll();
+      if (cursor == null) {
+        return false;
+      }
+      current = cursor.value;
+      advance(cursor);
+      return true;
+    }
+
+    /** Moves a cursor to its next element, and if there is one, puts the
+     * cursor back into the queue. */
+    private void advance(Cursor<TSource, TKey> cursor) {
+      if (cursor.enumerator.moveNext()) {
+        cursor.value = cursor.enumerator.current();
+        cursor.key = keySelector.apply(cursor.value);
+        queue.add(cursor);
+      }
+    }
+
+    public void reset() {
+      for (Enumerator<TSource> enumerator : enumerators) {
+        enumerator.reset();
+      }
+      queue.clear();
+      started = false;
+      current = null;
+    }
+
+    public void close() {
+      for (Enumerator<TSource> enumerator : enumerators) {
+        enumerator.close();
+      }
+    }
+  }
+
+  /** Current position of one of the inputs to a {@link MergeEnumerator}.
+   *
+   * @param <TSource> Element type
+   * @param <TKey> Key type */
+  private static class Cursor<TSource, TKey> {
+    final int ordinal;
+    final Enumerator<TSource> enumerator;
+    TSource value;
+    TKey key;
+
+    Cursor(int ordinal, Enumerator<TSource> enumerator) {
+      this.ordinal = ordinal;
+      this.enumerator = enumerator;
+    }
+  }
+
+  /** Key that uses an {@link EqualityComparer} for equality and hashing.
+   *
+   * @param <K> Key type */
+  private static class ComparerKey<K> {
+    final K key;
+    final EqualityComparer<K> comparer;
+
+    ComparerKey(K key, EqualityComparer<K> comparer) {
+      this.key = key;
+      this.comparer = comparer;
+    }
+
+    @Override public int hashCode() {
+      return key == null ? 0 : comparer.hashCode(key);
+    }
+
+    @Override public boolean equals(Object obj) {
+      //noinspection unchecked
+      return obj == this
+          || obj instanceof ComparerKey
+          && comparer.equal(key, ((ComparerKey<K>) obj).key);
+    }
+  }
+
+  /** Temporary file holding rows that have been spilled to disk.
+   *
+   * <p>The file is created when the first row is added.
+   *
+   * @param <E> Element type */
+  private static class SpillFile<E> {
+    private File file;
+    private ObjectOutputStream out;
+    /** Class loader of the rows. Rows may be instances of generated classes,
+     * which the default class loader of the stream cannot find. */
+    private ClassLoader classLoader;
+    int count;
+
+    void add(E e) {
+      try {
+        if (out == null) {
+          file = File.createTempFile("calcite-spill", ".ser");
+          out = new ObjectOutputStream(
+              new BufferedOutputStream(new FileOutputStream(file)));
+          if (e != null) {
+            classLoader = e.getClass().getClassLoader();
+          }
+        }
+        out.writeObject(e);
+        if (++count % RESET_INTERVAL == 0) {
+          out.reset();
+        }
+      } catch (IOException ex) {
+        throw new RuntimeException("Error while spilling to " + file, ex);
+      }
+    }
+
+    /** Finishes writing. */
+    void finish() {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException ex) {
+          throw new RuntimeException("Error while spilling to " + file, ex);
+        }
+        out = null;
+      }
+    }
+
+    Enumerable<E> asEnumerable() {
+      assert out == null : "not finished";
+      if (count == 0) {
+        return Linq4j.emptyEnumerable();
+      }
+      return new AbstractEnumerable<E>() {
+        public Enumerator<E> enumerator() {
+          return new SpillFileEnumerator<>(file, count, classLoader);
+        }
+      };
+    }
+
+    void delete() {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException ex) {
+          // intentionally suppressed; we are about to delete the file
+        }
+        out = null;
+      }
+      if (file != null) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        file = null;
+      }
+    }
+  }
+
+  /** Enumerator that reads the rows of a {@link SpillFile}.
+   *
+   * @param <E> Element type */
+  private static class SpillFileEnumerator<E> implements Enumerator<E> {
+    private final File file;
+    private final int count;
+    private final ClassLoader classLoader;
+    private ObjectInputStream in;
+    private int i;
+    private E current;
+
+    SpillFileEnumerator(File file, int count, ClassLoader classLoader) {
+      this.file = file;
+      this.count = count;
+      this.classLoader = classLoader;
+    }
+
+    public E current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (i >= count) {
+        return false;
+      }
+      try {
+        if (in == null) {
+          in = new SpillInputStream(
+              new BufferedInputStream(new FileInputStream(file)),
+              classLoader);
+        }
+        //noinspection unchecked
+        current = (E) in.readObject();
+        ++i;
+        return true;
+      } catch (IOException | ClassNotFoundException e) {
+        throw new RuntimeException("Error while reading spill file " + file,
+            e);
+      }
+    }
+
+    public void reset() {
+      close();
+      i = 0;
+      current = null;
+    }
+
+    public void close() {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // intentionally suppressed
+        }
+        in = null;
+      }
+    }
+  }
+
+  /** Stream that reads objects, resolving classes using a given class loader
+   * if possible. */
+  private static class SpillInputStream extends ObjectInputStream {
+    private final ClassLoader classLoader;
+
+    SpillInputStream(InputStream in, ClassLoader classLoader)
+        throws IOException {
+      super(in);
+      this.classLoader = classLoader;
+    }
+
+    @Override protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      if (classLoader != null) {
+        try {
+          return Class.forName(desc.getName(), false, classLoader);
+        } catch (ClassNotFoundException e) {
+          // fall through, and try the default class loader
+        }
+      }
+      return super.resolveClass(desc);
+    }
+  }
+
+  /** Enumerator that deletes spill files when it is closed.
+   *
+   * @param <E> Element type */
+  private static class DeletingEnumerator<E> implements Enumerator<E> {
+    private final Enumerator<E> enumerator;
+    private final List<? extends SpillFile<?>> files;
+
+    DeletingEnumerator(Enumerator<E> enumerator,
+        List<? extends SpillFile<?>> files) {
+      this.enumerator = enumerator;
+      this.files = files;
+    }
+
+    public E current() {
+      return enumerator.current();
+    }
+
+    public boolean moveNext() {
+      return enumerator.moveNext();
+    }
+
+    public void reset() {
+      enumerator.reset();
+    }
+
+    public void close() {
+      try {
+        enumerator.close();
+      } finally {
+        delete(files);
+      }
+    }
+  }
+}
+
+// End SpillingEnumerables.java
@@ -53,7 +53,6 @@
 import java.util.Map.Entry;
 import java.util.TimeZone;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Pattern;
 
 /**
  * Helper methods to implement SQL functions in generated code.
@@ -327,26 +326,43 @@ public static ByteString overlay(ByteString s, ByteString r, int start,
 
   /** SQL {@code LIKE} function. */
   public static boolean like(String s, String pattern) {
-    final String regex = Like.sqlToRegexLike(pattern, null);
-    return Pattern.matches(regex, s);
+    return Like.likeMatcher(pattern, null).matches(s);
   }
 
   /** SQL {@code LIKE} function with escape. */
   public static boolean like(String s, String pattern, String escape) {
-    final String regex = Like.sqlToRegexLike(pattern, escape);
-    return Pattern.matches(regex, s);
+    return Like.likeMatcher(pattern, escape).matches(s);
   }
 
   /** SQL {@code SIMILAR} function. */
   public static boolean similar(String s, String pattern) {
-    final String regex = Like.sqlToRegexSimilar(pattern, null);
-    return Pattern.matches(regex, s);
+    return Like.similarMatcher(pattern, null).matches(s);
   }
 
   /** SQL {@code SIMILAR} function with escape. */
   public static boolean similar(String s, String pattern, String escape) {
-    final String regex = Like.sqlToRegexSimilar(pattern, escape);
-    return Pattern.matches(regex, s);
+    return Like.similarMatcher(pattern, escape).matches(s);
+  }
+
+  /** Returns a matcher for a {@code LIKE} pattern. Generated code calls this
+   * once for each literal pattern, and holds the result in a static field. */
+  public static Like.Matcher likeMatcher(String pattern) {
+    return Like.likeMatcher(pattern, null);
+  }
+
+  /** Returns a matcher for a {@code LIKE} pattern with escape. */
+  public static Like.Matcher likeMatcher(String pattern, String escape) {
+    return Like.likeMatcher(pattern, escape);
+  }
+
+  /** Returns a matcher for a {@code SIMILAR} pattern. */
+  public static Like.Matcher similarMatcher(String pattern) {
+    return Like.similarMatcher(pattern, null);
+  }
+
+  /** Returns a matcher for a {@code SIMILAR} pattern with escape. */
+  public static Like.Matcher similarMatcher(String pattern, String escape) {
+    return Like.similarMatcher(pattern, escape);
   }
 
   // =
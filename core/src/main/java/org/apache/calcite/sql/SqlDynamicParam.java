@@ -61,8 +61,7 @@ public void unparse(
       SqlWriter writer,
       int leftPrec,
       int rightPrec) {
-    writer.print("?");
-    writer.setNeedWhitespace(true);
+    writer.dynamicParam(index);
   }
 
   public void validate(SqlValidator validator, SqlValidatorScope scope) {
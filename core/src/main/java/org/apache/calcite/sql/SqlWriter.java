@@ -319,6 +319,20 @@ public String getName() {
    */
   void print(int x);
 
+  /**
+   * Prints a dynamic parameter, as {@code ?}, and records its index.
+   *
+   * <p>The default implementation prints {@code ?} but does not record the
+   * index; writers that produce a {@link SqlString} should override it.
+   *
+   * @param index Index of the parameter
+   * @see SqlString#getDynamicParameters()
+   */
+  default void dynamicParam(int index) {
+    print("?");
+    setNeedWhitespace(true);
+  }
+
   /**
    * Prints an identifier, quoting as necessary.
    */
@@ -21,13 +21,13 @@
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.SqlWriter;
 import org.apache.calcite.sql.dialect.AnsiSqlDialect;
-import org.apache.calcite.sql.util.SqlBuilder;
 import org.apache.calcite.sql.util.SqlString;
 import org.apache.calcite.util.Unsafe;
 import org.apache.calcite.util.Util;
 import org.apache.calcite.util.trace.CalciteLogger;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 
 import org.slf4j.LoggerFactory;
 
@@ -36,9 +36,11 @@
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
@@ -158,6 +160,8 @@ public class SqlPrettyWriter implements SqlWriter {
   private boolean windowNewline;
   private SubQueryStyle subQueryStyle;
   private boolean whereListItemsOnSeparateLines;
+  /** Indexes of the dynamic parameters printed so far. */
+  private final List<Integer> dynamicParameters = new ArrayList<>();
 
   private boolean caseClausesOnNewLines;
   private int lineLength;
@@ -281,6 +285,7 @@ public void reset() {
     Unsafe.clear(sw);
     setNeedWhitespace(false);
     nextWhitespace = " ";
+    dynamicParameters.clear();
   }
 
   /**
@@ -810,7 +815,8 @@ public String toString() {
   }
 
   public SqlString toSqlString() {
-    return new SqlBuilder(dialect, toString()).toSqlString();
+    return new SqlString(dialect, toString(),
+        ImmutableList.copyOf(dynamicParameters));
   }
 
   public SqlDialect getDialect() {
@@ -898,6 +904,12 @@ public void print(int x) {
     charCount += String.valueOf(x).length();
   }
 
+  public void dynamicParam(int index) {
+    dynamicParameters.add(index);
+    print("?");
+    setNeedWhitespace(true);
+  }
+
   public void identifier(String name) {
     String qName = name;
     if (isQuoteAllIdentifiers()
@@ -18,6 +18,8 @@
 
 import org.apache.calcite.sql.SqlDialect;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * String that represents a kocher SQL statement, expression, or fragment.
  *
@@ -30,6 +32,7 @@
 public class SqlString {
   private final String s;
   private SqlDialect dialect;
+  private final ImmutableList<Integer> dynamicParameters;
 
   /**
    * Creates a SqlString.
@@ -37,10 +40,25 @@ public class SqlString {
    * @param s Contents of string
    */
   public SqlString(SqlDialect dialect, String s) {
+    this(dialect, s, ImmutableList.<Integer>of());
+  }
+
+  /**
+   * Creates a SqlString that contains dynamic parameters.
+   *
+   * @param dialect Dialect
+   * @param s Contents of string
+   * @param dynamicParameters Indexes of the dynamic parameters, in the order
+   *                          that they occur in the string
+   */
+  public SqlString(SqlDialect dialect, String s,
+      ImmutableList<Integer> dynamicParameters) {
     this.dialect = dialect;
     this.s = s;
+    this.dynamicParameters = dynamicParameters;
     assert s != null;
     assert dialect != null;
+    assert dynamicParameters != null;
   }
 
   @Override public int hashCode() {
@@ -80,6 +98,17 @@ public String getSql() {
   public SqlDialect getDialect() {
     return dialect;
   }
+
+  /**
+   * Returns the indexes of the dynamic parameters, in the order that they
+   * occur in the string. For example, if the string is
+   * "{@code select ? from t where x = ?}" and was created from "{@code select
+   * ?1 from t where x = ?0}", returns [1, 0]. The list is empty if there are
+   * no dynamic parameters.
+   */
+  public ImmutableList<Integer> getDynamicParameters() {
+    return dynamicParameters;
+  }
 }
 
 // End SqlString.java
@@ -19,6 +19,7 @@
 import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.ReflectiveSchema;
 import org.apache.calcite.adapter.jdbc.JdbcSchema;
+import org.apache.calcite.adapter.jdbc.JdbcTable;
 import org.apache.calcite.avatica.util.DateTimeUtils;
 import org.apache.calcite.avatica.util.TimeUnitRange;
 import org.apache.calcite.interpreter.Context;
@@ -38,11 +39,13 @@
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Functions;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.FunctionExpression;
 import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.linq4j.tree.Types;
+import org.apache.calcite.materialize.MaterializationService;
 import org.apache.calcite.rel.metadata.BuiltInMetadata.AllPredicates;
 import org.apache.calcite.rel.metadata.BuiltInMetadata.Collation;
 import org.apache.calcite.rel.metadata.BuiltInMetadata.ColumnOrigin;
@@ -73,9 +76,13 @@
 import org.apache.calcite.runtime.Bindable;
 import org.apache.calcite.runtime.Enumerables;
 import org.apache.calcite.runtime.FlatLists;
+import org.apache.calcite.runtime.Like;
+import org.apache.calcite.runtime.MonotonicDeque;
+import org.apache.calcite.runtime.ParallelEnumerables;
 import org.apache.calcite.runtime.RandomFunction;
 import org.apache.calcite.runtime.ResultSetEnumerable;
 import org.apache.calcite.runtime.SortedMultiMap;
+import org.apache.calcite.runtime.SpillingEnumerables;
 import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.runtime.SqlFunctions.FlatProductInputType;
 import org.apache.calcite.runtime.Utilities;
@@ -122,6 +129,12 @@ public enum BuiltInMethod {
   ABSTRACT_ENUMERABLE_CTOR(AbstractEnumerable.class),
   INTO(ExtendedEnumerable.class, "into", Collection.class),
   REMOVE_ALL(ExtendedEnumerable.class, "removeAll", Collection.class),
+  MATERIALIZATION_INTO(MaterializationService.class, "into",
+      DataContext.class, Enumerable.class, Collection.class,
+      ModifiableTable.class),
+  MATERIALIZATION_REMOVE_ALL(MaterializationService.class, "removeAll",
+      DataContext.class, Enumerable.class, Collection.class,
+      ModifiableTable.class),
   SCHEMA_GET_SUB_SCHEMA(Schema.class, "getSubSchema", String.class),
   SCHEMA_GET_TABLE(Schema.class, "getTable", String.class),
   SCHEMA_PLUS_UNWRAP(SchemaPlus.class, "unwrap", Class.class),
@@ -137,15 +150,30 @@ public enum BuiltInMethod {
   DATA_CONTEXT_GET(DataContext.class, "get", String.class),
   DATA_CONTEXT_GET_ROOT_SCHEMA(DataContext.class, "getRootSchema"),
   JDBC_SCHEMA_DATA_SOURCE(JdbcSchema.class, "getDataSource"),
+  JDBC_TABLE_PARTITIONED_ENUMERABLE(JdbcTable.class, "partitionedEnumerable",
+      String.class, String.class, String.class, String.class, Function1.class,
+      int.class, boolean.class),
   ROW_VALUE(Row.class, "getObject", int.class),
   ROW_AS_COPY(Row.class, "asCopy", Object[].class),
   RESULT_SET_ENUMERABLE_OF(ResultSetEnumerable.class, "of", DataSource.class,
       String.class, Function1.class),
+  RESULT_SET_ENUMERABLE_OF_PREPARED(ResultSetEnumerable.class, "of",
+      DataSource.class, String.class, Function1.class,
+      ResultSetEnumerable.PreparedStatementEnricher.class, int.class,
+      boolean.class),
+  CREATE_ENRICHER(ResultSetEnumerable.class, "createEnricher", Integer[].class,
+      Integer[].class, DataContext.class),
   JOIN(ExtendedEnumerable.class, "join", Enumerable.class, Function1.class,
       Function1.class, Function2.class),
   MERGE_JOIN(EnumerableDefaults.class, "mergeJoin", Enumerable.class,
       Enumerable.class, Function1.class, Function1.class, Function2.class,
       boolean.class, boolean.class),
+  HASH_JOIN_LONG(EnumerableDefaults.class, "hashJoinLong", Enumerable.class,
+      Enumerable.class, LongFunction1.class, LongFunction1.class,
+      Function2.class, boolean.class, boolean.class),
+  SPILLING_JOIN(SpillingEnumerables.class, "join", Enumerable.class,
+      Enumerable.class, Function1.class, Function1.class, Function2.class,
+      EqualityComparer.class, boolean.class, boolean.class, long.class),
   SLICE0(Enumerables.class, "slice0", Enumerable.class),
   SEMI_JOIN(EnumerableDefaults.class, "semiJoin", Enumerable.class,
       Enumerable.class, Function1.class, Function1.class),
@@ -164,6 +192,14 @@ public enum BuiltInMethod {
   GROUP_BY(ExtendedEnumerable.class, "groupBy", Function1.class),
   GROUP_BY2(ExtendedEnumerable.class, "groupBy", Function1.class,
       Function0.class, Function2.class, Function2.class),
+  SPILLING_GROUP_BY(SpillingEnumerables.class, "groupBy", Enumerable.class,
+      Function1.class, Function0.class, Function2.class, Function2.class,
+      EqualityComparer.class, long.class),
+  PARALLEL_GROUP_BY(ParallelEnumerables.class, "groupBy", Enumerable.class,
+      Function1.class, Function0.class, Function2.class, Function2.class,
+      EqualityComparer.class),
+  EXCHANGE(ParallelEnumerables.class, "exchange", Enumerable.class,
+      Function1.class, int.class),
   GROUP_BY_MULTIPLE(EnumerableDefaults.class, "groupByMultiple",
       Enumerable.class, List.class, Function0.class, Function2.class,
       Function2.class),
@@ -171,6 +207,10 @@ public enum BuiltInMethod {
       Function2.class, Function1.class),
   ORDER_BY(ExtendedEnumerable.class, "orderBy", Function1.class,
       Comparator.class),
+  ORDER_BY_WITH_FETCH(EnumerableDefaults.class, "orderBy", Enumerable.class,
+      Function1.class, Comparator.class, int.class, int.class),
+  SPILLING_ORDER_BY(SpillingEnumerables.class, "orderBy", Enumerable.class,
+      Function1.class, Comparator.class, long.class),
   UNION(ExtendedEnumerable.class, "union", Enumerable.class),
   CONCAT(ExtendedEnumerable.class, "concat", Enumerable.class),
   INTERSECT(ExtendedEnumerable.class, "intersect", Enumerable.class),
@@ -237,6 +277,11 @@ public enum BuiltInMethod {
   SORTED_MULTI_MAP_ARRAYS(SortedMultiMap.class, "arrays", Comparator.class),
   SORTED_MULTI_MAP_SINGLETON(SortedMultiMap.class, "singletonArrayIterator",
       Comparator.class, List.class),
+  SPILLING_PARTITION_ARRAYS(SpillingEnumerables.class, "partitionArrays",
+      Enumerable.class, Function1.class, Comparator.class, long.class),
+  MONOTONIC_DEQUE_ADD(MonotonicDeque.class, "add", Comparable.class),
+  MONOTONIC_DEQUE_REMOVE(MonotonicDeque.class, "remove", Comparable.class),
+  MONOTONIC_DEQUE_FIRST(MonotonicDeque.class, "first"),
   BINARY_SEARCH5_LOWER(BinarySearch.class, "lowerBound", Object[].class,
       Object.class, int.class, int.class, Comparator.class),
   BINARY_SEARCH5_UPPER(BinarySearch.class, "upperBound", Object[].class,
@@ -283,6 +328,9 @@ public enum BuiltInMethod {
   RTRIM(SqlFunctions.class, "rtrim", String.class),
   LIKE(SqlFunctions.class, "like", String.class, String.class),
   SIMILAR(SqlFunctions.class, "similar", String.class, String.class),
+  LIKE_MATCHER(SqlFunctions.class, "likeMatcher", String.class),
+  SIMILAR_MATCHER(SqlFunctions.class, "similarMatcher", String.class),
+  MATCHER_MATCHES(Like.Matcher.class, "matches", String.class),
   IS_TRUE(SqlFunctions.class, "isTrue", Boolean.class),
   IS_NOT_FALSE(SqlFunctions.class, "isNotFalse", Boolean.class),
   NOT(SqlFunctions.class, "not", Boolean.class),
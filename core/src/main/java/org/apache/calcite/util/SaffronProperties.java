@@ -109,6 +109,20 @@ public interface SaffronProperties {
   @Default("1000")
   IntProp metadataHandlerCacheMaximumSize();
 
+  /**
+   * The integer property "saffron.bindable.cache.maximum.size" is the
+   * maximum number of compiled
+   * {@link org.apache.calcite.runtime.Bindable} classes that are cached, so
+   * that a query whose generated Java source is identical to that of a
+   * previous query does not need to be compiled again.
+   *
+   * <p>If the value is 0, compiled classes are not cached; if less than 0,
+   * there is no limit. The default is 1,000.
+   */
+  @Resource("saffron.bindable.cache.maximum.size")
+  @Default("1000")
+  IntProp bindableCacheMaximumSize();
+
   SaffronProperties INSTANCE = Helper.instance();
 
   /** Helper class. */
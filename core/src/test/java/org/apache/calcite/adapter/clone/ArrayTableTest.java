@@ -18,13 +18,17 @@
 
 import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
 import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.RelCollations;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeImpl;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
@@ -353,6 +357,76 @@ public class ArrayTableTest {
         "Column(representation=ObjectArray(ordinal=2), value=[Bill, Sebastian, Theodore, Eric])");
   }
 
+  /** Tests that {@link ArrayTable.Content#save} stores columns of primitive
+   * values off-heap, and that {@link ArrayTable.Content#load} reads back the
+   * same rows. */
+  @Test public void testSaveLoad() throws IOException {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("empid", typeFactory.createType(int.class))
+            .add("salary", typeFactory.createType(double.class))
+            .add("name", typeFactory.createType(String.class))
+            .build();
+    final Enumerable<Object[]> enumerable =
+        Linq4j.asEnumerable(
+            Arrays.asList(
+                new Object[]{100, 1000.5D, "Bill"},
+                new Object[]{-1, 500D, "Eric"},
+                new Object[]{3, 750D, null},
+                new Object[]{2, 1000.5D, "Theodore"}));
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<Object[]>(typeFactory, enumerable,
+            RelDataTypeImpl.proto(rowType), null);
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            RelCollations.createSingleton(loader.sortField));
+    final String expected = toString(content);
+    assertEquals("[-1, 500.0, Eric], [2, 1000.5, Theodore], "
+        + "[3, 750.0, null], [100, 1000.5, Bill]", expected);
+
+    final File directory = File.createTempFile("arrayTable", "");
+    assertTrue(directory.delete());
+    try {
+      assertNull(ArrayTable.Content.load(directory));
+      final ArrayTable.Content saved = content.save(directory);
+      checkColumn(saved.columns.get(0),
+          ArrayTable.RepresentationType.OFF_HEAP_PRIMITIVE_ARRAY,
+          "Column(representation=OffHeapPrimitiveArray(ordinal=0, primitive=BYTE, p=INT), value=[-1, 2, 3, 100])");
+      checkColumn(saved.columns.get(1),
+          ArrayTable.RepresentationType.OFF_HEAP_PRIMITIVE_ARRAY,
+          "Column(representation=OffHeapPrimitiveArray(ordinal=1, primitive=DOUBLE, p=DOUBLE), value=[500.0, 1000.5, 750.0, 1000.5])");
+      assertEquals(expected, toString(saved));
+
+      final ArrayTable.Content loaded = ArrayTable.Content.load(directory);
+      assertEquals(expected, toString(loaded));
+      assertEquals(content.collations, loaded.collations);
+      assertEquals(
+          ArrayTable.RepresentationType.OFF_HEAP_PRIMITIVE_ARRAY,
+          loaded.columns.get(0).representation.getType());
+      assertEquals(content.columns.get(2).representation.getType(),
+          loaded.columns.get(2).representation.getType());
+    } finally {
+      for (File file : directory.listFiles()) {
+        assertTrue(file.delete());
+      }
+      assertTrue(directory.delete());
+    }
+  }
+
+  private static String toString(ArrayTable.Content content) {
+    final StringBuilder buf = new StringBuilder();
+    final Enumerator<Object[]> enumerator = content.arrayEnumerator();
+    while (enumerator.moveNext()) {
+      if (buf.length() > 0) {
+        buf.append(", ");
+      }
+      buf.append(Arrays.toString(enumerator.current()));
+    }
+    return buf.toString();
+  }
+
   private void checkColumn(ArrayTable.Column x,
       ArrayTable.RepresentationType expectedRepresentationType,
       String expectedString) {
@@ -31,7 +31,9 @@
 import org.apache.calcite.rel.logical.LogicalProject;
 import org.apache.calcite.rel.rules.ProjectRemoveRule;
 import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.runtime.Hook;
 
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 
 import org.junit.Ignore;
@@ -53,6 +55,9 @@
 import static org.apache.calcite.plan.volcano.PlannerTests.newCluster;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
@@ -330,6 +335,96 @@ public RelNode convert(RelNode rel) {
         resultLeaf.label);
   }
 
+  /** Tests that the planner stops when its planning timeout expires, and
+   * returns the best plan found so far. */
+  @Test public void testPlanningTimeout() {
+    checkPlanningTimeout(0L);
+    checkPlanningTimeout(1L);
+  }
+
+  private void checkPlanningTimeout(long timeout) {
+    VolcanoPlanner planner = new VolcanoPlanner();
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+    planner.setPlanningTimeout(timeout);
+    assertThat(planner.getPlanningTimeout(), equalTo(timeout));
+
+    planner.addRule(new SlowPhysLeafRule());
+    planner.addRule(new GoodSingleRule());
+
+    RelOptCluster cluster = newCluster(planner);
+    NoneLeafRel leafRel =
+        new NoneLeafRel(
+            cluster,
+            "a");
+    NoneSingleRel singleRel =
+        new NoneSingleRel(
+            cluster,
+            leafRel);
+    RelNode convertedRel =
+        planner.changeTraits(
+            singleRel,
+            cluster.traitSetOf(PHYS_CALLING_CONVENTION));
+    planner.setRoot(convertedRel);
+    final List<VolcanoPlanner.TimeoutReport> reports = new ArrayList<>();
+    try (Hook.Closeable ignore =
+             Hook.PLANNER_TIMEOUT.addThread(
+                 new Function<VolcanoPlanner.TimeoutReport, Void>() {
+                   public Void apply(VolcanoPlanner.TimeoutReport report) {
+                     reports.add(report);
+                     return null;
+                   }
+                 })) {
+      RelNode result = planner.chooseDelegate().findBestExp();
+      assertTrue(result instanceof PhysSingleRel);
+    }
+    final VolcanoPlanner.TimeoutReport report = planner.getTimeoutReport();
+    if (timeout == 0) {
+      // No timeout, so the planner fires rules until the queue is empty
+      assertThat(report, nullValue());
+      assertThat(reports.isEmpty(), is(true));
+    } else {
+      // SlowPhysLeafRule takes longer than the timeout, and no plan is
+      // possible until it has fired, so the planner stops as soon as it has
+      // a plan
+      assertThat(report, notNullValue());
+      assertThat(reports, equalTo(Collections.singletonList(report)));
+      assertThat(report.timeout, equalTo(timeout));
+      assertThat(report.bestCost.isInfinite(), is(false));
+      assertThat(report.bestCost.isLe(report.firstCost), is(true));
+    }
+  }
+
+  /** Tests that the planner does not test an operand against relational
+   * expressions whose calling convention is different from the operand's. */
+  @Test public void testOperandIndex() {
+    VolcanoPlanner planner = new VolcanoPlanner();
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+
+    planner.addRule(new PhysLeafRule());
+    final PhysNoOpRule noOpRule = new PhysNoOpRule();
+    planner.addRule(noOpRule);
+
+    RelOptCluster cluster = newCluster(planner);
+    NoneLeafRel leafRel =
+        new NoneLeafRel(
+            cluster,
+            "a");
+    RelNode convertedRel =
+        planner.changeTraits(
+            leafRel,
+            cluster.traitSetOf(PHYS_CALLING_CONVENTION));
+    planner.setRoot(convertedRel);
+    RelNode result = planner.chooseDelegate().findBestExp();
+    assertTrue(result instanceof PhysLeafRel);
+
+    // Each rule has one operand, with no predicate, so if the planner only
+    // tests operands whose convention matches, every test succeeds
+    assertThat(noOpRule.matchCount > 0, is(true));
+    assertThat(planner.getOperandMatchAttemptCount() > 0, is(true));
+    assertThat(planner.getOperandMatchCount(),
+        equalTo(planner.getOperandMatchAttemptCount()));
+  }
+
   /**
    * Tests whether planner correctly notifies listeners of events.
    */
@@ -643,6 +738,43 @@ public void ruleProductionSucceeded(RuleProductionEvent event) {
       recordEvent(event);
     }
   }
+
+  /** Planner rule that converts a {@link NoneLeafRel} to a
+   * {@link PhysLeafRel}, slowly. */
+  private static class SlowPhysLeafRule extends RelOptRule {
+    SlowPhysLeafRule() {
+      super(operand(NoneLeafRel.class, any()));
+    }
+
+    @Override public Convention getOutConvention() {
+      return PHYS_CALLING_CONVENTION;
+    }
+
+    public void onMatch(RelOptRuleCall call) {
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      NoneLeafRel leafRel = call.rel(0);
+      call.transformTo(
+          new PhysLeafRel(leafRel.getCluster(), leafRel.label));
+    }
+  }
+
+  /** Rule that matches any relational expression in PHYS convention, and
+   * counts its matches. */
+  private static class PhysNoOpRule extends RelOptRule {
+    int matchCount;
+
+    PhysNoOpRule() {
+      super(operand(RelNode.class, PHYS_CALLING_CONVENTION, any()));
+    }
+
+    public void onMatch(RelOptRuleCall call) {
+      ++matchCount;
+    }
+  }
 }
 
 // End VolcanoPlannerTest.java
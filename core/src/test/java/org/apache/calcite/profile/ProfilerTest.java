@@ -223,7 +223,18 @@ public boolean test(Profiler.Statistic statistic) {
    * Results should be the same, but are slightly different (extra EMPNO
    * and ENAME distributions). */
   @Test public void testProfileScott3() throws Exception {
-    scott().factory(Fluid.BETTER_FACTORY).unordered(
+    checkProfileScott3(Fluid.BETTER_FACTORY);
+  }
+
+  /** As {@link #testProfileScott3()}, but collects values on several
+   * threads. Results should be the same. */
+  @Test public void testProfileScott3Parallel() throws Exception {
+    checkProfileScott3(Fluid.PARALLEL_FACTORY);
+  }
+
+  private void checkProfileScott3(Supplier<Profiler> factory)
+      throws Exception {
+    scott().factory(factory).unordered(
         "{type:distribution,columns:[COMM],values:[0.00,300.00,500.00,1400.00],cardinality:5.0,nullCount:10,expectedCardinality:14.0,surprise:0.47368421052631576}",
         "{type:distribution,columns:[DEPTNO,DEPTNO0,DNAME,LOC],cardinality:3.0,expectedCardinality:7.269756624410332,surprise:0.41576025416819384}",
         "{type:distribution,columns:[DEPTNO,DEPTNO0],cardinality:3.0,expectedCardinality:7.269756624410332,surprise:0.41576025416819384}",
@@ -422,6 +433,15 @@ public Profiler get() {
           }
         };
 
+    static final Supplier<Profiler> PARALLEL_FACTORY =
+        new Supplier<Profiler>() {
+          public Profiler get() {
+            final Predicate<Pair<ProfilerImpl.Space, Profiler.Column>>
+                predicate = Predicates.alwaysTrue();
+            return new ProfilerImpl(600, 200, predicate, 3);
+          }
+        };
+
     static final Ordering<Profiler.Statistic> ORDERING =
         new Ordering<Profiler.Statistic>() {
           public int compare(Profiler.Statistic left,
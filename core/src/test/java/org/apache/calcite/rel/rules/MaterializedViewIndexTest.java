@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.rules;
+
+import org.apache.calcite.plan.RelOptMaterialization;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.test.RelBuilderTest;
+import org.apache.calcite.tools.RelBuilder;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/** Unit tests for {@link MaterializedViewIndex}. */
+public class MaterializedViewIndexTest {
+  /** Tests that the index offers only the view that might rewrite the query.
+   * It rejects m0, whose aggregate functions do not include the query's, and
+   * m1, which reads a different table. The views are the same as in
+   * {@link org.apache.calcite.test.MaterializationTest#testMaterializationIndex}. */
+  @Test public void testGetCandidates() {
+    final RelBuilder b = RelBuilder.create(RelBuilderTest.config().build());
+    final RelMetadataQuery mq = RelMetadataQuery.instance();
+
+    // m0: select deptno, max(sal) as m from emp group by deptno
+    final RelNode m0 = b.scan("EMP")
+        .aggregate(b.groupKey("DEPTNO"), b.max("M", b.field("SAL")))
+        .build();
+    // m1: select deptno, count(*) as c from dept group by deptno
+    final RelNode m1 = b.scan("DEPT")
+        .aggregate(b.groupKey("DEPTNO"), b.countStar("C"))
+        .build();
+    // m2: select deptno, empno, sum(sal) as s from emp group by deptno, empno
+    final RelNode m2 = b.scan("EMP")
+        .aggregate(b.groupKey("DEPTNO", "EMPNO"),
+            b.sum(false, "S", b.field("SAL")))
+        .build();
+    final MaterializedViewIndex index =
+        new MaterializedViewIndex(
+            ImmutableList.of(materialization("m0", m0),
+                materialization("m1", m1), materialization("m2", m2)),
+            mq);
+
+    // select deptno, sum(sal) as s from emp where empno > 100 group by deptno
+    final RelNode query = b.scan("EMP")
+        .filter(b.call(SqlStdOperatorTable.GREATER_THAN, b.field("EMPNO"),
+            b.literal(100)))
+        .aggregate(b.groupKey("DEPTNO"), b.sum(false, "S", b.field("SAL")))
+        .build();
+    assertThat(query instanceof Aggregate, is(true));
+    assertThat(
+        names(index.getCandidates(mq.getTableReferences(query), null, query)),
+        is((List<String>) ImmutableList.of("m2")));
+
+    // A query that reads DEPT and is not an aggregate matches no view
+    final RelNode query2 = b.scan("DEPT").build();
+    assertThat(
+        names(
+            index.getCandidates(mq.getTableReferences(query2), null, query2)),
+        is((List<String>) ImmutableList.<String>of()));
+  }
+
+  private static RelOptMaterialization materialization(String name,
+      RelNode queryRel) {
+    return new RelOptMaterialization(queryRel, queryRel, null,
+        ImmutableList.of("hr", name));
+  }
+
+  private static List<String> names(
+      List<RelOptMaterialization> materializations) {
+    final List<String> names = new ArrayList<>();
+    for (RelOptMaterialization materialization : materializations) {
+      names.add(materialization.qualifiedTableName.get(1));
+    }
+    return names;
+  }
+}
+
+// End MaterializedViewIndexTest.java
@@ -18,7 +18,9 @@
 
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Functions;
@@ -28,7 +30,10 @@
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -68,6 +73,39 @@ public boolean apply(Emp v0, Dept v1) {
         }
       };
 
+  /** Fixture for the group-by tests: groups rows of the form
+   * {@code [i, key]} by key, and counts and sums {@code i} for each group. */
+  private static final Function1<Object[], Object> GROUP_KEY =
+      new Function1<Object[], Object>() {
+        public Object apply(Object[] a0) {
+          return a0[1];
+        }
+      };
+
+  private static final Function0<long[]> GROUP_INITIALIZER =
+      new Function0<long[]>() {
+        public long[] apply() {
+          return new long[2];
+        }
+      };
+
+  private static final Function2<long[], Object[], long[]> GROUP_ADDER =
+      new Function2<long[], Object[], long[]>() {
+        public long[] apply(long[] acc, Object[] row) {
+          acc[0]++;
+          acc[1] += (Integer) row[0];
+          return acc;
+        }
+      };
+
+  private static final Function2<Object, long[], String>
+      GROUP_RESULT_SELECTOR =
+      new Function2<Object, long[], String>() {
+        public String apply(Object key, long[] acc) {
+          return key + ":" + acc[0] + ":" + acc[1];
+        }
+      };
+
   @Test public void testSemiJoin() {
     assertThat(
         EnumerableDefaults.semiJoin(EMPS, DEPTS,
@@ -239,6 +277,182 @@ public T apply(T v0, T v1) {
         equalTo("[]"));
   }
 
+  /** Tests {@link SpillingEnumerables#join} with a memory limit so small
+   * that the inner input is partitioned at every depth. */
+  @Test public void testSpillingJoin() {
+    final Enumerable<Object[]> emps = rows(1000, 100);
+    final Enumerable<Object[]> depts = rows(150, 150);
+    final Function1<Object[], Object> key =
+        new Function1<Object[], Object>() {
+          public Object apply(Object[] a0) {
+            return a0[1];
+          }
+        };
+    final Function2<Object[], Object[], String> resultSelector =
+        new Function2<Object[], Object[], String>() {
+          public String apply(Object[] v0, Object[] v1) {
+            return (v0 == null ? null : v0[0])
+                + "-" + (v1 == null ? null : v1[0]);
+          }
+        };
+    for (boolean generateNullsOnLeft : new boolean[] {false, true}) {
+      for (boolean generateNullsOnRight : new boolean[] {false, true}) {
+        final List<String> expected =
+            EnumerableDefaults.join(emps, depts, key, key, resultSelector,
+                null, generateNullsOnLeft, generateNullsOnRight)
+                .orderBy(Functions.<String>identitySelector()).toList();
+        final List<String> actual =
+            SpillingEnumerables.join(emps, depts, key, key, resultSelector,
+                null, generateNullsOnLeft, generateNullsOnRight, 100L)
+                .orderBy(Functions.<String>identitySelector()).toList();
+        assertThat(actual, equalTo(expected));
+      }
+    }
+  }
+
+  /** Tests {@link SpillingEnumerables#groupBy} with a memory limit that
+   * holds only a few groups in memory. */
+  @Test public void testSpillingGroupBy() {
+    final Enumerable<Object[]> rows = rows(10000, 1000);
+    final List<String> expected =
+        EnumerableDefaults.groupBy(rows, GROUP_KEY, GROUP_INITIALIZER,
+            GROUP_ADDER, GROUP_RESULT_SELECTOR)
+            .orderBy(Functions.<String>identitySelector()).toList();
+    final List<String> actual =
+        SpillingEnumerables.groupBy(rows, GROUP_KEY, GROUP_INITIALIZER,
+            GROUP_ADDER, GROUP_RESULT_SELECTOR, null, 1000L)
+            .orderBy(Functions.<String>identitySelector()).toList();
+    assertThat(actual.size(), equalTo(1000));
+    assertThat(actual, equalTo(expected));
+  }
+
+  /** Tests {@link SpillingEnumerables#orderBy} with a memory limit so small
+   * that there are more runs than can be merged at a time. The sort must be
+   * stable. */
+  @Test public void testSpillingOrderBy() {
+    final Enumerable<Object[]> rows = rows(10000, 1000);
+    final Function1<Object[], Integer> key =
+        new Function1<Object[], Integer>() {
+          public Integer apply(Object[] a0) {
+            return (Integer) a0[1];
+          }
+        };
+    final Function1<Object[], String> toString =
+        new Function1<Object[], String>() {
+          public String apply(Object[] a0) {
+            return Arrays.toString(a0);
+          }
+        };
+    final Comparator<Integer> descending = Collections.reverseOrder();
+    for (Comparator<Integer> comparator
+        : Arrays.asList(null, descending)) {
+      final List<String> expected =
+          EnumerableDefaults.orderBy(rows, key, comparator)
+              .select(toString).toList();
+      final List<String> actual =
+          SpillingEnumerables.orderBy(rows, key, comparator, 1000L)
+              .select(toString).toList();
+      assertThat(actual, equalTo(expected));
+    }
+  }
+
+  /** Tests {@link SpillingEnumerables#partitionArrays} with a memory limit
+   * so small that partitions are spilled to disk. Each partition must be
+   * complete and sorted. */
+  @Test public void testSpillingPartitionArrays() {
+    final Enumerable<Object> rows = rows(10000, 1000).cast(Object.class);
+    final Function1<Object, Object> key =
+        new Function1<Object, Object>() {
+          public Object apply(Object a0) {
+            return ((Object[]) a0)[1];
+          }
+        };
+    final Comparator<Object> descending =
+        new Comparator<Object>() {
+          public int compare(Object o1, Object o2) {
+            return (Integer) ((Object[]) o2)[0] - (Integer) ((Object[]) o1)[0];
+          }
+        };
+    int partitionCount = 0;
+    int rowCount = 0;
+    for (Object[] partition
+        : SpillingEnumerables.partitionArrays(rows, key, descending, 1000L)) {
+      ++partitionCount;
+      rowCount += partition.length;
+      assertThat(partition.length, equalTo(10));
+      for (int i = 1; i < partition.length; i++) {
+        assertThat(key.apply(partition[i]), equalTo(key.apply(partition[0])));
+        assertThat(descending.compare(partition[i - 1], partition[i]) < 0,
+            equalTo(true));
+      }
+    }
+    assertThat(partitionCount, equalTo(1000));
+    assertThat(rowCount, equalTo(10000));
+  }
+
+  /** Tests {@link ParallelEnumerables#merge}, which reads several inputs in
+   * parallel, each of which sends several batches. */
+  @Test public void testMerge() {
+    final List<Enumerable<Integer>> sources = new ArrayList<>();
+    final List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      final List<Integer> list = new ArrayList<>();
+      for (int j = 0; j < 5000; j++) {
+        list.add(i * 5000 + j);
+      }
+      sources.add(Linq4j.asEnumerable(list));
+      expected.addAll(list);
+    }
+    final Enumerable<Integer> merged = ParallelEnumerables.merge(sources);
+    assertThat(
+        merged.orderBy(Functions.<Integer>identitySelector()).toList(),
+        equalTo(expected));
+
+    // Closing before the end stops the tasks that are still sending rows
+    try (Enumerator<Integer> enumerator = merged.enumerator()) {
+      assertThat(enumerator.moveNext(), equalTo(true));
+    }
+  }
+
+  /** Returns {@code n} rows of the form {@code [i, i % keyCount]}. */
+  private static Enumerable<Object[]> rows(int n, int keyCount) {
+    final List<Object[]> list = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      list.add(new Object[] {i, i % keyCount});
+    }
+    return Linq4j.asEnumerable(list);
+  }
+
+  /** Tests {@link ParallelEnumerables#groupBy} over an input that is
+   * hash-partitioned into 4 partitions, each of which receives several
+   * batches. */
+  @Test public void testParallelGroupBy() {
+    final Enumerable<Object[]> rows = rows(10000, 1000);
+    final List<String> expected =
+        EnumerableDefaults.groupBy(rows, GROUP_KEY, GROUP_INITIALIZER,
+            GROUP_ADDER, GROUP_RESULT_SELECTOR)
+            .orderBy(Functions.<String>identitySelector()).toList();
+    final Enumerable<Object[]> partitioned =
+        ParallelEnumerables.exchange(rows, GROUP_KEY, 4);
+    final List<String> actual =
+        ParallelEnumerables.groupBy(partitioned, GROUP_KEY, GROUP_INITIALIZER,
+            GROUP_ADDER, GROUP_RESULT_SELECTOR, null)
+            .orderBy(Functions.<String>identitySelector()).toList();
+    assertThat(actual.size(), equalTo(1000));
+    assertThat(actual, equalTo(expected));
+
+    // Enumerated as a whole, the exchange returns its input unchanged
+    assertThat(partitioned.toList(), equalTo(rows.toList()));
+
+    // Partitioned round-robin, the input is aggregated in a single thread
+    final List<String> actual2 =
+        ParallelEnumerables.groupBy(
+            ParallelEnumerables.exchange(rows, null, 4), GROUP_KEY,
+            GROUP_INITIALIZER, GROUP_ADDER, GROUP_RESULT_SELECTOR, null)
+            .orderBy(Functions.<String>identitySelector()).toList();
+    assertThat(actual2, equalTo(expected));
+  }
+
   /** Employee record. */
   private static class Emp {
     final int deptno;
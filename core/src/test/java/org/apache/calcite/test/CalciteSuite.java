@@ -33,6 +33,7 @@
 import org.apache.calcite.rel.RelDistributionTest;
 import org.apache.calcite.rel.rel2sql.RelToSqlConverterTest;
 import org.apache.calcite.rel.rules.DateRangeRulesTest;
+import org.apache.calcite.rel.rules.MaterializedViewIndexTest;
 import org.apache.calcite.rex.RexBuilderTest;
 import org.apache.calcite.rex.RexExecutorTest;
 import org.apache.calcite.runtime.BinarySearchTest;
@@ -126,6 +127,7 @@
     SqlAdvisorTest.class,
     RelMetadataTest.class,
     DateRangeRulesTest.class,
+    MaterializedViewIndexTest.class,
     RelOptRulesTest.class,
     ScannableTableTest.class,
     RexExecutorTest.class,
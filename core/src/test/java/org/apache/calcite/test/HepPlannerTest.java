@@ -17,6 +17,7 @@
 package org.apache.calcite.test;
 
 import org.apache.calcite.plan.RelOptListener;
+import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.plan.hep.HepMatchOrder;
 import org.apache.calcite.plan.hep.HepPlanner;
 import org.apache.calcite.plan.hep.HepProgram;
@@ -336,18 +337,39 @@ protected DiffRepository getDiffRepos() {
     assertThat(applyTimes1 > applyTimes2 * 10, is(true));
   }
 
+  /** Tests that {@link HepMatchOrder#INCREMENTAL} reaches the same plan as
+   * {@link HepMatchOrder#ARBITRARY}, attempting far fewer rules. */
+  @Test public void testIncrementalMatchOrder() {
+    final HepTestListener listener1 = new HepTestListener(0);
+    final String plan1 =
+        RelOptUtil.toString(
+            planComplexUnionTree(HepMatchOrder.ARBITRARY, listener1));
+    final HepTestListener listener2 = new HepTestListener(0);
+    final String plan2 =
+        RelOptUtil.toString(
+            planComplexUnionTree(HepMatchOrder.INCREMENTAL, listener2));
+    assertThat(plan2, is(plan1));
+    assertThat(listener2.getApplyTimes() * 5 < listener1.getApplyTimes(),
+        is(true));
+  }
+
   private long checkRuleApplyCount(HepMatchOrder matchOrder) {
+    final HepTestListener listener = new HepTestListener(0);
+    planComplexUnionTree(matchOrder, listener);
+    return listener.getApplyTimes();
+  }
+
+  private RelNode planComplexUnionTree(HepMatchOrder matchOrder,
+      RelOptListener listener) {
     final HepProgramBuilder programBuilder = HepProgram.builder();
     programBuilder.addMatchOrder(matchOrder);
     programBuilder.addRuleInstance(ReduceExpressionsRule.FILTER_INSTANCE);
     programBuilder.addRuleInstance(ReduceExpressionsRule.PROJECT_INSTANCE);
 
-    final HepTestListener listener = new HepTestListener(0);
     HepPlanner planner = new HepPlanner(programBuilder.build());
     planner.addListener(listener);
     planner.setRoot(tester.convertSqlToRel(COMPLEX_UNION_TREE).rel);
-    planner.findBestExp();
-    return listener.getApplyTimes();
+    return planner.findBestExp();
   }
 
   /** Listener for HepPlannerTest; counts how many times rules fire. */
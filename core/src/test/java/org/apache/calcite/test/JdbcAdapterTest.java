@@ -16,28 +16,53 @@
  */
 package org.apache.calcite.test;
 
+import org.apache.calcite.adapter.jdbc.JdbcSchema;
 import org.apache.calcite.config.Lex;
 import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.QueryableTable;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Table;
 import org.apache.calcite.test.CalciteAssert.AssertThat;
 import org.apache.calcite.test.CalciteAssert.DatabaseInstance;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
 
 import org.hsqldb.jdbcDriver;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import javax.sql.DataSource;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.CoreMatchers.startsWith;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 
@@ -840,6 +865,397 @@ public Void apply(CalciteConnection connection) {
         .typeIs("[employee_id INTEGER NOT NULL, position_id INTEGER]");
   }
 
+  /** Tests that a dynamic parameter in a query that is pushed down to JDBC
+   * is passed to the database as a parameter of a prepared statement, and
+   * that the schema's "fetchSize" and "streaming" attributes are honored. */
+  @Test public void testDynamicParameterStreaming() throws Exception {
+    final String model = JdbcTest.SCOTT_MODEL
+        .replace("type: 'jdbc',\n",
+            "type: 'jdbc',\n       fetchSize: 2,\n       streaming: true,\n");
+    final String sql = "select \"ENAME\" from \"SCOTT\".\"EMP\"\n"
+        + "where \"DEPTNO\" = ? and \"SAL\" > 1000\n"
+        + "order by \"ENAME\"";
+    final StringBuilder plan = new StringBuilder();
+    try (Hook.Closeable ignore = Hook.QUERY_PLAN.addThread(
+            new Function<Object, Void>() {
+              public Void apply(Object o) {
+                plan.append(o);
+                return null;
+              }
+            });
+         Connection connection =
+             DriverManager.getConnection("jdbc:calcite:model=inline:" + model);
+         PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setInt(1, 20);
+      assertThat(CalciteAssert.toString(statement.executeQuery()),
+          is("ENAME=ADAMS\nENAME=FORD\nENAME=JONES\nENAME=SCOTT\n"));
+      statement.setInt(1, 10);
+      assertThat(CalciteAssert.toString(statement.executeQuery()),
+          is("ENAME=CLARK\nENAME=KING\nENAME=MILLER\n"));
+    }
+    assertThat(plan.toString(), containsString(" = ?"));
+  }
+
+  /** Tests that the fetch size and streaming options of a JDBC schema reach
+   * the statement, and that dynamic parameters are bound with the right
+   * types, including DATE values and nulls. */
+  @Test public void testFetchSizeAndStreaming() throws Exception {
+    final List<String> calls =
+        Collections.synchronizedList(new ArrayList<String>());
+    final ConnectionSpec scott = JdbcTest.SCOTT;
+    final DataSource dataSource =
+        record(
+            JdbcSchema.dataSource(scott.url, scott.driver, scott.username,
+                scott.password),
+            DataSource.class, calls);
+    final String sql = "select \"ENAME\" from \"SCOTT\".\"EMP\"\n"
+        + "where \"DEPTNO\" = ? and \"HIREDATE\" > ?\n"
+        + "order by \"ENAME\"";
+    try (Connection connection = DriverManager.getConnection("jdbc:calcite:")) {
+      final SchemaPlus rootSchema =
+          connection.unwrap(CalciteConnection.class).getRootSchema();
+      rootSchema.add("SCOTT",
+          JdbcSchema.create(rootSchema, "SCOTT", dataSource, null,
+              scott.catalog, scott.schema, 2, true,
+              ImmutableMap.<String, String>of(), null,
+              JdbcSchema.MetadataOptions.DEFAULT));
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        statement.setInt(1, 20);
+        statement.setDate(2, java.sql.Date.valueOf("1981-06-01"));
+        assertThat(CalciteAssert.toString(statement.executeQuery()),
+            is("ENAME=ADAMS\nENAME=FORD\nENAME=SCOTT\n"));
+        statement.setNull(1, java.sql.Types.INTEGER);
+        assertThat(CalciteAssert.toString(statement.executeQuery()),
+            is(""));
+      }
+    }
+    assertThat(calls, hasItem("Connection.setAutoCommit[false]"));
+    if (CalciteAssert.DB != DatabaseInstance.MYSQL) {
+      assertThat(calls, hasItem("PreparedStatement.setFetchSize[2]"));
+    }
+    assertThat(calls, hasItem("PreparedStatement.setObject[2, 1981-06-01]"));
+    assertThat(calls, hasItem(startsWith("PreparedStatement.setNull[1, ")));
+  }
+
+  /** Tests a table whose scans are partitioned by ranges of a column. Most
+   * values of the column are null, and must be read by the first
+   * partition. */
+  @Test public void testPartitionedScan() {
+    CalciteAssert.model("{\n"
+            + "  version: '1.0',\n"
+            + "  defaultSchema: 'SCOTT_CLONE',\n"
+            + "  schemas: [ {\n"
+            + "    name: 'SCOTT_CLONE',\n"
+            + "    type: 'custom',\n"
+            + "    factory: 'org.apache.calcite.adapter.clone.CloneSchema$Factory',\n"
+            + "    operand: {\n"
+            + "      jdbcDriver: '" + JdbcTest.SCOTT.driver + "',\n"
+            + "      jdbcUser: '" + JdbcTest.SCOTT.username + "',\n"
+            + "      jdbcPassword: '" + JdbcTest.SCOTT.password + "',\n"
+            + "      jdbcUrl: '" + JdbcTest.SCOTT.url + "',\n"
+            + "      jdbcSchema: 'SCOTT',\n"
+            + "      partitionColumns: { EMP: 'COMM' },\n"
+            + "      partitionCount: 3\n"
+            + "   } } ]\n"
+            + "}")
+        .query("select count(*) as c, sum(empno) as s, count(comm) as cc\n"
+            + "from emp")
+        .returns("C=14; S=108172; CC=4\n");
+  }
+
+  /** Tests that a partitioned scan uses the connection's fetch size and
+   * streaming options, as a query pushed down to JDBC does, and reads ranges
+   * of a DATE column. */
+  @Test public void testPartitionedScanFetchOptions() throws Exception {
+    final List<String> calls =
+        Collections.synchronizedList(new ArrayList<String>());
+    final ConnectionSpec scott = JdbcTest.SCOTT;
+    final DataSource dataSource =
+        record(
+            JdbcSchema.dataSource(scott.url, scott.driver, scott.username,
+                scott.password),
+            DataSource.class, calls);
+    final Properties info = new Properties();
+    info.setProperty("jdbcFetchSize", "3");
+    info.setProperty("jdbcStreaming", "true");
+    try (Connection connection =
+             DriverManager.getConnection("jdbc:calcite:", info)) {
+      final CalciteConnection calciteConnection =
+          connection.unwrap(CalciteConnection.class);
+      final SchemaPlus rootSchema = calciteConnection.getRootSchema();
+      final SchemaPlus schema =
+          rootSchema.add("SCOTT",
+              JdbcSchema.create(rootSchema, "SCOTT", dataSource, null,
+                  scott.catalog, scott.schema, null, null,
+                  ImmutableMap.of("EMP", "HIREDATE"), 3,
+                  JdbcSchema.MetadataOptions.DEFAULT));
+      final QueryableTable table = (QueryableTable) schema.getTable("EMP");
+      int count = 0;
+      try (Enumerator<Object> enumerator =
+               table.<Object>asQueryable(calciteConnection, schema, "EMP")
+                   .enumerator()) {
+        while (enumerator.moveNext()) {
+          ++count;
+        }
+      }
+      assertThat(count, is(14));
+    }
+    assertThat(calls, hasItem("Connection.setAutoCommit[false]"));
+    if (CalciteAssert.DB != DatabaseInstance.MYSQL) {
+      assertThat(calls, hasItem("PreparedStatement.setFetchSize[3]"));
+    }
+    // One statement for each range of HIREDATE
+    assertThat(prepared(calls).size(), is(3));
+  }
+
+  /** Tests that a query that filters and projects a partitioned table, and
+   * is pushed down to JDBC, reads each range of the partition column in its
+   * own statement; and that a query that aggregates the table reads it in
+   * one statement. */
+  @Test public void testPartitionedScanPushDown() throws Exception {
+    final List<String> calls =
+        Collections.synchronizedList(new ArrayList<String>());
+    final ConnectionSpec scott = JdbcTest.SCOTT;
+    final DataSource dataSource =
+        record(
+            JdbcSchema.dataSource(scott.url, scott.driver, scott.username,
+                scott.password),
+            DataSource.class, calls);
+    try (Connection connection =
+             DriverManager.getConnection("jdbc:calcite:")) {
+      final SchemaPlus rootSchema =
+          connection.unwrap(CalciteConnection.class).getRootSchema();
+      rootSchema.add("SCOTT",
+          JdbcSchema.create(rootSchema, "SCOTT", dataSource, null,
+              scott.catalog, scott.schema, null, null,
+              ImmutableMap.of("EMP", "EMPNO"), 3,
+              JdbcSchema.MetadataOptions.DEFAULT));
+      calls.clear();
+      final String sql = "select \"ENAME\" from \"SCOTT\".\"EMP\"\n"
+          + "where \"DEPTNO\" = 20";
+      // Partitions are read in parallel, so rows arrive in any order
+      final List<String> names = new ArrayList<>();
+      try (ResultSet resultSet =
+               connection.createStatement().executeQuery(sql)) {
+        while (resultSet.next()) {
+          names.add(resultSet.getString(1));
+        }
+      }
+      Collections.sort(names);
+      assertThat(names,
+          equalTo(Arrays.asList("ADAMS", "FORD", "JONES", "SCOTT", "SMITH")));
+      final List<String> prepared = prepared(calls);
+      assertThat(prepared.size(), is(3));
+      for (String call : prepared) {
+        assertThat(call, containsString("EMPNO"));
+        assertThat(call, containsString("?"));
+      }
+
+      calls.clear();
+      assertThat(
+          CalciteAssert.toString(
+              connection.createStatement().executeQuery(
+                  "select count(*) as c from \"SCOTT\".\"EMP\"")),
+          is("C=14\n"));
+      assertThat(prepared(calls).size(), is(1));
+    }
+  }
+
+  /** Returns the calls that prepared a statement, from a list of calls
+   * recorded by {@link #record}. */
+  private static List<String> prepared(List<String> calls) {
+    final List<String> prepared = new ArrayList<>();
+    synchronized (calls) {
+      for (String call : calls) {
+        if (call.startsWith("Connection.prepareStatement[")) {
+          prepared.add(call);
+        }
+      }
+    }
+    return prepared;
+  }
+
+  /** Tests a JDBC schema that reads metadata in the background and stores
+   * it in a file; and that a second schema reads the tables and columns from
+   * the file, not from the database. */
+  @Test public void testMetadataFile() throws Exception {
+    final File file = File.createTempFile("jdbc-metadata", ".ser");
+    assertThat(file.delete(), is(true));
+    final List<String> calls =
+        Collections.synchronizedList(new ArrayList<String>());
+    final ConnectionSpec scott = JdbcTest.SCOTT;
+    final DataSource dataSource =
+        record(
+            JdbcSchema.dataSource(scott.url, scott.driver, scott.username,
+                scott.password),
+            DataSource.class, calls);
+    final JdbcSchema.MetadataOptions metadataOptions =
+        new JdbcSchema.MetadataOptions(0L, 2, file);
+    final String sql = "select count(*) as c from \"SCOTT\".\"EMP\"";
+    try {
+      try (Connection connection =
+               DriverManager.getConnection("jdbc:calcite:")) {
+        addScott(connection, dataSource, metadataOptions);
+        assertThat(
+            CalciteAssert.toString(
+                connection.createStatement().executeQuery(sql)),
+            is("C=14\n"));
+      }
+      assertThat(calls, hasItem("Connection.getMetaData[]"));
+
+      // The file is written when the columns of all tables have been read.
+      for (int i = 0; i < 100 && !file.exists(); i++) {
+        Thread.sleep(100);
+      }
+      assertThat(file.exists(), is(true));
+
+      try (Connection connection =
+               DriverManager.getConnection("jdbc:calcite:")) {
+        // Creating the schema reads the database's metadata to choose a
+        // dialect; after that, nothing should.
+        addScott(connection, dataSource, metadataOptions);
+        calls.clear();
+        assertThat(
+            CalciteAssert.toString(
+                connection.createStatement().executeQuery(sql)),
+            is("C=14\n"));
+      }
+      assertThat(calls, not(hasItem("Connection.getMetaData[]")));
+    } finally {
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  /** Tests that a JDBC schema whose metadata file cannot be read, because
+   * it is corrupt, reads the metadata from the database instead. */
+  @Test public void testMetadataFileCorrupt() throws Exception {
+    final File file = File.createTempFile("jdbc-metadata", ".ser");
+    final List<String> calls =
+        Collections.synchronizedList(new ArrayList<String>());
+    final ConnectionSpec scott = JdbcTest.SCOTT;
+    final DataSource dataSource =
+        record(
+            JdbcSchema.dataSource(scott.url, scott.driver, scott.username,
+                scott.password),
+            DataSource.class, calls);
+    try {
+      try (FileOutputStream out = new FileOutputStream(file)) {
+        out.write(new byte[] {1, 2, 3});
+      }
+      try (Connection connection =
+               DriverManager.getConnection("jdbc:calcite:")) {
+        addScott(connection, dataSource,
+            new JdbcSchema.MetadataOptions(0L, 0, file));
+        calls.clear();
+        assertThat(
+            CalciteAssert.toString(
+                connection.createStatement().executeQuery(
+                    "select count(*) as c from \"SCOTT\".\"EMP\"")),
+            is("C=14\n"));
+      }
+      assertThat(calls, hasItem("Connection.getMetaData[]"));
+    } finally {
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  /** Tests that a JDBC schema whose metadata has expired returns the old
+   * tables, reads the metadata again in the background, and after that
+   * returns the new tables; and that it can refresh again after that. */
+  @Test public void testMetadataTtl() throws Exception {
+    final List<String> calls =
+        Collections.synchronizedList(new ArrayList<String>());
+    final ConnectionSpec scott = JdbcTest.SCOTT;
+    final DataSource dataSource =
+        record(
+            JdbcSchema.dataSource(scott.url, scott.driver, scott.username,
+                scott.password),
+            DataSource.class, calls);
+    final long ttl = 100L;
+    try (Connection connection =
+             DriverManager.getConnection("jdbc:calcite:")) {
+      final SchemaPlus rootSchema =
+          connection.unwrap(CalciteConnection.class).getRootSchema();
+      final JdbcSchema schema =
+          JdbcSchema.create(rootSchema, "SCOTT", dataSource, null,
+              scott.catalog, scott.schema, null, null,
+              ImmutableMap.<String, String>of(), null,
+              new JdbcSchema.MetadataOptions(ttl, 0, null));
+      final Table table = schema.getTable("EMP");
+      assertThat(table, notNullValue());
+
+      // The metadata has expired. The schema returns the old table at once,
+      // and reads the metadata again in the background.
+      Thread.sleep(ttl * 2);
+      calls.clear();
+      assertThat(schema.getTable("EMP"), sameInstance(table));
+      Table table2 = table;
+      for (int i = 0; i < 100 && table2 == table; i++) {
+        Thread.sleep(100);
+        table2 = schema.getTable("EMP");
+      }
+      assertThat(table2, not(sameInstance(table)));
+      assertThat(calls, hasItem("Connection.getMetaData[]"));
+
+      // When the background read has finished, the schema can refresh
+      // again; it would not if it were still flagged as refreshing.
+      Thread.sleep(ttl * 2);
+      calls.clear();
+      for (int i = 0; i < 100 && !calls.contains("Connection.getMetaData[]");
+           i++) {
+        schema.getTable("EMP");
+        Thread.sleep(100);
+      }
+      assertThat(calls, hasItem("Connection.getMetaData[]"));
+    }
+  }
+
+  /** Adds a JDBC schema called "SCOTT", reading from the given data
+   * source, to a connection. */
+  private static void addScott(Connection connection, DataSource dataSource,
+      JdbcSchema.MetadataOptions metadataOptions) throws SQLException {
+    final ConnectionSpec scott = JdbcTest.SCOTT;
+    final SchemaPlus rootSchema =
+        connection.unwrap(CalciteConnection.class).getRootSchema();
+    rootSchema.add("SCOTT",
+        JdbcSchema.create(rootSchema, "SCOTT", dataSource, null,
+            scott.catalog, scott.schema, null, null,
+            ImmutableMap.<String, String>of(), null, metadataOptions));
+  }
+
+  /** Wraps an object in a proxy that records each call, as the interface
+   * name, method name and arguments. Connections and statements returned by
+   * the calls are wrapped too. */
+  @SuppressWarnings("unchecked")
+  static <T> T record(final T target, final Class<T> interfaceClass,
+      final List<String> calls) {
+    return (T) Proxy.newProxyInstance(interfaceClass.getClassLoader(),
+        new Class[] {interfaceClass},
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args)
+              throws Throwable {
+            calls.add(interfaceClass.getSimpleName() + "." + method.getName()
+                + (args == null ? "[]" : Arrays.toString(args)));
+            final Object result;
+            try {
+              result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+            final Class<?> type = method.getReturnType();
+            if (result != null
+                && (type == Connection.class
+                    || type == Statement.class
+                    || type == PreparedStatement.class)) {
+              return record(result, (Class<Object>) type, calls);
+            }
+            return result;
+          }
+        });
+  }
+
   /** Acquires a lock, and releases it when closed. */
   static class LockWrapper implements AutoCloseable {
     private final Lock lock;
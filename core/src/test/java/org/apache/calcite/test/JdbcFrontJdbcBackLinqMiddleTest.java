@@ -265,12 +265,16 @@ public class JdbcFrontJdbcBackLinqMiddleTest {
     // instead, and that would be wrong.
     //
     // inventory_fact_1997 is on the LHS because it is larger than store.
+    //
+    // The key, store_id, is a NOT NULL int, so the join packs it into a long
+    // and uses a hash table of primitive keys.
     that()
         .with(CalciteAssert.Config.FOODMART_CLONE)
         .query(
             "select \"store\".\"store_country\" as \"c0\", sum(\"inventory_fact_1997\".\"supply_time\") as \"m0\" from \"store\" as \"store\", \"inventory_fact_1997\" as \"inventory_fact_1997\" where \"inventory_fact_1997\".\"store_id\" = \"store\".\"store_id\" group by \"store\".\"store_country\"")
-        .planContains(
-            " left.join(right, new org.apache.calcite.linq4j.function.Function1() {\n");
+        .planContains("org.apache.calcite.linq4j.EnumerableDefaults"
+            + ".hashJoinLong(left, right, "
+            + "new org.apache.calcite.linq4j.function.LongFunction1() {\n");
   }
 }
 
@@ -17,6 +17,7 @@
 package org.apache.calcite.test;
 
 import org.apache.calcite.adapter.clone.CloneSchema;
+import org.apache.calcite.adapter.enumerable.EnumerableInterpretable;
 import org.apache.calcite.adapter.generate.RangeTable;
 import org.apache.calcite.adapter.java.AbstractQueryableTable;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
@@ -36,6 +37,7 @@
 import org.apache.calcite.jdbc.CalcitePrepare;
 import org.apache.calcite.jdbc.CalciteSchema;
 import org.apache.calcite.jdbc.Driver;
+import org.apache.calcite.jdbc.PlanCache;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.Ord;
@@ -2512,6 +2514,19 @@ private void checkNullableTimestamp(CalciteAssert.Config config) {
             + "T=eodore\n");
   }
 
+  /** Tests that a LIKE with a literal pattern compiles the pattern once, in
+   * a static field of the generated class, not for each row. */
+  @Test public void testLikeLiteralPatternHoisted() {
+    CalciteAssert.hr()
+        .query("select \"name\" from \"hr\".\"emps\"\n"
+            + "where \"name\" like 'S%'")
+        .planContains("$L4J$C$org_apache_calcite_runtime_SqlFunctions_likeMatcher_S_ = "
+            + "org.apache.calcite.runtime.SqlFunctions.likeMatcher(\"S%\");")
+        .planContains("$L4J$C$org_apache_calcite_runtime_SqlFunctions_likeMatcher_S_"
+            + ".matches(")
+        .returns("name=Sebastian\n");
+  }
+
   @Test public void testValues() {
     CalciteAssert.that()
         .query("values (1), (2)")
@@ -3230,6 +3245,22 @@ public Void apply(ResultSet resultSet) {
             "deptno=20");
   }
 
+  /** Tests that if the connection allows more than one thread, a hash
+   * aggregate reads its input through a hash exchange, and aggregates the
+   * partitions in parallel with the same results. */
+  @Test public void testGroupByParallel() {
+    CalciteAssert.hr()
+        .with("parallelism", 4)
+        .query("select \"deptno\", count(*) as c, sum(\"salary\") as s\n"
+            + "from \"hr\".\"emps\"\n"
+            + "group by \"deptno\"")
+        .explainContains("EnumerableExchange(distribution=[hash[")
+        .returnsUnordered(
+            "deptno=10; C=3; S=28500.0",
+            "deptno=20; C=1; S=8000.0")
+        .planContains("org.apache.calcite.runtime.ParallelEnumerables.groupBy(");
+  }
+
   /** Same result (and plan) as {@link #testSelectDistinct}. */
   @Test public void testGroupByNoAggregatesAllColumns() {
     CalciteAssert.hr()
@@ -3597,7 +3628,7 @@ public Void apply(ResultSet resultSet) {
    */
   @Test public void testWinAggScalarNonNullPhysType() {
     String planLine =
-        "a0s0w0 = org.apache.calcite.runtime.SqlFunctions.lesser(a0s0w0, org.apache.calcite.runtime.SqlFunctions.toFloat(_rows[j]));";
+        "a0s0w0.add(Float.valueOf(org.apache.calcite.runtime.SqlFunctions.toFloat(_rows[j])));";
     if (CalcitePrepareImpl.DEBUG) {
       planLine = planLine.replaceAll("a0s0w0", "MINa0s0w0");
     }
@@ -3622,7 +3653,7 @@ public Void apply(ResultSet resultSet) {
    */
   @Test public void testWinAggScalarNonNullPhysTypePlusOne() {
     String planLine =
-        "a0s0w0 = org.apache.calcite.runtime.SqlFunctions.lesser(a0s0w0, org.apache.calcite.runtime.SqlFunctions.toFloat(_rows[j]));";
+        "a0s0w0.add(Float.valueOf(org.apache.calcite.runtime.SqlFunctions.toFloat(_rows[j])));";
     if (CalcitePrepareImpl.DEBUG) {
       planLine = planLine.replaceAll("a0s0w0", "MINa0s0w0");
     }
@@ -3640,6 +3671,51 @@ public Void apply(ResultSet resultSet) {
             "M=10002.0");
   }
 
+  /** Tests a window whose frame slides, and whose aggregates can all remove
+   * the rows that leave the frame. The generated code removes those rows
+   * rather than recomputing the frame. */
+  @Test public void testWinAggSlidingFrame() {
+    String sum = "a1s0w0";
+    String min = "a2s0w0";
+    if (CalcitePrepareImpl.DEBUG) {
+      sum = "SUM" + sum;
+      min = "MIN" + min;
+    }
+    CalciteAssert.hr()
+        .query("select \"empid\",\n"
+            + " count(*) over w as c,\n"
+            + " sum(\"empid\") over w as s,\n"
+            + " min(\"salary\") over w as mi,\n"
+            + " max(\"salary\") over w as ma\n"
+            + "from \"hr\".\"emps\"\n"
+            + "window w as (order by \"empid\" rows 1 preceding)")
+        .planContains("for (int k = prevStart0; k < ")
+        .planContains(sum + " = " + sum + " - ")
+        .planContains(min + ".remove(Float.valueOf(")
+        .returnsUnordered(
+            "empid=100; C=1; S=100; MI=10000.0; MA=10000.0",
+            "empid=110; C=2; S=210; MI=10000.0; MA=11500.0",
+            "empid=150; C=2; S=260; MI=7000.0; MA=11500.0",
+            "empid=200; C=2; S=350; MI=7000.0; MA=8000.0");
+  }
+
+  /** Tests a windowed aggregate whose partitions are read by an operator
+   * that may spill to disk, because the connection has a memory limit. */
+  @Test public void testWinAggSpill() {
+    CalciteAssert.hr()
+        .with("spillMemoryLimit", 1)
+        .query("select \"empid\",\n"
+            + " sum(\"salary\") over (partition by \"deptno\") as s\n"
+            + "from \"hr\".\"emps\"")
+        .planContains("org.apache.calcite.runtime.SpillingEnumerables"
+            + ".partitionArrays(")
+        .returnsUnordered(
+            "empid=100; S=28500.0",
+            "empid=110; S=28500.0",
+            "empid=150; S=28500.0",
+            "empid=200; S=8000.0");
+  }
+
   /** Tests for RANK and ORDER BY ... DESCENDING, NULLS FIRST, NULLS LAST. */
   @Test public void testWinAggRank() {
     CalciteAssert.hr()
@@ -5684,6 +5760,24 @@ public Void apply(CalciteConnection connection) {
             });
   }
 
+  /** Tests that expressions whose value is the same for every row, such as
+   * CURRENT_TIMESTAMP, are evaluated once per execution. */
+  @Test public void testHoistInvariants() {
+    final String sql = "select \"empid\"\n"
+        + "from \"hr\".\"emps\"\n"
+        + "where CURRENT_TIMESTAMP > TIMESTAMP '2000-01-01 00:00:00'\n"
+        + "and \"deptno\" = 10";
+    CalciteAssert.hr()
+        .query(sql)
+        .planContains("final long v0hoisted = "
+            + "org.apache.calcite.runtime.SqlFunctions.currentTimestamp(root);")
+        .returnsUnordered("empid=100", "empid=110", "empid=150");
+    CalciteAssert.hr()
+        .query(sql)
+        .withHook(Hook.HOIST_INVARIANTS, Hook.property(false))
+        .returnsUnordered("empid=100", "empid=110", "empid=150");
+  }
+
   /** Test for timestamps and time zones, based on pgsql TimezoneTest. */
   @Test public void testGetTimestamp() throws Exception {
     CalciteAssert.that()
@@ -6261,6 +6355,91 @@ public Void apply(Object[] args) {
     }
   }
 
+  /** Tests that a connection with a plan cache re-uses prepared statements,
+   * and empties the cache when the schema changes. */
+  @Test public void testPlanCache() {
+    final String sql = "select count(*) as c from \"hr\".\"emps\"\n"
+        + "where \"deptno\" = 10";
+    CalciteAssert.that(CalciteAssert.Config.REGULAR)
+        .with("planCacheSize", "10")
+        .doWithConnection(
+            new Function<CalciteConnection, Void>() {
+              public Void apply(CalciteConnection connection) {
+                try {
+                  final PlanCache planCache =
+                      connection.unwrap(PlanCache.class);
+                  assertThat(planCache, notNullValue());
+                  final Statement statement = connection.createStatement();
+                  for (int i = 0; i < 3; i++) {
+                    final ResultSet resultSet = statement.executeQuery(sql);
+                    assertThat(CalciteAssert.toString(resultSet),
+                        equalTo("C=3\n"));
+                    resultSet.close();
+                  }
+                  assertThat(planCache.size(), equalTo(1L));
+                  assertThat(planCache.stats().missCount(), equalTo(1L));
+                  assertThat(planCache.stats().hitCount(), equalTo(2L));
+
+                  // Adding a schema invalidates the cache
+                  connection.getRootSchema().add("foo", new AbstractSchema());
+                  statement.executeQuery(sql).close();
+                  assertThat(planCache.stats().missCount(), equalTo(2L));
+                  statement.close();
+                  return null;
+                } catch (SQLException e) {
+                  throw new RuntimeException(e);
+                }
+              }
+            });
+  }
+
+  /** Tests that two queries that generate the same Java code share a
+   * compiled class. */
+  @Test public void testBindableCache() {
+    final String sql = "select \"empid\" + 1 as e from \"hr\".\"emps\"\n"
+        + "where \"name\" = 'Bill'";
+    CalciteAssert.hr().query(sql).returns("E=101\n");
+    final long hitCount =
+        EnumerableInterpretable.bindableCacheStats().hitCount();
+    CalciteAssert.hr().query(sql).returns("E=101\n");
+    assertTrue(
+        EnumerableInterpretable.bindableCacheStats().hitCount() > hitCount);
+  }
+
+  /** Tests that a query executed in batch calling convention, over an
+   * in-memory clone table, gives the same result as enumerable calling
+   * convention. */
+  @Test public void testBatchConvention() {
+    final String sql = "select \"store_id\", count(*) as c,\n"
+        + "  sum(\"customer_id\") as s, min(\"product_id\") as mi,\n"
+        + "  max(\"promotion_id\" - 1) as ma\n"
+        + "from \"sales_fact_1997\"\n"
+        + "where \"store_id\" < 10 and \"product_id\" + 1 > 100\n"
+        + "group by \"store_id\"";
+    final List<String> expected = new ArrayList<>();
+    CalciteAssert.that()
+        .with(CalciteAssert.Config.FOODMART_CLONE)
+        .query(sql)
+        .returns(
+            new Function<ResultSet, Void>() {
+              public Void apply(ResultSet resultSet) {
+                try {
+                  CalciteAssert.toStringList(resultSet, expected);
+                  return null;
+                } catch (SQLException e) {
+                  throw new RuntimeException(e);
+                }
+              }
+            });
+    assertThat(expected.isEmpty(), is(false));
+    CalciteAssert.that()
+        .with(CalciteAssert.Config.FOODMART_CLONE)
+        .with("batchSize", "100")
+        .query(sql)
+        .explainContains("EnumerableBatchAggregate")
+        .returnsUnordered(expected.toArray(new String[expected.size()]));
+  }
+
   /** Tests {@link SqlDialect}. */
   @Test public void testDialect() {
     final String[] sqls = {null};
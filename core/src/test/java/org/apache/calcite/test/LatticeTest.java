@@ -16,15 +16,20 @@
  */
 package org.apache.calcite.test;
 
+import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.jdbc.CalciteConnection;
 import org.apache.calcite.jdbc.CalciteSchema;
 import org.apache.calcite.materialize.Lattice;
 import org.apache.calcite.materialize.Lattices;
 import org.apache.calcite.materialize.MaterializationService;
+import org.apache.calcite.materialize.TileAdvisor;
+import org.apache.calcite.materialize.TileKey;
 import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.profile.Profiler;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.TestUtil;
 
@@ -37,14 +42,27 @@
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.calcite.test.Matchers.containsStringLinux;
@@ -53,6 +71,7 @@
 import static org.hamcrest.CoreMatchers.anyOf;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
@@ -447,6 +466,90 @@ public Void apply(String materializationName) {
         explain);
   }
 
+  /** Tests that the {@link Lattices#PROFILER} statistics provider saves the
+   * profile in the lattice's "statisticDirectory"; that another lattice with
+   * the same "statisticVersion" reads the file rather than profiling again;
+   * that a different version profiles again; and that a file that cannot be
+   * read is treated as missing. */
+  @Test public void testProfilerStatisticFile() throws Exception {
+    Assume.assumeTrue("Yahoo sketches requires JDK 8 or higher",
+        TestUtil.getJavaMajorVersion() >= 8);
+    Assume.assumeTrue(CalciteAssert.DB != CalciteAssert.DatabaseInstance.MYSQL
+        && CalciteAssert.DB != CalciteAssert.DatabaseInstance.H2);
+    final File directory = File.createTempFile("lattice-profile", "");
+    assertThat(directory.delete(), is(true));
+    try {
+      // The first lattice profiles, and writes the file.
+      checkProfile(directory, "v1");
+      final File[] files = directory.listFiles();
+      assertThat(files.length, is(1));
+      final File file = files[0];
+      assertThat(readObject(file) instanceof Profiler.Profile, is(true));
+
+      // The second lattice reads the file. If it profiled again, it would
+      // write the file again.
+      final long modified = file.lastModified() - 60000L;
+      assertThat(file.setLastModified(modified), is(true));
+      checkProfile(directory, "v1");
+      assertThat(file.lastModified(), is(modified));
+
+      // A lattice with a different version profiles again, into a new file.
+      checkProfile(directory, "v2");
+      assertThat(directory.listFiles().length, is(2));
+
+      // A file that holds something other than a profile, or is corrupt, is
+      // treated as missing; the lattice profiles again and overwrites it.
+      try (ObjectOutputStream out =
+               new ObjectOutputStream(new FileOutputStream(file))) {
+        out.writeObject("not a profile");
+      }
+      checkProfile(directory, "v1");
+      assertThat(readObject(file) instanceof Profiler.Profile, is(true));
+      try (FileOutputStream out = new FileOutputStream(file)) {
+        out.write(new byte[] {1, 2, 3});
+      }
+      checkProfile(directory, "v1");
+      assertThat(readObject(file) instanceof Profiler.Profile, is(true));
+    } finally {
+      final File[] files = directory.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          //noinspection ResultOfMethodCallIgnored
+          file.delete();
+        }
+      }
+      //noinspection ResultOfMethodCallIgnored
+      directory.delete();
+    }
+  }
+
+  /** Runs a query on a lattice that uses the {@link Lattices#PROFILER}
+   * statistics provider and saves its statistics in a given directory. */
+  private void checkProfile(File directory, String statisticVersion) {
+    MaterializationService.setThreadLocal();
+    MaterializationService.instance().clear();
+    final String path = directory.getAbsolutePath().replace('\\', '/');
+    foodmartLatticeModel(Lattices.class.getCanonicalName() + "#PROFILER",
+        " statisticDirectory: '" + path + "'",
+        " statisticVersion: '" + statisticVersion + "'")
+        .query("select distinct t.\"the_year\", t.\"quarter\"\n"
+            + "from \"foodmart\".\"sales_fact_1997\" as s\n"
+            + "join \"foodmart\".\"time_by_day\" as t using (\"time_id\")\n")
+        .enableMaterializations(true)
+        .returnsUnordered("the_year=1997; quarter=Q1",
+            "the_year=1997; quarter=Q2",
+            "the_year=1997; quarter=Q3",
+            "the_year=1997; quarter=Q4");
+  }
+
+  /** Reads the first serialized object in a file. */
+  private static Object readObject(File file) throws Exception {
+    try (ObjectInputStream in =
+             new ObjectInputStream(new FileInputStream(file))) {
+      return in.readObject();
+    }
+  }
+
   private void checkTileAlgorithm(String statisticProvider,
       String expectedExplain) {
     MaterializationService.setThreadLocal();
@@ -467,9 +570,238 @@ private void checkTileAlgorithm(String statisticProvider,
             "the_year=1997; quarter=Q4");
   }
 
+  /** Tests that a {@link TileAdvisor} materializes the tile that queries
+   * have asked for, and that subsequent queries use it. */
+  @Test public void testTileAdvisor() {
+    final String sql = "select t.\"the_year\", t.\"quarter\", count(*) as c\n"
+        + "from \"foodmart\".\"sales_fact_1997\" as s\n"
+        + "join \"foodmart\".\"time_by_day\" as t using (\"time_id\")\n"
+        + "group by t.\"the_year\", t.\"quarter\"";
+    MaterializationService.setThreadLocal();
+    foodmartModel(" auto: false", " rowCountEstimate: 87000")
+        .doWithConnection(
+            new Function<CalciteConnection, Void>() {
+              public Void apply(CalciteConnection connection) {
+                try {
+                  connection.getProperties().setProperty(
+                      CalciteConnectionProperty.MATERIALIZATIONS_ENABLED
+                          .camelName(), "true");
+                  final String explainSql = "explain plan for " + sql;
+                  final Statement statement = connection.createStatement();
+                  final TileAdvisor advisor = createTileAdvisor(connection);
+
+                  // The lattice is not "auto", so the query does not create
+                  // a tile, but it records its request.
+                  assertThat(
+                      CalciteAssert.toString(
+                          statement.executeQuery(explainSql)),
+                      not(containsString("m{")));
+
+                  advisor.run();
+                  assertThat(advisor.getTiles().size(), is(1));
+                  assertThat(
+                      CalciteAssert.toString(
+                          statement.executeQuery(explainSql)),
+                      containsString(
+                          "EnumerableTableScan(table=[[adhoc, m{27, 31}"));
+
+                  // The query asked for the tile again, so the advisor keeps
+                  // it. The next time, nothing has asked for the tile since,
+                  // so the advisor removes it.
+                  advisor.run();
+                  assertThat(advisor.getTiles().size(), is(1));
+                  advisor.run();
+                  assertThat(advisor.getTiles().isEmpty(), is(true));
+                  assertThat(
+                      CalciteAssert.toString(
+                          statement.executeQuery(explainSql)),
+                      not(containsString("m{")));
+                  advisor.close();
+                  statement.close();
+                  return null;
+                } catch (SQLException e) {
+                  throw new RuntimeException(e);
+                }
+              }
+            });
+  }
+
+  /** Tests that when queries need more measures than the tile that a
+   * {@link TileAdvisor} built, the advisor replaces the tile with a wider
+   * one, and removes the old tile's table. */
+  @Test public void testTileAdvisorWidensTile() {
+    final String sql = "select t.\"the_year\", t.\"quarter\", count(*) as c\n"
+        + "from \"foodmart\".\"sales_fact_1997\" as s\n"
+        + "join \"foodmart\".\"time_by_day\" as t using (\"time_id\")\n"
+        + "group by t.\"the_year\", t.\"quarter\"";
+    final String sql2 = "select t.\"the_year\", t.\"quarter\",\n"
+        + " count(*) as c, sum(s.\"unit_sales\") as s\n"
+        + "from \"foodmart\".\"sales_fact_1997\" as s\n"
+        + "join \"foodmart\".\"time_by_day\" as t using (\"time_id\")\n"
+        + "group by t.\"the_year\", t.\"quarter\"";
+    MaterializationService.setThreadLocal();
+    foodmartModel(" auto: false", " rowCountEstimate: 87000")
+        .doWithConnection(
+            new Function<CalciteConnection, Void>() {
+              public Void apply(CalciteConnection connection) {
+                try {
+                  connection.getProperties().setProperty(
+                      CalciteConnectionProperty.MATERIALIZATIONS_ENABLED
+                          .camelName(), "true");
+                  final Statement statement = connection.createStatement();
+                  final TileAdvisor advisor = createTileAdvisor(connection);
+                  statement.executeQuery("explain plan for " + sql).close();
+                  advisor.run();
+                  assertThat(advisor.getTiles().size(), is(1));
+                  assertThat(advisor.getTiles().get(0).measures.size(),
+                      is(1));
+                  assertThat(tileTableCount(connection), is(1));
+
+                  // The second query needs a measure that the tile lacks.
+                  final String explainSql2 = "explain plan for " + sql2;
+                  assertThat(
+                      CalciteAssert.toString(
+                          statement.executeQuery(explainSql2)),
+                      not(containsString("m{")));
+                  advisor.run();
+                  assertThat(advisor.getTiles().size(), is(1));
+                  assertThat(advisor.getTiles().get(0).measures.size(),
+                      is(2));
+                  assertThat(tileTableCount(connection), is(1));
+                  assertThat(
+                      CalciteAssert.toString(
+                          statement.executeQuery(explainSql2)),
+                      containsString(
+                          "EnumerableTableScan(table=[[adhoc, m{27, 31}"));
+                  advisor.close();
+                  statement.close();
+                  return null;
+                } catch (SQLException e) {
+                  throw new RuntimeException(e);
+                }
+              }
+            });
+  }
+
+  /** Tests that a {@link TileAdvisor} can create and remove tiles while
+   * other threads run queries that use the lattice's tiles.
+   *
+   * <p>None of the threads has a thread-local
+   * {@link MaterializationService}, so they share the global one; the test
+   * removes its tiles from it when done. */
+  @Test public void testTileAdvisorConcurrent() {
+    final String sql = "select t.\"the_year\", t.\"quarter\", count(*) as c\n"
+        + "from \"foodmart\".\"sales_fact_1997\" as s\n"
+        + "join \"foodmart\".\"time_by_day\" as t using (\"time_id\")\n"
+        + "group by t.\"the_year\", t.\"quarter\"";
+    final String sql2 = "select t.\"the_year\", t.\"quarter\",\n"
+        + " count(*) as c, sum(s.\"unit_sales\") as s\n"
+        + "from \"foodmart\".\"sales_fact_1997\" as s\n"
+        + "join \"foodmart\".\"time_by_day\" as t using (\"time_id\")\n"
+        + "group by t.\"the_year\", t.\"quarter\"";
+    foodmartModel(" auto: false", " rowCountEstimate: 87000")
+        .doWithConnection(
+            new Function<CalciteConnection, Void>() {
+              public Void apply(final CalciteConnection connection) {
+                connection.getProperties().setProperty(
+                    CalciteConnectionProperty.MATERIALIZATIONS_ENABLED
+                        .camelName(), "true");
+                final ExecutorService executor =
+                    Executors.newFixedThreadPool(4);
+                try {
+                  final TileAdvisor advisor =
+                      executor.submit(
+                          new Callable<TileAdvisor>() {
+                            public TileAdvisor call() {
+                              return createTileAdvisor(connection);
+                            }
+                          }).get();
+                  final List<Future<Void>> futures = new ArrayList<>();
+                  for (final String querySql : Arrays.asList(sql, sql2, sql)) {
+                    futures.add(
+                        executor.submit(
+                            new Callable<Void>() {
+                              public Void call() throws Exception {
+                                for (int i = 0; i < 5; i++) {
+                                  try (Statement statement =
+                                           connection.createStatement();
+                                       ResultSet resultSet =
+                                           statement.executeQuery(querySql)) {
+                                    int rowCount = 0;
+                                    while (resultSet.next()) {
+                                      ++rowCount;
+                                    }
+                                    assertThat(rowCount, is(4));
+                                  }
+                                }
+                                return null;
+                              }
+                            }));
+                  }
+                  futures.add(
+                      executor.submit(
+                          new Callable<Void>() {
+                            public Void call() {
+                              for (int i = 0; i < 10; i++) {
+                                advisor.run();
+                              }
+                              return null;
+                            }
+                          }));
+                  for (Future<Void> future : futures) {
+                    future.get();
+                  }
+                  executor.submit(
+                      new Callable<Void>() {
+                        public Void call() {
+                          advisor.close();
+                          for (TileKey tileKey : advisor.getTiles()) {
+                            MaterializationService.instance()
+                                .removeTile(tileKey);
+                          }
+                          return null;
+                        }
+                      }).get();
+                  return null;
+                } catch (InterruptedException | ExecutionException e) {
+                  throw Throwables.propagate(e);
+                } finally {
+                  executor.shutdown();
+                }
+              }
+            });
+  }
+
+  /** Creates a {@link TileAdvisor} for the first lattice of a connection,
+   * that populates tiles in the calling thread. */
+  private static TileAdvisor createTileAdvisor(CalciteConnection connection) {
+    final CalciteSchema.LatticeEntry entry =
+        Schemas.getLatticeEntries(
+            CalciteSchema.from(connection.getRootSchema())).get(0);
+    return new TileAdvisor(entry.getLattice(), entry.schema, 1L << 20,
+        new Executor() {
+          public void execute(Runnable command) {
+            command.run();
+          }
+        });
+  }
+
+  /** Returns the number of tables in the "adhoc" schema that hold tiles. */
+  private static int tileTableCount(CalciteConnection connection) {
+    int count = 0;
+    for (String name
+        : connection.getRootSchema().getSubSchema("adhoc").getTableNames()) {
+      if (name.startsWith("m{")) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
   private static CalciteAssert.AssertThat foodmartLatticeModel(
-      String statisticProvider) {
-    return foodmartModel(" auto: false,\n"
+      String statisticProvider, String... extras) {
+    final List<String> list = new ArrayList<>();
+    list.add(" auto: false,\n"
         + "  algorithm: true,\n"
         + "  algorithmMaxMillis: -1,\n"
         + "  rowCountEstimate: 87000,\n"
@@ -489,6 +821,8 @@ private static CalciteAssert.AssertThat foodmartLatticeModel(
         + "    dimensions: [ 'the_year', ['t', 'quarter'] ],\n"
         + "    measures: [ ]\n"
         + "  } ]\n");
+    list.addAll(Arrays.asList(extras));
+    return foodmartModel(list.toArray(new String[list.size()]));
   }
 
   /** Tests a query that is created within {@link #testTileAlgorithm()}. */
@@ -17,7 +17,16 @@
 package org.apache.calcite.test;
 
 import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.CalciteSchema;
 import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.QueryProvider;
+import org.apache.calcite.linq4j.Queryable;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.materialize.FileMaterializationStore;
+import org.apache.calcite.materialize.MaterializationKey;
 import org.apache.calcite.materialize.MaterializationService;
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptPredicateList;
@@ -31,6 +40,7 @@
 import org.apache.calcite.rel.RelVisitor;
 import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexInputRef;
@@ -40,8 +50,14 @@
 import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.schema.QueryableTable;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.Table;
 import org.apache.calcite.schema.TranslatableTable;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTableQueryable;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.test.JdbcTest.Department;
 import org.apache.calcite.test.JdbcTest.Dependent;
 import org.apache.calcite.test.JdbcTest.Employee;
@@ -61,17 +77,29 @@
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -2086,6 +2114,32 @@ public List<Object> apply(JsonBuilder builder) {
     }
   }
 
+  /** Tests that, of several aggregate materializations on the same table, the
+   * one whose aggregate functions match the query is used. The others are
+   * rejected by the index of materialized views before their predicates are
+   * examined. */
+  @Test public void testMaterializationIndex() {
+    final String q = "select \"deptno\", sum(\"salary\") as s\n"
+        + "from \"emps\"\n"
+        + "where \"empid\" > 100\n"
+        + "group by \"deptno\"";
+    try (final TryThreadLocal.Memo ignored = Prepare.THREAD_TRIM.push(true)) {
+      MaterializationService.setThreadLocal();
+      CalciteAssert.that()
+          .withMaterializations(HR_FKUK_MODEL,
+              "m0", "select \"deptno\", max(\"salary\") as m\n"
+                  + "from \"emps\" group by \"deptno\"",
+              "m1", "select \"deptno\", count(*) as c from \"depts\"\n"
+                  + "group by \"deptno\"",
+              "m2", "select \"deptno\", \"empid\", sum(\"salary\") as s\n"
+                  + "from \"emps\" group by \"deptno\", \"empid\"")
+          .query(q)
+          .enableMaterializations(true)
+          .explainContains("EnumerableTableScan(table=[[hr, m2]])")
+          .sameResultWithMaterializationsDisabled();
+    }
+  }
+
   @Test public void testMaterializationOnJoinQuery() {
     final String q = "select *\n"
         + "from \"emps\"\n"
@@ -2278,6 +2332,317 @@ public Void apply(RelNode input) {
     }
   }
 
+  /** Tests that a {@link FileMaterializationStore} stores a materialization,
+   * that a new materialization service reads it back rather than executing
+   * the query again, and that the store discards it when the version of a
+   * table it reads changes. */
+  @Test public void testMaterializationStore() throws IOException {
+    final File directory = File.createTempFile("materializations", "");
+    assertTrue(directory.delete());
+    final AtomicInteger version = new AtomicInteger(1);
+    final FileMaterializationStore store =
+        new FileMaterializationStore(directory) {
+          @Override public String getVersion(List<String> qualifiedName,
+              Table table) {
+            return qualifiedName.equals(Arrays.asList("hr", "emps"))
+                ? Integer.toString(version.get())
+                : null;
+          }
+        };
+    final FileTime fileTime = FileTime.fromMillis(1000);
+    try {
+      checkMaterializationStore(store);
+      final List<File> files = subDirectories(directory);
+      assertThat(files.size(), is(1));
+      final File contentFile = new File(files.get(0), "content.ser");
+      assertTrue(contentFile.exists());
+
+      // A new service uses the stored materialization, and does not write it
+      // again.
+      Files.setLastModifiedTime(contentFile.toPath(), fileTime);
+      checkMaterializationStore(store);
+      assertThat(subDirectories(directory), is(files));
+      assertThat(Files.getLastModifiedTime(contentFile.toPath()),
+          is(fileTime));
+
+      // After "emps" changes, the stored materialization is stale.
+      version.incrementAndGet();
+      checkMaterializationStore(store);
+      final List<File> files2 = subDirectories(directory);
+      assertThat(files2.size(), is(1));
+      assertFalse(files2.equals(files));
+      assertTrue(new File(files2.get(0), "content.ser").exists());
+    } finally {
+      for (File file : subDirectories(directory)) {
+        for (File f : file.listFiles()) {
+          assertTrue(f.delete());
+        }
+        assertTrue(file.delete());
+      }
+      for (File f : directory.listFiles()) {
+        assertTrue(f.delete());
+      }
+      assertTrue(directory.delete());
+    }
+  }
+
+  /** Tests that a materialization is brought up to date, rather than
+   * invalidated, when rows are inserted into the table that it reads. */
+  @Test public void testMaintainMaterializationOnInsert() throws Exception {
+    final String m = "select \"deptno\", sum(\"salary\") as \"s\",\n"
+        + " count(*) as \"c\"\n"
+        + "from \"t\"\n"
+        + "group by \"deptno\"";
+    try (MaintainFixture f = new MaintainFixture()) {
+      final MaterializationKey key = f.define(m, "m0", false);
+      final String q = "select * from \"m0\" order by \"deptno\"";
+      assertThat(f.query(q),
+          is("deptno=10; s=100; c=1\n"
+              + "deptno=20; s=200; c=1\n"));
+
+      final int count = f.statement.executeUpdate(
+          "insert into \"t\" values (10, 50), (30, 300)");
+      assertThat(count, is(2));
+      assertThat(f.rows.size(), is(4));
+      assertThat(f.service.checkValid(key), notNullValue());
+      assertThat(f.query(q),
+          is("deptno=10; s=150; c=2\n"
+              + "deptno=20; s=200; c=1\n"
+              + "deptno=30; s=300; c=1\n"));
+    }
+  }
+
+  /** Tests that the MIN and MAX of a materialization are merged with the
+   * delta: an inserted row lowers a MIN or raises a MAX only if it is
+   * beyond the existing value. */
+  @Test public void testMaintainMinMaxMaterializationOnInsert()
+      throws Exception {
+    final String m = "select \"deptno\", min(\"salary\") as \"mi\",\n"
+        + " max(\"salary\") as \"ma\"\n"
+        + "from \"t\"\n"
+        + "group by \"deptno\"";
+    try (MaintainFixture f = new MaintainFixture()) {
+      final MaterializationKey key = f.define(m, "m0", false);
+      final String q = "select * from \"m0\" order by \"deptno\"";
+      assertThat(f.query(q),
+          is("deptno=10; mi=100; ma=100\n"
+              + "deptno=20; mi=200; ma=200\n"));
+
+      // 50 lowers the MIN of 10; 250 raises the MAX of 20; 70 and 220 are
+      // within the range and change nothing.
+      f.statement.executeUpdate("insert into \"t\" values (10, 50),\n"
+          + " (20, 250), (10, 70), (20, 220), (30, 300)");
+      assertThat(f.service.checkValid(key), notNullValue());
+      assertThat(f.query(q),
+          is("deptno=10; mi=50; ma=100\n"
+              + "deptno=20; mi=200; ma=250\n"
+              + "deptno=30; mi=300; ma=300\n"));
+    }
+  }
+
+  /** Tests that a materialization that joins two tables is brought up to
+   * date, when rows are inserted into either table, by joining the inserted
+   * rows to the other table. */
+  @Test public void testMaintainJoinMaterializationOnInsert()
+      throws Exception {
+    final String m = "select \"t\".\"deptno\", count(*) as \"c\",\n"
+        + " sum(\"t\".\"salary\") as \"s\"\n"
+        + "from \"t\"\n"
+        + "join \"d\" on \"t\".\"deptno\" = \"d\".\"deptno\"\n"
+        + "group by \"t\".\"deptno\"";
+    try (MaintainFixture f = new MaintainFixture()) {
+      final List<Object[]> dRows = new ArrayList<>();
+      dRows.add(new Object[] {10, 1});
+      dRows.add(new Object[] {30, 3});
+      f.schema.add("d", new ArrayModifiableTable(dRows));
+      final MaterializationKey key = f.define(m, "m0", false);
+      final String q = "select * from \"m0\" order by \"deptno\"";
+      assertThat(f.query(q), is("deptno=10; c=1; s=100\n"));
+
+      // The row for department 20 has no match in "d".
+      f.statement.executeUpdate(
+          "insert into \"t\" values (10, 50), (20, 20), (30, 300)");
+      assertThat(f.service.checkValid(key), notNullValue());
+      assertThat(f.query(q),
+          is("deptno=10; c=2; s=150\n"
+              + "deptno=30; c=1; s=300\n"));
+
+      // Now both rows of department 20 in "t" have a match.
+      f.statement.executeUpdate("insert into \"d\" values (20, 2)");
+      assertThat(f.service.checkValid(key), notNullValue());
+      assertThat(f.query(q),
+          is("deptno=10; c=2; s=150\n"
+              + "deptno=20; c=2; s=220\n"
+              + "deptno=30; c=1; s=300\n"));
+    }
+  }
+
+  /** Tests that a materialization that has no aggregate is brought up to
+   * date by appending the rows that its query returns for the inserted
+   * rows. */
+  @Test public void testMaintainSpjMaterializationOnInsert() throws Exception {
+    final String m = "select \"deptno\", \"salary\" + 1 as \"s\"\n"
+        + "from \"t\"\n"
+        + "where \"salary\" > 100";
+    try (MaintainFixture f = new MaintainFixture()) {
+      final MaterializationKey key = f.define(m, "m0", false);
+      final String q = "select * from \"m0\" order by \"deptno\"";
+      assertThat(f.query(q), is("deptno=20; s=201\n"));
+
+      f.statement.executeUpdate(
+          "insert into \"t\" values (10, 50), (30, 300)");
+      assertThat(f.service.checkValid(key), notNullValue());
+      assertThat(f.query(q),
+          is("deptno=20; s=201\n"
+              + "deptno=30; s=301\n"));
+    }
+  }
+
+  /** Tests that deleting rows from a table invalidates the materializations
+   * that read it. */
+  @Test public void testMaintainMaterializationOnDelete() throws Exception {
+    final String m = "select \"deptno\", count(*) as \"c\"\n"
+        + "from \"t\"\n"
+        + "group by \"deptno\"";
+    try (MaintainFixture f = new MaintainFixture()) {
+      final MaterializationKey key = f.define(m, "m0", false);
+      assertThat(f.service.checkValid(key), notNullValue());
+
+      final int count = f.statement.executeUpdate("delete from \"t\"");
+      assertThat(count, is(2));
+      assertThat(f.rows.size(), is(0));
+      assertNull(f.service.checkValid(key));
+    }
+  }
+
+  /** Tests that a materialization whose table is supplied by the user, and
+   * is a {@link org.apache.calcite.schema.ModifiableTable}, is brought up to date by modifying the
+   * table's collection. */
+  @Test public void testMaintainUserMaterializationOnInsert()
+      throws Exception {
+    final String m = "select \"deptno\", sum(\"salary\") as \"salary\"\n"
+        + "from \"t\"\n"
+        + "group by \"deptno\"";
+    try (MaintainFixture f = new MaintainFixture()) {
+      final List<Object[]> mRows = new ArrayList<>();
+      mRows.add(new Object[] {10, 100});
+      mRows.add(new Object[] {20, 200});
+      f.schema.add("m1", new ArrayModifiableTable(mRows));
+      final MaterializationKey key = f.define(m, "m1", true);
+
+      f.statement.executeUpdate(
+          "insert into \"t\" values (10, 50), (30, 300)");
+      assertThat(f.service.checkValid(key), notNullValue());
+      final List<String> mRowStrings = new ArrayList<>();
+      for (Object[] row : mRows) {
+        mRowStrings.add(Arrays.toString(row));
+      }
+      assertThat(mRowStrings.toString(),
+          is("[[10, 150], [20, 200], [30, 300]]"));
+    }
+  }
+
+  /** Tests that a materialization whose query no longer converts, because a
+   * table it reads has been dropped, is invalidated when another table is
+   * modified, and does not cause the modification to fail. */
+  @Test public void testMaintainMaterializationInvalidView()
+      throws Exception {
+    try (MaintainFixture f = new MaintainFixture()) {
+      f.schema.add("t2", new ArrayModifiableTable(new ArrayList<Object[]>()));
+      final MaterializationKey key = f.define("select * from \"t2\"", "m0",
+          false);
+      final MaterializationKey key2 =
+          f.define("select \"deptno\" from \"t\"", "m1", false);
+      assertThat(CalciteSchema.from(f.schema).removeTable("t2"), is(true));
+
+      final int count =
+          f.statement.executeUpdate("insert into \"t\" values (30, 300)");
+      assertThat(count, is(1));
+      assertNull(f.service.checkValid(key));
+      assertThat(f.service.checkValid(key2), notNullValue());
+      assertThat(f.query("select * from \"m1\" order by \"deptno\""),
+          is("deptno=10\ndeptno=20\ndeptno=30\n"));
+    }
+  }
+
+  /** Connection and thread-local materialization service for the tests of
+   * materialization maintenance. The connection's default schema is "s",
+   * created by {@link #addModifiableTable}. */
+  private static class MaintainFixture implements AutoCloseable {
+    final MaterializationService service;
+    final Connection connection;
+    final List<Object[]> rows = new ArrayList<>();
+    final SchemaPlus schema;
+    final Statement statement;
+
+    MaintainFixture() throws SQLException {
+      MaterializationService.setThreadLocal();
+      service = MaterializationService.instance();
+      connection = DriverManager.getConnection("jdbc:calcite:");
+      schema = addModifiableTable(connection, rows);
+      statement = connection.createStatement();
+    }
+
+    /** Defines a materialization of a query on schema "s". If
+     * {@code existing}, the table already exists; otherwise the service
+     * creates it. */
+    MaterializationKey define(String sql, String tableName,
+        boolean existing) {
+      return service.defineMaterialization(CalciteSchema.from(schema), null,
+          sql, ImmutableList.of("s"), tableName, true, existing);
+    }
+
+    /** Executes a query and returns its rows as a string. */
+    String query(String sql) throws SQLException {
+      return CalciteAssert.toString(statement.executeQuery(sql));
+    }
+
+    public void close() throws SQLException {
+      statement.close();
+      connection.close();
+    }
+  }
+
+  /** Adds a schema "s", containing a modifiable table "t" with columns
+   * "deptno" and "salary" and rows (10, 100) and (20, 200), and makes it the
+   * connection's default schema. */
+  private static SchemaPlus addModifiableTable(Connection connection,
+      List<Object[]> rows) throws SQLException {
+    final CalciteConnection calciteConnection =
+        connection.unwrap(CalciteConnection.class);
+    final SchemaPlus schema =
+        calciteConnection.getRootSchema().add("s", new AbstractSchema());
+    rows.add(new Object[] {10, 100});
+    rows.add(new Object[] {20, 200});
+    schema.add("t", new ArrayModifiableTable(rows));
+    calciteConnection.setSchema("s");
+    return schema;
+  }
+
+  private void checkMaterializationStore(FileMaterializationStore store) {
+    try (final TryThreadLocal.Memo ignored = Prepare.THREAD_TRIM.push(true)) {
+      MaterializationService.setThreadLocal();
+      MaterializationService.instance().setStore(store);
+      CalciteAssert.that()
+          .withMaterializations(HR_FKUK_MODEL,
+              "m0", "select * from \"emps\" where \"deptno\" = 10")
+          .query("select \"empid\" + 1 from \"emps\" where \"deptno\" = 10")
+          .enableMaterializations(true)
+          .explainContains("EnumerableTableScan(table=[[hr, m0]])")
+          .sameResultWithMaterializationsDisabled();
+    }
+  }
+
+  private static List<File> subDirectories(File directory) {
+    final List<File> list = new ArrayList<>();
+    for (File file : directory.listFiles()) {
+      if (file.isDirectory()) {
+        list.add(file);
+      }
+    }
+    return list;
+  }
+
   private static <E> List<List<List<E>>> list3(E[][][] as) {
     final ImmutableList.Builder<List<List<E>>> builder =
         ImmutableList.builder();
@@ -2295,6 +2660,50 @@ private static <E> List<List<E>> list2(E[][] as) {
     return builder.build();
   }
 
+  /** Modifiable table whose rows are arrays, with columns "deptno" and
+   * "salary". */
+  private static class ArrayModifiableTable
+      extends JdbcTest.AbstractModifiableTable {
+    private final List<Object[]> rows;
+
+    ArrayModifiableTable(List<Object[]> rows) {
+      super("t");
+      this.rows = rows;
+    }
+
+    public Collection getModifiableCollection() {
+      return rows;
+    }
+
+    public <T> Queryable<T> asQueryable(QueryProvider queryProvider,
+        SchemaPlus schema, String tableName) {
+      return new AbstractTableQueryable<T>(queryProvider, schema, this,
+          tableName) {
+        public Enumerator<T> enumerator() {
+          //noinspection unchecked
+          return (Enumerator<T>) Linq4j.enumerator(rows);
+        }
+      };
+    }
+
+    public Type getElementType() {
+      return Object[].class;
+    }
+
+    public Expression getExpression(SchemaPlus schema, String tableName,
+        Class clazz) {
+      return Schemas.tableExpression(schema, getElementType(), tableName,
+          clazz);
+    }
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("deptno", SqlTypeName.INTEGER)
+          .add("salary", SqlTypeName.INTEGER)
+          .build();
+    }
+  }
+
   /**
    * Implementation of RelVisitor to extract substituted table names.
    */
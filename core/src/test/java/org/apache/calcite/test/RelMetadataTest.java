@@ -61,8 +61,10 @@
 import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
 import org.apache.calcite.rel.metadata.JaninoRelMetadataProvider;
 import org.apache.calcite.rel.metadata.Metadata;
+import org.apache.calcite.rel.metadata.MetadataCache;
 import org.apache.calcite.rel.metadata.MetadataDef;
 import org.apache.calcite.rel.metadata.MetadataHandler;
+import org.apache.calcite.rel.metadata.NullSentinel;
 import org.apache.calcite.rel.metadata.ReflectiveRelMetadataProvider;
 import org.apache.calcite.rel.metadata.RelColumnOrigin;
 import org.apache.calcite.rel.metadata.RelMdCollation;
@@ -501,6 +503,61 @@ private void checkRowCount(String sql, double expected, double expectedMin,
     checkRowCount(sql, EMP_SIZE, 0D, Double.POSITIVE_INFINITY);
   }
 
+  /** Tests that {@link RelMetadataQuery} caches metadata for each relational
+   * expression, counts cache hits, and can clear the cache for one
+   * expression. */
+  @Test public void testMetadataCache() {
+    final RelNode rel = convertSql("select * from emp where deptno = 10");
+    final RelNode input = rel.getInput(0);
+    final RelMetadataQuery mq = RelMetadataQuery.instance();
+    final Double rowCount = mq.getRowCount(rel);
+    assertThat(mq.getRowCount(rel), equalTo(rowCount));
+    assertThat(mq.cache.size() >= 2, is(true));
+
+    final Method method = BuiltInMethod.ROW_COUNT.method;
+    final MetadataCache.Stats stats = mq.cache.getStatistics().get(method);
+    assertThat(stats.getHitCount() >= 1, is(true));
+    assertThat(stats.getMissCount() >= 2, is(true));
+
+    // Clearing one expression leaves its input's value in the cache
+    assertThat(mq.clearCache(rel), is(true));
+    assertThat(mq.clearCache(rel), is(false));
+    assertThat(mq.cache.get(rel, method), nullValue());
+    assertThat(mq.cache.get(input, method), notNullValue());
+    assertThat(mq.getRowCount(rel), equalTo(rowCount));
+  }
+
+  /** Tests that {@link MetadataCache} discards the least recently used
+   * expression when full, but not while its metadata is being computed. */
+  @Test public void testMetadataCacheEviction() {
+    final RelNode rel = convertSql("select * from emp where deptno = 10");
+    final RelNode input = rel.getInput(0);
+    final Method method = BuiltInMethod.ROW_COUNT.method;
+    final MetadataCache cache = new MetadataCache(1);
+    cache.put(rel, method, 1d);
+    cache.put(input, method, 2d);
+    assertThat(cache.size(), is(1));
+    assertThat(cache.get(rel, method), nullValue());
+    assertThat(cache.get(input, method), is((Object) 2d));
+
+    cache.put(input, method, NullSentinel.ACTIVE);
+    cache.put(rel, method, 1d);
+    assertThat(cache.size(), is(2));
+    assertThat(cache.get(input, method), is((Object) NullSentinel.ACTIVE));
+  }
+
+  /** Tests that a value cached by the generated handlers is not mistaken
+   * for a request in progress by {@link ReflectiveRelMetadataProvider},
+   * which shares the expression's slot in the cache. */
+  @Test public void testMetadataCacheReflectiveAfterJanino() {
+    final RelNode rel = convertSql("select * from emp where deptno = 10");
+    final RelMetadataQuery mq = RelMetadataQuery.instance();
+    final RelDistribution distribution = mq.distribution(rel);
+    assertThat(mq.getDistribution(rel), is(distribution));
+    assertThat(mq.getDistribution(rel), is(distribution));
+    assertThat(mq.distribution(rel), is(distribution));
+  }
+
   @Test public void testRowCountDept() {
     final String sql = "select * from dept";
     checkRowCount(sql, DEPT_SIZE, 0D, Double.POSITIVE_INFINITY);
@@ -18,6 +18,7 @@
 
 import org.apache.calcite.avatica.util.ByteString;
 import org.apache.calcite.avatica.util.DateTimeUtils;
+import org.apache.calcite.runtime.Like;
 import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.runtime.Utilities;
 
@@ -28,6 +29,7 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import static org.apache.calcite.avatica.util.DateTimeUtils.ymdToUnixDate;
 import static org.apache.calcite.runtime.SqlFunctions.addMonths;
@@ -36,9 +38,13 @@
 import static org.apache.calcite.runtime.SqlFunctions.greater;
 import static org.apache.calcite.runtime.SqlFunctions.initcap;
 import static org.apache.calcite.runtime.SqlFunctions.lesser;
+import static org.apache.calcite.runtime.SqlFunctions.like;
+import static org.apache.calcite.runtime.SqlFunctions.likeMatcher;
 import static org.apache.calcite.runtime.SqlFunctions.lower;
 import static org.apache.calcite.runtime.SqlFunctions.ltrim;
 import static org.apache.calcite.runtime.SqlFunctions.rtrim;
+import static org.apache.calcite.runtime.SqlFunctions.similar;
+import static org.apache.calcite.runtime.SqlFunctions.similarMatcher;
 import static org.apache.calcite.runtime.SqlFunctions.subtractMonths;
 import static org.apache.calcite.runtime.SqlFunctions.trim;
 import static org.apache.calcite.runtime.SqlFunctions.upper;
@@ -89,6 +95,69 @@ public class SqlFunctionsTest {
     assertEquals(" B0123b", initcap(" b0123B"));
   }
 
+  @Test public void testLike() {
+    assertThat(like("abc", "abc"), is(true));
+    assertThat(like("abcd", "abc"), is(false));
+    assertThat(like("abcd", "abc%"), is(true));
+    assertThat(like("xabc", "abc%"), is(false));
+    assertThat(like("xabc", "%abc"), is(true));
+    assertThat(like("abcx", "%abc"), is(false));
+    assertThat(like("xabcx", "%abc%"), is(true));
+    assertThat(like("xabx", "%abc%"), is(false));
+    assertThat(like("", "%"), is(true));
+    assertThat(like("a\nb", "a%b"), is(true));
+    assertThat(like("abc", "a_c"), is(true));
+    assertThat(like("a.c", "a.c"), is(true));
+    assertThat(like("abc", "a.c"), is(false));
+    assertThat(like("a%", "a!%", "!"), is(true));
+    assertThat(like("ab", "a!%", "!"), is(false));
+    assertThat(like("x%y", "%!%%", "!"), is(true));
+    assertThat(like("x%y", "%!%", "!"), is(false));
+    try {
+      like("abc", "a!b", "!");
+      fail("expected error");
+    } catch (RuntimeException e) {
+      assertThat(e.getMessage(), is("Invalid escape sequence 'a!b', 1"));
+    }
+  }
+
+  @Test public void testSimilar() {
+    assertThat(similar("abc", "abc"), is(true));
+    assertThat(similar("abcd", "abc%"), is(true));
+    assertThat(similar("xabcx", "%abc%"), is(true));
+    assertThat(similar("a$c", "a$c"), is(true));
+    assertThat(similar("abc", "a(b|x)c"), is(true));
+    assertThat(similar("abc", "a[bx]c"), is(true));
+    assertThat(similar("ab", "a[bx]c"), is(false));
+  }
+
+  /** Tests that a matcher, as used in generated code for a literal pattern,
+   * gives the same result as the function. */
+  /** Tests {@link SqlFunctions#likeMatcher} and
+   * {@link SqlFunctions#similarMatcher} against the regular expressions that
+   * LIKE and SIMILAR TO used before matchers existed. */
+  @Test public void testLikeMatcher() {
+    final String[] patterns = {
+      "abc", "abc%", "%abc", "%abc%", "a%c", "a_c", "a.c", "%a.c%", "a*c"
+    };
+    final String[] strings = {
+      "abc", "abcd", "xabc", "xabcx", "ac", "axc", "a.c", "xa.cx", "a*c", ""
+    };
+    for (String pattern : patterns) {
+      final Like.Matcher likeMatcher = likeMatcher(pattern);
+      final Like.Matcher similarMatcher = similarMatcher(pattern);
+      final String likeRegex = Like.sqlToRegexLike(pattern, null);
+      final String similarRegex = Like.sqlToRegexSimilar(pattern, null);
+      for (String s : strings) {
+        assertThat(pattern + " LIKE " + s, likeMatcher.matches(s),
+            is(Pattern.matches(likeRegex, s)));
+        assertThat(pattern + " SIMILAR TO " + s, similarMatcher.matches(s),
+            is(Pattern.matches(similarRegex, s)));
+      }
+    }
+    assertSame(likeMatcher("abc%"), likeMatcher("abc%"));
+  }
+
   @Test public void testLesser() {
     assertEquals("a", lesser("a", "bc"));
     assertEquals("ac", lesser("bc", "ac"));
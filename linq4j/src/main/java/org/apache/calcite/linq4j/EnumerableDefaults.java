@@ -55,6 +55,7 @@
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.RandomAccess;
 import java.util.Set;
 import java.util.TreeMap;
@@ -1172,6 +1173,106 @@ public void close() {
     };
   }
 
+  /**
+   * Correlates the elements of two sequences based on matching keys of type
+   * {@code long}.
+   *
+   * <p>Gives the same result as the corresponding {@link #join} method,
+   * but does not box keys: the inner sequence is held in an open-addressing
+   * hash table of primitive keys, and elements with the same key are chained
+   * through an array rather than held in a list per key.
+   *
+   * <p>Keys must not be null. The caller can join on other key types by
+   * mapping each key to a {@code long} in a way that preserves equality: for
+   * example, a composite of two {@code int} values, or a {@code double}
+   * converted using {@link Double#doubleToLongBits(double)}.
+   */
+  public static <TSource, TInner, TResult> Enumerable<TResult> hashJoinLong(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final LongFunction1<TSource> outerKeySelector,
+      final LongFunction1<TInner> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final boolean generateNullsOnLeft, final boolean generateNullsOnRight) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final LongLookup<TInner> innerLookup =
+            LongLookup.of(inner, innerKeySelector);
+
+        return new Enumerator<TResult>() {
+          final Enumerator<TSource> outers = outer.enumerator();
+          TSource outerElement;
+          /** Index of current inner element, or -1 if it is null. */
+          int innerElement = -1;
+          /** Index of next inner element to return, or -1. */
+          int nextInner = -1;
+          /** Whether we are returning inner elements that matched no outer
+           * element, for a RIGHT or FULL join. */
+          boolean leftovers;
+          int slot;
+
+          public TResult current() {
+            return resultSelector.apply(outerElement,
+                innerElement < 0
+                    ? null
+                    : innerLookup.element(innerElement));
+          }
+
+          public boolean moveNext() {
+            for (;;) {
+              if (nextInner >= 0) {
+                innerElement = nextInner;
+                nextInner = innerLookup.next(nextInner);
+                return true;
+              }
+              if (leftovers) {
+                slot = innerLookup.nextUnmatched(slot + 1);
+                if (slot < 0) {
+                  return false;
+                }
+                nextInner = innerLookup.head(slot);
+                continue;
+              }
+              if (!outers.moveNext()) {
+                if (generateNullsOnLeft) {
+                  // We've seen everything else. Now return the inner
+                  // elements whose key matched no outer element.
+                  leftovers = true;
+                  outerElement = null;
+                  slot = -1;
+                  continue;
+                }
+                return false;
+              }
+              outerElement = outers.current();
+              final int outerSlot =
+                  innerLookup.find(outerKeySelector.apply(outerElement));
+              if (outerSlot >= 0) {
+                if (generateNullsOnLeft) {
+                  innerLookup.markMatched(outerSlot);
+                }
+                nextInner = innerLookup.head(outerSlot);
+              } else if (generateNullsOnRight) {
+                innerElement = -1;
+                return true;
+              }
+            }
+          }
+
+          public void reset() {
+            outers.reset();
+            innerLookup.clearMatched();
+            nextInner = -1;
+            leftovers = false;
+          }
+
+          public void close() {
+            outers.close();
+          }
+        };
+      }
+    };
+  }
+
   /**
    * Returns elements of {@code outer} for which there is a member of
    * {@code inner} with a matching key. A specified
@@ -1838,6 +1939,65 @@ public static <TSource, TKey> Enumerable<TSource> orderBy(
     return lookup.valuesEnumerable();
   }
 
+  /**
+   * Sorts the elements of a sequence in ascending order by using a specified
+   * comparer, skips {@code offset} elements, and returns at most
+   * {@code fetch} elements.
+   *
+   * <p>Gives the same result as
+   * {@code orderBy(source, keySelector, comparator).skip(offset).take(fetch)},
+   * but does not sort the whole sequence. It keeps the first
+   * {@code offset + fetch} elements seen so far in a bounded priority queue,
+   * so uses O(n log N) time and O(N) memory, where n is the number of
+   * elements in the sequence and N is {@code offset + fetch}.
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(
+      final Enumerable<TSource> source,
+      final Function1<TSource, TKey> keySelector,
+      final Comparator<TKey> comparator, final int offset, final int fetch) {
+    final long size = (long) offset + fetch;
+    if (size > Integer.MAX_VALUE) {
+      return orderBy(source, keySelector, comparator).skip(offset).take(fetch);
+    }
+    return new AbstractEnumerable<TSource>() {
+      public Enumerator<TSource> enumerator() {
+        if (fetch <= 0) {
+          return Linq4j.emptyEnumerator();
+        }
+        final Comparator<Ranked<TKey, TSource>> rankComparator =
+            Ranked.comparator(comparator);
+        // The head of the queue is the greatest element we have kept, that
+        // is, the one we would discard first.
+        final PriorityQueue<Ranked<TKey, TSource>> queue =
+            new PriorityQueue<>(Math.min((int) size, 1024),
+                Collections.reverseOrder(rankComparator));
+        int ordinal = 0;
+        try (Enumerator<TSource> os = source.enumerator()) {
+          while (os.moveNext()) {
+            final TSource o = os.current();
+            final TKey key = keySelector.apply(o);
+            if (queue.size() < size) {
+              queue.add(new Ranked<>(key, o, ordinal++));
+            } else if (Ranked.compare(comparator, key, queue.peek().key) < 0) {
+              // The new element is less than the greatest element. (If it
+              // were equal, it would be greater, because it came later.)
+              queue.poll();
+              queue.add(new Ranked<>(key, o, ordinal++));
+            }
+          }
+        }
+        final List<Ranked<TKey, TSource>> list = new ArrayList<>(queue);
+        Collections.sort(list, rankComparator);
+        final List<TSource> result = new ArrayList<>();
+        for (Ranked<TKey, TSource> ranked
+            : list.subList(Math.min(offset, list.size()), list.size())) {
+          result.add(ranked.element);
+        }
+        return Linq4j.enumerator(result);
+      }
+    };
+  }
+
   /**
    * Sorts the elements of a sequence in descending
    * order according to a key.
@@ -3116,6 +3276,42 @@ public T unwrap() {
     }
   }
 
+  /** Element, its sort key, and its position in the input. Elements with
+   * equal keys are sorted by position.
+   *
+   * @param <K> key type
+   * @param <E> element type */
+  private static class Ranked<K, E> {
+    final K key;
+    final E element;
+    final int ordinal;
+
+    Ranked(K key, E element, int ordinal) {
+      this.key = key;
+      this.element = element;
+      this.ordinal = ordinal;
+    }
+
+    /** Compares two keys using a comparator, or if the comparator is null,
+     * their natural order. */
+    static <K> int compare(Comparator<K> comparator, K k0, K k1) {
+      //noinspection unchecked
+      return comparator == null
+          ? ((Comparable) k0).compareTo(k1)
+          : comparator.compare(k0, k1);
+    }
+
+    static <K, E> Comparator<Ranked<K, E>> comparator(
+        final Comparator<K> comparator) {
+      return new Comparator<Ranked<K, E>>() {
+        public int compare(Ranked<K, E> o0, Ranked<K, E> o1) {
+          final int c = Ranked.compare(comparator, o0.key, o1.key);
+          return c != 0 ? c : Integer.compare(o0.ordinal, o1.ordinal);
+        }
+      };
+    }
+  }
+
   /** Map that wraps each value.
    *
    * @param <K> key type
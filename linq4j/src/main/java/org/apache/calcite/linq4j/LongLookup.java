@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.LongFunction1;
+
+import java.util.Arrays;
+
+/**
+ * Multi-map from {@code long} keys to elements, used by
+ * {@link EnumerableDefaults#hashJoinLong}.
+ *
+ * <p>Keys are held in an open-addressing hash table with linear probing, and
+ * are never boxed. Elements are held in one array, in the order they were
+ * added; elements with the same key are chained through an array of
+ * {@code int} indexes, so there is no list per key.
+ *
+ * <p>Each slot of the hash table also has a "matched" flag, which a join
+ * sets when it finds a key, so that it can later emit the elements whose
+ * keys were never found.
+ *
+ * @param <V> Element type
+ */
+class LongLookup<V> {
+  private static final int NONE = -1;
+
+  /** Key of each slot. Meaningful only if {@code heads[slot] != NONE}. */
+  private long[] keys;
+  /** Index of the first element with the key in each slot, or
+   * {@link #NONE} if the slot is empty. */
+  private int[] heads;
+  /** Index of the last element with the key in each slot. */
+  private int[] tails;
+  private boolean[] matched;
+  private int mask;
+  private int slotCount;
+
+  private Object[] elements = new Object[16];
+  /** Index of the next element with the same key, or {@link #NONE}. */
+  private int[] nexts = new int[16];
+  private int elementCount;
+
+  LongLookup() {
+    allocate(16);
+  }
+
+  /** Creates a LongLookup containing each element of a source, keyed by the
+   * result of applying a function to the element. */
+  static <V> LongLookup<V> of(Enumerable<V> source,
+      LongFunction1<V> keySelector) {
+    final LongLookup<V> lookup = new LongLookup<>();
+    try (Enumerator<V> os = source.enumerator()) {
+      while (os.moveNext()) {
+        final V o = os.current();
+        lookup.add(keySelector.apply(o), o);
+      }
+    }
+    return lookup;
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    heads = new int[capacity];
+    tails = new int[capacity];
+    Arrays.fill(heads, NONE);
+    mask = capacity - 1;
+  }
+
+  /** Adds an element. */
+  void add(long key, V element) {
+    if (elementCount == elements.length) {
+      elements = Arrays.copyOf(elements, elementCount * 2);
+      nexts = Arrays.copyOf(nexts, elementCount * 2);
+    }
+    final int e = elementCount++;
+    elements[e] = element;
+    nexts[e] = NONE;
+    final int slot = slot(key);
+    if (heads[slot] == NONE) {
+      keys[slot] = key;
+      heads[slot] = e;
+      tails[slot] = e;
+      if (++slotCount * 2 > heads.length) {
+        rehash();
+      }
+    } else {
+      nexts[tails[slot]] = e;
+      tails[slot] = e;
+    }
+  }
+
+  /** Doubles the size of the hash table. */
+  private void rehash() {
+    final long[] oldKeys = keys;
+    final int[] oldHeads = heads;
+    final int[] oldTails = tails;
+    allocate(oldHeads.length * 2);
+    for (int i = 0; i < oldHeads.length; i++) {
+      if (oldHeads[i] != NONE) {
+        final int slot = slot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        heads[slot] = oldHeads[i];
+        tails[slot] = oldTails[i];
+      }
+    }
+  }
+
+  /** Returns the slot that holds a key, or the empty slot where the key
+   * would be placed. */
+  private int slot(long key) {
+    int slot = hash(key) & mask;
+    while (heads[slot] != NONE && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /** Spreads the bits of a key, so that keys that differ only in their high
+   * bits (such as two {@code int} values packed into a {@code long}) do not
+   * collide. This is the finalization step of MurmurHash3. */
+  private static int hash(long key) {
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  /** Returns the slot that holds a key, or -1 if the key is not present. */
+  int find(long key) {
+    final int slot = slot(key);
+    return heads[slot] == NONE ? -1 : slot;
+  }
+
+  /** Records that the key in a given slot has been matched. */
+  void markMatched(int slot) {
+    if (matched == null) {
+      matched = new boolean[heads.length];
+    }
+    matched[slot] = true;
+  }
+
+  /** Returns the first slot at or after {@code slot} that holds a key that
+   * has not been matched, or -1 if there is none. */
+  int nextUnmatched(int slot) {
+    for (; slot < heads.length; slot++) {
+      if (heads[slot] != NONE && (matched == null || !matched[slot])) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  /** Clears all "matched" flags. */
+  void clearMatched() {
+    matched = null;
+  }
+
+  /** Returns the index of the first element in a slot. */
+  int head(int slot) {
+    return heads[slot];
+  }
+
+  /** Returns the index of the next element with the same key as a given
+   * element, or -1. */
+  int next(int element) {
+    return nexts[element];
+  }
+
+  /** Returns the element with a given index. */
+  @SuppressWarnings("unchecked")
+  V element(int element) {
+    return (V) elements[element];
+  }
+}
+
+// End LongLookup.java
@@ -32,6 +32,7 @@
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Functions;
 import org.apache.calcite.linq4j.function.IntegerFunction1;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.ConstantExpression;
@@ -1258,6 +1259,78 @@ public String apply(Employee v1, Department v2) {
         s);
   }
 
+  /** Tests {@link EnumerableDefaults#hashJoinLong}, which should give the
+   * same results as {@link #testJoin()} and {@link #testFullJoin()}. */
+  @Test public void testHashJoinLong() {
+    final LongFunction1<Employee> empDeptno =
+        new LongFunction1<Employee>() {
+          public long apply(Employee employee) {
+            return employee.deptno;
+          }
+        };
+    final LongFunction1<Department> deptDeptno =
+        new LongFunction1<Department>() {
+          public long apply(Department department) {
+            return department.deptno;
+          }
+        };
+    final Function2<Employee, Department, String> resultSelector =
+        new Function2<Employee, Department, String>() {
+          public String apply(Employee v1, Department v2) {
+            return (v1 == null ? null : v1.name)
+                + " works in " + (v2 == null ? null : v2.name);
+          }
+        };
+    final Enumerable<Employee> allEmps =
+        Linq4j.asEnumerable(emps).concat(Linq4j.asEnumerable(badEmps));
+    String s =
+        EnumerableDefaults.hashJoinLong(allEmps, Linq4j.asEnumerable(depts),
+            empDeptno, deptDeptno, resultSelector, false, false)
+            .orderBy(Functions.<String>identitySelector())
+            .toList()
+            .toString();
+    assertEquals(
+        "[Bill works in Marketing, "
+            + "Eric works in Sales, "
+            + "Fred works in Sales, "
+            + "Janet works in Sales]",
+        s);
+    s =
+        EnumerableDefaults.hashJoinLong(allEmps, Linq4j.asEnumerable(depts),
+            empDeptno, deptDeptno, resultSelector, true, true)
+            .orderBy(Functions.<String>identitySelector())
+            .toList()
+            .toString();
+    assertEquals(
+        "[Bill works in Marketing, "
+            + "Cedric works in null, "
+            + "Eric works in Sales, "
+            + "Fred works in Sales, "
+            + "Janet works in Sales, "
+            + "null works in HR]",
+        s);
+
+    // Departments on the left, so that each key has several matches
+    s =
+        EnumerableDefaults.hashJoinLong(Linq4j.asEnumerable(depts), allEmps,
+            deptDeptno, empDeptno,
+            new Function2<Department, Employee, String>() {
+              public String apply(Department v1, Employee v2) {
+                return (v1 == null ? null : v1.name)
+                    + " has " + (v2 == null ? null : v2.name);
+              }
+            }, false, true)
+            .toList()
+            .toString();
+    assertEquals(
+        "[Sales has Fred, "
+            + "Sales has Eric, "
+            + "Sales has Janet, "
+            + "HR has null, "
+            + "Marketing has Bill]",
+        s);
+  }
+
   @Test public void testJoinCartesianProduct() {
     int n =
         Linq4j.asEnumerable(emps)
@@ -1653,6 +1726,36 @@ public boolean apply(Department v1, Integer v2) {
             .toList().toString());
   }
 
+  /** Tests {@link EnumerableDefaults#orderBy} with offset and fetch, which
+   * keeps only the top rows. Like the full sort, it is stable. */
+  @Test public void testOrderByFetch() {
+    final Enumerable<Employee> allEmps =
+        Linq4j.asEnumerable(emps).concat(Linq4j.asEnumerable(badEmps));
+    assertEquals(
+        "[Employee(name: Fred, deptno:10),"
+            + " Employee(name: Eric, deptno:10)]",
+        EnumerableDefaults.orderBy(allEmps, EMP_DEPTNO_SELECTOR, null, 0, 2)
+            .toList().toString());
+    assertEquals(
+        "[Employee(name: Janet, deptno:10),"
+            + " Employee(name: Bill, deptno:30)]",
+        EnumerableDefaults.orderBy(allEmps, EMP_DEPTNO_SELECTOR, null, 2, 2)
+            .toList().toString());
+    assertEquals(
+        "[Employee(name: Cedric, deptno:40),"
+            + " Employee(name: Bill, deptno:30),"
+            + " Employee(name: Fred, deptno:10)]",
+        EnumerableDefaults.orderBy(allEmps, EMP_DEPTNO_SELECTOR,
+            Collections.<Integer>reverseOrder(), 0, 3)
+            .toList().toString());
+    assertEquals("[]",
+        EnumerableDefaults.orderBy(allEmps, EMP_DEPTNO_SELECTOR, null, 5, 2)
+            .toList().toString());
+    assertEquals("[]",
+        EnumerableDefaults.orderBy(allEmps, EMP_DEPTNO_SELECTOR, null, 0, 0)
+            .toList().toString());
+  }
+
   @Test public void testOrderByInSeries() {
     // OrderBy in series works because sort is stable.
     assertEquals(
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.runtime.Hook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time per row saved by evaluating expressions that have the
+ * same value for every row, such as dynamic parameters and
+ * {@code CURRENT_TIMESTAMP}, once per execution rather than once per row.
+ *
+ * <p>Compare the scores for {@code hoist=true} and {@code hoist=false},
+ * divided by {@code rowCount}.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx512m")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InvariantHoistingBenchmark {
+
+  @Param({ "100000" })
+  int rowCount;
+
+  @Param({ "true", "false" })
+  boolean hoist;
+
+  Connection connection;
+  PreparedStatement statement;
+
+  @Setup
+  public void setup() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:calcite:");
+    final CalciteConnection calciteConnection =
+        connection.unwrap(CalciteConnection.class);
+    calciteConnection.getRootSchema()
+        .add("s", new ReflectiveSchema(new Schema(rowCount)));
+
+    // The statement is prepared, and its code generated, while the hook is
+    // active.
+    try (Hook.Closeable ignore =
+             Hook.HOIST_INVARIANTS.addThread(Hook.property(hoist))) {
+      statement = connection.prepareStatement("select count(*)\n"
+          + "from \"s\".\"rows\"\n"
+          + "where \"x\" > ? and \"x\" < ?\n"
+          + "and CURRENT_TIMESTAMP > TIMESTAMP '2000-01-01 00:00:00'");
+    }
+    statement.setInt(1, 0);
+    statement.setInt(2, rowCount / 2);
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    statement.close();
+    connection.close();
+  }
+
+  @Benchmark
+  public long execute() throws SQLException {
+    try (ResultSet resultSet = statement.executeQuery()) {
+      resultSet.next();
+      return resultSet.getLong(1);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(InvariantHoistingBenchmark.class.getSimpleName())
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+
+  /** Schema that contains one table. */
+  public static class Schema {
+    public final Row[] rows;
+
+    Schema(int rowCount) {
+      rows = new Row[rowCount];
+      for (int i = 0; i < rowCount; i++) {
+        rows[i] = new Row(i);
+      }
+    }
+  }
+
+  /** Row of the table. */
+  public static class Row {
+    public final int x;
+
+    Row(int x) {
+      this.x = x;
+    }
+  }
+}
+
+// End InvariantHoistingBenchmark.java
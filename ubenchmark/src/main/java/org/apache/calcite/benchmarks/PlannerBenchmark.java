@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.schema.SchemaPlus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Volcano planner on queries with many joins.
+ *
+ * <p>Each invocation prepares (parses, validates, converts and plans) a
+ * query that joins {@code joinCount + 1} tables; most of the time is spent
+ * firing rules and choosing the next rule-match to fire.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1g")
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PlannerBenchmark {
+
+  @Param({ "2", "4", "6", "8", "11" })
+  int joinCount;
+
+  Connection connection;
+  String sql;
+
+  @Setup
+  public void setup() throws ClassNotFoundException, SQLException {
+    Class.forName("org.apache.calcite.jdbc.Driver");
+    final Properties info = new Properties();
+    info.put("lex", "JAVA");
+    connection = DriverManager.getConnection("jdbc:calcite:", info);
+    final CalciteConnection calciteConnection =
+        connection.unwrap(CalciteConnection.class);
+    final SchemaPlus rootSchema = calciteConnection.getRootSchema();
+    rootSchema.add("hr", new ReflectiveSchema(new StatementTest.HrSchema()));
+    calciteConnection.setSchema("hr");
+
+    // Alternate between "emps" and "depts", joining each table to the
+    // previous one, and filter and aggregate so that the filter, project
+    // and aggregate rules have work to do too.
+    final StringBuilder select = new StringBuilder();
+    final StringBuilder from = new StringBuilder("emps t0");
+    final StringBuilder where = new StringBuilder("t0.salary > 1000");
+    select.append("t0.name");
+    for (int i = 1; i <= joinCount; i++) {
+      final boolean emps = i % 2 == 0;
+      from.append(" join ").append(emps ? "emps" : "depts")
+          .append(" t").append(i)
+          .append(" on t").append(i - 1).append(".deptno = t").append(i)
+          .append(".deptno");
+      if (emps) {
+        where.append(" and t").append(i).append(".empid <> t0.empid");
+      } else {
+        select.append(", t").append(i).append(".name");
+      }
+    }
+    sql = "select " + select + ", count(*) as c\n"
+        + "from " + from + "\n"
+        + "where " + where + "\n"
+        + "group by " + select;
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    connection.close();
+  }
+
+  @Benchmark
+  public void prepare() throws SQLException {
+    final PreparedStatement statement = connection.prepareStatement(sql);
+    statement.close();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(PlannerBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+
+}
+
+// End PlannerBenchmark.java